@@ -69,9 +69,11 @@ import org.glassfish.tyrus.core.AnnotatedEndpoint;
 import org.glassfish.tyrus.core.BaseContainer;
 import org.glassfish.tyrus.core.ComponentProviderService;
 import org.glassfish.tyrus.core.ErrorCollector;
+import org.glassfish.tyrus.core.IncomingMemoryBudget;
 import org.glassfish.tyrus.core.ReflectionHelper;
 import org.glassfish.tyrus.core.TyrusEndpointWrapper;
 import org.glassfish.tyrus.core.TyrusFuture;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.Utils;
 import org.glassfish.tyrus.spi.ClientContainer;
 import org.glassfish.tyrus.spi.ClientEngine;
@@ -183,6 +185,7 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
     private volatile long defaultMaxSessionIdleTimeout;
     private volatile int maxBinaryMessageBufferSize = Integer.MAX_VALUE;
     private volatile int maxTextMessageBufferSize = Integer.MAX_VALUE;
+    private IncomingMemoryBudget incomingMemoryBudget;
 
     /**
      * Create new {@link ClientManager} instance.
@@ -539,7 +542,7 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
                                 }, null, null
                                 );
 
-                                TyrusClientEngine clientEngine = new TyrusClientEngine(clientEndpoint, listener, copiedProperties);
+                                TyrusClientEngine clientEngine = new TyrusClientEngine(clientEndpoint, listener, copiedProperties, getIncomingMemoryBudget());
 
                                 container.openClientSocket(url, config, copiedProperties, clientEngine);
 
@@ -595,6 +598,25 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         }
     }
 
+    /**
+     * Get budget shared by all connections created by this client container.
+     * <p/>
+     * Budget is created when the first connection is opened with {@link TyrusWebSocketEngine#INCOMING_MEMORY_BUDGET}
+     * set in {@link #getProperties()}; later changes of the property are not reflected.
+     *
+     * @return shared budget or {@code null} when inbound memory is not limited.
+     */
+    private synchronized IncomingMemoryBudget getIncomingMemoryBudget() {
+        if (incomingMemoryBudget == null) {
+            final Long limit = Utils.getProperty(properties, TyrusWebSocketEngine.INCOMING_MEMORY_BUDGET, Long.class);
+            if (limit != null) {
+                incomingMemoryBudget = new IncomingMemoryBudget(limit, getExecutorService());
+            }
+        }
+
+        return incomingMemoryBudget;
+    }
+
     private interface ClientManagerHandshakeListener extends TyrusClientEngine.ClientHandshakeListener {
         Session getSession();
 
@@ -698,6 +720,18 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         return properties;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Value of {@link TyrusWebSocketEngine#VIRTUAL_THREADS} is taken from {@link #getProperties() container properties}
+     * when set there.
+     */
+    @Override
+    protected boolean useVirtualThreads() {
+        final Boolean virtualThreads = Utils.getProperty(properties, TyrusWebSocketEngine.VIRTUAL_THREADS, Boolean.class);
+        return virtualThreads != null ? virtualThreads : super.useVirtualThreads();
+    }
+
     /**
      * Executor service which just executes provided {@link Runnable} in the very same thread.
      */
@@ -57,6 +57,7 @@ import javax.websocket.WebSocketContainer;
 import javax.websocket.server.HandshakeRequest;
 
 import org.glassfish.tyrus.core.Handshake;
+import org.glassfish.tyrus.core.IncomingMemoryBudget;
 import org.glassfish.tyrus.core.ProtocolHandler;
 import org.glassfish.tyrus.core.RequestContext;
 import org.glassfish.tyrus.core.TyrusEndpointWrapper;
@@ -97,6 +98,7 @@ public class TyrusClientEngine implements ClientEngine {
     private final TyrusEndpointWrapper endpointWrapper;
     private final ClientHandshakeListener listener;
     private final Map<String, Object> properties;
+    private final IncomingMemoryBudget incomingMemoryBudget;
 
     private Handshake clientHandShake = null;
     private volatile TimeoutHandler timeoutHandler = null;
@@ -114,9 +116,25 @@ public class TyrusClientEngine implements ClientEngine {
      * @param properties      passed container properties, see {@link org.glassfish.tyrus.client.ClientManager#getProperties()}.
      */
     /* package */ TyrusClientEngine(TyrusEndpointWrapper endpointWrapper, ClientHandshakeListener listener, Map<String, Object> properties) {
+        this(endpointWrapper, listener, properties, null);
+    }
+
+    /**
+     * Create {@link org.glassfish.tyrus.spi.WebSocketEngine} instance with inbound memory budget shared among
+     * connections created by the same client container.
+     *
+     * @param endpointWrapper      wrapped client endpoint.
+     * @param listener             used for reporting back the outcome of handshake.
+     * @param properties           passed container properties, see {@link org.glassfish.tyrus.client.ClientManager#getProperties()}.
+     * @param incomingMemoryBudget budget charged for inbound data buffered by created connection. {@code null} means
+     *                             no limit.
+     */
+    /* package */ TyrusClientEngine(TyrusEndpointWrapper endpointWrapper, ClientHandshakeListener listener, Map<String, Object> properties,
+                                    IncomingMemoryBudget incomingMemoryBudget) {
         this.endpointWrapper = endpointWrapper;
         this.listener = listener;
         this.properties = properties;
+        this.incomingMemoryBudget = incomingMemoryBudget;
     }
 
     @Override
@@ -142,6 +160,9 @@ public class TyrusClientEngine implements ClientEngine {
             clientHandShake.validateServerResponse(upgradeResponse);
 
             final TyrusWebSocket socket = new TyrusWebSocket(protocolHandler, endpointWrapper);
+            final IncomingMemoryBudget.Account account = incomingMemoryBudget == null ?
+                    IncomingMemoryBudget.newUnlimitedAccount(null) : incomingMemoryBudget.newAccount();
+            socket.setIncomingMemoryAccount(account);
             final List<Extension> handshakeResponseExtensions = TyrusExtension.fromHeaders(upgradeResponse.getHeaders().get(HandshakeRequest.SEC_WEBSOCKET_EXTENSIONS));
             final List<Extension> extensions = new ArrayList<Extension>();
 
@@ -197,12 +218,10 @@ public class TyrusClientEngine implements ClientEngine {
                 incomingBufferSize = tyrusIncomingBufferSize;
             }
 
-            return new Connection() {
+            class ClientConnection implements Connection, Connection.ReadControllable {
 
                 private final ReadHandler readHandler = new TyrusReadHandler(protocolHandler, socket,
-                        incomingBufferSize,
-                        sessionForRemoteEndpoint.getNegotiatedExtensions(),
-                        extensionContext);
+                        incomingBufferSize);
 
                 @Override
                 public ReadHandler getReadHandler() {
@@ -219,8 +238,15 @@ public class TyrusClientEngine implements ClientEngine {
                     return closeListener;
                 }
 
+                @Override
+                public void setReadControl(ReadControl readControl) {
+                    account.setReadControl(readControl);
+                }
+
                 @Override
                 public void close(CloseReason reason) {
+                    account.close();
+
                     try {
                         writer.close();
                     } catch (IOException e) {
@@ -236,7 +262,9 @@ public class TyrusClientEngine implements ClientEngine {
                     }
 
                 }
-            };
+            }
+
+            return new ClientConnection();
         } catch (Throwable e) {
             listener.onError(e);
             return null;
@@ -280,19 +308,16 @@ public class TyrusClientEngine implements ClientEngine {
         private final int incomingBufferSize;
         private final ProtocolHandler handler;
         private final TyrusWebSocket socket;
-        private final List<Extension> negotiatedExtensions;
-        private final ExtendedExtension.ExtensionContext extensionContext;
+        private final IncomingMemoryBudget.Account account;
 
         private ByteBuffer buffer = null;
+        private int charged = 0;
 
-        TyrusReadHandler(final ProtocolHandler protocolHandler, final TyrusWebSocket socket, int incomingBufferSize, List<Extension> negotiatedExtensions, ExtendedExtension.ExtensionContext extensionContext) {
+        TyrusReadHandler(final ProtocolHandler protocolHandler, final TyrusWebSocket socket, int incomingBufferSize) {
             this.handler = protocolHandler;
             this.socket = socket;
             this.incomingBufferSize = incomingBufferSize;
-            this.negotiatedExtensions = negotiatedExtensions;
-            this.extensionContext = extensionContext;
-
-            protocolHandler.setExtensionContext(extensionContext);
+            this.account = socket.getIncomingMemoryAccount();
         }
 
         @Override
@@ -315,22 +340,13 @@ public class TyrusClientEngine implements ClientEngine {
                     }
 
                     do {
-                        Frame frame = handler.unframe(data);
+                        final Frame frame = handler.unframe(data);
                         if (frame == null) {
                             buffer = data;
+                            updateCharge(data.remaining());
                             break;
                         } else {
-                            for (Extension extension : negotiatedExtensions) {
-                                if (extension instanceof ExtendedExtension) {
-                                    try {
-                                        frame = ((ExtendedExtension) extension).processIncoming(extensionContext, frame);
-                                    } catch (Throwable t) {
-                                        LOGGER.log(Level.FINE, String.format("Extension '%s' threw an exception during processIncoming method invocation: \"%s\".", extension.getName(), t.getMessage()), t);
-                                    }
-                                }
-                            }
-
-                            handler.process(frame, socket);
+                            handler.process(handler.processIncoming(frame), socket);
                         }
                     } while (true);
                 }
@@ -342,5 +358,14 @@ public class TyrusClientEngine implements ClientEngine {
                 socket.onClose(new CloseFrame(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, e.getMessage())));
             }
         }
+
+        private void updateCharge(int retained) {
+            if (retained > charged) {
+                account.charge(retained - charged);
+            } else if (retained < charged) {
+                account.release(charged - retained);
+            }
+            charged = retained;
+        }
     }
 }
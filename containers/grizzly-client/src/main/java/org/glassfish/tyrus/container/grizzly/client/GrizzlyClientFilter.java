@@ -101,6 +101,9 @@ class GrizzlyClientFilter extends BaseFilter {
     private static final Attribute<TaskProcessor> TASK_PROCESSOR = Grizzly.DEFAULT_ATTRIBUTE_BUILDER
             .createAttribute(TaskProcessor.class.getName() + ".TaskProcessor");
 
+    private static final Attribute<GrizzlyReadControl> READ_CONTROL = Grizzly.DEFAULT_ATTRIBUTE_BUILDER
+            .createAttribute(GrizzlyClientFilter.class.getName() + ".ReadControl");
+
     private final boolean proxy;
     private final Filter sslFilter;
     private final HttpCodecFilter httpCodecFilter;
@@ -242,7 +245,9 @@ class GrizzlyClientFilter extends BaseFilter {
                 TaskProcessor taskProcessor = TASK_PROCESSOR.get(ctx.getConnection());
                 taskProcessor.processTask(new ProcessTask(webSocketBuffer, readHandler));
             }
-            return ctx.getStopAction();
+
+            final GrizzlyReadControl readControl = READ_CONTROL.get(grizzlyConnection);
+            return readControl == null ? ctx.getStopAction() : readControl.getReadCompletedAction(ctx);
         }
 
         // tyrusConnection == null
@@ -340,8 +345,14 @@ class GrizzlyClientFilter extends BaseFilter {
             return ctx.getStopAction();
         }
 
+        final GrizzlyReadControl readControl = new GrizzlyReadControl();
+        if (tyrusConnection instanceof org.glassfish.tyrus.spi.Connection.ReadControllable) {
+            ((org.glassfish.tyrus.spi.Connection.ReadControllable) tyrusConnection).setReadControl(readControl);
+        }
+
         TYRUS_CONNECTION.set(ctx.getConnection(), tyrusConnection);
         TASK_PROCESSOR.set(ctx.getConnection(), new TaskProcessor());
+        READ_CONTROL.set(ctx.getConnection(), readControl);
 
         if (content.getContent().hasRemaining()) {
             return ctx.getRerunFilterAction();
@@ -438,6 +449,7 @@ class GrizzlyClientFilter extends BaseFilter {
             connection.close(closeReason);
             TYRUS_CONNECTION.remove(grizzlyConnection);
             TASK_PROCESSOR.remove(grizzlyConnection);
+            READ_CONTROL.remove(grizzlyConnection);
         }
     }
 }
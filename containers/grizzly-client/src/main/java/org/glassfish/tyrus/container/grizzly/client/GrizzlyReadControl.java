@@ -0,0 +1,94 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.grizzly.client;
+
+import org.glassfish.tyrus.spi.Connection;
+
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+
+/**
+ * {@link Connection.ReadControl} implementation for Grizzly filters.
+ * <p/>
+ * Reading is suspended by not completing the read event: filter returns suspend action from
+ * {@link org.glassfish.grizzly.filterchain.Filter#handleRead(FilterChainContext)} and Grizzly does not register
+ * the connection for further reads until the suspended {@link FilterChainContext} is resumed.
+ */
+public class GrizzlyReadControl implements Connection.ReadControl {
+
+    private boolean suspended = false;
+    private FilterChainContext suspendedContext = null;
+
+    @Override
+    public synchronized void suspendReading() {
+        suspended = true;
+    }
+
+    @Override
+    public void resumeReading() {
+        final FilterChainContext ctx;
+        synchronized (this) {
+            suspended = false;
+            ctx = suspendedContext;
+            suspendedContext = null;
+        }
+
+        if (ctx != null) {
+            ctx.resume(ctx.getStopAction());
+        }
+    }
+
+    /**
+     * Get action which should be returned from {@link org.glassfish.grizzly.filterchain.Filter#handleRead(FilterChainContext)}
+     * after read data were passed to Tyrus.
+     *
+     * @param ctx current filter chain context.
+     * @return suspend action when reading was suspended, stop action otherwise.
+     */
+    public synchronized NextAction getReadCompletedAction(FilterChainContext ctx) {
+        if (!suspended) {
+            return ctx.getStopAction();
+        }
+
+        suspendedContext = ctx;
+        ctx.suspend();
+        return ctx.getSuspendAction();
+    }
+}
@@ -44,6 +44,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.websocket.DeploymentException;
 import javax.websocket.server.ServerEndpointConfig;
@@ -51,6 +52,7 @@ import javax.websocket.server.ServerEndpointConfig;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
+import org.glassfish.tyrus.core.SessionDispatcher;
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.Utils;
 import org.glassfish.tyrus.core.cluster.ClusterContext;
@@ -112,16 +114,33 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
         final ClusterContext clusterContext = Utils.getProperty(localProperties, ClusterContext.CLUSTER_CONTEXT, ClusterContext.class);
         final ApplicationEventListener applicationEventListener = Utils.getProperty(localProperties, ApplicationEventListener.APPLICATION_EVENT_LISTENER, ApplicationEventListener.class);
         final Integer maxSessions = Utils.getProperty(localProperties, TyrusWebSocketEngine.MAX_SESSIONS, Integer.class);
+        final Long incomingMemoryBudget = Utils.getProperty(localProperties, TyrusWebSocketEngine.INCOMING_MEMORY_BUDGET, Long.class);
+        final Integer dispatchMailboxDepth = Utils.getProperty(localProperties, TyrusWebSocketEngine.DISPATCH_MAILBOX_DEPTH, Integer.class);
+        final SessionDispatcher.OverflowPolicy dispatchOverflowPolicy = Utils.getProperty(localProperties, TyrusWebSocketEngine.DISPATCH_OVERFLOW_POLICY, SessionDispatcher.OverflowPolicy.class);
+        final Executor dispatchExecutor = Utils.getProperty(localProperties, TyrusWebSocketEngine.DISPATCH_EXECUTOR, Executor.class);
+        final Boolean virtualThreads = Utils.getProperty(localProperties, TyrusWebSocketEngine.VIRTUAL_THREADS, Boolean.class);
+        final Integer maxConcurrentUpgrades = Utils.getProperty(localProperties, TyrusWebSocketEngine.MAX_CONCURRENT_UPGRADES, Integer.class);
+        final Integer upgradeQueueSize = Utils.getProperty(localProperties, TyrusWebSocketEngine.UPGRADE_QUEUE_SIZE, Integer.class);
+        final Long upgradeQueueTimeout = Utils.getProperty(localProperties, TyrusWebSocketEngine.UPGRADE_QUEUE_TIMEOUT, Long.class);
 
         return new TyrusServerContainer((Set<Class<?>>) null) {
 
             private final WebSocketEngine engine = TyrusWebSocketEngine.builder(this)
                     .incomingBufferSize(incomingBufferSize).clusterContext(clusterContext)
-                    .applicationEventListener(applicationEventListener).maxSessions(maxSessions).build();
+                    .applicationEventListener(applicationEventListener).maxSessions(maxSessions)
+                    .incomingMemoryBudget(incomingMemoryBudget).dispatchMailboxDepth(dispatchMailboxDepth)
+                    .dispatchOverflowPolicy(dispatchOverflowPolicy).dispatchExecutor(dispatchExecutor)
+                    .maxConcurrentUpgrades(maxConcurrentUpgrades).upgradeQueueSize(upgradeQueueSize)
+                    .upgradeQueueTimeout(upgradeQueueTimeout).build();
 
             private HttpServer server;
             private String contextPath;
 
+            @Override
+            protected boolean useVirtualThreads() {
+                return virtualThreads != null ? virtualThreads : super.useVirtualThreads();
+            }
+
             @Override
             public void register(Class<?> endpointClass) throws DeploymentException {
                 engine.register(endpointClass, contextPath);
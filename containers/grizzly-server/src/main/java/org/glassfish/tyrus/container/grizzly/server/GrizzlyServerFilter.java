@@ -50,6 +50,7 @@ import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
 
+import org.glassfish.tyrus.container.grizzly.client.GrizzlyReadControl;
 import org.glassfish.tyrus.container.grizzly.client.GrizzlyWriter;
 import org.glassfish.tyrus.container.grizzly.client.TaskProcessor;
 import org.glassfish.tyrus.core.CloseReasons;
@@ -103,6 +104,9 @@ class GrizzlyServerFilter extends BaseFilter {
     private static final Attribute<TaskProcessor> TASK_PROCESSOR = Grizzly.DEFAULT_ATTRIBUTE_BUILDER
             .createAttribute(TaskProcessor.class.getName() + ".TaskProcessor");
 
+    private static final Attribute<GrizzlyReadControl> READ_CONTROL = Grizzly.DEFAULT_ATTRIBUTE_BUILDER
+            .createAttribute(GrizzlyServerFilter.class.getName() + ".ReadControl");
+
     private final ServerContainer serverContainer;
 
 
@@ -212,7 +216,9 @@ class GrizzlyServerFilter extends BaseFilter {
                 byteBufferArray.recycle();
             }
         }
-        return ctx.getStopAction();
+
+        final GrizzlyReadControl readControl = READ_CONTROL.get(ctx.getConnection());
+        return readControl == null ? ctx.getStopAction() : readControl.getReadCompletedAction(ctx);
     }
 
     private org.glassfish.tyrus.spi.Connection getConnection(FilterChainContext ctx) {
@@ -250,8 +256,14 @@ class GrizzlyServerFilter extends BaseFilter {
                     }
                 });
 
+                final GrizzlyReadControl readControl = new GrizzlyReadControl();
+                if (connection instanceof org.glassfish.tyrus.spi.Connection.ReadControllable) {
+                    ((org.glassfish.tyrus.spi.Connection.ReadControllable) connection).setReadControl(readControl);
+                }
+
                 TYRUS_CONNECTION.set(grizzlyConnection, connection);
                 TASK_PROCESSOR.set(grizzlyConnection, new TaskProcessor());
+                READ_CONTROL.set(grizzlyConnection, readControl);
 
                 grizzlyConnection.addCloseListener(new CloseListener() {
                     @Override
@@ -261,6 +273,7 @@ class GrizzlyServerFilter extends BaseFilter {
                         // might not be necessary, connection is going to be recycled/freed anyway
                         TYRUS_CONNECTION.remove(grizzlyConnection);
                         TASK_PROCESSOR.remove(grizzlyConnection);
+                        READ_CONTROL.remove(grizzlyConnection);
                     }
                 });
 
@@ -346,6 +359,7 @@ class GrizzlyServerFilter extends BaseFilter {
             connection.close(closeReason);
             TYRUS_CONNECTION.remove(grizzlyConnection);
             TASK_PROCESSOR.remove(grizzlyConnection);
+            READ_CONTROL.remove(grizzlyConnection);
         }
     }
 }
@@ -227,6 +227,20 @@ class ClientFilter extends Filter {
                     }
                 }
         );
+
+        if (wsConnection instanceof Connection.ReadControllable) {
+            ((Connection.ReadControllable) wsConnection).setReadControl(new Connection.ReadControl() {
+                @Override
+                public void suspendReading() {
+                    downstreamFilter.suspendRead();
+                }
+
+                @Override
+                public void resumeReading() {
+                    downstreamFilter.resumeRead();
+                }
+            });
+        }
     }
 
     private JdkUpgradeRequest createHandshakeUpgradeRequest(final UpgradeRequest upgradeRequest) {
@@ -74,6 +74,20 @@ class Filter {
     void startSsl() {
     }
 
+    /**
+     * Signals to stop reading data from the connection, it is passed on in the filter chain until a filter
+     * responsible for reading is reached.
+     */
+    void suspendRead() {
+    }
+
+    /**
+     * Signals to continue reading data from the connection after {@link #suspendRead()}, it is passed on in the
+     * filter chain until a filter responsible for reading is reached.
+     */
+    void resumeRead() {
+    }
+
     /**
      * An event listener that is called when a connection is set up.
      * This event travels up in the filter chain.
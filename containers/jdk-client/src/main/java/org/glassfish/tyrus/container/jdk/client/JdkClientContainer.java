@@ -64,6 +64,7 @@ import org.glassfish.tyrus.client.ClientManager;
 import org.glassfish.tyrus.client.SslContextConfigurator;
 import org.glassfish.tyrus.client.SslEngineConfigurator;
 import org.glassfish.tyrus.core.Base64Utils;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.Utils;
 import org.glassfish.tyrus.spi.ClientContainer;
 import org.glassfish.tyrus.spi.ClientEngine;
@@ -91,6 +92,8 @@ public class JdkClientContainer implements ClientContainer {
         }
 
         TransportFilter transportFilter;
+        final Boolean virtualThreadsProperty = Utils.getProperty(properties, TyrusWebSocketEngine.VIRTUAL_THREADS, Boolean.class);
+        final boolean virtualThreads = virtualThreadsProperty != null ? virtualThreadsProperty : Boolean.getBoolean(TyrusWebSocketEngine.VIRTUAL_THREADS);
 
         final ClientFilter clientFilter = new ClientFilter(clientEngine, uri, getProxyHeaders(properties));
         final TaskQueueFilter writeQueue = new TaskQueueFilter(clientFilter);
@@ -141,10 +144,10 @@ public class JdkClientContainer implements ClientContainer {
                     sslFilter = new SslFilter(writeQueue, (org.glassfish.tyrus.container.jdk.client.SslEngineConfigurator) sslEngineConfiguratorObject);
                 }
             }
-            transportFilter = new TransportFilter(sslFilter, SSL_INPUT_BUFFER_SIZE);
+            transportFilter = new TransportFilter(sslFilter, SSL_INPUT_BUFFER_SIZE, virtualThreads);
 
         } else {
-            transportFilter = new TransportFilter(writeQueue, INPUT_BUFFER_SIZE);
+            transportFilter = new TransportFilter(writeQueue, INPUT_BUFFER_SIZE, virtualThreads);
         }
 
         processProxy(properties, uri);
@@ -140,6 +140,22 @@ class SslFilter extends Filter {
         });
     }
 
+    @Override
+    void suspendRead() {
+        final Filter filter = downstreamFilter;
+        if (filter != null) {
+            filter.suspendRead();
+        }
+    }
+
+    @Override
+    void resumeRead() {
+        final Filter filter = downstreamFilter;
+        if (filter != null) {
+            filter.resumeRead();
+        }
+    }
+
     @Override
     void onConnect(final Filter downstreamFilter) {
         this.downstreamFilter = downstreamFilter;
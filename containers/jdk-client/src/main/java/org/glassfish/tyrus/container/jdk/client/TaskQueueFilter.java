@@ -124,6 +124,22 @@ class TaskQueueFilter extends Filter {
         }
     }
 
+    @Override
+    void suspendRead() {
+        final Filter filter = downstreamFilter;
+        if (filter != null) {
+            filter.suspendRead();
+        }
+    }
+
+    @Override
+    void resumeRead() {
+        final Filter filter = downstreamFilter;
+        if (filter != null) {
+            filter.resumeRead();
+        }
+    }
+
     @Override
     void onConnect(Filter connection) {
         this.downstreamFilter = connection;
@@ -54,6 +54,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.glassfish.tyrus.core.VirtualThreads;
+
 /**
  * Writes and reads data to and from a socket. Only one {@link #write(java.nio.ByteBuffer, org.glassfish.tyrus.spi.CompletionHandler)}
  * method call can be processed at a time. Only one {@link #read(java.nio.ByteBuffer)} operation is supported at a time,
@@ -72,19 +74,38 @@ class TransportFilter extends Filter {
 
     private static volatile AsynchronousChannelGroup channelGroup;
     private static volatile ScheduledFuture<?> closeWaitTask;
+    // runs processing of read data in virtual threads; created when first needed and never shut down.
+    private static ExecutorService virtualThreadExecutor;
 
     private final Filter upstreamFilter;
     private final int inputBufferSize;
+    private final ExecutorService readExecutor;
 
     private volatile AsynchronousSocketChannel socketChannel;
 
+    private final Object readLock = new Object();
+    private boolean readSuspended = false;
+    // input buffer of the read operation which was not re-armed because reading is suspended.
+    private ByteBuffer suspendedInputBuffer = null;
+
     /**
      * @param upstreamFilter  a {@link org.glassfish.tyrus.container.jdk.client.Filter} positioned on top of this filter.
      * @param inputBufferSize size of buffer to be allocated for reading data from a socket.
+     * @param virtualThreads  {@code true} if read data should be processed in virtual threads. The channel group
+     *                        itself always runs on platform threads; only processing of read data (which includes
+     *                        user callbacks) is handed over to a virtual thread.
      */
-    TransportFilter(Filter upstreamFilter, int inputBufferSize) {
+    TransportFilter(Filter upstreamFilter, int inputBufferSize, boolean virtualThreads) {
         this.upstreamFilter = upstreamFilter;
         this.inputBufferSize = inputBufferSize;
+        this.readExecutor = virtualThreads ? getVirtualThreadExecutor() : null;
+    }
+
+    private static synchronized ExecutorService getVirtualThreadExecutor() {
+        if (virtualThreadExecutor == null) {
+            virtualThreadExecutor = VirtualThreads.newExecutorService("tyrus-jdk-client-");
+        }
+        return virtualThreadExecutor;
     }
 
     @Override
@@ -171,6 +192,27 @@ class TransportFilter extends Filter {
         });
     }
 
+    @Override
+    void suspendRead() {
+        synchronized (readLock) {
+            readSuspended = true;
+        }
+    }
+
+    @Override
+    void resumeRead() {
+        final ByteBuffer inputBuffer;
+        synchronized (readLock) {
+            readSuspended = false;
+            inputBuffer = suspendedInputBuffer;
+            suspendedInputBuffer = null;
+        }
+
+        if (inputBuffer != null && socketChannel.isOpen()) {
+            read(inputBuffer);
+        }
+    }
+
     private void initializeChannelGroup() throws IOException {
         if (closeWaitTask != null) {
             closeWaitTask.cancel(true);
@@ -180,23 +222,25 @@ class TransportFilter extends Filter {
             return;
         }
         // Thread pool is owned by the channel group and will be shut down when channel group is shut down
-        ExecutorService executor = Executors.newCachedThreadPool();
-        channelGroup = AsynchronousChannelGroup.withCachedThreadPool(executor, THREAD_POOL_INITIAL_SIZE);
+        channelGroup = AsynchronousChannelGroup.withCachedThreadPool(Executors.newCachedThreadPool(), THREAD_POOL_INITIAL_SIZE);
     }
 
     private void read(final ByteBuffer inputBuffer) {
         socketChannel.read(inputBuffer, null, new CompletionHandler<Integer, Void>() {
             @Override
-            public void completed(Integer bytesRead, Void result) {
-                // connection closed by the server
-                if (bytesRead == -1) {
-                    TransportFilter.this.upstreamFilter.onConnectionClosed();
+            public void completed(final Integer bytesRead, Void result) {
+                if (readExecutor == null) {
+                    processRead(bytesRead, inputBuffer);
                     return;
                 }
-                inputBuffer.flip();
-                TransportFilter.this.upstreamFilter.onRead(TransportFilter.this, inputBuffer);
-                inputBuffer.compact();
-                read(inputBuffer);
+
+                // next read is started only after the data is processed, so the order is preserved.
+                readExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        processRead(bytesRead, inputBuffer);
+                    }
+                });
             }
 
             @Override
@@ -208,6 +252,26 @@ class TransportFilter extends Filter {
         });
     }
 
+    private void processRead(int bytesRead, ByteBuffer inputBuffer) {
+        // connection closed by the server
+        if (bytesRead == -1) {
+            upstreamFilter.onConnectionClosed();
+            return;
+        }
+        inputBuffer.flip();
+        upstreamFilter.onRead(this, inputBuffer);
+        inputBuffer.compact();
+
+        synchronized (readLock) {
+            if (readSuspended) {
+                // read will be started again in resumeRead()
+                suspendedInputBuffer = inputBuffer;
+                return;
+            }
+        }
+        read(inputBuffer);
+    }
+
     private void scheduleClose() {
         closeWaitTask = connectionCloseScheduler.schedule(new Runnable() {
             @Override
@@ -91,6 +91,38 @@ public class TyrusHttpUpgradeHandler implements HttpUpgradeHandler, ReadListener
 
     private boolean authenticated = false;
 
+    private final Object readLock = new Object();
+    private boolean readSuspended = false;
+    private boolean readPending = false;
+
+    /**
+     * Reading is suspended by leaving {@link #onDataAvailable()} without reading all available data. Servlet container
+     * won't invoke it again until {@link ServletInputStream#isReady()} returns {@code false}, so
+     * {@link #onDataAvailable()} has to be invoked when reading is resumed.
+     */
+    private final Connection.ReadControl readControl = new Connection.ReadControl() {
+        @Override
+        public void suspendReading() {
+            synchronized (readLock) {
+                readSuspended = true;
+            }
+        }
+
+        @Override
+        public void resumeReading() {
+            final boolean pending;
+            synchronized (readLock) {
+                readSuspended = false;
+                pending = readPending;
+                readPending = false;
+            }
+
+            if (pending && !closed) {
+                onDataAvailable();
+            }
+        }
+    };
+
     @Override
     public void init(WebConnection wc) {
         LOGGER.config("Servlet 3.1 Upgrade");
@@ -118,6 +150,9 @@ public class TyrusHttpUpgradeHandler implements HttpUpgradeHandler, ReadListener
                 }
             }
         });
+        if (connection instanceof Connection.ReadControllable) {
+            ((Connection.ReadControllable) connection).setReadControl(readControl);
+        }
 
         connectionLatch.countDown();
     }
@@ -137,6 +172,13 @@ public class TyrusHttpUpgradeHandler implements HttpUpgradeHandler, ReadListener
         }
 
         do {
+            synchronized (readLock) {
+                if (readSuspended) {
+                    readPending = true;
+                    return;
+                }
+            }
+
             try {
                 int available = is.available();
                 if (available == 0) {
@@ -233,6 +275,10 @@ public class TyrusHttpUpgradeHandler implements HttpUpgradeHandler, ReadListener
 
     @Override
     public void destroy() {
+        // init was not invoked or failed before the connection was created.
+        if (connection == null && upgradeInfo instanceof WebSocketEngine.UpgradeInfo.Abortable) {
+            ((WebSocketEngine.UpgradeInfo.Abortable) upgradeInfo).abort();
+        }
         close(CloseReason.CloseCodes.CLOSED_ABNORMALLY.getCode(), "No reason given.");
     }
 
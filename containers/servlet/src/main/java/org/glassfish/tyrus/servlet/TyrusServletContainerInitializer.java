@@ -58,6 +58,7 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.HandlesTypes;
 
+import org.glassfish.tyrus.core.SessionDispatcher;
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.monitoring.ApplicationEventListener;
 import org.glassfish.tyrus.server.TyrusServerContainer;
@@ -107,6 +108,62 @@ public class TyrusServletContainerInitializer implements ServletContainerInitial
             maxSessions = null;
         }
 
+        final Long incomingMemoryBudget;
+        String incomingMemoryBudgetStr = ctx.getInitParameter(TyrusWebSocketEngine.INCOMING_MEMORY_BUDGET);
+        if (incomingMemoryBudgetStr != null) {
+            incomingMemoryBudget = Long.parseLong(incomingMemoryBudgetStr);
+        } else {
+            incomingMemoryBudget = null;
+        }
+
+        final Integer dispatchMailboxDepth;
+        String dispatchMailboxDepthStr = ctx.getInitParameter(TyrusWebSocketEngine.DISPATCH_MAILBOX_DEPTH);
+        if (dispatchMailboxDepthStr != null) {
+            dispatchMailboxDepth = Integer.parseInt(dispatchMailboxDepthStr);
+        } else {
+            dispatchMailboxDepth = null;
+        }
+
+        final SessionDispatcher.OverflowPolicy dispatchOverflowPolicy;
+        String dispatchOverflowPolicyStr = ctx.getInitParameter(TyrusWebSocketEngine.DISPATCH_OVERFLOW_POLICY);
+        if (dispatchOverflowPolicyStr != null) {
+            dispatchOverflowPolicy = SessionDispatcher.OverflowPolicy.valueOf(dispatchOverflowPolicyStr.trim().toUpperCase());
+        } else {
+            dispatchOverflowPolicy = null;
+        }
+
+        final Boolean virtualThreads;
+        String virtualThreadsStr = ctx.getInitParameter(TyrusWebSocketEngine.VIRTUAL_THREADS);
+        if (virtualThreadsStr != null) {
+            virtualThreads = Boolean.parseBoolean(virtualThreadsStr);
+        } else {
+            virtualThreads = null;
+        }
+
+        final Integer maxConcurrentUpgrades;
+        String maxConcurrentUpgradesStr = ctx.getInitParameter(TyrusWebSocketEngine.MAX_CONCURRENT_UPGRADES);
+        if (maxConcurrentUpgradesStr != null) {
+            maxConcurrentUpgrades = Integer.parseInt(maxConcurrentUpgradesStr);
+        } else {
+            maxConcurrentUpgrades = null;
+        }
+
+        final Integer upgradeQueueSize;
+        String upgradeQueueSizeStr = ctx.getInitParameter(TyrusWebSocketEngine.UPGRADE_QUEUE_SIZE);
+        if (upgradeQueueSizeStr != null) {
+            upgradeQueueSize = Integer.parseInt(upgradeQueueSizeStr);
+        } else {
+            upgradeQueueSize = null;
+        }
+
+        final Long upgradeQueueTimeout;
+        String upgradeQueueTimeoutStr = ctx.getInitParameter(TyrusWebSocketEngine.UPGRADE_QUEUE_TIMEOUT);
+        if (upgradeQueueTimeoutStr != null) {
+            upgradeQueueTimeout = Long.parseLong(upgradeQueueTimeoutStr);
+        } else {
+            upgradeQueueTimeout = null;
+        }
+
         final ApplicationEventListener applicationEventListener = createApplicationEventListener(ctx);
         final TyrusServerContainer serverContainer = new TyrusServerContainer(classes) {
 
@@ -114,8 +171,19 @@ public class TyrusServletContainerInitializer implements ServletContainerInitial
                     .applicationEventListener(applicationEventListener)
                     .incomingBufferSize(incommingBufferSize)
                     .maxSessions(maxSessions)
+                    .incomingMemoryBudget(incomingMemoryBudget)
+                    .dispatchMailboxDepth(dispatchMailboxDepth)
+                    .dispatchOverflowPolicy(dispatchOverflowPolicy)
+                    .maxConcurrentUpgrades(maxConcurrentUpgrades)
+                    .upgradeQueueSize(upgradeQueueSize)
+                    .upgradeQueueTimeout(upgradeQueueTimeout)
                     .build();
 
+            @Override
+            protected boolean useVirtualThreads() {
+                return virtualThreads != null ? virtualThreads : super.useVirtualThreads();
+            }
+
             @Override
             public void register(Class<?> endpointClass) throws DeploymentException {
                 engine.register(endpointClass, ctx.getContextPath());
@@ -174,4 +242,4 @@ public class TyrusServletContainerInitializer implements ServletContainerInitial
         }
         return null;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
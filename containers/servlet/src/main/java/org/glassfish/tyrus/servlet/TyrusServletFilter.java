@@ -240,6 +240,10 @@ class TyrusServletFilter implements Filter, HttpSessionListener {
             final WebSocketEngine.UpgradeInfo upgradeInfo = engine.upgrade(requestContext, tyrusUpgradeResponse);
             switch (upgradeInfo.getStatus()) {
                 case HANDSHAKE_FAILED:
+                    // headers such as Sec-WebSocket-Version (426) or Retry-After (503) are part of the error.
+                    for (Map.Entry<String, List<String>> entry : tyrusUpgradeResponse.getHeaders().entrySet()) {
+                        httpServletResponse.setHeader(entry.getKey(), Utils.getHeaderFromList(entry.getValue()));
+                    }
                     httpServletResponse.sendError(tyrusUpgradeResponse.getStatus());
                     break;
                 case NOT_APPLICABLE:
@@ -248,13 +252,22 @@ class TyrusServletFilter implements Filter, HttpSessionListener {
                 case SUCCESS:
                     LOGGER.fine("Upgrading Servlet request");
 
-                    handler.setHandler(httpServletRequest.upgrade(TyrusHttpUpgradeHandler.class));
-                    final String frameBufferSize = request.getServletContext().getInitParameter(TyrusHttpUpgradeHandler.FRAME_BUFFER_SIZE);
-                    if (frameBufferSize != null) {
-                        handler.setIncomingBufferSize(Integer.parseInt(frameBufferSize));
-                    }
+                    boolean upgraded = false;
+                    try {
+                        handler.setHandler(httpServletRequest.upgrade(TyrusHttpUpgradeHandler.class));
+                        final String frameBufferSize = request.getServletContext().getInitParameter(TyrusHttpUpgradeHandler.FRAME_BUFFER_SIZE);
+                        if (frameBufferSize != null) {
+                            handler.setIncomingBufferSize(Integer.parseInt(frameBufferSize));
+                        }
 
-                    handler.preInit(upgradeInfo, webSocketConnection, httpServletRequest.getUserPrincipal() != null);
+                        handler.preInit(upgradeInfo, webSocketConnection, httpServletRequest.getUserPrincipal() != null);
+                        upgraded = true;
+                    } finally {
+                        // upgrade handler won't create the connection, resources held by the upgrade have to be released.
+                        if (!upgraded && upgradeInfo instanceof WebSocketEngine.UpgradeInfo.Abortable) {
+                            ((WebSocketEngine.UpgradeInfo.Abortable) upgradeInfo).abort();
+                        }
+                    }
 
                     if (requestContext.getHttpSession() != null) {
                         sessionToHandler.put((HttpSession) requestContext.getHttpSession(), handler);
@@ -88,12 +88,9 @@ public class AnnotatedEndpoint extends Endpoint {
 
     private final Object annotatedInstance;
     private final Class<?> annotatedClass;
-    private final Method onOpenMethod;
-    private final Method onCloseMethod;
-    private final Method onErrorMethod;
-    private final ParameterExtractor[] onOpenParameters;
-    private final ParameterExtractor[] onCloseParameters;
-    private final ParameterExtractor[] onErrorParameters;
+    private final MethodInvoker onOpenInvoker;
+    private final MethodInvoker onCloseInvoker;
+    private final MethodInvoker onErrorInvoker;
     private final EndpointConfig configuration;
     private final ComponentProviderService componentProvider;
 
@@ -216,7 +213,7 @@ public class AnnotatedEndpoint extends Endpoint {
                     if (unknownParams.size() == 1) {
                         Map.Entry<Integer, Class<?>> entry = unknownParams.entrySet().iterator().next();
                         extractors[entry.getKey()] = new ParamValue(0);
-                        handlerFactory = new WholeHandler(componentProvider.getInvocableMethod(m), extractors, entry.getValue(), maxMessageSize);
+                        handlerFactory = new WholeHandler(MethodInvoker.create(componentProvider.getInvocableMethod(m), extractors), entry.getValue(), maxMessageSize);
                         messageHandlerFactories.add(handlerFactory);
                         validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                     } else if (unknownParams.size() == 2) {
@@ -232,7 +229,7 @@ public class AnnotatedEndpoint extends Endpoint {
                         extractors[message.getKey()] = new ParamValue(0);
                         extractors[last.getKey()] = new ParamValue(1);
                         if (last.getValue() == boolean.class || last.getValue() == Boolean.class) {
-                            handlerFactory = new PartialHandler(componentProvider.getInvocableMethod(m), extractors, message.getValue(), maxMessageSize);
+                            handlerFactory = new PartialHandler(MethodInvoker.create(componentProvider.getInvocableMethod(m), extractors), message.getValue(), maxMessageSize);
                             messageHandlerFactories.add(handlerFactory);
                             validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                         } else {
@@ -245,12 +242,9 @@ public class AnnotatedEndpoint extends Endpoint {
             }
         }
 
-        this.onOpenMethod = onOpen == null ? null : componentProvider.getInvocableMethod(onOpen);
-        this.onErrorMethod = onError == null ? null : componentProvider.getInvocableMethod(onError);
-        this.onCloseMethod = onClose == null ? null : componentProvider.getInvocableMethod(onClose);
-        this.onOpenParameters = onOpenParameters;
-        this.onErrorParameters = onErrorParameters;
-        this.onCloseParameters = onCloseParameters;
+        this.onOpenInvoker = onOpen == null ? null : MethodInvoker.create(componentProvider.getInvocableMethod(onOpen), onOpenParameters);
+        this.onErrorInvoker = onError == null ? null : MethodInvoker.create(componentProvider.getInvocableMethod(onError), onErrorParameters);
+        this.onCloseInvoker = onClose == null ? null : MethodInvoker.create(componentProvider.getInvocableMethod(onClose), onCloseParameters);
     }
 
     private EndpointConfig createEndpointConfig(Class<?> annotatedClass, boolean isServerEndpoint, ErrorCollector collector) {
@@ -273,14 +267,20 @@ public class AnnotatedEndpoint extends Endpoint {
             decoderClasses.addAll(TyrusEndpointWrapper.getDefaultDecoders());
 
             final MaxSessions wseMaxSessionsAnnotation = annotatedClass.getAnnotation(MaxSessions.class);
+            final MaxConcurrentUpgrades maxConcurrentUpgradesAnnotation = annotatedClass.getAnnotation(MaxConcurrentUpgrades.class);
 
-            if (wseMaxSessionsAnnotation != null) {
+            if (wseMaxSessionsAnnotation != null || maxConcurrentUpgradesAnnotation != null) {
                 TyrusServerEndpointConfig.Builder builder = TyrusServerEndpointConfig.Builder.create(annotatedClass, wseAnnotation.value()).
                         encoders(encoderClasses).decoders(decoderClasses).subprotocols(Arrays.asList(subProtocols));
                 if (!wseAnnotation.configurator().equals(ServerEndpointConfig.Configurator.class)) {
                     builder = builder.configurator(ReflectionHelper.getInstance(wseAnnotation.configurator(), collector));
                 }
-                builder.maxSessions(wseMaxSessionsAnnotation.value());
+                if (wseMaxSessionsAnnotation != null) {
+                    builder.maxSessions(wseMaxSessionsAnnotation.value());
+                }
+                if (maxConcurrentUpgradesAnnotation != null) {
+                    builder.maxConcurrentUpgrades(maxConcurrentUpgradesAnnotation.value());
+                }
                 return builder.build();
             } else {
                 ServerEndpointConfig.Builder builder = ServerEndpointConfig.Builder.create(annotatedClass, wseAnnotation.value()).
@@ -379,7 +379,7 @@ public class AnnotatedEndpoint extends Endpoint {
                     final Decoder.Text<?> decoder = PrimitiveDecoders.ALL_INSTANCES.get(PrimitivesToWrappers.getPrimitiveWrapper(type));
 
                     @Override
-                    public Object value(Session session, Object... values) throws DecodeException {
+                    public Object value(Session session, Object first, Object second) throws DecodeException {
                         Object result = null;
 
                         if (decoder != null) {
@@ -397,27 +397,22 @@ public class AnnotatedEndpoint extends Endpoint {
                 } else {
                     sessionPresent = true;
                 }
-                result[i] = new ParameterExtractor() {
-                    @Override
-                    public Object value(Session session, Object... values) {
-                        return session;
-                    }
-                };
+                result[i] = SESSION_EXTRACTOR;
             } else if (type == EndpointConfig.class) {
                 result[i] = new ParameterExtractor() {
                     @Override
-                    public Object value(Session session, Object... values) {
+                    public Object value(Session session, Object first, Object second) {
                         return getEndpointConfig();
                     }
                 };
             } else if (params.contains(type)) {
                 result[i] = new ParameterExtractor() {
                     @Override
-                    public Object value(Session session, Object... values) {
-                        for (Object value : values) {
-                            if (value != null && type.isAssignableFrom(value.getClass())) {
-                                return value;
-                            }
+                    public Object value(Session session, Object first, Object second) {
+                        if (first != null && type.isAssignableFrom(first.getClass())) {
+                            return first;
+                        } else if (second != null && type.isAssignableFrom(second.getClass())) {
+                            return second;
                         }
 
                         return null;
@@ -440,17 +435,21 @@ public class AnnotatedEndpoint extends Endpoint {
         return null;
     }
 
-    private Object callMethod(Method method, ParameterExtractor[] extractors, Session session, boolean callOnError, Object... params) {
-        ErrorCollector collector = new ErrorCollector();
-        Object[] paramValues = new Object[extractors.length];
-
+    private Object callMethod(MethodInvoker invoker, Session session, boolean callOnError, Object first, Object second) {
         try {
-            final Object endpoint = annotatedInstance != null ? annotatedInstance :
-                    componentProvider.getInstance(annotatedClass, session, collector);
+            final Object endpoint;
+            final ErrorCollector collector;
+            if (annotatedInstance != null) {
+                endpoint = annotatedInstance;
+                collector = null;
+            } else {
+                collector = new ErrorCollector();
+                endpoint = componentProvider.getInstance(annotatedClass, session, collector);
+            }
 
             // TYRUS-325: Server do not close session properly if non-instantiable endpoint class is provided
             if (callOnError && endpoint == null) {
-                if (!collector.isEmpty()) {
+                if (collector != null && !collector.isEmpty()) {
                     Throwable t = collector.composeComprehensiveException();
                     LOGGER.log(Level.FINE, t.getMessage(), t);
                 }
@@ -462,20 +461,16 @@ public class AnnotatedEndpoint extends Endpoint {
                 return null;
             }
 
-            if (!collector.isEmpty()) {
+            if (collector != null && !collector.isEmpty()) {
                 throw collector.composeComprehensiveException();
             }
 
-            for (int i = 0; i < paramValues.length; i++) {
-                paramValues[i] = extractors[i].value(session, params);
-            }
-
-            return method.invoke(endpoint, paramValues);
+            return invoker.invoke(endpoint, session, first, second);
         } catch (Exception e) {
             if (callOnError) {
                 onError(session, (e instanceof InvocationTargetException ? e.getCause() : e));
             } else {
-                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(method), e);
+                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(invoker.getMethod()), e);
             }
         }
 
@@ -484,8 +479,8 @@ public class AnnotatedEndpoint extends Endpoint {
 
     void onClose(CloseReason closeReason, Session session) {
         try {
-            if (onCloseMethod != null) {
-                callMethod(onCloseMethod, onCloseParameters, session, true, closeReason);
+            if (onCloseInvoker != null) {
+                callMethod(onCloseInvoker, session, true, closeReason, null);
             }
         } finally {
             componentProvider.removeSession(session);
@@ -499,8 +494,8 @@ public class AnnotatedEndpoint extends Endpoint {
 
     @Override
     public void onError(Session session, Throwable thr) {
-        if (onErrorMethod != null) {
-            callMethod(onErrorMethod, onErrorParameters, session, false, thr);
+        if (onErrorInvoker != null) {
+            callMethod(onErrorInvoker, session, false, thr, null);
         } else {
             LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_UNHANDLED_EXCEPTION(annotatedClass.getCanonicalName()), thr);
         }
@@ -517,15 +512,28 @@ public class AnnotatedEndpoint extends Endpoint {
             session.addMessageHandler(f.create(session));
         }
 
-        if (onOpenMethod != null) {
-            callMethod(onOpenMethod, onOpenParameters, session, true);
+        if (onOpenInvoker != null) {
+            callMethod(onOpenInvoker, session, true, null, null);
         }
     }
 
+    /**
+     * Provides value of one parameter of annotated method.
+     * <p/>
+     * Annotated methods are invoked with at most two runtime values (message and the "last" flag, {@link CloseReason}
+     * or {@link Throwable}), which are passed as {@code first} and {@code second}.
+     */
     static interface ParameterExtractor {
-        Object value(Session session, Object... paramValues) throws DecodeException;
+        Object value(Session session, Object first, Object second) throws DecodeException;
     }
 
+    static final ParameterExtractor SESSION_EXTRACTOR = new ParameterExtractor() {
+        @Override
+        public Object value(Session session, Object first, Object second) {
+            return session;
+        }
+    };
+
     static class ParamValue implements ParameterExtractor {
         private final int index;
 
@@ -533,21 +541,23 @@ public class AnnotatedEndpoint extends Endpoint {
             this.index = index;
         }
 
+        int getIndex() {
+            return index;
+        }
+
         @Override
-        public Object value(Session session, Object... paramValues) {
-            return paramValues[index];
+        public Object value(Session session, Object first, Object second) {
+            return index == 0 ? first : second;
         }
     }
 
     private abstract class MessageHandlerFactory {
-        final Method method;
-        final ParameterExtractor[] extractors;
+        final MethodInvoker invoker;
         final Class<?> type;
         final long maxMessageSize;
 
-        MessageHandlerFactory(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            this.method = method;
-            this.extractors = extractors;
+        MessageHandlerFactory(MethodInvoker invoker, Class<?> type, long maxMessageSize) {
+            this.invoker = invoker;
             this.type = (PrimitivesToWrappers.getPrimitiveWrapper(type) == null) ? type : PrimitivesToWrappers.getPrimitiveWrapper(type);
             this.maxMessageSize = maxMessageSize;
         }
@@ -556,8 +566,8 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     private class WholeHandler extends MessageHandlerFactory {
-        WholeHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            super(method, extractors, type, maxMessageSize);
+        WholeHandler(MethodInvoker invoker, Class<?> type, long maxMessageSize) {
+            super(invoker, type, maxMessageSize);
         }
 
         @Override
@@ -565,7 +575,7 @@ public class AnnotatedEndpoint extends Endpoint {
             return new BasicMessageHandler() {
                 @Override
                 public void onMessage(Object message) {
-                    Object result = callMethod(method, extractors, session, true, message);
+                    Object result = callMethod(invoker, session, true, message, null);
                     if (result != null) {
                         try {
                             session.getBasicRemote().sendObject(result);
@@ -589,8 +599,8 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     private class PartialHandler extends MessageHandlerFactory {
-        PartialHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            super(method, extractors, type, maxMessageSize);
+        PartialHandler(MethodInvoker invoker, Class<?> type, long maxMessageSize) {
+            super(invoker, type, maxMessageSize);
         }
 
         @Override
@@ -599,7 +609,7 @@ public class AnnotatedEndpoint extends Endpoint {
 
                 @Override
                 public void onMessage(Object partialMessage, boolean last) {
-                    Object result = callMethod(method, extractors, session, true, partialMessage, last);
+                    Object result = callMethod(invoker, session, true, partialMessage, last);
                     if (result != null) {
                         try {
                             session.getBasicRemote().sendObject(result);
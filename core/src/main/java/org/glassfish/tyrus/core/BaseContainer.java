@@ -50,6 +50,8 @@ import java.util.logging.Logger;
 
 import javax.websocket.WebSocketContainer;
 
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
 /**
  * Base WebSocket container.
  * <p/>
@@ -61,22 +63,56 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
 
     private static final Logger LOGGER = Logger.getLogger(BaseContainer.class.getName());
 
-    private final ExecutorService executorService;
+    private final ExecutorService managedExecutorService;
     private final ScheduledExecutorService scheduledExecutorService;
+    private final Object executorServiceLock = new Object();
 
-    private boolean shutdownExecutorService = true;
+    private volatile ExecutorService executorService = null;
+    private boolean shutdown = false;
     private boolean shutdownScheduledExecutorService = true;
 
     private ThreadFactory threadFactory = null;
 
     public BaseContainer() {
-        this.executorService = newExecutorService();
+        // lookup has to be done from the thread which creates the container, JNDI context might not be available later.
+        this.managedExecutorService = lookupManagedExecutorService();
         this.scheduledExecutorService = newScheduledExecutorService();
     }
 
     @Override
     public ExecutorService getExecutorService() {
-        return executorService;
+        if (managedExecutorService != null) {
+            return managedExecutorService;
+        }
+
+        ExecutorService result = executorService;
+        if (result == null) {
+            synchronized (executorServiceLock) {
+                result = executorService;
+                if (result == null) {
+                    result = newExecutorService(useVirtualThreads());
+                    if (shutdown) {
+                        result.shutdown();
+                    }
+                    executorService = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Determine whether the executor service of this container should run tasks in virtual threads.
+     * <p/>
+     * Invoked once, when {@link #getExecutorService()} is called for the first time and no managed executor service
+     * is available. Default implementation reads system property {@link TyrusWebSocketEngine#VIRTUAL_THREADS};
+     * subclasses can override this method to read the value from container properties.
+     *
+     * @return {@code true} if virtual threads should be used, {@code false} otherwise.
+     */
+    protected boolean useVirtualThreads() {
+        return Boolean.getBoolean(TyrusWebSocketEngine.VIRTUAL_THREADS);
     }
 
     @Override
@@ -89,8 +125,11 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
      * shut down.
      */
     public void shutdown() {
-        if (shutdownExecutorService) {
-            executorService.shutdown();
+        synchronized (executorServiceLock) {
+            shutdown = true;
+            if (executorService != null) {
+                executorService.shutdown();
+            }
         }
 
         if (shutdownScheduledExecutorService) {
@@ -98,7 +137,7 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         }
     }
 
-    private ExecutorService newExecutorService() {
+    private ExecutorService lookupManagedExecutorService() {
         ExecutorService es = null;
 
         // Get the default ManagedExecutorService, if available
@@ -109,7 +148,6 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
 
             final Method lookupMethod = aClass.getMethod("lookup", String.class);
             es = (ExecutorService) lookupMethod.invoke(o, "java:comp/DefaultManagedExecutorService");
-            shutdownExecutorService = false;
         } catch (Exception e) {
             // ignore
             if (LOGGER.isLoggable(Level.FINE)) {
@@ -119,14 +157,23 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
             // ignore - JDK8 compact2 profile - http://openjdk.java.net/jeps/161
         }
 
-        if (es == null) {
-            if (threadFactory == null) {
-                threadFactory = new DaemonThreadFactory();
+        return es;
+    }
+
+    private ExecutorService newExecutorService(boolean virtualThreads) {
+        if (virtualThreads) {
+            final ExecutorService es = VirtualThreads.newExecutorService("tyrus-virtual-thread-");
+            if (es != null) {
+                return es;
             }
-            es = Executors.newCachedThreadPool(threadFactory);
+
+            LOGGER.config(LocalizationMessages.VIRTUAL_THREADS_NOT_AVAILABLE());
         }
 
-        return es;
+        if (threadFactory == null) {
+            threadFactory = new DaemonThreadFactory();
+        }
+        return Executors.newCachedThreadPool(threadFactory);
     }
 
     private ScheduledExecutorService newScheduledExecutorService() {
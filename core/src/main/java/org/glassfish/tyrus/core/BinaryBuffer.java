@@ -58,8 +58,18 @@ class BinaryBuffer {
     private final List<ByteBuffer> list = new ArrayList<ByteBuffer>();
     private int bufferSize;
     private int currentlyBuffered = 0;
+    private final IncomingMemoryBudget.Account account;
     private static final Logger LOGGER = Logger.getLogger(BinaryBuffer.class.getName());
 
+    /**
+     * Constructor.
+     *
+     * @param account account charged for buffered data.
+     */
+    BinaryBuffer(IncomingMemoryBudget.Account account) {
+        this.account = account;
+    }
+
     /**
      * Append buffer.
      * <p/>
@@ -71,6 +81,7 @@ class BinaryBuffer {
 
         if ((currentlyBuffered + message.remaining()) <= bufferSize) {
             currentlyBuffered += message.remaining();
+            account.charge(message.remaining());
             list.add(message);
         } else {
             final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
@@ -85,6 +96,13 @@ class BinaryBuffer {
      * @return concatenated buffer.
      */
     ByteBuffer getBufferedContent() {
+        final ByteBuffer single = getSingleSegment();
+        if (single != null) {
+            // message has only one non-empty part; no need to copy it.
+            resetBuffer(0);
+            return single;
+        }
+
         ByteBuffer b = ByteBuffer.allocate(currentlyBuffered);
 
         for (ByteBuffer buffered : list) {
@@ -96,6 +114,37 @@ class BinaryBuffer {
         return b;
     }
 
+    /**
+     * Get the only buffered part containing data, if it can be passed further as it is.
+     * <p/>
+     * Returned buffer has to be backed by array which contains exactly the buffered data, since handlers
+     * of {@code byte[]} messages use {@link ByteBuffer#array()} directly.
+     *
+     * @return the only non-empty part or {@code null} when there are more of them.
+     */
+    private ByteBuffer getSingleSegment() {
+        ByteBuffer result = null;
+        for (ByteBuffer buffered : list) {
+            if (buffered.hasRemaining()) {
+                if (result != null) {
+                    return null;
+                }
+                result = buffered;
+            }
+        }
+
+        if (result == null) {
+            return ByteBuffer.allocate(0);
+        }
+
+        if (result.hasArray() && result.arrayOffset() == 0 && result.position() == 0
+                && result.remaining() == result.array().length) {
+            return result;
+        }
+
+        return null;
+    }
+
     /**
      * Reset buffer with setting maximal buffer size.
      *
@@ -104,6 +153,7 @@ class BinaryBuffer {
     void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
         this.list.clear();
+        account.release(currentlyBuffered);
         currentlyBuffered = 0;
     }
 }
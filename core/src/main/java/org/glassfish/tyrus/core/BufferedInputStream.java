@@ -40,34 +40,86 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Passed to the (@link MessageHandler.Whole} in case that partial messages are being received.
+ * <p/>
+ * Bytes are copied directly from the received segments to the array passed to {@link #read(byte[], int, int)}.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 class BufferedInputStream extends InputStream {
-    private final InputStreamBuffer buffer;
+    private final SegmentRing<ByteBuffer> segments;
+
+    private ByteBuffer segment = null;
+    private boolean closed = false;
 
     /**
      * Constructor.
      *
-     * @param buffer underlying buffer.
+     * @param segments parts of the message.
      */
-    public BufferedInputStream(InputStreamBuffer buffer) {
-        this.buffer = buffer;
+    public BufferedInputStream(SegmentRing<ByteBuffer> segments) {
+        this.segments = segments;
+    }
+
+    @Override
+    public int read() {
+        if (!nextSegment()) {
+            return -1;
+        }
+        return segment.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextSegment()) {
+            return -1;
+        }
+
+        final int size = Math.min(len, segment.remaining());
+        segment.get(b, off, size);
+        return size;
     }
 
     @Override
-    public int read() throws IOException {
-        return buffer.getNextByte();
+    public int available() {
+        return segment == null ? 0 : segment.remaining();
     }
 
     @Override
     public void close() {
-        this.buffer.finishReading();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (segment != null) {
+            segments.consumed(segment);
+            segment = null;
+        }
+        segments.close();
+    }
+
+    private boolean nextSegment() {
+        while (segment == null || !segment.hasRemaining()) {
+            if (segment != null) {
+                segments.consumed(segment);
+            }
+            if (closed) {
+                segment = null;
+                return false;
+            }
+            segment = segments.take();
+            if (segment == null) {
+                return false;
+            }
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
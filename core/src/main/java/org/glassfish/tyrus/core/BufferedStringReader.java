@@ -44,35 +44,70 @@ import java.io.Reader;
 
 /**
  * Passed to the (@link MessageHandler.Whole} in case that partial messages are being received.
+ * <p/>
+ * Characters are copied directly from the received segments to the array passed to {@link #read(char[], int, int)}.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 class BufferedStringReader extends Reader {
-    private final ReaderBuffer readerBuffer;
+    private final SegmentRing<String> segments;
+
+    private String segment = null;
+    private int position = 0;
+    private boolean closed = false;
 
     /**
      * Constructor.
      *
-     * @param readerBuffer underlying buffer.
+     * @param segments parts of the message.
      */
-    public BufferedStringReader(ReaderBuffer readerBuffer) {
-        this.readerBuffer = readerBuffer;
+    public BufferedStringReader(SegmentRing<String> segments) {
+        this.segments = segments;
     }
 
     @Override
     public int read(char[] destination, int offsetToStart, int numberOfChars) {
-        char[] got = readerBuffer.getNextChars(numberOfChars);
-        if (got != null) {
-            System.arraycopy(got, 0, destination, offsetToStart, got.length);
-            return got.length;
-        } else {
-            return -1;
+        if (numberOfChars == 0) {
+            return 0;
+        }
+
+        while (segment == null || position == segment.length()) {
+            if (segment != null) {
+                segments.consumed(segment);
+            }
+            if (closed) {
+                segment = null;
+                return -1;
+            }
+            segment = segments.take();
+            position = 0;
+            if (segment == null) {
+                return -1;
+            }
         }
+
+        final int size = Math.min(numberOfChars, segment.length() - position);
+        segment.getChars(position, position + size, destination, offsetToStart);
+        position += size;
+        return size;
+    }
+
+    @Override
+    public boolean ready() {
+        return (segment != null && position < segment.length()) || segments.isReady();
     }
 
     @Override
     public void close() {
-        this.readerBuffer.finishReading();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (segment != null) {
+            segments.consumed(segment);
+            segment = null;
+        }
+        segments.close();
     }
-}
\ No newline at end of file
+}
@@ -58,12 +58,14 @@ final class DefaultTyrusServerEndpointConfig implements TyrusServerEndpointConfi
     private ServerEndpointConfig config;
     /* maximal number of open sessions */
     private int maxSessions;
-
+    /* maximal number of concurrently processed upgrade requests */
+    private int maxConcurrentUpgrades;
 
     // The builder ensures nothing except configurator can be {@code null}.
-    DefaultTyrusServerEndpointConfig(ServerEndpointConfig config, int maxSessions) {
+    DefaultTyrusServerEndpointConfig(ServerEndpointConfig config, int maxSessions, int maxConcurrentUpgrades) {
         this.config = config;
         this.maxSessions = maxSessions;
+        this.maxConcurrentUpgrades = maxConcurrentUpgrades;
     }
 
     @Override
@@ -71,6 +73,11 @@ final class DefaultTyrusServerEndpointConfig implements TyrusServerEndpointConfi
         return maxSessions;
     }
 
+    @Override
+    public int getMaxConcurrentUpgrades() {
+        return maxConcurrentUpgrades;
+    }
+
     @Override
     public Class<?> getEndpointClass() {
         return config.getEndpointClass();
@@ -48,6 +48,9 @@ import java.util.concurrent.ScheduledExecutorService;
  */
 public abstract class ExecutorServiceProvider {
 
+    private final Object timingWheelLock = new Object();
+    private volatile TimingWheel timingWheel;
+
     /**
      * Get the {@link ExecutorService}.
      *
@@ -61,4 +64,22 @@ public abstract class ExecutorServiceProvider {
      * @return scheduled executor service.
      */
     public abstract ScheduledExecutorService getScheduledExecutorService();
+
+    /**
+     * Get the {@link TimingWheel} shared by all sessions created by this provider.
+     * <p/>
+     * The wheel is created lazily and swept by the {@link #getScheduledExecutorService()}.
+     *
+     * @return timing wheel.
+     */
+    TimingWheel getTimingWheel() {
+        if (timingWheel == null) {
+            synchronized (timingWheelLock) {
+                if (timingWheel == null) {
+                    timingWheel = new TimingWheel(getScheduledExecutorService());
+                }
+            }
+        }
+        return timingWheel;
+    }
 }
\ No newline at end of file
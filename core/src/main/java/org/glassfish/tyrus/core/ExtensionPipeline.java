@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.FrameTypeAwareExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Negotiated {@link ExtendedExtension extensions} of a connection, resolved for each frame opcode.
+ * <p/>
+ * Created once the extensions and their context are known, so that frame processing does not need to inspect
+ * the negotiated extension list.
+ */
+final class ExtensionPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(ExtensionPipeline.class.getName());
+
+    // opcode has 4 bits.
+    private static final int OPCODES = 16;
+
+    private final ExtendedExtension[][] extensions;
+    private final ExtendedExtension.ExtensionContext context;
+
+    private ExtensionPipeline(ExtendedExtension[][] extensions, ExtendedExtension.ExtensionContext context) {
+        this.extensions = extensions;
+        this.context = context;
+    }
+
+    /**
+     * Create pipeline.
+     *
+     * @param negotiated negotiated extensions, in the order they appear in handshake response.
+     * @param context    extension context of the connection.
+     * @return new pipeline or {@code null} when no negotiated extension processes frames.
+     */
+    static ExtensionPipeline create(List<Extension> negotiated, ExtendedExtension.ExtensionContext context) {
+        if (negotiated == null || negotiated.isEmpty()) {
+            return null;
+        }
+
+        final ExtendedExtension[][] extensions = new ExtendedExtension[OPCODES][];
+        boolean empty = true;
+
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            final List<ExtendedExtension> list = new ArrayList<ExtendedExtension>(negotiated.size());
+            for (Extension extension : negotiated) {
+                if (extension instanceof FrameTypeAwareExtension) {
+                    if (((FrameTypeAwareExtension) extension).processes((byte) opcode)) {
+                        list.add((ExtendedExtension) extension);
+                    }
+                } else if (extension instanceof ExtendedExtension) {
+                    list.add((ExtendedExtension) extension);
+                }
+            }
+            extensions[opcode] = list.toArray(new ExtendedExtension[list.size()]);
+            empty &= list.isEmpty();
+        }
+
+        return empty ? null : new ExtensionPipeline(extensions, context);
+    }
+
+    /**
+     * Pass received frame through the pipeline.
+     *
+     * @param frame unmasked received frame.
+     * @return processed frame.
+     */
+    Frame processIncoming(Frame frame) {
+        for (ExtendedExtension extension : extensions[frame.getOpcode() & 0x0F]) {
+            try {
+                frame = extension.processIncoming(context, frame);
+            } catch (Throwable t) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, LocalizationMessages.EXTENSION_INCOMING_EXCEPTION(extension.getName(), t.getMessage()), t);
+                }
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Pass frame to be sent through the pipeline.
+     *
+     * @param frame unmasked frame.
+     * @return processed frame.
+     */
+    Frame processOutgoing(Frame frame) {
+        for (ExtendedExtension extension : extensions[frame.getOpcode() & 0x0F]) {
+            try {
+                frame = extension.processOutgoing(context, frame);
+            } catch (Throwable t) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, LocalizationMessages.EXTENSION_EXCEPTION(extension.getName(), t.getMessage()), t);
+                }
+            }
+        }
+        return frame;
+    }
+}
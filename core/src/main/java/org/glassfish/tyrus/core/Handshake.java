@@ -42,7 +42,6 @@ package org.glassfish.tyrus.core;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +64,10 @@ public final class Handshake {
     private static final int RESPONSE_CODE_VALUE = 101;
     private static final String VERSION = "13";
 
+    // response header values shared by all server side handshakes.
+    private static final List<String> UPGRADE_RESPONSE_VALUE = Collections.singletonList(UpgradeRequest.WEBSOCKET);
+    private static final List<String> CONNECTION_RESPONSE_VALUE = Collections.singletonList(UpgradeRequest.UPGRADE);
+
     private boolean secure;
     private String origin;
     private String serverHostName;
@@ -227,7 +230,7 @@ public final class Handshake {
 
         // TODO - trim?
         final String protocolHeader = request.getHeader(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL);
-        handshake.subProtocols = (protocolHeader == null ? Collections.<String>emptyList() : Arrays.asList(protocolHeader.split(",")));
+        handshake.subProtocols = (protocolHeader == null ? Collections.<String>emptyList() : splitProtocols(protocolHeader));
 
         if (request.getHeader(UpgradeRequest.HOST) == null) {
             throw new HandshakeException(LocalizationMessages.HEADERS_MISSING());
@@ -248,9 +251,7 @@ public final class Handshake {
         }
 
         List<String> value = request.getHeaders().get(UpgradeRequest.SEC_WEBSOCKET_EXTENSIONS);
-        if (value != null) {
-            handshake.extensions = TyrusExtension.fromHeaders(value);
-        }
+        handshake.extensions = value == null ? Collections.<Extension>emptyList() : TyrusExtension.fromHeaders(value);
         handshake.secKey = SecKey.generateServerKey(new SecKey(request.getHeader(UpgradeRequest.SEC_WEBSOCKET_KEY)));
 
         return handshake;
@@ -264,7 +265,7 @@ public final class Handshake {
         // http://java.net/jira/browse/TYRUS-55
         // Firefox workaround (it sends "Connections: keep-alive, upgrade").
         if (header.equalsIgnoreCase(UpgradeRequest.CONNECTION)) {
-            if (!value.toLowerCase().contains(validValue.toLowerCase())) {
+            if (!containsIgnoreCase(value, validValue)) {
                 throw new HandshakeException(LocalizationMessages.INVALID_HEADER(header, value));
             }
         } else {
@@ -274,6 +275,38 @@ public final class Handshake {
         }
     }
 
+    private static boolean containsIgnoreCase(String value, String token) {
+        final int length = token.length();
+        for (int i = 0, last = value.length() - length; i <= last; i++) {
+            if (value.regionMatches(true, i, token, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> splitProtocols(String protocolHeader) {
+        int start = 0;
+        int comma = protocolHeader.indexOf(',');
+        if (comma == -1) {
+            return protocolHeader.isEmpty() ? Collections.<String>emptyList() : Collections.singletonList(protocolHeader);
+        }
+
+        final List<String> result = new ArrayList<String>();
+        while (comma != -1) {
+            // empty tokens (trailing or duplicate commas) are skipped.
+            if (comma > start) {
+                result.add(protocolHeader.substring(start, comma));
+            }
+            start = comma + 1;
+            comma = protocolHeader.indexOf(',', start);
+        }
+        if (start < protocolHeader.length()) {
+            result.add(protocolHeader.substring(start));
+        }
+        return result;
+    }
+
     private static StringBuilder appendPort(StringBuilder builder, int port, boolean secure) {
         if (secure) {
             if (port != 443 && port != -1) {
@@ -303,18 +336,19 @@ public final class Handshake {
     List<Extension> respond(UpgradeRequest request, UpgradeResponse response, TyrusEndpointWrapper endpointWrapper/*, TyrusUpgradeResponse response*/) {
         response.setStatus(101);
 
-        response.getHeaders().put(UpgradeRequest.UPGRADE, Arrays.asList(UpgradeRequest.WEBSOCKET));
-        response.getHeaders().put(UpgradeRequest.CONNECTION, Arrays.asList(UpgradeRequest.UPGRADE));
+        response.getHeaders().put(UpgradeRequest.UPGRADE, UPGRADE_RESPONSE_VALUE);
+        response.getHeaders().put(UpgradeRequest.CONNECTION, CONNECTION_RESPONSE_VALUE);
         response.setReasonPhrase(UpgradeRequest.RESPONSE_CODE_MESSAGE);
-        response.getHeaders().put(UpgradeResponse.SEC_WEBSOCKET_ACCEPT, Arrays.asList(secKey.getSecKey()));
+        response.getHeaders().put(UpgradeResponse.SEC_WEBSOCKET_ACCEPT, Collections.singletonList(secKey.getSecKey()));
 
         final List<String> protocols = request.getHeaders().get(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL);
-        final List<Extension> extensions = TyrusExtension.fromString(request.getHeaders().get(UpgradeRequest.SEC_WEBSOCKET_EXTENSIONS));
+        // extensions were already parsed from the very same request when this handshake was created.
+        final List<Extension> extensions = this.extensions;
 
         if (subProtocols != null && !subProtocols.isEmpty()) {
             String protocol = endpointWrapper.getNegotiatedProtocol(protocols);
             if (protocol != null && !protocol.isEmpty()) {
-                response.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL, Arrays.asList(protocol));
+                response.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL, Collections.singletonList(protocol));
             }
         }
 
@@ -0,0 +1,409 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.tyrus.spi.Connection;
+
+/**
+ * Container-wide limit of buffered inbound data.
+ * <p/>
+ * Every connection gets its own {@link Account}, which is charged whenever Tyrus buffers incoming data (incomplete
+ * frames, partial messages, data waiting for {@link java.io.Reader} or {@link java.io.InputStream} consumer) and
+ * credited when the data is released. When the sum of all accounts exceeds the limit, reading is suspended on
+ * the connection which has just buffered more data, if it uses more than its fair share of the budget (limit divided
+ * by number of connections holding any data), using {@link Connection.ReadControl}. Deciding on the connection
+ * which is currently reading keeps the check constant-time; connections which keep buffering data are the ones
+ * which get suspended. Suspended connections are resumed once the usage drops below the low watermark (3/4 of the
+ * limit) or once they don't hold any data.
+ * <p/>
+ * At least one connection holding data is always left reading, otherwise a message which needs more data to be
+ * completed could never release its memory.
+ */
+public class IncomingMemoryBudget {
+
+    /**
+     * Account which does not limit anything. Used when no budget is configured.
+     */
+    public static final Account NO_OP_ACCOUNT = new Account(null, null);
+
+    private static final Logger LOGGER = Logger.getLogger(IncomingMemoryBudget.class.getName());
+
+    private final long limit;
+    private final long lowWatermark;
+    private final Executor executor;
+    private final AtomicLong used = new AtomicLong(0);
+    private final AtomicInteger suspended = new AtomicInteger(0);
+    private final AtomicInteger holders = new AtomicInteger(0);
+    private final Set<Account> suspendedAccounts = Collections.newSetFromMap(new ConcurrentHashMap<Account, Boolean>());
+
+    /**
+     * Create new budget.
+     *
+     * @param limit    maximal amount of buffered inbound data in bytes.
+     * @param executor executor used for resuming suspended connections. Resuming is never done on the thread
+     *                 which released the memory, since that is usually a thread executing application code.
+     *                 If {@code null}, connections are resumed on the releasing thread.
+     */
+    public IncomingMemoryBudget(long limit, Executor executor) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit");
+        }
+        this.limit = limit;
+        this.lowWatermark = limit - (limit >> 2);
+        this.executor = executor;
+    }
+
+    /**
+     * Create new account for a connection.
+     *
+     * @return new account.
+     */
+    public Account newAccount() {
+        return new Account(this, executor);
+    }
+
+    /**
+     * Create new account which is not part of any budget.
+     * <p/>
+     * Charges are not accounted, but the account can still be used for holding reading of its connection, see
+     * {@link Account#holdReading()}.
+     *
+     * @param executor executor used for resuming reading of the connection. If {@code null}, reading is resumed on
+     *                 the thread which released the hold.
+     * @return new account.
+     */
+    public static Account newUnlimitedAccount(Executor executor) {
+        return new Account(null, executor);
+    }
+
+    /**
+     * Get the limit of this budget.
+     *
+     * @return limit in bytes.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get amount of currently buffered inbound data.
+     *
+     * @return buffered data in bytes.
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * Get number of connections which have reading currently suspended.
+     *
+     * @return number of suspended connections.
+     */
+    public int getSuspendedCount() {
+        return suspended.get();
+    }
+
+    private void charged(Account account) {
+        if (used.get() <= limit || account.suspended || account.readControl == null) {
+            return;
+        }
+
+        final long fairShare = limit / Math.max(holders.get(), 1);
+        if (account.usage.get() < fairShare) {
+            return;
+        }
+
+        // at least one connection holding data has to keep reading.
+        int current;
+        do {
+            current = suspended.get();
+            if (holders.get() - current <= 1) {
+                return;
+            }
+        } while (!suspended.compareAndSet(current, current + 1));
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(String.format("Incoming memory budget exceeded (%d/%d bytes), suspending connection holding %d bytes.",
+                    used.get(), limit, account.usage.get()));
+        }
+        account.suspend();
+    }
+
+    private void released(long bytes) {
+        if (used.addAndGet(-bytes) <= lowWatermark && suspended.get() > 0) {
+            resumeAll();
+        }
+    }
+
+    private synchronized void resumeAll() {
+        if (used.get() > lowWatermark) {
+            return;
+        }
+
+        for (Account account : suspendedAccounts) {
+            resume(account);
+        }
+    }
+
+    private void resume(Account account) {
+        if (account.markResumed()) {
+            account.dispatchResume();
+        }
+    }
+
+    /**
+     * Part of the {@link IncomingMemoryBudget} assigned to single connection.
+     * <p/>
+     * Besides the budget, reading can be held by the consumers of buffered data (see {@link #holdReading()}); the
+     * connection reads only when it is neither suspended by the budget nor held.
+     * <p/>
+     * All methods are thread safe.
+     */
+    public static final class Account {
+
+        private final IncomingMemoryBudget budget;
+        private final Executor executor;
+        private final AtomicLong usage = new AtomicLong(0);
+
+        private volatile Connection.ReadControl readControl;
+        private volatile boolean suspended = false;
+        private volatile boolean closed = false;
+        // guarded by this
+        private int holds = 0;
+
+        private Account(IncomingMemoryBudget budget, Executor executor) {
+            this.budget = budget;
+            this.executor = executor;
+        }
+
+        /**
+         * Set {@link Connection.ReadControl} used for suspending and resuming reading. Connections without read
+         * control are accounted, but never suspended.
+         *
+         * @param readControl transport read control.
+         */
+        public void setReadControl(Connection.ReadControl readControl) {
+            this.readControl = readControl;
+        }
+
+        /**
+         * Record that given amount of inbound data was buffered.
+         *
+         * @param bytes number of buffered bytes.
+         */
+        public void charge(long bytes) {
+            if (budget == null || bytes <= 0 || closed) {
+                return;
+            }
+
+            if (usage.addAndGet(bytes) == bytes) {
+                budget.holders.incrementAndGet();
+            }
+            budget.used.addAndGet(bytes);
+            budget.charged(this);
+        }
+
+        /**
+         * Record that given amount of previously charged inbound data was released.
+         *
+         * @param bytes number of released bytes.
+         */
+        public void release(long bytes) {
+            if (budget == null || bytes <= 0) {
+                return;
+            }
+
+            long current;
+            long released;
+            do {
+                current = usage.get();
+                released = Math.min(current, bytes);
+                if (released == 0) {
+                    return;
+                }
+            } while (!usage.compareAndSet(current, current - released));
+
+            if (current == released) {
+                budget.holders.decrementAndGet();
+                // nothing buffered, the connection cannot be the one using too much.
+                if (suspended) {
+                    budget.resume(this);
+                }
+            }
+            budget.released(released);
+        }
+
+        /**
+         * Get amount of data currently charged to this account.
+         *
+         * @return buffered data in bytes.
+         */
+        public long getUsage() {
+            return usage.get();
+        }
+
+        /**
+         * Stop reading of the connection until the hold is released by {@link #releaseReading()}.
+         * <p/>
+         * Used by consumers of buffered data, which cannot keep up with the connection. Holds are counted, every
+         * call has to be matched by a call of {@link #releaseReading()}; they can be called in any order.
+         */
+        public void holdReading() {
+            final Connection.ReadControl control;
+            synchronized (this) {
+                holds++;
+                if (holds != 1 || suspended) {
+                    return;
+                }
+                control = readControl;
+            }
+
+            if (control != null) {
+                control.suspendReading();
+            }
+        }
+
+        /**
+         * Release hold acquired by {@link #holdReading()}. Reading is resumed when there is no other hold and the
+         * connection is not suspended by the budget.
+         */
+        public void releaseReading() {
+            synchronized (this) {
+                holds--;
+                if (holds != 0 || suspended) {
+                    return;
+                }
+            }
+
+            dispatchResume();
+        }
+
+        /**
+         * Release all charged data and remove this account from its budget. Subsequent charges are ignored.
+         */
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            if (budget == null) {
+                return;
+            }
+
+            synchronized (budget) {
+                markResumed();
+            }
+            release(usage.get());
+        }
+
+        /**
+         * Suspend reading; the suspension has already been counted by the budget.
+         */
+        private void suspend() {
+            final Connection.ReadControl control;
+            synchronized (this) {
+                if (suspended || closed) {
+                    budget.suspended.decrementAndGet();
+                    return;
+                }
+                suspended = true;
+                budget.suspendedAccounts.add(this);
+                if (holds > 0) {
+                    // reading is already stopped.
+                    return;
+                }
+                control = readControl;
+            }
+
+            if (control != null) {
+                control.suspendReading();
+            }
+        }
+
+        private synchronized boolean markResumed() {
+            if (!suspended) {
+                return false;
+            }
+
+            suspended = false;
+            budget.suspendedAccounts.remove(this);
+            budget.suspended.decrementAndGet();
+            return true;
+        }
+
+        private void dispatchResume() {
+            if (executor == null) {
+                resumeReading();
+            } else {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        resumeReading();
+                    }
+                });
+            }
+        }
+
+        private void resumeReading() {
+            final Connection.ReadControl control;
+            synchronized (this) {
+                // state might have changed since the resume was dispatched.
+                if (closed || suspended || holds > 0) {
+                    return;
+                }
+                control = readControl;
+            }
+
+            if (control != null) {
+                control.resumeReading();
+            }
+        }
+    }
+}
@@ -42,11 +42,7 @@ package org.glassfish.tyrus.core;
 
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,7 +53,9 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 /**
  * Buffer used for the case when partial messages are received by the {@link MessageHandler.Whole}.
  * </p>
- * For the first received message {@link MessageHandler.Whole#onMessage(Object)} is called in a new {@link Thread} to allow blocking reading of passed {@link java.io.InputStream}.
+ * For the first received message {@link MessageHandler.Whole#onMessage(Object)} is called within a new executor to allow blocking reading of passed {@link java.io.InputStream}.
+ * Every message gets its own {@link SegmentRing}, so the handler reading previous message is not affected by the
+ * next one.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
@@ -65,81 +63,29 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 class InputStreamBuffer {
 
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
-
-    private final List<ByteBuffer> bufferedFragments = new ArrayList<ByteBuffer>();
     private final ExecutorService executorService;
+    private final IncomingMemoryBudget.Account account;
 
     private static final Logger LOGGER = Logger.getLogger(InputStreamBuffer.class.getName());
 
-    private boolean receivedLast = false;
-    private BufferedInputStream inputStream = null;
+    private boolean buffering = true;
+    private SegmentRing<ByteBuffer> segments = null;
     private MessageHandler.Whole<InputStream> messageHandler;
     private int bufferSize;
     private int currentlyBuffered;
 
     /**
      * Constructor.
+     *
+     * @param executorService executor used for invoking the message handler.
+     * @param account         account charged for buffered data.
      */
-    public InputStreamBuffer(ExecutorService executorService) {
+    public InputStreamBuffer(ExecutorService executorService, IncomingMemoryBudget.Account account) {
         this.executorService = executorService;
+        this.account = account;
         currentlyBuffered = 0;
     }
 
-    /**
-     * Get next received bytes.
-     *
-     * @return next received bytes.
-     */
-    public int getNextByte() {
-        lock.lock();
-        try {
-            if (this.bufferedFragments.isEmpty()) {
-                if (receivedLast) {
-                    this.inputStream = null;
-                    this.currentlyBuffered = 0;
-                    return -1;
-                } else { // there's more to come...so wait here...
-                    boolean interrupted;
-                    do {
-                        interrupted = false;
-                        try {
-                            condition.await();
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                        }
-                    } while (interrupted);
-                }
-            }
-
-            if (bufferedFragments.size() == 1 && !bufferedFragments.get(0).hasRemaining() && receivedLast) {
-                this.inputStream = null;
-                this.currentlyBuffered = 0;
-                return -1;
-            }
-
-            ByteBuffer firstBuffer = bufferedFragments.get(0);
-            byte result = firstBuffer.get();
-
-            if (!firstBuffer.hasRemaining()) {
-                bufferedFragments.remove(0);
-            }
-
-            return result & 0xFF;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    /**
-     * Finish reading of the buffer.
-     */
-    public void finishReading() {
-        this.bufferedFragments.clear();
-        this.inputStream = null;
-    }
-
     /**
      * Append next message part to the buffer.
      *
@@ -147,30 +93,55 @@ class InputStreamBuffer {
      * @param last    should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
     public void appendMessagePart(ByteBuffer message, boolean last) {
-        lock.lock();
-        try {
-            currentlyBuffered += message.remaining();
-            if (currentlyBuffered <= bufferSize) {
-                bufferedFragments.add(message);
-            } else {
-                final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
-                LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
-                receivedLast = true;
-                throw messageTooBigException;
+        if (!buffering) {
+            return;
+        }
+
+        final boolean first = segments == null;
+        if (first) {
+            segments = new SegmentRing<ByteBuffer>(SegmentRing.DEFAULT_CAPACITY, account) {
+                @Override
+                long weigh(ByteBuffer segment) {
+                    // segments are stored as slices, so limit equals to the size of the fragment.
+                    return segment.limit();
+                }
+            };
+        }
+        final SegmentRing<ByteBuffer> current = segments;
+
+        currentlyBuffered += message.remaining();
+        if (currentlyBuffered <= bufferSize) {
+            if (message.hasRemaining()) {
+                current.offer(message.slice());
             }
+        } else {
+            buffering = false;
+            segments = null;
+            current.finish();
+            final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
+            LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
+            throw messageTooBigException;
+        }
 
-            this.receivedLast = last;
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+        if (last) {
+            segments = null;
+            current.finish();
         }
 
-        if (this.inputStream == null) {
-            this.inputStream = new BufferedInputStream(this);
+        if (first) {
+            final BufferedInputStream inputStream = new BufferedInputStream(current);
+            final MessageHandler.Whole<InputStream> handler = messageHandler;
             executorService.execute(new Runnable() {
                 @Override
                 public void run() {
-                    messageHandler.onMessage(inputStream);
+                    try {
+                        handler.onMessage(inputStream);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.WARNING, t.getMessage(), t);
+                    } finally {
+                        // releases segments the handler did not read, reading of the connection might be held.
+                        inputStream.close();
+                    }
                 }
             });
         }
@@ -192,7 +163,12 @@ class InputStreamBuffer {
      */
     public void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
+        buffering = true;
         currentlyBuffered = 0;
-        bufferedFragments.clear();
+        if (segments != null) {
+            // previous message was not finished.
+            segments.finish();
+            segments = null;
+        }
     }
 }
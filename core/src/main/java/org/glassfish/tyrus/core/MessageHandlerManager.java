@@ -64,6 +64,10 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 
 /**
  * Manages registered {@link MessageHandler}s and checks whether the new ones may be registered.
+ * <p/>
+ * Registration methods are not thread safe and have to be externally synchronized. Every change of registered
+ * handlers creates new immutable {@link DispatchTable}, which can be obtained by {@link #getDispatchTable()} without
+ * any synchronization.
  *
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -88,7 +92,7 @@ class MessageHandlerManager {
     private final Map<Class<?>, MessageHandler> registeredHandlers = new HashMap<Class<?>, MessageHandler>();
     private final List<Class<? extends Decoder>> decoders;
 
-    private Set<MessageHandler> messageHandlerCache;
+    private volatile DispatchTable dispatchTable = DispatchTable.EMPTY;
 
     /**
      * Construct manager with no decoders.
@@ -250,7 +254,7 @@ class MessageHandlerManager {
             registeredHandlers.put(clazz, handler);
         }
 
-        messageHandlerCache = null;
+        updateDispatchTable();
     }
 
     private void throwException(String text) throws IllegalStateException {
@@ -271,7 +275,6 @@ class MessageHandlerManager {
             if (next.getValue().equals(handler)) {
                 handlerClass = next.getKey();
                 iterator.remove();
-                messageHandlerCache = null;
                 break;
             }
         }
@@ -309,6 +312,8 @@ class MessageHandlerManager {
                 binaryHandlerPresent = false;
             }
         }
+
+        updateDispatchTable();
     }
 
     /**
@@ -317,22 +322,41 @@ class MessageHandlerManager {
      * @return unmodifiable {@link Set} of registered {@link MessageHandler}s.
      */
     public Set<MessageHandler> getMessageHandlers() {
-        if (messageHandlerCache == null) {
-            messageHandlerCache = Collections.unmodifiableSet(new HashSet<MessageHandler>(registeredHandlers.values()));
-        }
+        return dispatchTable.messageHandlers;
+    }
 
-        return messageHandlerCache;
+    /**
+     * Get current {@link DispatchTable}.
+     *
+     * @return dispatch table reflecting currently registered handlers.
+     */
+    DispatchTable getDispatchTable() {
+        return dispatchTable;
     }
 
-    public List<Map.Entry<Class<?>, MessageHandler>> getOrderedWholeMessageHandlers() {
-        List<Map.Entry<Class<?>, MessageHandler>> result = new ArrayList<Map.Entry<Class<?>, MessageHandler>>();
+    private void updateDispatchTable() {
+        final List<Map.Entry<Class<?>, MessageHandler>> whole = new ArrayList<Map.Entry<Class<?>, MessageHandler>>();
+        final List<Map.Entry<Class<?>, MessageHandler>> partial = new ArrayList<Map.Entry<Class<?>, MessageHandler>>();
+        MessageHandler.Whole<PongMessage> pongHandler = null;
+
         for (final Map.Entry<Class<?>, MessageHandler> entry : registeredHandlers.entrySet()) {
             if (entry.getValue() instanceof MessageHandler.Whole) {
-                result.add(entry);
+                whole.add(entry);
+                if (entry.getKey() == PONG_HANDLER_TYPE) {
+                    //noinspection unchecked
+                    pongHandler = (MessageHandler.Whole<PongMessage>) entry.getValue();
+                }
+            } else {
+                partial.add(entry);
             }
         }
-        Collections.sort(result, new MessageHandlerComparator());
-        return result;
+        Collections.sort(whole, new MessageHandlerComparator());
+
+        dispatchTable = new DispatchTable(whole, partial, pongHandler,
+                Collections.unmodifiableSet(new HashSet<MessageHandler>(registeredHandlers.values())),
+                textWholeHandlerPresent, binaryWholeHandlerPresent,
+                textHandlerPresent && !textWholeHandlerPresent, binaryHandlerPresent && !binaryWholeHandlerPresent,
+                readerHandlerPresent, inputStreamHandlerPresent, pongHandlerPresent);
     }
 
     static Class<?> getHandlerType(MessageHandler handler) {
@@ -381,31 +405,105 @@ class MessageHandlerManager {
     }
 
     boolean isWholeTextHandlerPresent() {
-        return textWholeHandlerPresent;
+        return dispatchTable.wholeTextHandlerPresent;
     }
 
     boolean isWholeBinaryHandlerPresent() {
-        return binaryWholeHandlerPresent;
+        return dispatchTable.wholeBinaryHandlerPresent;
     }
 
     boolean isPartialTextHandlerPresent() {
-        return textHandlerPresent && !textWholeHandlerPresent;
+        return dispatchTable.partialTextHandlerPresent;
     }
 
     boolean isPartialBinaryHandlerPresent() {
-        return binaryHandlerPresent && !binaryWholeHandlerPresent;
+        return dispatchTable.partialBinaryHandlerPresent;
     }
 
     public boolean isReaderHandlerPresent() {
-        return readerHandlerPresent;
+        return dispatchTable.readerHandlerPresent;
     }
 
     public boolean isInputStreamHandlerPresent() {
-        return inputStreamHandlerPresent;
+        return dispatchTable.inputStreamHandlerPresent;
     }
 
     boolean isPongHandlerPresent() {
-        return pongHandlerPresent;
+        return dispatchTable.pongHandlerPresent;
+    }
+
+    /**
+     * Immutable snapshot of registered handlers used for dispatching of incoming messages.
+     * <p/>
+     * Handled types are resolved during registration; whole message handlers are ordered from the most specific
+     * type, so the first assignable handler should be used.
+     */
+    static final class DispatchTable {
+
+        private static final DispatchTable EMPTY = new DispatchTable(
+                Collections.<Map.Entry<Class<?>, MessageHandler>>emptyList(),
+                Collections.<Map.Entry<Class<?>, MessageHandler>>emptyList(),
+                null, Collections.<MessageHandler>emptySet(), false, false, false, false, false, false, false);
+
+        final Class<?>[] wholeTypes;
+        final MessageHandler.Whole[] wholeHandlers;
+        final Class<?>[] partialTypes;
+        final MessageHandler.Partial[] partialHandlers;
+        final MessageHandler.Whole<PongMessage> pongHandler;
+
+        private final Set<MessageHandler> messageHandlers;
+        private final boolean wholeTextHandlerPresent;
+        private final boolean wholeBinaryHandlerPresent;
+        private final boolean partialTextHandlerPresent;
+        private final boolean partialBinaryHandlerPresent;
+        private final boolean readerHandlerPresent;
+        private final boolean inputStreamHandlerPresent;
+        private final boolean pongHandlerPresent;
+
+        private DispatchTable(List<Map.Entry<Class<?>, MessageHandler>> whole, List<Map.Entry<Class<?>, MessageHandler>> partial,
+                              MessageHandler.Whole<PongMessage> pongHandler, Set<MessageHandler> messageHandlers,
+                              boolean wholeTextHandlerPresent, boolean wholeBinaryHandlerPresent,
+                              boolean partialTextHandlerPresent, boolean partialBinaryHandlerPresent,
+                              boolean readerHandlerPresent, boolean inputStreamHandlerPresent, boolean pongHandlerPresent) {
+            this.wholeTypes = new Class<?>[whole.size()];
+            this.wholeHandlers = new MessageHandler.Whole[whole.size()];
+            for (int i = 0; i < whole.size(); i++) {
+                wholeTypes[i] = whole.get(i).getKey();
+                wholeHandlers[i] = (MessageHandler.Whole) whole.get(i).getValue();
+            }
+
+            this.partialTypes = new Class<?>[partial.size()];
+            this.partialHandlers = new MessageHandler.Partial[partial.size()];
+            for (int i = 0; i < partial.size(); i++) {
+                partialTypes[i] = partial.get(i).getKey();
+                partialHandlers[i] = (MessageHandler.Partial) partial.get(i).getValue();
+            }
+
+            this.pongHandler = pongHandler;
+            this.messageHandlers = messageHandlers;
+            this.wholeTextHandlerPresent = wholeTextHandlerPresent;
+            this.wholeBinaryHandlerPresent = wholeBinaryHandlerPresent;
+            this.partialTextHandlerPresent = partialTextHandlerPresent;
+            this.partialBinaryHandlerPresent = partialBinaryHandlerPresent;
+            this.readerHandlerPresent = readerHandlerPresent;
+            this.inputStreamHandlerPresent = inputStreamHandlerPresent;
+            this.pongHandlerPresent = pongHandlerPresent;
+        }
+
+        /**
+         * Get whole message handler registered for given type.
+         *
+         * @param type handled type.
+         * @return registered handler or {@code null} when there is no handler for given type.
+         */
+        MessageHandler.Whole getWholeHandler(Class<?> type) {
+            for (int i = 0; i < wholeTypes.length; i++) {
+                if (wholeTypes[i] == type) {
+                    return wholeHandlers[i];
+                }
+            }
+            return null;
+        }
     }
 
     private static class MessageHandlerComparator implements Comparator<Map.Entry<Class<?>, MessageHandler>>, Serializable {
@@ -0,0 +1,204 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.lang.reflect.Method;
+
+import javax.websocket.Session;
+
+/**
+ * Invokes annotated endpoint method with parameters computed from {@link AnnotatedEndpoint.ParameterExtractor}s.
+ * <p/>
+ * Invoker is selected once, when the endpoint is deployed. The most common method signatures ({@code (message)},
+ * {@code (message, Session)}, {@code (Session, message)} and {@code (message, boolean)}) have specialised
+ * implementations which fill the argument array directly, without going through the extractor chain.
+ * <p/>
+ * Invocation itself goes through {@link Method#invoke(Object, Object...)}: {@code java.lang.invoke} is not available
+ * on Java 6, which core has to run on, and generating bytecode would add a dependency. The method is made accessible
+ * once, so the access check is not repeated, and after the inflation threshold the JDK replaces the reflective call
+ * with a generated accessor anyway.
+ */
+abstract class MethodInvoker {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    final Method method;
+
+    private MethodInvoker(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Get invoked method.
+     *
+     * @return invoked method.
+     */
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Invoke the method.
+     *
+     * @param endpoint endpoint instance.
+     * @param session  session the invocation is related to.
+     * @param first    first runtime value (message, {@link javax.websocket.CloseReason} or {@link Throwable}).
+     * @param second   second runtime value ("last" flag of partial message).
+     * @return value returned from invoked method.
+     * @throws Exception when the method cannot be invoked or throws an exception.
+     */
+    abstract Object invoke(Object endpoint, Session session, Object first, Object second) throws Exception;
+
+    /**
+     * Create invoker for given method and parameter extractors.
+     *
+     * @param method     method to be invoked.
+     * @param extractors parameter extractors, one per method parameter.
+     * @return invoker instance.
+     */
+    static MethodInvoker create(Method method, AnnotatedEndpoint.ParameterExtractor[] extractors) {
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // access check will be performed on each invocation.
+        }
+
+        switch (extractors.length) {
+            case 0:
+                return new NoArgumentInvoker(method);
+            case 1:
+                if (paramIndex(extractors[0]) == 0) {
+                    return new FirstInvoker(method);
+                }
+                break;
+            case 2:
+                final int i0 = paramIndex(extractors[0]);
+                final int i1 = paramIndex(extractors[1]);
+
+                if (i0 == 0 && i1 == 1) {
+                    return new FirstSecondInvoker(method);
+                } else if (i0 == 0 && extractors[1] == AnnotatedEndpoint.SESSION_EXTRACTOR) {
+                    return new FirstSessionInvoker(method);
+                } else if (extractors[0] == AnnotatedEndpoint.SESSION_EXTRACTOR && i1 == 0) {
+                    return new SessionFirstInvoker(method);
+                }
+                break;
+        }
+
+        return new GenericInvoker(method, extractors);
+    }
+
+    private static int paramIndex(AnnotatedEndpoint.ParameterExtractor extractor) {
+        return extractor instanceof AnnotatedEndpoint.ParamValue ? ((AnnotatedEndpoint.ParamValue) extractor).getIndex() : -1;
+    }
+
+    private static final class NoArgumentInvoker extends MethodInvoker {
+        NoArgumentInvoker(Method method) {
+            super(method);
+        }
+
+        @Override
+        Object invoke(Object endpoint, Session session, Object first, Object second) throws Exception {
+            return method.invoke(endpoint, NO_ARGUMENTS);
+        }
+    }
+
+    private static final class FirstInvoker extends MethodInvoker {
+        FirstInvoker(Method method) {
+            super(method);
+        }
+
+        @Override
+        Object invoke(Object endpoint, Session session, Object first, Object second) throws Exception {
+            return method.invoke(endpoint, first);
+        }
+    }
+
+    private static final class FirstSecondInvoker extends MethodInvoker {
+        FirstSecondInvoker(Method method) {
+            super(method);
+        }
+
+        @Override
+        Object invoke(Object endpoint, Session session, Object first, Object second) throws Exception {
+            return method.invoke(endpoint, first, second);
+        }
+    }
+
+    private static final class FirstSessionInvoker extends MethodInvoker {
+        FirstSessionInvoker(Method method) {
+            super(method);
+        }
+
+        @Override
+        Object invoke(Object endpoint, Session session, Object first, Object second) throws Exception {
+            return method.invoke(endpoint, first, session);
+        }
+    }
+
+    private static final class SessionFirstInvoker extends MethodInvoker {
+        SessionFirstInvoker(Method method) {
+            super(method);
+        }
+
+        @Override
+        Object invoke(Object endpoint, Session session, Object first, Object second) throws Exception {
+            return method.invoke(endpoint, session, first);
+        }
+    }
+
+    private static final class GenericInvoker extends MethodInvoker {
+        private final AnnotatedEndpoint.ParameterExtractor[] extractors;
+
+        GenericInvoker(Method method, AnnotatedEndpoint.ParameterExtractor[] extractors) {
+            super(method);
+            this.extractors = extractors;
+        }
+
+        @Override
+        Object invoke(Object endpoint, Session session, Object first, Object second) throws Exception {
+            final Object[] paramValues = new Object[extractors.length];
+            for (int i = 0; i < paramValues.length; i++) {
+                paramValues[i] = extractors[i].value(session, first, second);
+            }
+            return method.invoke(endpoint, paramValues);
+        }
+    }
+}
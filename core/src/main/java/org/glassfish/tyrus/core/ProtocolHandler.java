@@ -42,21 +42,22 @@ package org.glassfish.tyrus.core;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Future;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
 import javax.websocket.Extension;
 import javax.websocket.SendHandler;
 import javax.websocket.SendResult;
 
+import org.glassfish.tyrus.core.extension.BroadcastExtension;
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
 import org.glassfish.tyrus.core.frame.BinaryFrame;
 import org.glassfish.tyrus.core.frame.CloseFrame;
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.PongFrame;
 import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.frame.TyrusFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
@@ -78,7 +79,13 @@ public final class ProtocolHandler {
      */
     public static final int MASK_SIZE = 4;
 
-    private static final Logger LOGGER = Logger.getLogger(ProtocolHandler.class.getName());
+
+    /**
+     * Unmasked Pong frame without payload, shared by all heartbeats sent without masking and extensions.
+     */
+    private static final ByteBuffer HEARTBEAT_FRAME = ByteBuffer.wrap(new byte[]{(byte) 0x8A, 0x00}).asReadOnlyBuffer();
+
+    private static final Object NO_BROADCAST_KEY = new Object();
 
     private final boolean maskData;
     private final ParsingState state = new ParsingState();
@@ -92,8 +99,12 @@ public final class ProtocolHandler {
     private volatile String subProtocol = null;
     private volatile List<Extension> extensions;
     private volatile ExtendedExtension.ExtensionContext extensionContext;
-    private volatile ByteBuffer remainder = null;
+    // null when no negotiated extension processes frames.
+    private volatile ExtensionPipeline pipeline;
+    private volatile TextFrame previousTextFrame = null;
     private volatile boolean hasExtensions = false;
+    // null until computed, NO_BROADCAST_KEY when frames have to be processed for this connection separately.
+    private volatile Object broadcastKey = null;
     private volatile MessageEventListener messageEventListener = MessageEventListener.NO_OP;
 
     ProtocolHandler(boolean maskData) {
@@ -129,6 +140,8 @@ public final class ProtocolHandler {
         this.subProtocol = response.getFirstHeaderValue(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL);
         this.extensionContext = extensionContext;
         hasExtensions = extensions != null && extensions.size() > 0;
+        pipeline = ExtensionPipeline.create(extensions, extensionContext);
+        broadcastKey = null;
         return handshake;
     }
 
@@ -156,6 +169,8 @@ public final class ProtocolHandler {
      */
     public void setExtensionContext(ExtendedExtension.ExtensionContext extensionContext) {
         this.extensionContext = extensionContext;
+        this.pipeline = ExtensionPipeline.create(extensions, extensionContext);
+        this.broadcastKey = null;
     }
 
     /**
@@ -166,6 +181,48 @@ public final class ProtocolHandler {
     public void setExtensions(List<Extension> extensions) {
         this.extensions = extensions;
         this.hasExtensions = extensions != null && extensions.size() > 0;
+        this.pipeline = ExtensionPipeline.create(extensions, extensionContext);
+        this.broadcastKey = null;
+    }
+
+    /**
+     * Get key identifying connections for which negotiated extensions process outgoing frames the same way.
+     * <p/>
+     * Frame encoded by {@link #frame(Frame)} of one connection can be sent to all connections with equal keys.
+     *
+     * @return key or {@code null} when frames have to be processed for this connection separately.
+     * @see BroadcastExtension
+     */
+    Object getBroadcastKey() {
+        Object key = broadcastKey;
+        if (key == null) {
+            key = computeBroadcastKey();
+            broadcastKey = key;
+        }
+
+        return key == NO_BROADCAST_KEY ? null : key;
+    }
+
+    private Object computeBroadcastKey() {
+        final List<Extension> extensions = this.extensions;
+        if (maskData || extensions == null) {
+            return NO_BROADCAST_KEY;
+        }
+
+        final List<Object> keys = new ArrayList<Object>(extensions.size());
+        for (Extension extension : extensions) {
+            if (extension instanceof BroadcastExtension) {
+                final Object key = ((BroadcastExtension) extension).getBroadcastKey(extensionContext);
+                if (key == null) {
+                    return NO_BROADCAST_KEY;
+                }
+                keys.add(key);
+            } else if (extension instanceof ExtendedExtension) {
+                return NO_BROADCAST_KEY;
+            }
+        }
+
+        return keys.size() == 1 ? keys.get(0) : keys;
     }
 
     /**
@@ -235,6 +292,23 @@ public final class ProtocolHandler {
         return send(data, null, true);
     }
 
+    /**
+     * Send empty Pong frame used as an unsolicited heartbeat.
+     * <p/>
+     * The frame is encoded only once and shared when it does not have to be masked or processed by extensions.
+     *
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    Future<Frame> sendHeartbeat() {
+        if (maskData || hasExtensions) {
+            return send(new PongFrame(new byte[0]));
+        }
+
+        final Future<Frame> future = write(HEARTBEAT_FRAME.duplicate(), null, true);
+        messageEventListener.onFrameSent(TyrusFrame.FrameType.PONG, 0);
+        return future;
+    }
+
     public Future<Frame> stream(boolean last, byte[] bytes, int off, int len) {
         if (sendingFragment) {
             if (last) {
@@ -384,16 +458,9 @@ public final class ProtocolHandler {
 
     public ByteBuffer frame(Frame frame) {
 
-        if (extensions != null && extensions.size() > 0) {
-            for (Extension extension : extensions) {
-                if (extension instanceof ExtendedExtension) {
-                    try {
-                        frame = ((ExtendedExtension) extension).processOutgoing(extensionContext, frame);
-                    } catch (Throwable t) {
-                        LOGGER.log(Level.FINE, LocalizationMessages.EXTENSION_EXCEPTION(extension.getName(), t.getMessage()), t);
-                    }
-                }
-            }
+        final ExtensionPipeline localPipeline = pipeline;
+        if (localPipeline != null) {
+            frame = localPipeline.processOutgoing(frame);
         }
 
         byte opcode = checkForLastFrame(frame);
@@ -534,6 +601,17 @@ public final class ProtocolHandler {
         }
     }
 
+    /**
+     * Pass received frame through negotiated extensions which process frames of its type.
+     *
+     * @param frame frame returned from {@link #unframe(ByteBuffer)}.
+     * @return frame processed by extensions, passed frame when there is no such extension.
+     */
+    public Frame processIncoming(Frame frame) {
+        final ExtensionPipeline localPipeline = pipeline;
+        return localPipeline == null ? frame : localPipeline.processIncoming(frame);
+    }
+
     /**
      * TODO.
      * <p/>
@@ -569,12 +647,11 @@ public final class ProtocolHandler {
             }
         }
 
-        TyrusFrame tyrusFrame = TyrusFrame.wrap(frame, inFragmentedType, remainder);
+        // text frames are decoded lazily; utf8 decoding remainder is passed from the previous fragment when needed.
+        TyrusFrame tyrusFrame = TyrusFrame.wrap(frame, inFragmentedType, previousTextFrame);
 
-        // TODO - utf8 decoder needs this state to be shared among decoded frames.
-        // TODO - investigate whether it can be removed; (this effectively denies lazy decoding)
         if (tyrusFrame instanceof TextFrame) {
-            remainder = ((TextFrame) tyrusFrame).getRemainder();
+            previousTextFrame = (TextFrame) tyrusFrame;
         }
 
         tyrusFrame.respond(socket);
@@ -582,6 +659,7 @@ public final class ProtocolHandler {
         if (!tyrusFrame.isControlFrame() && fin) {
             inFragmentedType = 0;
             processingFragment = false;
+            previousTextFrame = null;
         }
     }
 
@@ -42,9 +42,6 @@ package org.glassfish.tyrus.core;
 
 import java.io.Reader;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +53,8 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  * Buffer used for the case when partial messages are received by the {@link MessageHandler.Whole}.
  * </p>
  * For the first received message {@link MessageHandler.Whole#onMessage(Object)} is called within a new executor to allow blocking reading of passed {@link Reader}.
+ * Every message gets its own {@link SegmentRing}, so the handler reading previous message is not affected by the
+ * next one.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
@@ -63,76 +62,29 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 class ReaderBuffer {
 
-    private final AtomicBoolean buffering = new AtomicBoolean(true);
     private final ExecutorService executorService;
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
+    private final IncomingMemoryBudget.Account account;
 
     private static final Logger LOGGER = Logger.getLogger(ReaderBuffer.class.getName());
 
-    private boolean receivedLast = false;
+    private boolean buffering = true;
     private int bufferSize;
     private int currentlyBuffered;
-    private StringBuffer buffer;
-    private BufferedStringReader reader = null;
+    private SegmentRing<String> segments = null;
     private MessageHandler.Whole<Reader> messageHandler;
 
     /**
      * Constructor.
+     *
+     * @param executorService executor used for invoking the message handler.
+     * @param account         account charged for buffered characters.
      */
-    public ReaderBuffer(ExecutorService executorService) {
-        this.buffer = new StringBuffer();
+    public ReaderBuffer(ExecutorService executorService, IncomingMemoryBudget.Account account) {
         this.executorService = executorService;
+        this.account = account;
         currentlyBuffered = 0;
     }
 
-    /**
-     * Get next received chars.
-     *
-     * @return next received chars.
-     */
-    public char[] getNextChars(int number) {
-        lock.lock();
-        try {
-            if (buffer.length() == 0) {
-                if (receivedLast) {
-                    this.reader = null;
-                    buffering.set(true);
-                    this.currentlyBuffered = 0;
-                    return null;
-                } else { // there's more to come...so wait here...
-                    boolean interrupted;
-                    do {
-                        interrupted = false;
-                        try {
-                            condition.await();
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                        }
-                    } while (interrupted);
-                }
-            }
-
-            int size = number > buffer.length() ? buffer.length() : number;
-
-            char[] result = new char[size];
-            buffer.getChars(0, size, result, 0);
-            buffer.delete(0, size);
-
-            return result;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    /**
-     * Finish reading of the buffer.
-     */
-    public void finishReading() {
-        buffer = new StringBuffer();
-        reader = null;
-    }
-
     /**
      * Append next message part to the buffer.
      *
@@ -140,33 +92,53 @@ class ReaderBuffer {
      * @param last    should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
     public void appendMessagePart(String message, boolean last) {
-        lock.lock();
-        try {
-            currentlyBuffered += message.length();
-            if (currentlyBuffered <= bufferSize) {
-                buffer.append(message);
-            } else {
-                if (buffering.get()) {
-                    buffering.set(false);
-                    final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
-                    LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
-                    receivedLast = true;
-                    throw messageTooBigException;
+        if (!buffering) {
+            return;
+        }
+
+        final boolean first = segments == null;
+        if (first) {
+            segments = new SegmentRing<String>(SegmentRing.DEFAULT_CAPACITY, account) {
+                @Override
+                long weigh(String segment) {
+                    // java chars are two bytes wide.
+                    return segment.length() * 2L;
                 }
-            }
+            };
+        }
+        final SegmentRing<String> current = segments;
+
+        currentlyBuffered += message.length();
+        if (currentlyBuffered <= bufferSize) {
+            current.offer(message);
+        } else {
+            buffering = false;
+            segments = null;
+            current.finish();
+            final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
+            LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
+            throw messageTooBigException;
+        }
 
-            this.receivedLast = last;
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+        if (last) {
+            segments = null;
+            current.finish();
         }
 
-        if (this.reader == null) {
-            this.reader = new BufferedStringReader(this);
+        if (first) {
+            final BufferedStringReader reader = new BufferedStringReader(current);
+            final MessageHandler.Whole<Reader> handler = messageHandler;
             executorService.execute(new Runnable() {
                 @Override
                 public void run() {
-                    messageHandler.onMessage(reader);
+                    try {
+                        handler.onMessage(reader);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.WARNING, t.getMessage(), t);
+                    } finally {
+                        // releases segments the handler did not read, reading of the connection might be held.
+                        reader.close();
+                    }
                 }
             });
         }
@@ -188,8 +160,12 @@ class ReaderBuffer {
      */
     public void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
-        buffering.set(true);
+        buffering = true;
         currentlyBuffered = 0;
-        buffer.delete(0, buffer.length());
+        if (segments != null) {
+            // previous message was not finished.
+            segments.finish();
+            segments = null;
+        }
     }
-}
\ No newline at end of file
+}
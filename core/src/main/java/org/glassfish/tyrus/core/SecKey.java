@@ -40,7 +40,7 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -59,6 +59,24 @@ class SecKey {
 
     private static final int KEY_SIZE = 16;
 
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] SERVER_KEY_HASH = UpgradeRequest.SERVER_KEY_HASH.getBytes(ASCII);
+
+    /**
+     * SHA-1 digest is not thread safe and its lookup through the security providers is not cheap, so every thread
+     * keeps its own instance.
+     */
+    private static final ThreadLocal<MessageDigest> SHA1 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new HandshakeException(e.getMessage());
+            }
+        }
+    };
+
     /**
      * Security key string representation, which includes chars and spaces.
      */
@@ -89,22 +107,18 @@ class SecKey {
      * @return server key.
      */
     public static SecKey generateServerKey(SecKey clientKey) throws HandshakeException {
-        String key = clientKey.getSecKey() + UpgradeRequest.SERVER_KEY_HASH;
-        final MessageDigest instance;
-        try {
-            instance = MessageDigest.getInstance("SHA-1");
-            instance.update(key.getBytes("UTF-8"));
-            final byte[] digest = instance.digest();
-            if (digest.length != 20) {
-                throw new HandshakeException(LocalizationMessages.SEC_KEY_INVALID_LENGTH(digest.length));
-            }
-
-            return new SecKey(Base64Utils.encodeToString(digest, false));
-        } catch (NoSuchAlgorithmException e) {
-            throw new HandshakeException(e.getMessage());
-        } catch (UnsupportedEncodingException e) {
-            throw new HandshakeException(e.getMessage());
+        // Sec-WebSocket-Key is base64 encoded, so ASCII is sufficient (anything else is replaced and the
+        // resulting accept value won't match on the client side).
+        final MessageDigest instance = SHA1.get();
+        instance.reset();
+        instance.update(clientKey.getSecKey().getBytes(ASCII));
+        instance.update(SERVER_KEY_HASH);
+        final byte[] digest = instance.digest();
+        if (digest.length != 20) {
+            throw new HandshakeException(LocalizationMessages.SEC_KEY_INVALID_LENGTH(digest.length));
         }
+
+        return new SecKey(Base64Utils.encodeToString(digest, false));
     }
 
     /**
@@ -0,0 +1,273 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer single-consumer queue of message segments, used for passing parts of a message from the
+ * thread reading the connection to the thread executing {@link java.io.Reader} or {@link java.io.InputStream}
+ * message handler.
+ * <p/>
+ * Producer never blocks. When the ring is full, segments are stored in an overflow queue (until the consumer
+ * drains it) and reading of the connection is held through {@link IncomingMemoryBudget.Account#holdReading()}; the
+ * hold is released once the consumer takes half of the segments. Overflow queue therefore contains only the data
+ * which was already read from the transport when the hold was applied.
+ * <p/>
+ * Consumer waiting for data is parked using {@link LockSupport}, no monitor is held while waiting.
+ *
+ * @param <T> segment type.
+ */
+abstract class SegmentRing<T> {
+
+    /**
+     * Default number of segments which can be buffered before reading of the connection is held.
+     */
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final AtomicReferenceArray<T> ring;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong tail = new AtomicLong(0);
+    private final ConcurrentLinkedQueue<T> overflow = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicBoolean held = new AtomicBoolean(false);
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final IncomingMemoryBudget.Account account;
+
+    private volatile boolean finished = false;
+    private volatile boolean closed = false;
+    private volatile Thread waiter = null;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity number of segments which can be buffered before reading of the connection is held. Rounded up
+     *                 to the power of two.
+     * @param account  account charged for buffered segments.
+     */
+    SegmentRing(int capacity, IncomingMemoryBudget.Account account) {
+        int ringSize = 1;
+        while (ringSize < capacity) {
+            ringSize <<= 1;
+        }
+        this.ring = new AtomicReferenceArray<T>(ringSize);
+        this.capacity = ringSize;
+        this.mask = ringSize - 1;
+        this.account = account;
+    }
+
+    /**
+     * Get amount of memory used by given segment.
+     *
+     * @param segment segment.
+     * @return size of the segment in bytes.
+     */
+    abstract long weigh(T segment);
+
+    /**
+     * Add next segment. Called by the producer.
+     *
+     * @param segment segment to be added.
+     */
+    void offer(T segment) {
+        if (closed) {
+            return;
+        }
+
+        account.charge(weigh(segment));
+
+        final long t = tail.get();
+        if (overflow.isEmpty() && t - head.get() < capacity) {
+            ring.set((int) t & mask, segment);
+            tail.set(t + 1);
+        } else {
+            overflow.add(segment);
+        }
+
+        if (size.incrementAndGet() >= capacity && held.compareAndSet(false, true)) {
+            account.holdReading();
+            // consumer might have taken the segments before the hold was acquired.
+            releaseHold();
+        }
+
+        wakeUp();
+
+        if (closed) {
+            // consumer was closed while the segment was being added.
+            discard();
+        }
+    }
+
+    /**
+     * Mark the end of the message. Called by the producer.
+     */
+    void finish() {
+        finished = true;
+        wakeUp();
+    }
+
+    /**
+     * Take next segment, wait for it if necessary. Called by the consumer.
+     *
+     * @return next segment or {@code null} when the whole message was consumed or the ring was closed.
+     */
+    T take() {
+        boolean interrupted = false;
+        try {
+            while (!closed) {
+                T segment = poll();
+                if (segment != null) {
+                    return segment;
+                }
+
+                if (finished) {
+                    // last segment could have been added just before the end was marked.
+                    return poll();
+                }
+
+                waiter = Thread.currentThread();
+                segment = poll();
+                if (segment == null && !finished && !closed) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        interrupted = true;
+                    }
+                }
+                waiter = null;
+
+                if (segment != null) {
+                    return segment;
+                }
+            }
+
+            return null;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Check whether there is a segment which can be taken without waiting. Called by the consumer.
+     *
+     * @return {@code true} when {@link #take()} would not block.
+     */
+    boolean isReady() {
+        return closed || finished || size.get() > 0;
+    }
+
+    /**
+     * Release memory of a segment returned from {@link #take()}. Called by the consumer once the segment is not
+     * needed anymore.
+     *
+     * @param segment consumed segment.
+     */
+    void consumed(T segment) {
+        account.release(weigh(segment));
+    }
+
+    /**
+     * Close the ring. Buffered segments are discarded, subsequently offered segments are ignored.
+     */
+    void close() {
+        closed = true;
+        discard();
+        wakeUp();
+    }
+
+    private T poll() {
+        final long h = head.get();
+        final T segment;
+        if (h < tail.get()) {
+            final int index = (int) h & mask;
+            segment = ring.get(index);
+            ring.set(index, null);
+            head.set(h + 1);
+        } else {
+            // overflow contains only segments newer than the ones in the ring.
+            segment = overflow.poll();
+        }
+
+        if (segment != null && size.decrementAndGet() <= capacity / 2) {
+            releaseHold();
+        }
+        return segment;
+    }
+
+    private void releaseHold() {
+        if (size.get() <= capacity / 2 && held.compareAndSet(true, false)) {
+            account.releaseReading();
+        }
+    }
+
+    private void discard() {
+        // after close, segments can be removed by both consumer and producer.
+        while (draining.compareAndSet(false, true)) {
+            try {
+                T segment;
+                while ((segment = poll()) != null) {
+                    consumed(segment);
+                }
+            } finally {
+                draining.set(false);
+            }
+
+            if (size.get() == 0) {
+                return;
+            }
+        }
+    }
+
+    private void wakeUp() {
+        final Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
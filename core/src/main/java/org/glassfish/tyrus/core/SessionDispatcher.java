@@ -0,0 +1,352 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.CloseReason;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Dispatches incoming messages to application handlers on a shared {@link Executor}, so slow handlers do not block
+ * threads reading from the network.
+ * <p/>
+ * Each connection gets its own {@link Mailbox}; tasks submitted to one mailbox are executed serially, in submission
+ * order, so message ordering within a session is preserved. Mailbox holds at most {@link #getMailboxDepth()} tasks;
+ * what happens when it is full is determined by {@link OverflowPolicy}.
+ * <p/>
+ * Dispatcher also collects statistics of all its mailboxes (queued tasks, maximal observed mailbox depth and time
+ * spent in handlers).
+ *
+ * @see TyrusWebSocketEngine#DISPATCH_MAILBOX_DEPTH
+ */
+@Beta
+public class SessionDispatcher {
+
+    /**
+     * Action taken when a message is received and the session mailbox is full.
+     */
+    public static enum OverflowPolicy {
+
+        /**
+         * Message is accepted and reading from the connection is suspended until the mailbox is drained to half of its
+         * depth.
+         * <p/>
+         * Mailbox depth is exceeded by messages which were already read when the reading was suspended; containers
+         * which do not support suspending reads are not limited at all.
+         */
+        SUSPEND_READING,
+
+        /**
+         * Message is discarded and the session is closed with {@link CloseReason.CloseCodes#TRY_AGAIN_LATER} after
+         * all already queued messages are processed.
+         */
+        CLOSE
+    }
+
+    /**
+     * Number of tasks executed by one mailbox before the thread is returned to the executor.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private static final Logger LOGGER = Logger.getLogger(SessionDispatcher.class.getName());
+
+    private final Executor executor;
+    private final int mailboxDepth;
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicInteger queuedTasks = new AtomicInteger(0);
+    private final AtomicInteger maxMailboxDepth = new AtomicInteger(0);
+    private final AtomicLong executedTasks = new AtomicLong(0);
+    private final AtomicLong handlerTime = new AtomicLong(0);
+    private final AtomicLong maxHandlerTime = new AtomicLong(0);
+    private final AtomicLong overflows = new AtomicLong(0);
+
+    /**
+     * Create new dispatcher.
+     *
+     * @param executor       executor used for running mailboxes.
+     * @param mailboxDepth   maximal number of tasks queued in one mailbox, has to be positive.
+     * @param overflowPolicy action taken when a mailbox is full. {@code null} means
+     *                       {@link OverflowPolicy#SUSPEND_READING}.
+     */
+    public SessionDispatcher(Executor executor, int mailboxDepth, OverflowPolicy overflowPolicy) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        if (mailboxDepth <= 0) {
+            throw new IllegalArgumentException(LocalizationMessages.DISPATCH_MAILBOX_DEPTH_INVALID(mailboxDepth));
+        }
+
+        this.executor = executor;
+        this.mailboxDepth = mailboxDepth;
+        this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.SUSPEND_READING : overflowPolicy;
+    }
+
+    /**
+     * Get maximal number of tasks queued in one mailbox.
+     *
+     * @return mailbox depth.
+     */
+    public int getMailboxDepth() {
+        return mailboxDepth;
+    }
+
+    /**
+     * Get action taken when a mailbox is full.
+     *
+     * @return overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Get number of tasks currently queued in all mailboxes, including tasks being executed.
+     *
+     * @return number of queued tasks.
+     */
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    /**
+     * Get the largest depth any mailbox has reached.
+     *
+     * @return maximal observed mailbox depth.
+     */
+    public int getMaxMailboxDepth() {
+        return maxMailboxDepth.get();
+    }
+
+    /**
+     * Get number of executed tasks.
+     *
+     * @return number of executed tasks.
+     */
+    public long getExecutedTasks() {
+        return executedTasks.get();
+    }
+
+    /**
+     * Get total time spent executing tasks (handler latency) in nanoseconds.
+     *
+     * @return total time in nanoseconds.
+     */
+    public long getTotalHandlerTime() {
+        return handlerTime.get();
+    }
+
+    /**
+     * Get the longest time spent executing a single task in nanoseconds.
+     *
+     * @return maximal handler latency in nanoseconds.
+     */
+    public long getMaxHandlerTime() {
+        return maxHandlerTime.get();
+    }
+
+    /**
+     * Get number of messages received when the target mailbox was full.
+     *
+     * @return number of overflows.
+     */
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    /**
+     * Create new mailbox for a connection.
+     *
+     * @param socket socket the mailbox dispatches messages for.
+     * @return new mailbox.
+     */
+    Mailbox newMailbox(TyrusWebSocket socket) {
+        return new Mailbox(socket);
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serial queue of tasks related to one connection.
+     * <p/>
+     * Tasks are submitted by the thread reading from the connection and executed one after another on the
+     * dispatcher executor.
+     */
+    class Mailbox implements Runnable {
+
+        private final TyrusWebSocket socket;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger size = new AtomicInteger(0);
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final AtomicBoolean readingHeld = new AtomicBoolean(false);
+        private volatile boolean overflowed = false;
+
+        Mailbox(TyrusWebSocket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Submit a task related to received message.
+         * <p/>
+         * Task is subject to {@link OverflowPolicy} when the mailbox is full.
+         *
+         * @param task task to be executed.
+         */
+        void submit(Runnable task) {
+            if (overflowed) {
+                return;
+            }
+
+            if (size.get() >= mailboxDepth) {
+                overflows.incrementAndGet();
+
+                if (overflowPolicy == OverflowPolicy.CLOSE) {
+                    overflowed = true;
+                    LOGGER.log(Level.FINE, LocalizationMessages.DISPATCH_MAILBOX_OVERFLOW(mailboxDepth));
+                    enqueue(new Runnable() {
+                        @Override
+                        public void run() {
+                            socket.close(CloseReason.CloseCodes.TRY_AGAIN_LATER.getCode(),
+                                    LocalizationMessages.DISPATCH_MAILBOX_OVERFLOW(mailboxDepth));
+                        }
+                    });
+                    return;
+                }
+            }
+
+            enqueue(task);
+
+            if (overflowPolicy == OverflowPolicy.SUSPEND_READING && size.get() >= mailboxDepth
+                    && readingHeld.compareAndSet(false, true)) {
+                socket.getIncomingMemoryAccount().holdReading();
+            }
+        }
+
+        /**
+         * Submit a task regardless of mailbox depth.
+         * <p/>
+         * Used for tasks which cannot be discarded, like processing of received close frame.
+         *
+         * @param task task to be executed.
+         */
+        void submitAlways(Runnable task) {
+            enqueue(task);
+        }
+
+        private void enqueue(Runnable task) {
+            final int depth = size.incrementAndGet();
+            queuedTasks.incrementAndGet();
+            updateMax(maxMailboxDepth, depth);
+            tasks.offer(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.log(Level.FINE, e.getMessage(), e);
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    final Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+
+                    final long start = System.nanoTime();
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.WARNING, t.getMessage(), t);
+                    } finally {
+                        final long elapsed = System.nanoTime() - start;
+                        executedTasks.incrementAndGet();
+                        handlerTime.addAndGet(elapsed);
+                        updateMax(maxHandlerTime, elapsed);
+                        queuedTasks.decrementAndGet();
+
+                        if (size.decrementAndGet() <= mailboxDepth / 2 && readingHeld.compareAndSet(true, false)) {
+                            socket.getIncomingMemoryAccount().releaseReading();
+                        }
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
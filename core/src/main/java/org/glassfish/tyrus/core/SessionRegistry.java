@@ -0,0 +1,190 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.Session;
+
+/**
+ * Registry of open sessions of one endpoint.
+ * <p/>
+ * Sessions are added when opened and removed as soon as they are closed, so the registry always contains only open
+ * sessions and {@link #size()} does not need to iterate over them. {@link #getSnapshot()} returns an immutable copy,
+ * which is cached and rebuilt only when the set of registered sessions changes. The same applies to
+ * {@link #getSnapshot(SessionRegistry)}, which adds sessions of other registry (remote sessions of the endpoint in
+ * clustered mode).
+ *
+ * @param <S> session type.
+ */
+final class SessionRegistry<S extends Session> {
+
+    private final ConcurrentHashMap<String, S> sessions = new ConcurrentHashMap<String, S>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicLong version = new AtomicLong(0);
+
+    private volatile Snapshot snapshot = new Snapshot(0, 0, Collections.<Session>emptySet());
+    private volatile Snapshot unionSnapshot = new Snapshot(0, 0, Collections.<Session>emptySet());
+
+    /**
+     * Register session.
+     *
+     * @param session session to be registered.
+     * @return {@code true} if the session was registered, {@code false} if a session with the same id is already
+     * present.
+     */
+    boolean add(S session) {
+        if (sessions.putIfAbsent(session.getId(), session) == null) {
+            size.incrementAndGet();
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unregister session.
+     *
+     * @param session session to be removed.
+     * @return {@code true} if the session was registered, {@code false} otherwise.
+     */
+    boolean remove(S session) {
+        if (sessions.remove(session.getId(), session)) {
+            size.decrementAndGet();
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unregister session with given id.
+     *
+     * @param id session id.
+     * @return removed session or {@code null} if there was no session with given id.
+     */
+    S remove(String id) {
+        final S session = sessions.remove(id);
+        if (session != null) {
+            size.decrementAndGet();
+            version.incrementAndGet();
+        }
+        return session;
+    }
+
+    /**
+     * Get session by its id.
+     *
+     * @param id session id.
+     * @return registered session or {@code null}.
+     */
+    S get(String id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Get number of registered sessions.
+     *
+     * @return number of registered sessions.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Get immutable copy of registered sessions.
+     *
+     * @return registered sessions.
+     */
+    Set<Session> getSnapshot() {
+        final Snapshot current = snapshot;
+        // read before the copy is made; if the registry changes meanwhile, the copy will be rebuilt next time.
+        final long currentVersion = version.get();
+
+        if (current.version == currentVersion) {
+            return current.sessions;
+        }
+
+        final Set<Session> copy = Collections.unmodifiableSet(new HashSet<Session>(sessions.values()));
+        snapshot = new Snapshot(currentVersion, 0, copy);
+        return copy;
+    }
+
+    /**
+     * Get immutable copy of sessions registered to this and the other registry.
+     * <p/>
+     * Must be always invoked with the same other registry, only one union is cached.
+     *
+     * @param other registry with sessions to be added.
+     * @return sessions registered to both registries.
+     */
+    Set<Session> getSnapshot(SessionRegistry<?> other) {
+        final Snapshot current = unionSnapshot;
+        final long currentVersion = version.get();
+        final long currentOtherVersion = other.version.get();
+
+        if (current.version == currentVersion && current.otherVersion == currentOtherVersion) {
+            return current.sessions;
+        }
+
+        final Set<Session> copy = new HashSet<Session>(sessions.values());
+        copy.addAll(other.sessions.values());
+        final Set<Session> result = Collections.unmodifiableSet(copy);
+        unionSnapshot = new Snapshot(currentVersion, currentOtherVersion, result);
+        return result;
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final long otherVersion;
+        private final Set<Session> sessions;
+
+        Snapshot(long version, long otherVersion, Set<Session> sessions) {
+            this.version = version;
+            this.otherVersion = otherVersion;
+            this.sessions = sessions;
+        }
+    }
+}
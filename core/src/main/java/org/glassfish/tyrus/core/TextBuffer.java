@@ -40,39 +40,151 @@
 
 package org.glassfish.tyrus.core;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 
 /**
+ * Buffer used for reassembling partial text messages.
+ * <p/>
+ * Keeps raw UTF-8 encoded parts of the message and decodes them at once when the last part is received. Data is
+ * validated while it is decoded, so each byte is decoded only once.
+ *
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 class TextBuffer {
-    private StringBuffer buffer;
+
+    // UTF-8 needs up to 3 bytes for a single java char (4 bytes for a surrogate pair).
+    private static final int MAX_BYTES_PER_CHAR = 3;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Logger LOGGER = Logger.getLogger(TextBuffer.class.getName());
+
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private final IncomingMemoryBudget.Account account;
     private int bufferSize;
-    private static final Logger LOGGER = Logger.getLogger(BinaryBuffer.class.getName());
+    private long currentlyBuffered = 0;
 
+    /**
+     * Constructor.
+     *
+     * @param account account charged for buffered data.
+     */
+    TextBuffer(IncomingMemoryBudget.Account account) {
+        this.account = account;
+    }
+
+    /**
+     * Append already decoded message part.
+     *
+     * @param message part of the message.
+     */
     void appendMessagePart(String message) {
         if (message == null || message.length() == 0) {
             return;
         }
 
-        if (buffer.length() + message.length() <= bufferSize) {
-            buffer.append(message);
-        } else {
-            final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
-            LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
-            throw messageTooBigException;
+        appendMessagePart(ByteBuffer.wrap(message.getBytes(UTF8)));
+    }
+
+    /**
+     * Append UTF-8 encoded message part.
+     * <p/>
+     * Passed buffer is not copied, caller must not modify it.
+     *
+     * @param message part of the message.
+     */
+    void appendMessagePart(ByteBuffer message) {
+        if (!message.hasRemaining()) {
+            return;
+        }
+
+        // maximal size is in chars; exact check is done after the message is decoded.
+        if (currentlyBuffered + message.remaining() > (long) bufferSize * MAX_BYTES_PER_CHAR) {
+            throw overflow();
         }
+
+        segments.add(message);
+        currentlyBuffered += message.remaining();
+        account.charge(message.remaining());
     }
 
+    /**
+     * Decode buffered parts and reset the buffer.
+     *
+     * @return buffered message.
+     * @throws Utf8DecodingException when buffered data is not valid UTF-8.
+     */
     String getBufferedContent() {
-        return buffer.toString();
+        try {
+            if (segments.isEmpty()) {
+                return "";
+            }
+
+            final CharBuffer chars = decode();
+            if (chars.position() > bufferSize) {
+                throw overflow();
+            }
+            return new String(chars.array(), 0, chars.position());
+        } finally {
+            resetBuffer(bufferSize);
+        }
     }
 
     void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
-        this.buffer = new StringBuffer();
+        this.segments.clear();
+        account.release(currentlyBuffered);
+        currentlyBuffered = 0;
+    }
+
+    private CharBuffer decode() {
+        final CharsetDecoder decoder = new StrictUtf8().newDecoder();
+        // UTF-8 never produces more chars than bytes.
+        final CharBuffer out = CharBuffer.allocate((int) currentlyBuffered);
+        // bytes of a code point split between two segments.
+        final ByteBuffer pending = ByteBuffer.allocate(8);
+
+        for (ByteBuffer segment : segments) {
+            final ByteBuffer in = segment.duplicate();
+
+            while (pending.position() > 0 && in.hasRemaining()) {
+                pending.put(in.get());
+                pending.flip();
+                checkResult(decoder.decode(pending, out, false));
+                pending.compact();
+            }
+
+            checkResult(decoder.decode(in, out, false));
+            pending.put(in);
+        }
+
+        pending.flip();
+        checkResult(decoder.decode(pending, out, true));
+        checkResult(decoder.flush(out));
+        if (pending.hasRemaining()) {
+            throw new Utf8DecodingException();
+        }
+
+        return out;
+    }
+
+    private static void checkResult(CoderResult result) {
+        if (result.isError()) {
+            throw new Utf8DecodingException();
+        }
+    }
+
+    private static MessageTooBigException overflow() {
+        final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
+        LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
+        return messageTooBigException;
     }
 }
@@ -0,0 +1,310 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel shared by all sessions of a container.
+ * <p/>
+ * Time is divided into ticks; every {@link Task} is placed into the bucket of the tick in which its deadline
+ * expires, buckets are swept by a single periodic job running on the container {@link ScheduledExecutorService}.
+ * Scheduling costs O(1) regardless of the number of tasks and the sweeping job runs only while there are some
+ * scheduled tasks.
+ * <p/>
+ * Tasks are not fired exactly at their deadline, but during the first sweep after it, so the precision is one tick.
+ * When a task becomes due, it is asked (by {@link Task#onDue(long)}) whether it really expired; tasks which track
+ * frequently changing deadlines (like idle timeouts, which are postponed by every message) therefore do not need to
+ * be rescheduled on every change; they are lazily moved to the correct bucket when the original one is swept.
+ */
+final class TimingWheel {
+
+    /**
+     * Default tick duration in milliseconds.
+     */
+    static final long DEFAULT_TICK_MILLIS = 50;
+
+    /**
+     * Default number of buckets.
+     */
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Returned by {@link Task#onDue(long)} when the task should not be scheduled again.
+     */
+    static final long UNSCHEDULE = Long.MIN_VALUE;
+
+    private static final long NOT_SCHEDULED = -1;
+
+    private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getName());
+
+    private final ScheduledExecutorService service;
+    private final long tickNanos;
+    private final long origin;
+    private final Queue<Slot>[] buckets;
+    private final int mask;
+    private final AtomicInteger scheduledTasks = new AtomicInteger(0);
+    private final Object sweeperLock = new Object();
+
+    private volatile long processedTick = 0;
+    private ScheduledFuture<?> sweeper = null;
+
+    /**
+     * Task scheduled in {@link TimingWheel}.
+     */
+    abstract static class Task {
+
+        // guarded by this.
+        private long tick = NOT_SCHEDULED;
+
+        /**
+         * Invoked when the deadline the task has been scheduled for passes.
+         * <p/>
+         * Invoked from the thread sweeping the wheel; implementation should not block.
+         *
+         * @param now current value of {@link System#nanoTime()}.
+         * @return new deadline (in terms of {@link System#nanoTime()}) or {@link #UNSCHEDULE} when the task should not
+         * be scheduled again.
+         */
+        abstract long onDue(long now);
+    }
+
+    /**
+     * Create new wheel with default tick duration and size.
+     *
+     * @param service executor service used for sweeping the wheel.
+     */
+    TimingWheel(ScheduledExecutorService service) {
+        this(service, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Create new wheel.
+     *
+     * @param service    executor service used for sweeping the wheel.
+     * @param tickMillis tick duration in milliseconds.
+     * @param wheelSize  number of buckets, will be rounded up to power of two.
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(ScheduledExecutorService service, long tickMillis, int wheelSize) {
+        this.service = service;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.origin = System.nanoTime();
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<Slot>();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedule task.
+     * <p/>
+     * If the task is already scheduled, its previous deadline is discarded.
+     *
+     * @param task     task to be scheduled.
+     * @param deadline deadline in terms of {@link System#nanoTime()}.
+     */
+    void schedule(Task task, long deadline) {
+        final boolean wasScheduled;
+        synchronized (task) {
+            wasScheduled = task.tick != NOT_SCHEDULED;
+            place(task, deadline);
+        }
+
+        if (!wasScheduled && scheduledTasks.incrementAndGet() == 1) {
+            startSweeper();
+        }
+    }
+
+    /**
+     * Cancel task.
+     *
+     * @param task task to be cancelled. Does nothing if the task is not scheduled.
+     */
+    void cancel(Task task) {
+        synchronized (task) {
+            if (task.tick == NOT_SCHEDULED) {
+                return;
+            }
+            task.tick = NOT_SCHEDULED;
+        }
+
+        scheduledTasks.decrementAndGet();
+    }
+
+    /**
+     * Get number of scheduled tasks.
+     *
+     * @return number of scheduled tasks.
+     */
+    int getScheduledTasks() {
+        return scheduledTasks.get();
+    }
+
+    /**
+     * Sweep all buckets which expired since the last sweep.
+     * <p/>
+     * Invoked periodically from the sweeping job; exposed for testing.
+     *
+     * @param now current value of {@link System#nanoTime()}.
+     */
+    void sweep(long now) {
+        final long currentTick = (now - origin) / tickNanos;
+
+        for (long tick = processedTick + 1; tick <= currentTick; tick++) {
+            final Iterator<Slot> iterator = buckets[(int) (tick & mask)].iterator();
+            while (iterator.hasNext()) {
+                final Slot slot = iterator.next();
+                if (slot.tick > tick) {
+                    // later round.
+                    continue;
+                }
+                iterator.remove();
+                fire(slot, now);
+            }
+            processedTick = tick;
+        }
+
+        if (scheduledTasks.get() == 0) {
+            stopSweeper();
+        }
+    }
+
+    private void fire(Slot slot, long now) {
+        final Task task = slot.task;
+
+        synchronized (task) {
+            if (task.tick != slot.tick) {
+                // task was rescheduled or cancelled, slot is stale.
+                return;
+            }
+        }
+
+        long deadline;
+        try {
+            deadline = task.onDue(now);
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, t.getMessage(), t);
+            deadline = UNSCHEDULE;
+        }
+
+        synchronized (task) {
+            if (task.tick != slot.tick) {
+                // task was rescheduled or cancelled from onDue or concurrently.
+                return;
+            }
+
+            if (deadline != UNSCHEDULE) {
+                place(task, deadline);
+                return;
+            }
+
+            task.tick = NOT_SCHEDULED;
+        }
+
+        scheduledTasks.decrementAndGet();
+    }
+
+    // has to be called with task monitor held.
+    private void place(Task task, long deadline) {
+        final long elapsed = deadline - origin;
+        // round up, task must not be fired before its deadline.
+        long tick = elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+        // bucket of the next tick might be being swept right now.
+        tick = Math.max(tick, processedTick + 2);
+
+        task.tick = tick;
+        buckets[(int) (tick & mask)].add(new Slot(task, tick));
+    }
+
+    private void startSweeper() {
+        synchronized (sweeperLock) {
+            if (sweeper != null) {
+                return;
+            }
+
+            try {
+                sweeper = service.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        sweep(System.nanoTime());
+                    }
+                }, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // container is being shut down.
+                LOGGER.log(Level.FINE, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void stopSweeper() {
+        synchronized (sweeperLock) {
+            if (sweeper != null && scheduledTasks.get() == 0) {
+                sweeper.cancel(false);
+                sweeper = null;
+            }
+        }
+    }
+
+    private static final class Slot {
+        private final Task task;
+        private final long tick;
+
+        Slot(Task task, long tick) {
+            this.task = task;
+            this.tick = tick;
+        }
+    }
+}
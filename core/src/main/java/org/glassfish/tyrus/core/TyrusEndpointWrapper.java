@@ -54,7 +54,6 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -118,13 +117,16 @@ public class TyrusEndpointWrapper {
     private final String serverEndpointPath;
     private final List<CoderWrapper<Decoder>> decoders = new ArrayList<CoderWrapper<Decoder>>();
     private final List<CoderWrapper<Encoder>> encoders = new ArrayList<CoderWrapper<Encoder>>();
+    private final List<DecoderCandidate> textDecoders = new ArrayList<DecoderCandidate>();
+    private final List<DecoderCandidate> binaryDecoders = new ArrayList<DecoderCandidate>();
+    private final Map<Class<?>, CoderWrapper<Encoder>> encoderCache = new ConcurrentHashMap<Class<?>, CoderWrapper<Encoder>>();
     private final EndpointConfig configuration;
     private final Class<? extends Endpoint> endpointClass;
     private final Endpoint endpoint;
     private final Map<TyrusWebSocket, TyrusSession> webSocketToSession =
             new ConcurrentHashMap<TyrusWebSocket, TyrusSession>();
-    private final Map<String, ClusterSession> clusteredSessions =
-            new ConcurrentHashMap<String, ClusterSession>();
+    private final SessionRegistry<TyrusSession> openSessions = new SessionRegistry<TyrusSession>();
+    private final SessionRegistry<ClusterSession> clusteredSessions = new SessionRegistry<ClusterSession>();
     private final ComponentProviderService componentProvider;
     private final ServerEndpointConfig.Configurator configurator;
     private final Method onOpen;
@@ -132,6 +134,7 @@ public class TyrusEndpointWrapper {
     private final Method onError;
     private final SessionListener sessionListener;
     private final EndpointEventListener endpointEventListener;
+    private final UpgradeAdmission upgradeAdmission;
 
     private final ClusterContext clusterContext;
     private final Session dummySession;
@@ -265,6 +268,14 @@ public class TyrusEndpointWrapper {
             }
         } : configuration;
 
+        if (configuration instanceof TyrusServerEndpointConfig &&
+                ((TyrusServerEndpointConfig) configuration).getMaxConcurrentUpgrades() > 0) {
+            // endpoint limit does not queue; the request already waited for the application-wide admission.
+            this.upgradeAdmission = new UpgradeAdmission(((TyrusServerEndpointConfig) configuration).getMaxConcurrentUpgrades(), 0, 0);
+        } else {
+            this.upgradeAdmission = null;
+        }
+
         for (Class<? extends Decoder> decoderClass : this.configuration.getDecoders()) {
             Class<?> type = getDecoderClassType(decoderClass);
             decoders.add(new CoderWrapper<Decoder>(decoderClass, type));
@@ -288,6 +299,21 @@ public class TyrusEndpointWrapper {
         encoders.add(new CoderWrapper<Encoder>(NoOpByteArrayCoder.class, byte[].class));
         encoders.add(new CoderWrapper<Encoder>(ToStringEncoder.class, Object.class));
 
+        for (CoderWrapper<Decoder> dec : decoders) {
+            final Class<? extends Decoder> decoderClass = dec.getCoderClass();
+            if (Decoder.Text.class.isAssignableFrom(decoderClass)) {
+                textDecoders.add(new DecoderCandidate(dec, false));
+            } else if (Decoder.TextStream.class.isAssignableFrom(decoderClass)) {
+                textDecoders.add(new DecoderCandidate(dec, true));
+            }
+
+            if (Decoder.Binary.class.isAssignableFrom(decoderClass)) {
+                binaryDecoders.add(new DecoderCandidate(dec, false));
+            } else if (Decoder.BinaryStream.class.isAssignableFrom(decoderClass)) {
+                binaryDecoders.add(new DecoderCandidate(dec, true));
+            }
+        }
+
         // clustered mode
         if (clusterContext != null) {
             dummySession = new ClusterSession(null, null, null, null, null);
@@ -295,8 +321,7 @@ public class TyrusEndpointWrapper {
             clusterContext.registerSessionListener(getEndpointPath(), new org.glassfish.tyrus.core.cluster.SessionListener() {
                 @Override
                 public void onSessionOpened(String sessionId) {
-                    final Map<ClusterSession.DistributedMapKey, Object> distributedSessionProperties = clusterContext.getDistributedSessionProperties(sessionId);
-                    clusteredSessions.put(sessionId, new ClusterSession(sessionId, clusterContext, distributedSessionProperties, TyrusEndpointWrapper.this, dummySession));
+                    addClusteredSession(sessionId);
                 }
 
                 @Override
@@ -318,14 +343,20 @@ public class TyrusEndpointWrapper {
             });
 
             for (String sessionId : clusterContext.getRemoteSessionIds(getEndpointPath())) {
-                final Map<ClusterSession.DistributedMapKey, Object> distributedSessionProperties = clusterContext.getDistributedSessionProperties(sessionId);
-                clusteredSessions.put(sessionId, new ClusterSession(sessionId, clusterContext, distributedSessionProperties, this, dummySession));
+                addClusteredSession(sessionId);
             }
         } else {
             dummySession = null;
         }
     }
 
+    private void addClusteredSession(String sessionId) {
+        if (clusteredSessions.get(sessionId) == null) {
+            final Map<ClusterSession.DistributedMapKey, Object> distributedSessionProperties = clusterContext.getDistributedSessionProperties(sessionId);
+            clusteredSessions.add(new ClusterSession(sessionId, clusterContext, distributedSessionProperties, this, dummySession));
+        }
+    }
+
     static List<Class<? extends Decoder>> getDefaultDecoders() {
         final List<Class<? extends Decoder>> classList = new ArrayList<Class<? extends Decoder>>();
         classList.addAll(PrimitiveDecoders.ALL);
@@ -347,19 +378,36 @@ public class TyrusEndpointWrapper {
 
     private <T> Object getCoderInstance(Session session, CoderWrapper<T> wrapper) {
         final Object coder = wrapper.getCoder();
-        if (coder == null) {
-            ErrorCollector collector = new ErrorCollector();
-            final Object coderInstance = this.componentProvider.getCoderInstance(wrapper.getCoderClass(), session, getEndpointConfig(), collector);
-            if (!collector.isEmpty()) {
-                final DeploymentException deploymentException = collector.composeComprehensiveException();
-                LOGGER.log(Level.WARNING, deploymentException.getMessage(), deploymentException);
-                return null;
-            }
+        if (coder != null) {
+            return coder;
+        }
 
+        if (session instanceof TyrusSession) {
+            // instances are cached on the session, so the component provider is asked only once per session and coder.
+            final TyrusSession tyrusSession = (TyrusSession) session;
+            Object coderInstance = tyrusSession.getCoderInstance(wrapper);
+            if (coderInstance == null) {
+                coderInstance = createCoderInstance(session, wrapper);
+                if (coderInstance != null) {
+                    tyrusSession.setCoderInstance(wrapper, coderInstance);
+                }
+            }
             return coderInstance;
         }
 
-        return coder;
+        return createCoderInstance(session, wrapper);
+    }
+
+    private <T> Object createCoderInstance(Session session, CoderWrapper<T> wrapper) {
+        ErrorCollector collector = new ErrorCollector();
+        final Object coderInstance = this.componentProvider.getCoderInstance(wrapper.getCoderClass(), session, getEndpointConfig(), collector);
+        if (!collector.isEmpty()) {
+            final DeploymentException deploymentException = collector.composeComprehensiveException();
+            LOGGER.log(Level.WARNING, deploymentException.getMessage(), deploymentException);
+            return null;
+        }
+
+        return coderInstance;
     }
 
     Object decodeCompleteMessage(Session session, Object message, Class<?> type, CoderWrapper<Decoder> selectedDecoder) throws DecodeException, IOException {
@@ -394,25 +442,25 @@ public class TyrusEndpointWrapper {
     }
 
     private ArrayList<CoderWrapper<Decoder>> findApplicableDecoders(Session session, Object message, boolean isString) {
-        ArrayList<CoderWrapper<Decoder>> result = new ArrayList<CoderWrapper<Decoder>>();
+        final List<DecoderCandidate> candidates = isString ? textDecoders : binaryDecoders;
+        ArrayList<CoderWrapper<Decoder>> result = new ArrayList<CoderWrapper<Decoder>>(candidates.size());
 
-        for (CoderWrapper<Decoder> dec : decoders) {
-            if (isString && (Decoder.Text.class.isAssignableFrom(dec.getCoderClass()))) {
-                final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, dec);
+        for (int i = 0; i < candidates.size(); i++) {
+            final DecoderCandidate candidate = candidates.get(i);
+            if (candidate.stream) {
+                result.add(candidate.wrapper);
+            } else if (isString) {
+                final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, candidate.wrapper);
 
                 if (decoder.willDecode((String) message)) {
-                    result.add(dec);
+                    result.add(candidate.wrapper);
                 }
-            } else if (!isString && (Decoder.Binary.class.isAssignableFrom(dec.getCoderClass()))) {
-                final Decoder.Binary decoder = (Decoder.Binary) getCoderInstance(session, dec);
+            } else {
+                final Decoder.Binary decoder = (Decoder.Binary) getCoderInstance(session, candidate.wrapper);
 
                 if (decoder.willDecode((ByteBuffer) message)) {
-                    result.add(dec);
+                    result.add(candidate.wrapper);
                 }
-            } else if (isString && (Decoder.TextStream.class.isAssignableFrom(dec.getCoderClass()))) {
-                result.add(dec);
-            } else if (!isString && (Decoder.BinaryStream.class.isAssignableFrom(dec.getCoderClass()))) {
-                result.add(dec);
             }
         }
 
@@ -420,41 +468,57 @@ public class TyrusEndpointWrapper {
     }
 
     public Object doEncode(Session session, Object message) throws EncodeException, IOException {
-        for (CoderWrapper<Encoder> enc : encoders) {
-            final Class<? extends Encoder> encoderClass = enc.getCoderClass();
-
-            if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Binary encoder = (Encoder.Binary) getCoderInstance(session, enc);
+        final CoderWrapper<Encoder> enc = findEncoder(message.getClass());
+
+        if (enc != null) {
+            final Object encoder = getCoderInstance(session, enc);
+
+            if (encoder instanceof Encoder.Binary) {
+                return ((Encoder.Binary) encoder).encode(message);
+            } else if (encoder instanceof Encoder.Text) {
+                return ((Encoder.Text) encoder).encode(message);
+            } else if (encoder instanceof Encoder.BinaryStream) {
+                final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                ((Encoder.BinaryStream) encoder).encode(message, stream);
+                return stream;
+            } else if (encoder instanceof Encoder.TextStream) {
+                final Writer writer = new StringWriter();
+                ((Encoder.TextStream) encoder).encode(message, writer);
+                return writer;
+            }
+        }
 
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.Text.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Text encoder = (Encoder.Text) getCoderInstance(session, enc);
+        throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
+    }
 
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.BinaryStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                    final Encoder.BinaryStream encoder = (Encoder.BinaryStream) getCoderInstance(session, enc);
+    /**
+     * Find the first registered encoder, which is able to encode instances of given class. Result is cached, encoders
+     * cannot change after the endpoint is created.
+     *
+     * @param messageClass class of the message to be encoded.
+     * @return encoder wrapper or {@code null} if there is no suitable encoder.
+     */
+    private CoderWrapper<Encoder> findEncoder(Class<?> messageClass) {
+        CoderWrapper<Encoder> result = encoderCache.get(messageClass);
+        if (result != null) {
+            return result;
+        }
 
-                    encoder.encode(message, stream);
-                    return stream;
-                }
-            } else if (Encoder.TextStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Writer writer = new StringWriter();
-                    final Encoder.TextStream encoder = (Encoder.TextStream) getCoderInstance(session, enc);
+        for (CoderWrapper<Encoder> enc : encoders) {
+            final Class<? extends Encoder> encoderClass = enc.getCoderClass();
 
-                    encoder.encode(message, writer);
-                    return writer;
-                }
+            if ((Encoder.Binary.class.isAssignableFrom(encoderClass) || Encoder.Text.class.isAssignableFrom(encoderClass)
+                    || Encoder.BinaryStream.class.isAssignableFrom(encoderClass) || Encoder.TextStream.class.isAssignableFrom(encoderClass))
+                    && enc.getType().isAssignableFrom(messageClass)) {
+                result = enc;
+                break;
             }
         }
 
-        throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
+        if (result != null) {
+            encoderCache.put(messageClass, result);
+        }
+        return result;
     }
 
     /**
@@ -516,20 +580,54 @@ public class TyrusEndpointWrapper {
      * @return open sessions.
      */
     public Set<Session> getOpenSessions(final TyrusSession tyrusSession) {
-        Set<Session> result = new HashSet<Session>();
-
-        for (Session session : webSocketToSession.values()) {
-            if (session.isOpen()) {
-                result.add(session);
-            }
-        }
-
         // clustered mode
         if (clusterContext != null) {
-            result.addAll(clusteredSessions.values());
+            return openSessions.getSnapshot(clusteredSessions);
         }
 
-        return Collections.unmodifiableSet(result);
+        return openSessions.getSnapshot();
+    }
+
+    /**
+     * Get number of open local {@link Session}s of this endpoint.
+     *
+     * @return number of open sessions, sessions opened on other cluster nodes are not included.
+     */
+    public int getOpenSessionsCount() {
+        return openSessions.size();
+    }
+
+    /**
+     * Get open local {@link Session} with given id.
+     *
+     * @param sessionId session id.
+     * @return open session or {@code null} when there is no such open session on this node.
+     */
+    public Session getOpenSession(String sessionId) {
+        return openSessions.get(sessionId);
+    }
+
+    /**
+     * Get admission limiting concurrent upgrades to this endpoint.
+     *
+     * @return endpoint admission or {@code null} when the endpoint does not limit concurrent upgrades.
+     * @see MaxConcurrentUpgrades
+     */
+    @Beta
+    public UpgradeAdmission getUpgradeAdmission() {
+        return upgradeAdmission;
+    }
+
+    /**
+     * Remove the session from the open sessions.
+     * <p/>
+     * Invoked by {@link TyrusSession} as soon as it changes its state to {@link TyrusSession.State#CLOSED}, which
+     * might be some time before {@link #onClose(TyrusWebSocket, CloseReason)} is invoked.
+     *
+     * @param session closed session.
+     */
+    void onSessionStateClosed(TyrusSession session) {
+        openSessions.remove(session);
     }
 
     /**
@@ -576,17 +674,18 @@ public class TyrusEndpointWrapper {
                     upgradeRequest.getQueryString(), templateValues, upgradeRequest.getUserPrincipal(),
                     upgradeRequest.getParameterMap(), clusterContext, connectionId);
             webSocketToSession.put(socket, session);
-
+            openSessions.add(session);
 
             // max open session per endpoint exceeded?
             boolean maxSessionPerEndpointExceeded = configuration instanceof TyrusServerEndpointConfig &&
                     ((TyrusServerEndpointConfig) configuration).getMaxSessions() > 0 &&
-                    webSocketToSession.size() > ((TyrusServerEndpointConfig) configuration).getMaxSessions();
+                    openSessions.size() > ((TyrusServerEndpointConfig) configuration).getMaxSessions();
 
             // test max open sessions per endpoint and per application
             if (maxSessionPerEndpointExceeded || !sessionListener.onOpen()) {
                 try {
                     webSocketToSession.remove(socket);
+                    openSessions.remove(session);
                     String refuseDetail;
                     if (maxSessionPerEndpointExceeded) {
                         refuseDetail = LocalizationMessages.MAX_SESSIONS_PER_ENDPOINT_EXCEEDED();
@@ -603,6 +702,8 @@ public class TyrusEndpointWrapper {
             }
 
             socket.setMessageEventListener(endpointEventListener.onSessionOpened(session.getId()));
+        } else if (session.isOpen()) {
+            openSessions.add(session);
         }
 
         ErrorCollector collector = new ErrorCollector();
@@ -618,6 +719,7 @@ public class TyrusEndpointWrapper {
                 LOGGER.log(Level.FINE, t.getMessage(), t);
             }
             webSocketToSession.remove(socket);
+            openSessions.remove(session);
             sessionListener.onClose(CloseReasons.UNEXPECTED_CONDITION.getCloseReason());
             try {
                 session.close(CloseReasons.UNEXPECTED_CONDITION.getCloseReason());
@@ -669,7 +771,7 @@ public class TyrusEndpointWrapper {
         }
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.recordActivity();
             final TyrusSession.State state = session.getState();
             if (state == TyrusSession.State.RECEIVING_BINARY || state == TyrusSession.State.RECEIVING_TEXT) {
                 session.setState(TyrusSession.State.RUNNING);
@@ -720,7 +822,7 @@ public class TyrusEndpointWrapper {
         }
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.recordActivity();
             final TyrusSession.State state = session.getState();
             if (state == TyrusSession.State.RECEIVING_BINARY || state == TyrusSession.State.RECEIVING_TEXT) {
                 session.setState(TyrusSession.State.RUNNING);
@@ -767,15 +869,42 @@ public class TyrusEndpointWrapper {
      * @param last          to indicate if this is the last partial string in the sequence
      */
     public void onPartialMessage(TyrusWebSocket socket, String partialString, boolean last) {
+        onPartialMessage(socket, partialString, null, last);
+    }
+
+    /**
+     * Called when a partial text message is received.
+     * <p/>
+     * Raw payload of the frame is buffered without decoding when the message is going to be passed to a whole
+     * message handler; it is decoded once when the last part is received. Otherwise behaves same as
+     * {@link #onPartialMessage(TyrusWebSocket, String, boolean)}.
+     *
+     * @param socket {@link TyrusWebSocket} who sent the message.
+     * @param frame  frame containing the part of the message.
+     * @param last   to indicate if this is the last partial string in the sequence
+     */
+    void onPartialMessage(TyrusWebSocket socket, TextFrame frame, boolean last) {
+        onPartialMessage(socket, null, frame, last);
+    }
+
+    private void onPartialMessage(TyrusWebSocket socket, String partialString, TextFrame frame, boolean last) {
         TyrusSession session = getSession(socket);
 
+        if (session == null || !session.isWholeTextHandlerPresent() || session.isPartialTextHandlerPresent()
+                || session.isReaderHandlerPresent()) {
+            if (frame != null) {
+                // validates the payload even if there is no handler.
+                partialString = frame.getTextPayload();
+            }
+        }
+
         if (session == null) {
             LOGGER.log(Level.FINE, "Message received on already closed connection.");
             return;
         }
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.recordActivity();
             final TyrusSession.State state = session.getState();
             if (session.isPartialTextHandlerPresent()) {
                 session.notifyMessageHandlers(partialString, last);
@@ -788,7 +917,7 @@ public class TyrusEndpointWrapper {
                     case RUNNING:
                         if (buffer == null) {
                             // TODO:
-                            buffer = new ReaderBuffer(((BaseContainer) container).getExecutorService());
+                            buffer = new ReaderBuffer(((BaseContainer) container).getExecutorService(), socket.getIncomingMemoryAccount());
                             session.setReaderBuffer(buffer);
                         }
                         buffer.resetBuffer(session.getMaxTextMessageBufferSize());
@@ -812,11 +941,11 @@ public class TyrusEndpointWrapper {
                 switch (state) {
                     case RUNNING:
                         session.getTextBuffer().resetBuffer(session.getMaxTextMessageBufferSize());
-                        session.getTextBuffer().appendMessagePart(partialString);
+                        appendMessagePart(session.getTextBuffer(), partialString, frame);
                         session.setState(TyrusSession.State.RECEIVING_TEXT);
                         break;
                     case RECEIVING_TEXT:
-                        session.getTextBuffer().appendMessagePart(partialString);
+                        appendMessagePart(session.getTextBuffer(), partialString, frame);
                         if (last) {
                             final String message = session.getTextBuffer().getBufferedContent();
                             session.notifyMessageHandlers(message, findApplicableDecoders(session, message, true));
@@ -853,6 +982,14 @@ public class TyrusEndpointWrapper {
         }
     }
 
+    private static void appendMessagePart(TextBuffer textBuffer, String partialString, TextFrame frame) {
+        if (frame != null) {
+            textBuffer.appendMessagePart(frame.getPayloadBuffer());
+        } else {
+            textBuffer.appendMessagePart(partialString);
+        }
+    }
+
     /**
      * Called by the provider when the web socket connection
      * has an incoming partial binary message from the given remote endpoint. Partial
@@ -873,7 +1010,7 @@ public class TyrusEndpointWrapper {
         }
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.recordActivity();
             final TyrusSession.State state = session.getState();
             if (session.isPartialBinaryHandlerPresent()) {
                 session.notifyMessageHandlers(partialBytes, last);
@@ -886,7 +1023,7 @@ public class TyrusEndpointWrapper {
                     case RUNNING:
                         if (buffer == null) {
                             // TODO
-                            buffer = new InputStreamBuffer(((BaseContainer) container).getExecutorService());
+                            buffer = new InputStreamBuffer(((BaseContainer) container).getExecutorService(), socket.getIncomingMemoryAccount());
                             session.setInputStreamBuffer(buffer);
                         }
                         buffer.resetBuffer(session.getMaxBinaryMessageBufferSize());
@@ -991,7 +1128,7 @@ public class TyrusEndpointWrapper {
             return;
         }
 
-        session.restartIdleTimeoutExecutor();
+        session.recordActivity();
 
         if (session.isPongHandlerPreset()) {
             session.notifyPongHandler(new PongMessage() {
@@ -1028,7 +1165,7 @@ public class TyrusEndpointWrapper {
             return;
         }
 
-        session.restartIdleTimeoutExecutor();
+        session.recordActivity();
         try {
             session.getBasicRemote().sendPong(bytes);
         } catch (IOException e) {
@@ -1093,6 +1230,7 @@ public class TyrusEndpointWrapper {
             }
 
             webSocketToSession.remove(socket);
+            openSessions.remove(session);
             endpointEventListener.onSessionClosed(session.getId());
             componentProvider.removeSession(session);
             sessionListener.onClose(closeReason);
@@ -1126,6 +1264,7 @@ public class TyrusEndpointWrapper {
         }
 
         final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
+        final Map<Object, byte[]> sharedFrames = new HashMap<Object, byte[]>();
         byte[] frame = null;
 
         for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
@@ -1136,12 +1275,20 @@ public class TyrusEndpointWrapper {
 
                 // we need to let protocol handler execute extensions if there are any
                 if (protocolHandler.hasExtensions()) {
-                    byte[] tempFrame;
+                    // connections with equal key share the frame processed by extensions of the first of them.
+                    final Object broadcastKey = protocolHandler.getBroadcastKey();
+                    byte[] tempFrame = broadcastKey == null ? null : sharedFrames.get(broadcastKey);
 
-                    final Frame dataFrame = new TextFrame(message, false, true);
-                    final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                    tempFrame = new byte[byteBuffer.remaining()];
-                    byteBuffer.get(tempFrame);
+                    if (tempFrame == null) {
+                        final Frame dataFrame = new TextFrame(message, false, true);
+                        final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
+                        tempFrame = new byte[byteBuffer.remaining()];
+                        byteBuffer.get(tempFrame);
+
+                        if (broadcastKey != null) {
+                            sharedFrames.put(broadcastKey, tempFrame);
+                        }
+                    }
 
                     final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(tempFrame));
                     futures.put(e.getValue(), frameFuture);
@@ -1178,6 +1325,7 @@ public class TyrusEndpointWrapper {
     private Map<Session, Future<?>> broadcast(final ByteBuffer message, boolean local) {
 
         final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
+        final Map<Object, byte[]> sharedFrames = new HashMap<Object, byte[]>();
         byte[] frame = null;
 
         byte[] byteArrayMessage = Utils.getRemainingArray(message);
@@ -1194,12 +1342,20 @@ public class TyrusEndpointWrapper {
 
                 // we need to let protocol handler execute extensions if there are any
                 if (protocolHandler.hasExtensions()) {
-                    byte[] tempFrame;
+                    // connections with equal key share the frame processed by extensions of the first of them.
+                    final Object broadcastKey = protocolHandler.getBroadcastKey();
+                    byte[] tempFrame = broadcastKey == null ? null : sharedFrames.get(broadcastKey);
 
-                    final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
-                    final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                    tempFrame = new byte[byteBuffer.remaining()];
-                    byteBuffer.get(tempFrame);
+                    if (tempFrame == null) {
+                        final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
+                        final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
+                        tempFrame = new byte[byteBuffer.remaining()];
+                        byteBuffer.get(tempFrame);
+
+                        if (broadcastKey != null) {
+                            sharedFrames.put(broadcastKey, tempFrame);
+                        }
+                    }
 
                     final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(tempFrame));
                     futures.put(e.getValue(), frameFuture);
@@ -1387,4 +1543,22 @@ public class TyrusEndpointWrapper {
         public void onClose(CloseReason closeReason) {
         }
     }
+
+    /**
+     * Registered decoder applicable to text or binary messages.
+     */
+    private static class DecoderCandidate {
+
+        private final CoderWrapper<Decoder> wrapper;
+
+        /**
+         * {@code true} for stream decoders, which don't provide {@code willDecode} method.
+         */
+        private final boolean stream;
+
+        private DecoderCandidate(CoderWrapper<Decoder> wrapper, boolean stream) {
+            this.wrapper = wrapper;
+            this.stream = stream;
+        }
+    }
 }
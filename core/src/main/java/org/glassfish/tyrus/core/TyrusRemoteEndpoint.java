@@ -95,7 +95,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.recordOutgoingActivity();
             }
         }
 
@@ -106,7 +106,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.recordOutgoingActivity();
             }
         }
 
@@ -117,7 +117,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.recordOutgoingActivity();
             }
         }
 
@@ -128,7 +128,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.recordOutgoingActivity();
             }
         }
 
@@ -172,7 +172,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
                     throw new IOException(e.getCause());
                 }
             }
-            session.restartIdleTimeoutExecutor();
+            session.recordOutgoingActivity();
         }
 
         @Override
@@ -201,21 +201,21 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendText(String text, SendHandler handler) {
             checkNotNull(text, LocalizationMessages.ARGUMENT_NOT_NULL("text"));
             checkNotNull(handler, LocalizationMessages.ARGUMENT_NOT_NULL("handler"));
-            session.restartIdleTimeoutExecutor();
+            session.recordOutgoingActivity();
             sendAsync(text, handler, AsyncMessageType.TEXT);
         }
 
         @Override
         public Future<Void> sendText(String text) {
             checkNotNull(text, LocalizationMessages.ARGUMENT_NOT_NULL("text"));
-            session.restartIdleTimeoutExecutor();
+            session.recordOutgoingActivity();
             return sendAsync(text, AsyncMessageType.TEXT);
         }
 
         @Override
         public Future<Void> sendBinary(ByteBuffer data) {
             checkNotNull(data, LocalizationMessages.ARGUMENT_NOT_NULL("data"));
-            session.restartIdleTimeoutExecutor();
+            session.recordOutgoingActivity();
             return sendAsync(data, AsyncMessageType.BINARY);
         }
 
@@ -223,7 +223,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendBinary(ByteBuffer data, SendHandler handler) {
             checkNotNull(data, LocalizationMessages.ARGUMENT_NOT_NULL("data"));
             checkNotNull(handler, LocalizationMessages.ARGUMENT_NOT_NULL("handler"));
-            session.restartIdleTimeoutExecutor();
+            session.recordOutgoingActivity();
             sendAsync(data, handler, AsyncMessageType.BINARY);
         }
 
@@ -231,14 +231,14 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendObject(Object data, SendHandler handler) {
             checkNotNull(data, LocalizationMessages.ARGUMENT_NOT_NULL("data"));
             checkNotNull(handler, LocalizationMessages.ARGUMENT_NOT_NULL("handler"));
-            session.restartIdleTimeoutExecutor();
+            session.recordOutgoingActivity();
             sendAsync(data, handler, AsyncMessageType.OBJECT);
         }
 
         @Override
         public Future<Void> sendObject(Object data) {
             checkNotNull(data, LocalizationMessages.ARGUMENT_NOT_NULL("data"));
-            session.restartIdleTimeoutExecutor();
+            session.recordOutgoingActivity();
             return sendAsync(data, AsyncMessageType.OBJECT);
         }
 
@@ -428,7 +428,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         if (applicationData != null && applicationData.remaining() > 125) {
             throw new IllegalArgumentException(LocalizationMessages.APPLICATION_DATA_TOO_LONG("Ping"));
         }
-        session.restartIdleTimeoutExecutor();
+        session.recordOutgoingActivity();
         webSocket.sendPing(Utils.getRemainingArray(applicationData));
     }
 
@@ -437,7 +437,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         if (applicationData != null && applicationData.remaining() > 125) {
             throw new IllegalArgumentException(LocalizationMessages.APPLICATION_DATA_TOO_LONG("Pong"));
         }
-        session.restartIdleTimeoutExecutor();
+        session.recordOutgoingActivity();
         webSocket.sendPong(Utils.getRemainingArray(applicationData));
     }
 
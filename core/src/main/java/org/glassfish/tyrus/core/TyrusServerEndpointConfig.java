@@ -66,6 +66,15 @@ public interface TyrusServerEndpointConfig extends ServerEndpointConfig {
      */
     public int getMaxSessions();
 
+    /**
+     * Returns configured maximal number of concurrently processed upgrade requests.
+     *
+     * @return the maximal number of concurrent upgrades, value less than 1 means no limit.
+     * @see MaxConcurrentUpgrades
+     */
+    @Beta
+    public int getMaxConcurrentUpgrades();
+
     /**
      * The TyrusServerEndpointConfig.Builder is a class used for creating
      * {@link TyrusServerEndpointConfig.Builder} objects for the purposes of
@@ -97,6 +106,7 @@ public interface TyrusServerEndpointConfig extends ServerEndpointConfig {
         private List<Class<? extends Decoder>> decoders = Collections.emptyList();
         private Configurator serverEndpointConfigurator;
         private int maxSessions = 0;
+        private int maxConcurrentUpgrades = 0;
 
         /**
          * Creates the builder with the mandatory information of the endpoint class
@@ -130,7 +140,8 @@ public interface TyrusServerEndpointConfig extends ServerEndpointConfig {
 
             return new DefaultTyrusServerEndpointConfig(
                     serverEndpointConfig,
-                    this.maxSessions
+                    this.maxSessions,
+                    this.maxConcurrentUpgrades
             );
         }
 
@@ -212,5 +223,18 @@ public interface TyrusServerEndpointConfig extends ServerEndpointConfig {
             this.maxSessions = maxSessions;
             return this;
         }
+
+        /**
+         * Sets maximal number of concurrently processed upgrade requests.
+         *
+         * @param maxConcurrentUpgrades maximal number of concurrent upgrades.
+         * @return this builder instance.
+         * @see MaxConcurrentUpgrades
+         */
+        @Beta
+        public TyrusServerEndpointConfig.Builder maxConcurrentUpgrades(final int maxConcurrentUpgrades) {
+            this.maxConcurrentUpgrades = maxConcurrentUpgrades;
+            return this;
+        }
     }
 }
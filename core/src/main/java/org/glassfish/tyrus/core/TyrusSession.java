@@ -44,16 +44,17 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.security.SecureRandom;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
@@ -86,6 +87,23 @@ public class TyrusSession implements Session {
 
     private static final Logger LOGGER = Logger.getLogger(TyrusSession.class.getName());
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * {@link java.util.UUID#randomUUID()} shares single {@link SecureRandom} instance (and its lock) among all
+     * threads; session ids are generated from per-thread generators instead.
+     */
+    private static final ThreadLocal<SecureRandom> SESSION_ID_RANDOM = new ThreadLocal<SecureRandom>() {
+        @Override
+        protected SecureRandom initialValue() {
+            try {
+                return SecureRandom.getInstance("SHA1PRNG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+    };
+
     private final WebSocketContainer container;
     private final TyrusEndpointWrapper endpointWrapper;
     private final TyrusRemoteEndpoint.Basic basicRemote;
@@ -96,28 +114,33 @@ public class TyrusSession implements Session {
     private final Map<String, String> pathParameters;
     private final Principal userPrincipal;
     private final Map<String, List<String>> requestParameterMap;
-    private final Object idleTimeoutLock = new Object();
     private final String id;
     private final String connectionId;
     private final Map<String, Object> userProperties;
     private final MessageHandlerManager handlerManager;
     private final AtomicReference<State> state = new AtomicReference<State>(State.RUNNING);
-    private final TextBuffer textBuffer = new TextBuffer();
-    private final BinaryBuffer binaryBuffer = new BinaryBuffer();
+    private final TextBuffer textBuffer;
+    private final BinaryBuffer binaryBuffer;
     private final List<Extension> negotiatedExtensions;
     private final String negotiatedSubprotocol;
 
     private final Map<ClusterSession.DistributedMapKey, Object> distributedPropertyMap;
 
+    private final IdleTimeout idleTimeout = new IdleTimeout();
+    private final Heartbeat heartbeat = new Heartbeat();
+    private final TyrusWebSocket socket;
+
     private volatile long maxIdleTimeout = 0;
-    private volatile ScheduledFuture<?> idleTimeoutFuture = null;
+    private volatile long lastActivity = System.nanoTime();
+    private volatile long lastOutgoingActivity = lastActivity;
+    private TimingWheel timingWheel;
     private int maxBinaryMessageBufferSize = Integer.MAX_VALUE;
     private int maxTextMessageBufferSize = Integer.MAX_VALUE;
-    private ScheduledExecutorService service;
+    private final Map<CoderWrapper<?>, Object> coderInstances = new ConcurrentHashMap<CoderWrapper<?>, Object>(8);
     private ReaderBuffer readerBuffer;
     private InputStreamBuffer inputStreamBuffer;
     private volatile long heartbeatInterval;
-    private volatile ScheduledFuture<?> heartbeatTask;
+    private volatile long lastHeartbeat;
 
     TyrusSession(WebSocketContainer container, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper,
                  String subprotocol, List<Extension> extensions, boolean isSecure,
@@ -126,6 +149,7 @@ public class TyrusSession implements Session {
                  String connectionId) {
         this.container = container;
         this.endpointWrapper = endpointWrapper;
+        this.socket = socket;
         this.negotiatedExtensions = extensions == null ? Collections.<Extension>emptyList() : Collections.unmodifiableList(extensions);
         this.negotiatedSubprotocol = subprotocol == null ? "" : subprotocol;
         this.isSecure = isSecure;
@@ -138,11 +162,13 @@ public class TyrusSession implements Session {
         this.userPrincipal = principal;
         this.requestParameterMap = requestParameterMap == null ? Collections.<String, List<String>>emptyMap() : Collections.unmodifiableMap(new HashMap<String, List<String>>(requestParameterMap));
         this.connectionId = connectionId;
+        this.textBuffer = new TextBuffer(socket.getIncomingMemoryAccount());
+        this.binaryBuffer = new BinaryBuffer(socket.getIncomingMemoryAccount());
 
         if (container != null) {
             maxTextMessageBufferSize = container.getDefaultMaxTextMessageBufferSize();
             maxBinaryMessageBufferSize = container.getDefaultMaxBinaryMessageBufferSize();
-            service = ((ExecutorServiceProvider) container).getScheduledExecutorService();
+            timingWheel = ((ExecutorServiceProvider) container).getTimingWheel();
             setMaxIdleTimeout(container.getDefaultMaxSessionIdleTimeout());
         }
 
@@ -168,7 +194,7 @@ public class TyrusSession implements Session {
 
             clusterContext.initClusteredSession(id, endpointWrapper.getEndpointPath(), new SessionEventListener(this));
         } else {
-            id = UUID.randomUUID().toString();
+            id = createSessionId();
             userProperties = new HashMap<String, Object>();
             distributedPropertyMap = null;
         }
@@ -208,18 +234,12 @@ public class TyrusSession implements Session {
 
     @Override
     public void close() throws IOException {
-        if (heartbeatTask != null && !heartbeatTask.isCancelled()) {
-            heartbeatTask.cancel(true);
-        }
         changeStateToClosed();
         basicRemote.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, null));
     }
 
     @Override
     public void close(CloseReason closeReason) throws IOException {
-        if (heartbeatTask != null && !heartbeatTask.isCancelled()) {
-            heartbeatTask.cancel(true);
-        }
         checkConnectionState(State.CLOSED);
         changeStateToClosed();
         basicRemote.close(closeReason);
@@ -272,7 +292,7 @@ public class TyrusSession implements Session {
     public void setMaxIdleTimeout(long maxIdleTimeout) {
         checkConnectionState(State.CLOSED);
         this.maxIdleTimeout = maxIdleTimeout;
-        restartIdleTimeoutExecutor();
+        scheduleIdleTimeout();
         if (distributedPropertyMap != null) {
             distributedPropertyMap.put(ClusterSession.DistributedMapKey.MAX_IDLE_TIMEOUT, maxIdleTimeout);
         }
@@ -350,9 +370,7 @@ public class TyrusSession implements Session {
 
     @Override
     public Set<MessageHandler> getMessageHandlers() {
-        synchronized (handlerManager) {
-            return handlerManager.getMessageHandlers();
-        }
+        return handlerManager.getMessageHandlers();
     }
 
     @Override
@@ -437,33 +455,71 @@ public class TyrusSession implements Session {
     public void setHeartbeatInterval(long heartbeatInterval) {
         checkConnectionState(State.CLOSED);
         this.heartbeatInterval = heartbeatInterval;
-        if (heartbeatTask != null && !heartbeatTask.isCancelled()) {
-            heartbeatTask.cancel(true);
+
+        if (timingWheel == null) {
+            return;
         }
 
         if (heartbeatInterval < 1) {
+            timingWheel.cancel(heartbeat);
             return;
         }
 
-        heartbeatTask = service.scheduleAtFixedRate(new HeartbeatCommand(), heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        final long now = System.nanoTime();
+        lastHeartbeat = now;
+        timingWheel.schedule(heartbeat, now + TimeUnit.MILLISECONDS.toNanos(heartbeatInterval));
     }
 
-    void restartIdleTimeoutExecutor() {
-        if (this.maxIdleTimeout < 1) {
-            synchronized (idleTimeoutLock) {
-                if (idleTimeoutFuture != null) {
-                    idleTimeoutFuture.cancel(true);
-                }
-                return;
-            }
+    /**
+     * Set {@link TimingWheel} used for idle timeout and heartbeats instead of the one provided by the container.
+     * <p/>
+     * Exposed for testing.
+     *
+     * @param timingWheel timing wheel.
+     */
+    void setTimingWheel(TimingWheel timingWheel) {
+        this.timingWheel = timingWheel;
+    }
+
+    /**
+     * Record activity on this session, which postpones the idle timeout.
+     * <p/>
+     * Only the time of the activity is recorded, {@link TimingWheel} checks it lazily when the timeout would expire.
+     */
+    void recordActivity() {
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Record outgoing message on this session, which postpones the idle timeout and the next heartbeat.
+     */
+    void recordOutgoingActivity() {
+        final long now = System.nanoTime();
+        lastActivity = now;
+        lastOutgoingActivity = now;
+    }
+
+    private void scheduleIdleTimeout() {
+        final long now = System.nanoTime();
+        lastActivity = now;
+
+        if (timingWheel == null) {
+            return;
         }
 
-        synchronized (idleTimeoutLock) {
-            if (idleTimeoutFuture != null) {
-                idleTimeoutFuture.cancel(false);
-            }
+        final long timeout = maxIdleTimeout;
+        if (timeout < 1) {
+            timingWheel.cancel(idleTimeout);
+        } else {
+            timingWheel.schedule(idleTimeout, now + TimeUnit.MILLISECONDS.toNanos(timeout));
+        }
+    }
 
-            idleTimeoutFuture = service.schedule(new IdleTimeoutCommand(), this.getMaxIdleTimeout(), TimeUnit.MILLISECONDS);
+    private void onClosed() {
+        endpointWrapper.onSessionStateClosed(this);
+        if (timingWheel != null) {
+            timingWheel.cancel(idleTimeout);
+            timingWheel.cancel(heartbeat);
         }
     }
 
@@ -494,16 +550,14 @@ public class TyrusSession implements Session {
             LOGGER.warning(LocalizationMessages.NO_DECODER_FOUND());
         }
 
-        List<Map.Entry<Class<?>, MessageHandler>> orderedMessageHandlers;
-        synchronized (handlerManager) {
-            orderedMessageHandlers = handlerManager.getOrderedWholeMessageHandlers();
-        }
+        final MessageHandlerManager.DispatchTable dispatchTable = handlerManager.getDispatchTable();
+        final Class<?>[] types = dispatchTable.wholeTypes;
 
         for (CoderWrapper<Decoder> decoder : availableDecoders) {
-            for (Map.Entry<Class<?>, MessageHandler> entry : orderedMessageHandlers) {
-                MessageHandler mh = entry.getValue();
+            for (int i = 0; i < types.length; i++) {
+                MessageHandler mh = dispatchTable.wholeHandlers[i];
 
-                Class<?> type = entry.getKey();
+                Class<?> type = types[i];
                 if (type.isAssignableFrom(decoder.getType())) {
 
                     if (mh instanceof BasicMessageHandler) {
@@ -529,26 +583,19 @@ public class TyrusSession implements Session {
     }
 
     <T> MessageHandler.Whole<T> getMessageHandler(Class<T> c) {
-        List<Map.Entry<Class<?>, MessageHandler>> orderedMessageHandlers;
-        synchronized (handlerManager) {
-            orderedMessageHandlers = handlerManager.getOrderedWholeMessageHandlers();
-        }
-
-        for (Map.Entry<Class<?>, MessageHandler> entry : orderedMessageHandlers) {
-            if (entry.getKey() == c) {
-                return (MessageHandler.Whole<T>) entry.getValue();
-            }
-        }
-
-        return null;
+        //noinspection unchecked
+        return handlerManager.getDispatchTable().getWholeHandler(c);
     }
 
     void notifyMessageHandlers(Object message, boolean last) {
         boolean handled = false;
 
-        for (MessageHandler handler : getMessageHandlers()) {
-            if ((handler instanceof MessageHandler.Partial) &&
-                    MessageHandlerManager.getHandlerType(handler).isAssignableFrom(message.getClass())) {
+        final MessageHandlerManager.DispatchTable dispatchTable = handlerManager.getDispatchTable();
+        final Class<?>[] types = dispatchTable.partialTypes;
+
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].isAssignableFrom(message.getClass())) {
+                final MessageHandler.Partial handler = dispatchTable.partialHandlers[i];
 
                 if (handler instanceof AsyncMessageHandler) {
                     checkMessageSize(message, ((AsyncMessageHandler) handler).getMaxMessageSize());
@@ -557,7 +604,7 @@ public class TyrusSession implements Session {
                 final State currentState = state.get();
                 if (currentState != State.CLOSED) {
                     //noinspection unchecked
-                    ((MessageHandler.Partial) handler).onMessage(message, last);
+                    handler.onMessage(message, last);
                 }
                 handled = true;
                 break;
@@ -574,11 +621,9 @@ public class TyrusSession implements Session {
     }
 
     void notifyPongHandler(PongMessage pongMessage) {
-        final Set<MessageHandler> messageHandlers = getMessageHandlers();
-        for (MessageHandler handler : messageHandlers) {
-            if (MessageHandlerManager.getHandlerType(handler).equals(PongMessage.class)) {
-                ((MessageHandler.Whole<PongMessage>) handler).onMessage(pongMessage);
-            }
+        final MessageHandler.Whole<PongMessage> handler = handlerManager.getDispatchTable().pongHandler;
+        if (handler != null) {
+            handler.onMessage(pongMessage);
         }
     }
 
@@ -627,6 +672,9 @@ public class TyrusSession implements Session {
         if (!state.equals(this.state.get())) {
             checkConnectionState(State.CLOSED);
             this.state.set(state);
+            if (state == State.CLOSED) {
+                onClosed();
+            }
         }
     }
 
@@ -638,6 +686,26 @@ public class TyrusSession implements Session {
         return binaryBuffer;
     }
 
+    /**
+     * Get coder instance created for this session.
+     *
+     * @param wrapper registered coder.
+     * @return coder instance or {@code null} if it was not created yet.
+     */
+    Object getCoderInstance(CoderWrapper<?> wrapper) {
+        return coderInstances.get(wrapper);
+    }
+
+    /**
+     * Store coder instance created for this session.
+     *
+     * @param wrapper       registered coder.
+     * @param coderInstance coder instance.
+     */
+    void setCoderInstance(CoderWrapper<?> wrapper, Object coderInstance) {
+        coderInstances.put(wrapper, coderInstance);
+    }
+
     ReaderBuffer getReaderBuffer() {
         return readerBuffer;
     }
@@ -669,6 +737,30 @@ public class TyrusSession implements Session {
         state.compareAndSet(State.RUNNING, State.CLOSED);
         state.compareAndSet(State.RECEIVING_BINARY, State.CLOSED);
         state.compareAndSet(State.RECEIVING_TEXT, State.CLOSED);
+        onClosed();
+    }
+
+    /**
+     * Create random (version 4) UUID string used as a session id.
+     *
+     * @return new session id.
+     */
+    static String createSessionId() {
+        final byte[] bytes = new byte[16];
+        SESSION_ID_RANDOM.get().nextBytes(bytes);
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40);
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+
+        final char[] chars = new char[36];
+        int position = 0;
+        for (int i = 0; i < 16; i++) {
+            if (i == 4 || i == 6 || i == 8 || i == 10) {
+                chars[position++] = '-';
+            }
+            chars[position++] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[position++] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
     }
 
     /**
@@ -697,35 +789,81 @@ public class TyrusSession implements Session {
         CLOSED
     }
 
-    private class IdleTimeoutCommand implements Runnable {
+    private class IdleTimeout extends TimingWheel.Task {
 
         @Override
-        public void run() {
+        long onDue(long now) {
             TyrusSession session = TyrusSession.this;
 
-            // condition is required because scheduled task can be (for some reason) run even when it is cancelled.
-            if (session.getMaxIdleTimeout() > 0 && session.isOpen()) {
+            final long timeout = session.getMaxIdleTimeout();
+            if (timeout < 1 || !session.isOpen()) {
+                return TimingWheel.UNSCHEDULE;
+            }
+
+            final long deadline = lastActivity + TimeUnit.MILLISECONDS.toNanos(timeout);
+            if (deadline - now > 0) {
+                // there was some activity since the task was scheduled.
+                return deadline;
+            }
+
+            // closing calls the endpoint; it must not block the thread which sweeps timeouts of all sessions.
+            final Runnable close = new Runnable() {
+                @Override
+                public void run() {
+                    closeIdle();
+                }
+            };
+            if (!socket.submitToMailbox(close)) {
                 try {
-                    session.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY, LocalizationMessages.SESSION_CLOSED_IDLE_TIMEOUT()));
-                } catch (IOException e) {
-                    LOGGER.log(Level.FINE, "Session could not been closed. " + e.getMessage());
+                    ((ExecutorServiceProvider) container).getExecutorService().execute(close);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.log(Level.FINE, e.getMessage(), e);
+                    close.run();
                 }
             }
+            return TimingWheel.UNSCHEDULE;
+        }
+
+        private void closeIdle() {
+            if (!isOpen()) {
+                return;
+            }
+
+            try {
+                close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY, LocalizationMessages.SESSION_CLOSED_IDLE_TIMEOUT()));
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Session could not been closed. " + e.getMessage());
+            }
         }
     }
 
-    private class HeartbeatCommand implements Runnable {
+    private class Heartbeat extends TimingWheel.Task {
 
         @Override
-        public void run() {
+        long onDue(long now) {
             TyrusSession session = TyrusSession.this;
-            if (session.isOpen() && session.getHeartbeatInterval() > 0) {
-                try {
-                    session.getBasicRemote().sendPong(null);
-                } catch (IOException e) {
-                    LOGGER.log(Level.FINE, "Pong could not have been sent " + e.getMessage());
-                }
+
+            final long interval = session.getHeartbeatInterval();
+            if (interval < 1 || !session.isOpen()) {
+                return TimingWheel.UNSCHEDULE;
+            }
+
+            final long lastOutgoing = lastOutgoingActivity;
+            if (lastOutgoing - lastHeartbeat > 0) {
+                // something has been sent since the last heartbeat, connection does not need to be kept alive.
+                lastHeartbeat = lastOutgoing;
+                return lastOutgoing + TimeUnit.MILLISECONDS.toNanos(interval);
+            }
+
+            try {
+                socket.sendHeartbeat();
+                recordOutgoingActivity();
+                lastHeartbeat = lastOutgoingActivity;
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Pong could not have been sent " + e.getMessage());
+                return TimingWheel.UNSCHEDULE;
             }
+            return now + TimeUnit.MILLISECONDS.toNanos(interval);
         }
     }
 }
\ No newline at end of file
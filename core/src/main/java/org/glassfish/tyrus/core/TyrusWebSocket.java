@@ -46,6 +46,8 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
 import javax.websocket.Extension;
@@ -69,6 +71,8 @@ import org.glassfish.tyrus.spi.UpgradeRequest;
  */
 public class TyrusWebSocket {
 
+    private static final Logger LOGGER = Logger.getLogger(TyrusWebSocket.class.getName());
+
     private final TyrusEndpointWrapper endpointWrapper;
     private final ProtocolHandler protocolHandler;
     private final CountDownLatch onConnectLatch = new CountDownLatch(1);
@@ -76,6 +80,10 @@ public class TyrusWebSocket {
     //TODO try refactoring to make immutable.
     private final AtomicReference<State> state = new AtomicReference<State>(State.NEW);
     private volatile MessageEventListener messageEventListener = MessageEventListener.NO_OP;
+    private volatile IncomingMemoryBudget.Account incomingMemoryAccount = IncomingMemoryBudget.NO_OP_ACCOUNT;
+    private volatile SessionDispatcher.Mailbox mailbox = null;
+    private volatile boolean closeQueued = false;
+    private volatile boolean inboundFailed = false;
 
     /**
      * Create new instance, set {@link ProtocolHandler} and register {@link TyrusEndpointWrapper}.
@@ -99,6 +107,57 @@ public class TyrusWebSocket {
         // do nothing.
     }
 
+    /**
+     * Set {@link IncomingMemoryBudget.Account} charged for inbound data buffered for this socket.
+     * <p/>
+     * Has to be set before {@link #onConnect(UpgradeRequest, String, List, String)} is invoked.
+     *
+     * @param incomingMemoryAccount account instance. {@code null} means that buffered data is not accounted.
+     */
+    public void setIncomingMemoryAccount(IncomingMemoryBudget.Account incomingMemoryAccount) {
+        this.incomingMemoryAccount = incomingMemoryAccount == null ? IncomingMemoryBudget.NO_OP_ACCOUNT : incomingMemoryAccount;
+    }
+
+    /**
+     * Get {@link IncomingMemoryBudget.Account} charged for inbound data buffered for this socket.
+     *
+     * @return account instance, never {@code null}.
+     */
+    public IncomingMemoryBudget.Account getIncomingMemoryAccount() {
+        return incomingMemoryAccount;
+    }
+
+    /**
+     * Set {@link SessionDispatcher} used for delivering received messages to the endpoint.
+     * <p/>
+     * Has to be set before {@link #onConnect(UpgradeRequest, String, List, String)} is invoked. When set, messages are
+     * delivered from dispatcher executor (in the order they were received); otherwise they are delivered directly
+     * from the thread which processes the incoming data.
+     *
+     * @param dispatcher dispatcher instance. {@code null} means that messages are delivered directly.
+     */
+    void setDispatcher(SessionDispatcher dispatcher) {
+        this.mailbox = dispatcher == null ? null : dispatcher.newMailbox(this);
+    }
+
+    /**
+     * Submit a task to the mailbox of this socket, if received messages are dispatched through one.
+     * <p/>
+     * The task is executed after all previously received messages are delivered and it is never discarded.
+     *
+     * @param task task to be executed.
+     * @return {@code true} if the task was submitted, {@code false} when the socket does not have a mailbox.
+     */
+    boolean submitToMailbox(Runnable task) {
+        final SessionDispatcher.Mailbox localMailbox = mailbox;
+        if (localMailbox == null) {
+            return false;
+        }
+
+        localMailbox.submitAlways(task);
+        return true;
+    }
+
     /**
      * Convenience method to determine if this {@link TyrusWebSocket} instance is connected.
      *
@@ -114,9 +173,32 @@ public class TyrusWebSocket {
      *
      * @param frame the close frame from the remote end-point.
      */
-    public synchronized void onClose(CloseFrame frame) {
+    public void onClose(final CloseFrame frame) {
+        final SessionDispatcher.Mailbox localMailbox = mailbox;
+
+        // close initiated by the remote endpoint is delivered after all previously received messages; once it is
+        // queued, closes caused by the same event (like the connection being closed right after the close frame)
+        // cannot overtake it.
+        if (localMailbox != null && (state.get() == State.CONNECTED || closeQueued)) {
+            closeQueued = true;
+            localMailbox.submitAlways(new Runnable() {
+                @Override
+                public void run() {
+                    if (state.get() != State.CLOSED) {
+                        processClose(frame);
+                    }
+                }
+            });
+        } else {
+            processClose(frame);
+        }
+    }
+
+    private synchronized void processClose(CloseFrame frame) {
         final CloseReason closeReason = frame.getCloseReason();
 
+        incomingMemoryAccount.close();
+
         if (endpointWrapper != null) {
             endpointWrapper.onClose(this, closeReason);
         }
@@ -152,10 +234,20 @@ public class TyrusWebSocket {
      * @param last  flag indicating whether or not the payload received is the
      *              final fragment of a message.
      */
-    public void onFragment(BinaryFrame frame, boolean last) {
+    public void onFragment(final BinaryFrame frame, final boolean last) {
         awaitOnConnect();
         if (endpointWrapper != null) {
-            endpointWrapper.onPartialMessage(this, ByteBuffer.wrap(frame.getPayloadData()), last);
+            final SessionDispatcher.Mailbox localMailbox = mailbox;
+            if (localMailbox == null) {
+                endpointWrapper.onPartialMessage(this, frame.getPayloadBuffer(), last);
+            } else {
+                localMailbox.submit(new InboundTask() {
+                    @Override
+                    void deliver() {
+                        endpointWrapper.onPartialMessage(TyrusWebSocket.this, frame.getPayloadBuffer(), last);
+                    }
+                });
+            }
             messageEventListener.onFrameReceived(frame.getFrameType(), frame.getPayloadLength());
         }
     }
@@ -168,10 +260,20 @@ public class TyrusWebSocket {
      * @param last  flag indicating whether or not the payload received is the
      *              final fragment of a message.
      */
-    public void onFragment(TextFrame frame, boolean last) {
+    public void onFragment(final TextFrame frame, final boolean last) {
         awaitOnConnect();
         if (endpointWrapper != null) {
-            endpointWrapper.onPartialMessage(this, frame.getTextPayload(), last);
+            final SessionDispatcher.Mailbox localMailbox = mailbox;
+            if (localMailbox == null) {
+                endpointWrapper.onPartialMessage(this, frame, last);
+            } else {
+                localMailbox.submit(new InboundTask() {
+                    @Override
+                    void deliver() {
+                        endpointWrapper.onPartialMessage(TyrusWebSocket.this, frame, last);
+                    }
+                });
+            }
             messageEventListener.onFrameReceived(frame.getFrameType(), frame.getPayloadLength());
         }
     }
@@ -181,10 +283,20 @@ public class TyrusWebSocket {
      *
      * @param frame the binary data received from the remote end-point.
      */
-    public void onMessage(BinaryFrame frame) {
+    public void onMessage(final BinaryFrame frame) {
         awaitOnConnect();
         if (endpointWrapper != null) {
-            endpointWrapper.onMessage(this, ByteBuffer.wrap(frame.getPayloadData()));
+            final SessionDispatcher.Mailbox localMailbox = mailbox;
+            if (localMailbox == null) {
+                endpointWrapper.onMessage(this, frame.getPayloadBuffer());
+            } else {
+                localMailbox.submit(new InboundTask() {
+                    @Override
+                    void deliver() {
+                        endpointWrapper.onMessage(TyrusWebSocket.this, frame.getPayloadBuffer());
+                    }
+                });
+            }
             messageEventListener.onFrameReceived(frame.getFrameType(), frame.getPayloadLength());
         }
     }
@@ -194,10 +306,20 @@ public class TyrusWebSocket {
      *
      * @param frame the text received from the remote end-point.
      */
-    public void onMessage(TextFrame frame) {
+    public void onMessage(final TextFrame frame) {
         awaitOnConnect();
         if (endpointWrapper != null) {
-            endpointWrapper.onMessage(this, frame.getTextPayload());
+            final SessionDispatcher.Mailbox localMailbox = mailbox;
+            if (localMailbox == null) {
+                endpointWrapper.onMessage(this, frame.getTextPayload());
+            } else {
+                localMailbox.submit(new InboundTask() {
+                    @Override
+                    void deliver() {
+                        endpointWrapper.onMessage(TyrusWebSocket.this, frame.getTextPayload());
+                    }
+                });
+            }
             messageEventListener.onFrameReceived(frame.getFrameType(), frame.getPayloadLength());
         }
     }
@@ -211,6 +333,8 @@ public class TyrusWebSocket {
     public void onPing(PingFrame frame) {
         awaitOnConnect();
         if (endpointWrapper != null) {
+            // control frame; not queued in the session mailbox, so it cannot be delayed by slow message handlers or
+            // dropped by mailbox overflow policy.
             endpointWrapper.onPing(this, ByteBuffer.wrap(frame.getPayloadData()));
             messageEventListener.onFrameReceived(frame.getFrameType(), frame.getPayloadLength());
         }
@@ -225,6 +349,8 @@ public class TyrusWebSocket {
     public void onPong(PongFrame frame) {
         awaitOnConnect();
         if (endpointWrapper != null) {
+            // control frame; not queued in the session mailbox, so it cannot be delayed by slow message handlers or
+            // dropped by mailbox overflow policy.
             endpointWrapper.onPong(this, ByteBuffer.wrap(frame.getPayloadData()));
             messageEventListener.onFrameReceived(frame.getFrameType(), frame.getPayloadLength());
         }
@@ -341,6 +467,16 @@ public class TyrusWebSocket {
         return send(new PongFrame(data));
     }
 
+    /**
+     * Sends an empty unsolicited <code>pong</code> frame as a heartbeat.
+     *
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    Future<Frame> sendHeartbeat() {
+        checkConnectedState();
+        return protocolHandler.sendHeartbeat();
+    }
+
     // return boolean, check return value
     private void awaitOnConnect() {
         try {
@@ -415,4 +551,31 @@ public class TyrusWebSocket {
     private enum State {
         NEW, CONNECTED, CLOSING, CLOSED
     }
+
+    /**
+     * Delivery of an incoming message queued in the session mailbox.
+     * <p/>
+     * Text payload is decoded when the task runs, so the failures which close the connection when processed on the
+     * reading thread (invalid UTF-8, too big message) are handled here the same way. Messages queued after the
+     * failed one are not delivered.
+     */
+    private abstract class InboundTask implements Runnable {
+
+        @Override
+        public void run() {
+            if (inboundFailed) {
+                return;
+            }
+
+            try {
+                deliver();
+            } catch (WebSocketException e) {
+                inboundFailed = true;
+                LOGGER.log(Level.FINE, e.getMessage(), e);
+                onClose(new CloseFrame(e.getCloseReason()));
+            }
+        }
+
+        abstract void deliver();
+    }
 }
@@ -48,6 +48,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -68,6 +70,7 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import org.glassfish.tyrus.core.monitoring.ApplicationEventListener;
 import org.glassfish.tyrus.core.monitoring.EndpointEventListener;
 import org.glassfish.tyrus.core.uri.Match;
+import org.glassfish.tyrus.core.uri.PathRouter;
 import org.glassfish.tyrus.core.wsadl.model.Application;
 import org.glassfish.tyrus.spi.Connection;
 import org.glassfish.tyrus.spi.ReadHandler;
@@ -106,6 +109,129 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      */
     public static final String MAX_SESSIONS = "org.glassfish.tyrus.maxSessionsPerApp";
 
+    /**
+     * Maximal number of upgrade requests processed concurrently by server application.
+     * <p/>
+     * An upgrade is in progress from the moment it is admitted until the connection is created and {@code onOpen} of
+     * the endpoint returns. When the limit is reached, new upgrade requests are rejected with
+     * {@code 503 Service Unavailable} and {@code Retry-After} header, unless a queue is configured (see
+     * {@link #UPGRADE_QUEUE_SIZE} and {@link #UPGRADE_QUEUE_TIMEOUT}); then they are rejected when they don't fit
+     * into the queue or are not admitted in time. Limit for a single endpoint can be set using
+     * {@link MaxConcurrentUpgrades}.
+     * <p/>
+     * The value must be {@link java.lang.Integer} or its primitive alternative.
+     * <p/>
+     * Default value is undefined, which means that concurrent upgrades are not limited.
+     *
+     * @see UpgradeAdmission
+     */
+    @Beta
+    public static final String MAX_CONCURRENT_UPGRADES = "org.glassfish.tyrus.maxConcurrentUpgrades";
+
+    /**
+     * Maximal number of upgrade requests waiting for admission when {@link #MAX_CONCURRENT_UPGRADES} is reached.
+     * <p/>
+     * Waiting requests are admitted in the order they arrived. A waiting request blocks the thread which processes
+     * it, which is usually a transport I/O thread; queue should be used only when the upgrades are expected to be
+     * admitted within a short {@link #UPGRADE_QUEUE_TIMEOUT}. The value must be {@link java.lang.Integer} or its
+     * primitive alternative; {@code 0} means that requests over the limit are rejected immediately.
+     * <p/>
+     * Default value is {@code 0}.
+     */
+    @Beta
+    public static final String UPGRADE_QUEUE_SIZE = "org.glassfish.tyrus.upgradeQueueSize";
+
+    /**
+     * Maximal time in milliseconds an upgrade request waits for admission.
+     * <p/>
+     * Also determines value of {@code Retry-After} header sent with rejected requests (rounded up to whole seconds).
+     * <p/>
+     * The value must be {@link java.lang.Long} or its primitive alternative.
+     * <p/>
+     * Default value is {@code 0}; rejected requests are then told to retry after one second.
+     */
+    @Beta
+    public static final String UPGRADE_QUEUE_TIMEOUT = "org.glassfish.tyrus.upgradeQueueTimeout";
+
+    /**
+     * Maximal amount of inbound data buffered by all connections of the container.
+     * <p/>
+     * Counted are incomplete frames and partial messages waiting to be completed or consumed by the application.
+     * When the limit is exceeded, reading is suspended on connections which buffer more than their fair share of it;
+     * reading is resumed when the buffered data drops below 3/4 of the limit.
+     * <p/>
+     * The value must be {@link java.lang.Long} or its primitive alternative and represents the limit in bytes.
+     * Can be also set in {@code ClientManager} properties to limit all client connections created by the same
+     * client container.
+     * <p/>
+     * Default value is undefined, which means that buffered inbound data are not limited (except
+     * {@link #INCOMING_BUFFER_SIZE} and maximal message sizes, which apply per connection).
+     */
+    public static final String INCOMING_MEMORY_BUDGET = "org.glassfish.tyrus.incomingMemoryBudget";
+
+    /**
+     * Maximal number of received messages queued for one session when messages are dispatched through session
+     * mailboxes.
+     * <p/>
+     * Setting this property enables dispatch mode in which received messages are not delivered to endpoints from the
+     * thread which reads them from the connection; each session gets a serial mailbox executed on shared executor
+     * (see {@link #DISPATCH_EXECUTOR}), so a slow message handler does not block reading from other connections.
+     * Messages of one session are still delivered one by one, in the order they were received. Ping and pong frames
+     * are not queued; they are processed directly, so pings are answered even when the mailbox is full.
+     * <p/>
+     * The value must be {@link java.lang.Integer} or its primitive alternative.
+     * <p/>
+     * Default value is undefined, which means that messages are delivered directly.
+     *
+     * @see SessionDispatcher
+     */
+    @Beta
+    public static final String DISPATCH_MAILBOX_DEPTH = "org.glassfish.tyrus.dispatchMailboxDepth";
+
+    /**
+     * Action taken when a message is received and the session mailbox is full.
+     * <p/>
+     * The value must be name of one of {@link SessionDispatcher.OverflowPolicy} constants ({@code "SUSPEND_READING"}
+     * or {@code "CLOSE"}) or the constant itself. Used only when {@link #DISPATCH_MAILBOX_DEPTH} is set.
+     * <p/>
+     * Default value is {@code "SUSPEND_READING"}.
+     */
+    @Beta
+    public static final String DISPATCH_OVERFLOW_POLICY = "org.glassfish.tyrus.dispatchOverflowPolicy";
+
+    /**
+     * {@link java.util.concurrent.Executor} used for running session mailboxes.
+     * <p/>
+     * Used only when {@link #DISPATCH_MAILBOX_DEPTH} is set.
+     * <p/>
+     * Default value is undefined, which means that executor service of the container is used.
+     */
+    @Beta
+    public static final String DISPATCH_EXECUTOR = "org.glassfish.tyrus.dispatchExecutor";
+
+    /**
+     * Run tasks of container executor service in virtual threads.
+     * <p/>
+     * Container executor service runs streaming message handlers ({@link java.io.Reader} and
+     * {@link java.io.InputStream}) and other tasks which may block for a long time, each of them occupying a thread.
+     * With virtual threads, blocked tasks do not consume platform threads. Virtual threads are available on JDK 21
+     * and newer; when they are not available, the property is ignored. The property does not have any effect when
+     * the container uses managed executor service provided by the application server.
+     * <p/>
+     * The value must be {@link java.lang.Boolean} or its primitive alternative. Can be set in {@code ClientManager}
+     * properties, in properties of Grizzly server container or as a servlet context init parameter; value of system
+     * property with the same name is used when it is not set in any of these places.
+     * <p/>
+     * JDK client container processes data read from its connections (including calls of message handlers) in virtual
+     * threads as well; its asynchronous channel group keeps running on platform threads.
+     * <p/>
+     * Default value is {@code false}.
+     *
+     * @see VirtualThreads
+     */
+    @Beta
+    public static final String VIRTUAL_THREADS = "org.glassfish.tyrus.virtualThreads";
+
     /**
      * Wsadl support.
      * <p/>
@@ -122,6 +248,8 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
     public static final String WSADL_SUPPORT = "org.glassfish.tyrus.server.wsadl";
 
     private static final int BUFFER_STEP_SIZE = 256;
+    private static final long DEFAULT_UPGRADE_QUEUE_TIMEOUT = 0;
+    private static final String RETRY_AFTER = "Retry-After";
     private static final Logger LOGGER = Logger.getLogger(UpgradeRequest.WEBSOCKET);
 
     private static final UpgradeInfo NOT_APPLICABLE_UPGRADE_INFO = new NoConnectionUpgradeInfo(UpgradeStatus.NOT_APPLICABLE);
@@ -129,6 +257,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
     private static final TyrusEndpointWrapper.SessionListener NO_OP_SESSION_LISTENER = new TyrusEndpointWrapper.SessionListener() {};
 
     private final Set<TyrusEndpointWrapper> endpointWrappers = Collections.newSetFromMap(new ConcurrentHashMap<TyrusEndpointWrapper, Boolean>());
+    private final PathRouter pathRouter = new PathRouter();
     private final ComponentProviderService componentProviderService = ComponentProviderService.create();
     private final WebSocketContainer webSocketContainer;
 
@@ -137,6 +266,11 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
     private final ClusterContext clusterContext;
     private final ApplicationEventListener applicationEventListener;
     private final TyrusEndpointWrapper.SessionListener sessionListener;
+    private final IncomingMemoryBudget incomingMemoryBudget;
+    private final Executor readResumeExecutor;
+    private final SessionDispatcher sessionDispatcher;
+    private final UpgradeAdmission upgradeAdmission;
+    private final List<String> retryAfter;
 
     /**
      * Create {@link org.glassfish.tyrus.core.TyrusWebSocketEngine.TyrusWebSocketEngineBuilder}
@@ -159,15 +293,43 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      * @param clusterContext           cluster context instance. {@code null} indicates standalone mode.
      * @param applicationEventListener listener used to collect monitored events.
      * @param maxSessions              maximal number of open sessions per application. If {@code null}, no limit is applied.
+     * @param incomingMemoryBudget     limit of buffered inbound data in bytes. If {@code null}, no limit is applied.
+     * @param dispatchMailboxDepth     session mailbox depth. If {@code null}, messages are delivered directly.
+     * @param dispatchOverflowPolicy   action taken when session mailbox is full.
+     * @param dispatchExecutor         executor running session mailboxes. If {@code null}, container executor is used.
+     * @param maxConcurrentUpgrades    maximal number of concurrent upgrades. If {@code null}, no limit is applied.
+     * @param upgradeQueueSize         maximal number of upgrades waiting for admission. If {@code null}, upgrades over
+     *                                 the limit are not queued and are rejected immediately.
+     * @param upgradeQueueTimeout      maximal time in milliseconds an upgrade waits for admission. If {@code null},
+     *                                 {@code 0} is used.
      */
     private TyrusWebSocketEngine(WebSocketContainer webSocketContainer, Integer incomingBufferSize,
                                  ClusterContext clusterContext, ApplicationEventListener applicationEventListener,
-                                 final Integer maxSessions) {
+                                 final Integer maxSessions, Long incomingMemoryBudget, Integer dispatchMailboxDepth,
+                                 SessionDispatcher.OverflowPolicy dispatchOverflowPolicy, Executor dispatchExecutor,
+                                 Integer maxConcurrentUpgrades, Integer upgradeQueueSize, Long upgradeQueueTimeout) {
         if (incomingBufferSize != null) {
             this.incomingBufferSize = incomingBufferSize;
         }
         this.webSocketContainer = webSocketContainer;
         this.clusterContext = clusterContext;
+        this.readResumeExecutor = webSocketContainer instanceof ExecutorServiceProvider ?
+                ((ExecutorServiceProvider) webSocketContainer).getExecutorService() : null;
+        this.incomingMemoryBudget = incomingMemoryBudget == null ? null :
+                new IncomingMemoryBudget(incomingMemoryBudget, readResumeExecutor);
+        if (dispatchMailboxDepth == null) {
+            this.sessionDispatcher = null;
+        } else {
+            final Executor executor = dispatchExecutor != null ? dispatchExecutor : readResumeExecutor;
+            if (executor == null) {
+                throw new IllegalStateException(LocalizationMessages.DISPATCH_EXECUTOR_MISSING());
+            }
+            this.sessionDispatcher = new SessionDispatcher(executor, dispatchMailboxDepth, dispatchOverflowPolicy);
+        }
+        final long queueTimeout = upgradeQueueTimeout == null ? DEFAULT_UPGRADE_QUEUE_TIMEOUT : upgradeQueueTimeout;
+        this.upgradeAdmission = maxConcurrentUpgrades == null ? null : new UpgradeAdmission(maxConcurrentUpgrades,
+                upgradeQueueSize == null ? 0 : upgradeQueueSize, queueTimeout);
+        this.retryAfter = Collections.singletonList(Long.toString(Math.max(1, (queueTimeout + 999) / 1000)));
         if (applicationEventListener == null) {
             // create dummy instance in order not to have to check null pointer
             this.applicationEventListener = ApplicationEventListener.NO_OP;
@@ -222,7 +384,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         final String requestPath = request.getRequestUri();
 
-        for (Match m : Match.getAllMatches(requestPath, endpointWrappers)) {
+        for (Match m : pathRouter.getAllMatches(requestPath)) {
             final TyrusEndpointWrapper endpointWrapper = m.getEndpointWrapper();
 
             for (String name : m.getParameterNames()) {
@@ -249,24 +411,21 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                     return HANDSHAKE_FAILED_UPGRADE_INFO;
                 }
 
-                final ExtendedExtension.ExtensionContext extensionContext = new ExtendedExtension.ExtensionContext() {
-
-                    private final Map<String, Object> properties = new HashMap<String, Object>();
+                final AdmissionPermit permit = admit(endpointWrapper, request, response);
+                if (permit == AdmissionPermit.REJECTED) {
+                    return HANDSHAKE_FAILED_UPGRADE_INFO;
+                }
 
-                    @Override
-                    public Map<String, Object> getProperties() {
-                        return properties;
+                boolean upgraded = false;
+                try {
+                    final UpgradeInfo upgradeInfo = handshake(endpointWrapper, protocolHandler, request, response, permit);
+                    upgraded = true;
+                    return upgradeInfo;
+                } finally {
+                    if (!upgraded && permit != null) {
+                        permit.release();
                     }
-                };
-
-                protocolHandler.handshake(endpointWrapper, request, response, extensionContext);
-
-                if (clusterContext != null && request.getHeaders().get(UpgradeRequest.CLUSTER_CONNECTION_ID_HEADER) == null) {
-                    // TODO: we might need to introduce some property to check whether we should put this header into the response.
-                    response.getHeaders().put(UpgradeRequest.CLUSTER_CONNECTION_ID_HEADER, Collections.singletonList(clusterContext.createConnectionId()));
                 }
-
-                return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBufferSize, request, response, extensionContext);
             }
         } catch (HandshakeException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
@@ -278,18 +437,74 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         return NOT_APPLICABLE_UPGRADE_INFO;
     }
 
+    private UpgradeInfo handshake(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler,
+                                  UpgradeRequest request, UpgradeResponse response, AdmissionPermit permit) {
+        final ExtendedExtension.ExtensionContext extensionContext = new ExtendedExtension.ExtensionContext() {
+
+            private final Map<String, Object> properties = new HashMap<String, Object>();
+
+            @Override
+            public Map<String, Object> getProperties() {
+                return properties;
+            }
+        };
+
+        protocolHandler.handshake(endpointWrapper, request, response, extensionContext);
+
+        if (clusterContext != null && request.getHeaders().get(UpgradeRequest.CLUSTER_CONNECTION_ID_HEADER) == null) {
+            // TODO: we might need to introduce some property to check whether we should put this header into the response.
+            response.getHeaders().put(UpgradeRequest.CLUSTER_CONNECTION_ID_HEADER, Collections.singletonList(clusterContext.createConnectionId()));
+        }
+
+        return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBufferSize, request, response,
+                extensionContext, incomingMemoryBudget, readResumeExecutor, sessionDispatcher, permit);
+    }
+
+    /**
+     * Admit the upgrade by application-wide and endpoint admission.
+     *
+     * @return permit to be released when the upgrade is finished, {@code null} when no admission is configured or
+     * {@link AdmissionPermit#REJECTED} when the upgrade was rejected (response is already set).
+     */
+    private AdmissionPermit admit(TyrusEndpointWrapper endpointWrapper, UpgradeRequest request, UpgradeResponse response) {
+        final UpgradeAdmission endpointAdmission = endpointWrapper.getUpgradeAdmission();
+        if (upgradeAdmission == null && endpointAdmission == null) {
+            return null;
+        }
+
+        if (upgradeAdmission != null && !upgradeAdmission.acquire()) {
+            return reject(upgradeAdmission, request, response);
+        }
+        if (endpointAdmission != null && !endpointAdmission.acquire()) {
+            if (upgradeAdmission != null) {
+                upgradeAdmission.release();
+            }
+            return reject(endpointAdmission, request, response);
+        }
+
+        return new AdmissionPermit(upgradeAdmission, endpointAdmission);
+    }
+
+    private AdmissionPermit reject(UpgradeAdmission admission, UpgradeRequest request, UpgradeResponse response) {
+        LOGGER.fine(LocalizationMessages.UPGRADE_ADMISSION_REJECTED(request.getRequestUri(), admission.getMaxConcurrentUpgrades()));
+        response.setStatus(503);
+        response.getHeaders().put(RETRY_AFTER, retryAfter);
+        return AdmissionPermit.REJECTED;
+    }
+
     private static class TyrusReadHandler implements ReadHandler {
 
         private final ProtocolHandler protocolHandler;
         private final TyrusWebSocket socket;
         private final TyrusEndpointWrapper endpointWrapper;
         private final int incomingBufferSize;
-        private final ExtendedExtension.ExtensionContext extensionContext;
+        private final IncomingMemoryBudget.Account account;
 
         private volatile ByteBuffer buffer;
+        private int charged = 0;
 
-        private TyrusReadHandler(ProtocolHandler protocolHandler, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper, int incomingBufferSize, ExtendedExtension.ExtensionContext extensionContext) {
-            this.extensionContext = extensionContext;
+        private TyrusReadHandler(ProtocolHandler protocolHandler, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper, int incomingBufferSize) {
+            this.account = socket.getIncomingMemoryAccount();
             this.protocolHandler = protocolHandler;
             this.socket = socket;
             this.endpointWrapper = endpointWrapper;
@@ -320,21 +535,10 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
                         if (incomingFrame == null) {
                             buffer = data;
+                            updateCharge(data.remaining());
                             break;
                         } else {
-                            Frame frame = incomingFrame;
-
-                            for (Extension extension : protocolHandler.getExtensions()) {
-                                if (extension instanceof ExtendedExtension) {
-                                    try {
-                                        frame = ((ExtendedExtension) extension).processIncoming(extensionContext, frame);
-                                    } catch (Throwable t) {
-                                        LOGGER.log(Level.FINE, String.format("Extension '%s' threw an exception during processIncoming method invocation: \"%s\".", extension.getName(), t.getMessage()), t);
-                                    }
-                                }
-                            }
-
-                            protocolHandler.process(frame, socket);
+                            protocolHandler.process(protocolHandler.processIncoming(incomingFrame), socket);
                         }
                     } while (true);
                 }
@@ -353,6 +557,21 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                 }
             }
         }
+
+        /**
+         * Charge or release the difference between currently retained incomplete frame and the one retained
+         * after previous invocation.
+         *
+         * @param retained number of bytes retained till next {@link #handle(ByteBuffer)} invocation.
+         */
+        private void updateCharge(int retained) {
+            if (retained > charged) {
+                account.charge(retained - charged);
+            } else if (retained < charged) {
+                account.release(charged - retained);
+            }
+            charged = retained;
+        }
     }
 
     /**
@@ -375,6 +594,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
     private void register(TyrusEndpointWrapper endpointWrapper) throws DeploymentException {
         checkPath(endpointWrapper);
         endpointWrappers.add(endpointWrapper);
+        pathRouter.add(endpointWrapper);
     }
 
     @Override
@@ -441,11 +661,10 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
     }
 
     private void checkPath(TyrusEndpointWrapper endpoint) throws DeploymentException {
-        for (TyrusEndpointWrapper endpointWrapper : endpointWrappers) {
-            if (Match.isEquivalent(endpoint.getEndpointPath(), endpointWrapper.getEndpointPath())) {
-                throw new DeploymentException(LocalizationMessages.EQUIVALENT_PATHS(endpoint.getEndpointPath(),
-                        endpointWrapper.getEndpointPath()));
-            }
+        final TyrusEndpointWrapper endpointWrapper = pathRouter.getEquivalent(endpoint.getEndpointPath());
+        if (endpointWrapper != null) {
+            throw new DeploymentException(LocalizationMessages.EQUIVALENT_PATHS(endpoint.getEndpointPath(),
+                    endpointWrapper.getEndpointPath()));
         }
     }
 
@@ -457,6 +676,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      */
     public void unregister(TyrusEndpointWrapper endpointWrapper) {
         endpointWrappers.remove(endpointWrapper);
+        pathRouter.remove(endpointWrapper);
         applicationEventListener.onEndpointUnregistered(endpointWrapper.getEndpointPath());
     }
 
@@ -478,7 +698,37 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         }
     }
 
-    private static class SuccessfulUpgradeInfo implements UpgradeInfo {
+    /**
+     * Admission permits of one upgrade.
+     * <p/>
+     * Released exactly once, either when the handshake fails or when the connection is created.
+     */
+    private static final class AdmissionPermit {
+
+        private static final AdmissionPermit REJECTED = new AdmissionPermit(null, null);
+
+        private final UpgradeAdmission applicationAdmission;
+        private final UpgradeAdmission endpointAdmission;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private AdmissionPermit(UpgradeAdmission applicationAdmission, UpgradeAdmission endpointAdmission) {
+            this.applicationAdmission = applicationAdmission;
+            this.endpointAdmission = endpointAdmission;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                if (endpointAdmission != null) {
+                    endpointAdmission.release();
+                }
+                if (applicationAdmission != null) {
+                    applicationAdmission.release();
+                }
+            }
+        }
+    }
+
+    private static class SuccessfulUpgradeInfo implements UpgradeInfo, UpgradeInfo.Abortable {
 
         private final TyrusEndpointWrapper endpointWrapper;
         private final ProtocolHandler protocolHandler;
@@ -486,15 +736,25 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final UpgradeRequest upgradeRequest;
         private final UpgradeResponse upgradeResponse;
         private final ExtendedExtension.ExtensionContext extensionContext;
+        private final IncomingMemoryBudget incomingMemoryBudget;
+        private final Executor readResumeExecutor;
+        private final SessionDispatcher sessionDispatcher;
+        private final AdmissionPermit permit;
 
         SuccessfulUpgradeInfo(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize,
-                              UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse, ExtendedExtension.ExtensionContext extensionContext) {
+                              UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse, ExtendedExtension.ExtensionContext extensionContext,
+                              IncomingMemoryBudget incomingMemoryBudget, Executor readResumeExecutor, SessionDispatcher sessionDispatcher,
+                              AdmissionPermit permit) {
             this.endpointWrapper = endpointWrapper;
             this.protocolHandler = protocolHandler;
             this.incomingBufferSize = incomingBufferSize;
             this.upgradeRequest = upgradeRequest;
             this.upgradeResponse = upgradeResponse;
             this.extensionContext = extensionContext;
+            this.incomingMemoryBudget = incomingMemoryBudget;
+            this.readResumeExecutor = readResumeExecutor;
+            this.sessionDispatcher = sessionDispatcher;
+            this.permit = permit;
         }
 
         @Override
@@ -504,7 +764,21 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         @Override
         public Connection createConnection(Writer writer, Connection.CloseListener closeListener) {
-            return new TyrusConnection(endpointWrapper, protocolHandler, incomingBufferSize, writer, closeListener, upgradeRequest, upgradeResponse, extensionContext);
+            final IncomingMemoryBudget.Account account = incomingMemoryBudget == null ?
+                    IncomingMemoryBudget.newUnlimitedAccount(readResumeExecutor) : incomingMemoryBudget.newAccount();
+            try {
+                return new TyrusConnection(endpointWrapper, protocolHandler, incomingBufferSize, writer, closeListener, upgradeRequest, upgradeResponse, extensionContext, account, sessionDispatcher);
+            } finally {
+                // onOpen was already invoked, the upgrade is finished.
+                abort();
+            }
+        }
+
+        @Override
+        public void abort() {
+            if (permit != null) {
+                permit.release();
+            }
         }
     }
 
@@ -518,6 +792,28 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         return applicationEventListener;
     }
 
+    /**
+     * Get {@link SessionDispatcher} delivering received messages to endpoints.
+     *
+     * @return dispatcher instance or {@code null} when messages are delivered directly.
+     * @see #DISPATCH_MAILBOX_DEPTH
+     */
+    @Beta
+    public SessionDispatcher getSessionDispatcher() {
+        return sessionDispatcher;
+    }
+
+    /**
+     * Get admission limiting concurrent upgrades to all endpoints of this engine.
+     *
+     * @return admission instance or {@code null} when concurrent upgrades are not limited.
+     * @see #MAX_CONCURRENT_UPGRADES
+     */
+    @Beta
+    public UpgradeAdmission getUpgradeAdmission() {
+        return upgradeAdmission;
+    }
+
     /**
      * Get {@link org.glassfish.tyrus.core.wsadl.model.Application} representing current set of deployed endpoints.
      *
@@ -535,7 +831,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         return application;
     }
 
-    static class TyrusConnection implements Connection {
+    static class TyrusConnection implements Connection, Connection.ReadControllable {
 
         private final ReadHandler readHandler;
         private final Writer writer;
@@ -543,12 +839,17 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final TyrusWebSocket socket;
         private final ExtendedExtension.ExtensionContext extensionContext;
         private final List<Extension> extensions;
+        private final IncomingMemoryBudget.Account account;
 
         TyrusConnection(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize, Writer writer, CloseListener closeListener,
-                        UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse, ExtendedExtension.ExtensionContext extensionContext) {
+                        UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse, ExtendedExtension.ExtensionContext extensionContext,
+                        IncomingMemoryBudget.Account account, SessionDispatcher sessionDispatcher) {
             protocolHandler.setWriter(writer);
             extensions = protocolHandler.getExtensions();
+            this.account = account;
             this.socket = endpointWrapper.createSocket(protocolHandler);
+            this.socket.setIncomingMemoryAccount(account);
+            this.socket.setDispatcher(sessionDispatcher);
 
             // TODO: we might need to introduce some property to check whether we should put this header into the response.
             final List<String> connectionIdHeader = upgradeRequest.getHeaders().get(UpgradeRequest.CLUSTER_CONNECTION_ID_HEADER);
@@ -561,7 +862,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
             this.socket.onConnect(upgradeRequest, protocolHandler.getSubProtocol(), extensions, connectionId);
 
-            this.readHandler = new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBufferSize, extensionContext);
+            this.readHandler = new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBufferSize);
             this.writer = writer;
             this.closeListener = closeListener;
             this.extensionContext = extensionContext;
@@ -582,8 +883,15 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             return closeListener;
         }
 
+        @Override
+        public void setReadControl(ReadControl readControl) {
+            account.setReadControl(readControl);
+        }
+
         @Override
         public void close(CloseReason reason) {
+            account.close();
+
             if (!socket.isConnected()) {
                 return;
             }
@@ -613,6 +921,13 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private ClusterContext clusterContext = null;
         private ApplicationEventListener applicationEventListener = null;
         private Integer maxSessions = null;
+        private Long incomingMemoryBudget = null;
+        private Integer dispatchMailboxDepth = null;
+        private SessionDispatcher.OverflowPolicy dispatchOverflowPolicy = null;
+        private Executor dispatchExecutor = null;
+        private Integer maxConcurrentUpgrades = null;
+        private Integer upgradeQueueSize = null;
+        private Long upgradeQueueTimeout = null;
 
         /**
          * Create new {@link org.glassfish.tyrus.core.TyrusWebSocketEngine} instance with
@@ -622,7 +937,8 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
          */
         public TyrusWebSocketEngine build() {
             return new TyrusWebSocketEngine(webSocketContainer, incomingBufferSize, clusterContext,
-                    applicationEventListener, maxSessions);
+                    applicationEventListener, maxSessions, incomingMemoryBudget, dispatchMailboxDepth,
+                    dispatchOverflowPolicy, dispatchExecutor, maxConcurrentUpgrades, upgradeQueueSize, upgradeQueueTimeout);
         }
 
         TyrusWebSocketEngineBuilder(WebSocketContainer webSocketContainer) {
@@ -683,5 +999,97 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             this.maxSessions = maxSessions;
             return this;
         }
+
+        /**
+         * Set maximal amount of inbound data buffered by all connections.
+         *
+         * @param incomingMemoryBudget limit in bytes. If {@code null}, no limit is applied.
+         * @return updated builder.
+         * @see #INCOMING_MEMORY_BUDGET
+         */
+        public TyrusWebSocketEngineBuilder incomingMemoryBudget(Long incomingMemoryBudget) {
+            this.incomingMemoryBudget = incomingMemoryBudget;
+            return this;
+        }
+
+        /**
+         * Set maximal number of received messages queued for one session.
+         *
+         * @param dispatchMailboxDepth mailbox depth. If {@code null}, messages are delivered directly from the thread
+         *                             which reads them.
+         * @return updated builder.
+         * @see #DISPATCH_MAILBOX_DEPTH
+         */
+        @Beta
+        public TyrusWebSocketEngineBuilder dispatchMailboxDepth(Integer dispatchMailboxDepth) {
+            this.dispatchMailboxDepth = dispatchMailboxDepth;
+            return this;
+        }
+
+        /**
+         * Set action taken when session mailbox is full.
+         *
+         * @param dispatchOverflowPolicy overflow policy. If {@code null},
+         *                               {@link SessionDispatcher.OverflowPolicy#SUSPEND_READING} is used.
+         * @return updated builder.
+         * @see #DISPATCH_OVERFLOW_POLICY
+         */
+        @Beta
+        public TyrusWebSocketEngineBuilder dispatchOverflowPolicy(SessionDispatcher.OverflowPolicy dispatchOverflowPolicy) {
+            this.dispatchOverflowPolicy = dispatchOverflowPolicy;
+            return this;
+        }
+
+        /**
+         * Set executor running session mailboxes.
+         *
+         * @param dispatchExecutor executor instance. If {@code null}, executor service of the container is used.
+         * @return updated builder.
+         * @see #DISPATCH_EXECUTOR
+         */
+        @Beta
+        public TyrusWebSocketEngineBuilder dispatchExecutor(Executor dispatchExecutor) {
+            this.dispatchExecutor = dispatchExecutor;
+            return this;
+        }
+
+        /**
+         * Set maximal number of concurrently processed upgrade requests.
+         *
+         * @param maxConcurrentUpgrades maximal number of concurrent upgrades. If {@code null}, no limit is applied.
+         * @return updated builder.
+         * @see #MAX_CONCURRENT_UPGRADES
+         */
+        @Beta
+        public TyrusWebSocketEngineBuilder maxConcurrentUpgrades(Integer maxConcurrentUpgrades) {
+            this.maxConcurrentUpgrades = maxConcurrentUpgrades;
+            return this;
+        }
+
+        /**
+         * Set maximal number of upgrade requests waiting for admission.
+         *
+         * @param upgradeQueueSize queue size. If {@code null}, requests over the limit are not queued.
+         * @return updated builder.
+         * @see #UPGRADE_QUEUE_SIZE
+         */
+        @Beta
+        public TyrusWebSocketEngineBuilder upgradeQueueSize(Integer upgradeQueueSize) {
+            this.upgradeQueueSize = upgradeQueueSize;
+            return this;
+        }
+
+        /**
+         * Set maximal time an upgrade request waits for admission.
+         *
+         * @param upgradeQueueTimeout timeout in milliseconds. If {@code null}, default value is used.
+         * @return updated builder.
+         * @see #UPGRADE_QUEUE_TIMEOUT
+         */
+        @Beta
+        public TyrusWebSocketEngineBuilder upgradeQueueTimeout(Long upgradeQueueTimeout) {
+            this.upgradeQueueTimeout = upgradeQueueTimeout;
+            return this;
+        }
     }
 }
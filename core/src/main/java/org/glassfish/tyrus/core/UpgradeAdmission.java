@@ -0,0 +1,213 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Limits number of upgrade requests processed concurrently.
+ * <p/>
+ * An upgrade occupies one permit from the moment it is admitted until the connection is created and
+ * {@link javax.websocket.Endpoint#onOpen(javax.websocket.Session, javax.websocket.EndpointConfig)} returns (or
+ * until the handshake fails). When all permits are taken, up to {@link #getQueueSize()} requests wait for a permit
+ * in arrival order, each of them at most {@link #getQueueTimeout()} milliseconds; other requests are rejected
+ * immediately and the engine responds to them with {@code 503 Service Unavailable}.
+ * <p/>
+ * Admission also counts admitted, queued and rejected upgrades.
+ *
+ * @see TyrusWebSocketEngine#MAX_CONCURRENT_UPGRADES
+ * @see MaxConcurrentUpgrades
+ */
+@Beta
+public class UpgradeAdmission {
+
+    private final int maxConcurrentUpgrades;
+    private final int queueSize;
+    private final long queueTimeout;
+    private final Semaphore permits;
+
+    private final AtomicInteger waiting = new AtomicInteger(0);
+    private final AtomicLong admitted = new AtomicLong(0);
+    private final AtomicLong queued = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    /**
+     * Create new admission.
+     *
+     * @param maxConcurrentUpgrades maximal number of upgrades processed concurrently, has to be positive.
+     * @param queueSize             maximal number of upgrades waiting for a permit. {@code 0} means that upgrades
+     *                              are rejected as soon as all permits are taken.
+     * @param queueTimeout          maximal time in milliseconds an upgrade waits for a permit.
+     */
+    public UpgradeAdmission(int maxConcurrentUpgrades, int queueSize, long queueTimeout) {
+        if (maxConcurrentUpgrades <= 0) {
+            throw new IllegalArgumentException(LocalizationMessages.UPGRADE_ADMISSION_LIMIT_INVALID(maxConcurrentUpgrades));
+        }
+
+        this.maxConcurrentUpgrades = maxConcurrentUpgrades;
+        this.queueSize = Math.max(0, queueSize);
+        this.queueTimeout = Math.max(0, queueTimeout);
+        this.permits = new Semaphore(maxConcurrentUpgrades, true);
+    }
+
+    /**
+     * Try to admit an upgrade.
+     * <p/>
+     * Blocks the calling thread when the upgrade is queued. Every successful call has to be followed by
+     * {@link #release()}.
+     *
+     * @return {@code true} when the upgrade was admitted, {@code false} when it was rejected.
+     */
+    public boolean acquire() {
+        try {
+            // timed acquire honours the fairness, so an upgrade arriving now does not overtake the queued ones.
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                admitted.incrementAndGet();
+                return true;
+            }
+
+            if (waiting.incrementAndGet() > queueSize) {
+                waiting.decrementAndGet();
+                rejected.incrementAndGet();
+                return false;
+            }
+
+            queued.incrementAndGet();
+            try {
+                if (permits.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS)) {
+                    admitted.incrementAndGet();
+                    return true;
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Return permit obtained by {@link #acquire()}.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Get maximal number of upgrades processed concurrently.
+     *
+     * @return maximal number of concurrent upgrades.
+     */
+    public int getMaxConcurrentUpgrades() {
+        return maxConcurrentUpgrades;
+    }
+
+    /**
+     * Get maximal number of upgrades waiting for a permit.
+     *
+     * @return queue size.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Get maximal time an upgrade waits for a permit.
+     *
+     * @return queue timeout in milliseconds.
+     */
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    /**
+     * Get number of upgrades being processed at the moment.
+     *
+     * @return number of upgrades in progress.
+     */
+    public int getInProgressCount() {
+        return maxConcurrentUpgrades - permits.availablePermits();
+    }
+
+    /**
+     * Get number of upgrades waiting for a permit at the moment.
+     *
+     * @return number of waiting upgrades.
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    /**
+     * Get number of admitted upgrades (including those which were queued before being admitted).
+     *
+     * @return number of admitted upgrades.
+     */
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    /**
+     * Get number of upgrades which had to wait for a permit.
+     *
+     * @return number of queued upgrades.
+     */
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Get number of rejected upgrades.
+     *
+     * @return number of rejected upgrades.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
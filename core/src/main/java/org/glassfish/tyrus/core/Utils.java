@@ -79,6 +79,19 @@ public class Utils {
      * @return split list of values.
      */
     public static List<String> parseHeaderValue(String headerValue) {
+        // single unquoted value (by far the most common case) does not need the state machine below.
+        if (headerValue.indexOf(',') == -1 && headerValue.indexOf('\"') == -1) {
+            final List<String> values = new ArrayList<String>(1);
+            int start = 0;
+            while (start < headerValue.length() && Character.isWhitespace(headerValue.charAt(start))) {
+                start++;
+            }
+            if (start < headerValue.length()) {
+                values.add(headerValue.substring(start));
+            }
+            return values;
+        }
+
         List<String> values = new ArrayList<String>();
 
         // 0 - start of new header value
@@ -360,18 +373,22 @@ public class Utils {
         if (properties != null) {
             final Object o = properties.get(key);
             if (o != null) {
-                if (type.isAssignableFrom(o.getClass())) {
-                    //noinspection unchecked
-                    return (T) o;
+                if (type.isInstance(o)) {
+                    return type.cast(o);
                 } else if (type.equals(Integer.class)) {
-                    //noinspection unchecked
-                    return (T) Integer.valueOf(o.toString());
+                    return type.cast(Integer.valueOf(o.toString()));
                 } else if (type.equals(Long.class)) {
-                    //noinspection unchecked
-                    return (T) Long.valueOf(o.toString());
+                    return type.cast(Long.valueOf(o.toString()));
                 } else if (type.equals(Boolean.class)) {
-                    //noinspection unchecked
-                    return (T) (Boolean) (o.toString().equals("1") || Boolean.valueOf(o.toString()));
+                    return type.cast(o.toString().equals("1") || Boolean.valueOf(o.toString()));
+                } else if (type.isEnum()) {
+                    final String name = o.toString().trim().toUpperCase();
+                    for (T constant : type.getEnumConstants()) {
+                        if (((Enum<?>) constant).name().equals(name)) {
+                            return constant;
+                        }
+                    }
+                    return defaultValue;
                 }
             }
         }
@@ -56,6 +56,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.websocket.CloseReason;
 import javax.websocket.EncodeException;
@@ -83,24 +84,41 @@ public class ClusterSession implements Session {
     private final String sessionId;
     private final ClusterContext clusterContext;
     private final Map<DistributedMapKey, Object> distributedPropertyMap;
+    // values of immutable keys, cached after the first read; the map can be remote.
+    private final AtomicReferenceArray<Object> immutableProperties =
+            new AtomicReferenceArray<Object>(DistributedMapKey.values().length);
+    private volatile Map<String, Object> userProperties;
 
     public static enum DistributedMapKey implements Serializable {
-        NEGOTIATED_SUBPROTOCOL("negotiatedSubprotocol"),
-        NEGOTIATED_EXTENSIONS("negotiatedExtensions"),
-        SECURE("secure"),
-        MAX_IDLE_TIMEOUT("maxIdleTimeout"),
-        MAX_BINARY_MESSAGE_BUFFER_SIZE("maxBinaryBufferSize"),
-        MAX_TEXT_MESSAGE_BUFFER_SIZE("maxTextBufferSize"),
-        REQUEST_URI("requestURI"),
-        REQUEST_PARAMETER_MAP("requestParameterMap"),
-        QUERY_STRING("queryString"),
-        PATH_PARAMETERS("pathParameters"),
-        USER_PRINCIPAL("userPrincipal");
+        NEGOTIATED_SUBPROTOCOL("negotiatedSubprotocol", true),
+        NEGOTIATED_EXTENSIONS("negotiatedExtensions", true),
+        SECURE("secure", true),
+        MAX_IDLE_TIMEOUT("maxIdleTimeout", false),
+        MAX_BINARY_MESSAGE_BUFFER_SIZE("maxBinaryBufferSize", false),
+        MAX_TEXT_MESSAGE_BUFFER_SIZE("maxTextBufferSize", false),
+        REQUEST_URI("requestURI", true),
+        REQUEST_PARAMETER_MAP("requestParameterMap", true),
+        QUERY_STRING("queryString", true),
+        PATH_PARAMETERS("pathParameters", true),
+        USER_PRINCIPAL("userPrincipal", true);
 
         private final String key;
+        private final boolean immutable;
 
-        DistributedMapKey(String key) {
+        DistributedMapKey(String key, boolean immutable) {
             this.key = key;
+            this.immutable = immutable;
+        }
+
+        /**
+         * Get information whether the value of this key can change after the session is opened.
+         * <p/>
+         * Values of immutable keys are cached by {@link ClusterSession} once read.
+         *
+         * @return {@code true} when the value is set only once, when the session is being opened.
+         */
+        public boolean isImmutable() {
+            return immutable;
         }
 
         @Override
@@ -551,19 +569,19 @@ public class ClusterSession implements Session {
 
     @Override
     public String getNegotiatedSubprotocol() {
-        return (String) distributedPropertyMap.get(DistributedMapKey.NEGOTIATED_SUBPROTOCOL);
+        return (String) getDistributedProperty(DistributedMapKey.NEGOTIATED_SUBPROTOCOL);
     }
 
     @Override
     public List<Extension> getNegotiatedExtensions() {
         //noinspection unchecked
-        return (List<Extension>) distributedPropertyMap.get(DistributedMapKey.NEGOTIATED_EXTENSIONS);
+        return (List<Extension>) getDistributedProperty(DistributedMapKey.NEGOTIATED_EXTENSIONS);
     }
 
     @Override
     public boolean isSecure() {
         //noinspection unchecked
-        return (Boolean) distributedPropertyMap.get(DistributedMapKey.SECURE);
+        return (Boolean) getDistributedProperty(DistributedMapKey.SECURE);
     }
 
     @Override
@@ -576,7 +594,7 @@ public class ClusterSession implements Session {
     @Override
     public long getMaxIdleTimeout() {
         //noinspection unchecked
-        return (Long) distributedPropertyMap.get(DistributedMapKey.MAX_IDLE_TIMEOUT);
+        return (Long) getDistributedProperty(DistributedMapKey.MAX_IDLE_TIMEOUT);
     }
 
     /**
@@ -602,7 +620,7 @@ public class ClusterSession implements Session {
     @Override
     public int getMaxBinaryMessageBufferSize() {
         //noinspection unchecked
-        return (Integer) distributedPropertyMap.get(DistributedMapKey.MAX_BINARY_MESSAGE_BUFFER_SIZE);
+        return (Integer) getDistributedProperty(DistributedMapKey.MAX_BINARY_MESSAGE_BUFFER_SIZE);
     }
 
     /**
@@ -618,7 +636,7 @@ public class ClusterSession implements Session {
     @Override
     public int getMaxTextMessageBufferSize() {
         //noinspection unchecked
-        return (Integer) distributedPropertyMap.get(DistributedMapKey.MAX_TEXT_MESSAGE_BUFFER_SIZE);
+        return (Integer) getDistributedProperty(DistributedMapKey.MAX_TEXT_MESSAGE_BUFFER_SIZE);
     }
 
     @Override
@@ -649,36 +667,57 @@ public class ClusterSession implements Session {
     @Override
     public URI getRequestURI() {
         //noinspection unchecked
-        return (URI) distributedPropertyMap.get(DistributedMapKey.REQUEST_URI);
+        return (URI) getDistributedProperty(DistributedMapKey.REQUEST_URI);
     }
 
     @Override
     public Map<String, List<String>> getRequestParameterMap() {
         //noinspection unchecked
-        return (Map<String, List<String>>) distributedPropertyMap.get(DistributedMapKey.REQUEST_PARAMETER_MAP);
+        return (Map<String, List<String>>) getDistributedProperty(DistributedMapKey.REQUEST_PARAMETER_MAP);
     }
 
     @Override
     public String getQueryString() {
-        return (String) distributedPropertyMap.get(DistributedMapKey.QUERY_STRING);
+        return (String) getDistributedProperty(DistributedMapKey.QUERY_STRING);
     }
 
     @Override
     public Map<String, String> getPathParameters() {
         //noinspection unchecked
-        return (Map<String, String>) distributedPropertyMap.get(DistributedMapKey.PATH_PARAMETERS);
+        return (Map<String, String>) getDistributedProperty(DistributedMapKey.PATH_PARAMETERS);
     }
 
     @Override
     public Map<String, Object> getUserProperties() {
-        //noinspection unchecked
-        return (Map<String, Object>) clusterContext.getDistributedUserProperties(sessionId);
+        // the map is live, only its lookup is cached.
+        Map<String, Object> result = userProperties;
+        if (result == null) {
+            result = clusterContext.getDistributedUserProperties(sessionId);
+            userProperties = result;
+        }
+        return result;
+    }
+
+    private Object getDistributedProperty(DistributedMapKey key) {
+        if (!key.isImmutable()) {
+            return distributedPropertyMap.get(key);
+        }
+
+        Object value = immutableProperties.get(key.ordinal());
+        if (value == null) {
+            // not cached when missing, the value might not be replicated yet.
+            value = distributedPropertyMap.get(key);
+            if (value != null) {
+                immutableProperties.set(key.ordinal(), value);
+            }
+        }
+        return value;
     }
 
     @Override
     public Principal getUserPrincipal() {
         //noinspection unchecked
-        return (Principal) distributedPropertyMap.get(DistributedMapKey.USER_PRINCIPAL);
+        return (Principal) getDistributedProperty(DistributedMapKey.USER_PRINCIPAL);
     }
 
     /**
@@ -0,0 +1,68 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.extension;
+
+import org.glassfish.tyrus.core.Beta;
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * {@link ExtendedExtension} able to process outgoing broadcast frame once for multiple connections.
+ * <p/>
+ * When a message is broadcasted, connections are grouped by their keys; the frame is processed by
+ * {@link #processOutgoing(ExtensionContext, Frame)} with context of one connection of the group and the encoded
+ * result is sent to all connections in the group. Connections for which any negotiated extension does not provide
+ * a key get their own copy of the frame processed.
+ */
+@Beta
+public interface BroadcastExtension extends ExtendedExtension {
+
+    /**
+     * Get broadcast key of a connection.
+     * <p/>
+     * {@link #processOutgoing(ExtensionContext, Frame)} has to produce equal frames for all connections with equal
+     * keys and its result must not depend on previously sent messages. Key must not change once the extension is
+     * negotiated.
+     *
+     * @param context extension context of the connection.
+     * @return key or {@code null} when outgoing frames of the connection have to be processed separately.
+     */
+    Object getBroadcastKey(ExtensionContext context);
+}
@@ -40,6 +40,7 @@
 
 package org.glassfish.tyrus.core.frame;
 
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 
 /**
@@ -190,6 +191,24 @@ public class Frame {
         return tmp;
     }
 
+    /**
+     * Get payload data without copying it.
+     * <p/>
+     * Returned buffer shares its content with current {@link Frame} instance; its position is always {@code 0} and
+     * its backing array has exactly {@link #getPayloadLength()} bytes. Intended for processing incoming frames,
+     * which are not used after the payload is handed over; use {@link #getPayloadData()} when the payload is
+     * going to be modified.
+     *
+     * @return payload data.
+     */
+    public ByteBuffer getPayloadBuffer() {
+        if (payloadData.length == payloadLength) {
+            return ByteBuffer.wrap(payloadData);
+        }
+
+        return ByteBuffer.wrap(getPayloadData());
+    }
+
     /**
      * Get information about frame type.
      *
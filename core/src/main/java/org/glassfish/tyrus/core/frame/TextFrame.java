@@ -47,6 +47,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.glassfish.tyrus.core.StrictUtf8;
 import org.glassfish.tyrus.core.TyrusWebSocket;
@@ -59,12 +61,12 @@ import org.glassfish.tyrus.core.Utf8DecodingException;
  */
 public class TextFrame extends TyrusFrame {
 
-    private final Charset utf8 = new StrictUtf8();
-    private final CharsetDecoder currentDecoder = utf8.newDecoder();
-    private final String textPayload;
     private final boolean continuation;
 
+    private String textPayload;
     private ByteBuffer remainder;
+    private boolean decoded;
+    private TextFrame previous;
 
     /**
      * Constructor.
@@ -74,7 +76,8 @@ public class TextFrame extends TyrusFrame {
      */
     public TextFrame(Frame frame, ByteBuffer remainder) {
         super(frame, FrameType.TEXT);
-        this.textPayload = utf8Decode(isFin(), getPayloadData(), remainder);
+        this.textPayload = utf8Decode(isFin(), getPayloadBuffer(), remainder);
+        this.decoded = true;
         this.continuation = false;
     }
 
@@ -87,7 +90,27 @@ public class TextFrame extends TyrusFrame {
      */
     public TextFrame(Frame frame, ByteBuffer remainder, boolean continuation) {
         super(frame, continuation ? FrameType.TEXT_CONTINUATION : FrameType.TEXT);
-        this.textPayload = utf8Decode(isFin(), getPayloadData(), remainder);
+        this.textPayload = utf8Decode(isFin(), getPayloadBuffer(), remainder);
+        this.decoded = true;
+        this.continuation = continuation;
+    }
+
+    /**
+     * Constructor.
+     * <p/>
+     * Payload is decoded lazily, when {@link #getTextPayload()} or {@link #getRemainder()} is called for the first
+     * time. That allows to process fragmented messages without decoding each fragment separately, see
+     * {@link #getPayloadBuffer()}.
+     *
+     * @param frame        original (text) frame.
+     * @param previous     previous frame of the same fragmented message, {@code null} when this frame starts new message.
+     *                     UTF-8 decoding remainder is taken from this frame when decoding.
+     * @param continuation {@code true} when this frame is continuation frame, {@code false} otherwise.
+     */
+    public TextFrame(Frame frame, TextFrame previous, boolean continuation) {
+        super(frame, continuation ? FrameType.TEXT_CONTINUATION : FrameType.TEXT);
+        this.previous = previous;
+        this.decoded = false;
         this.continuation = continuation;
     }
 
@@ -103,6 +126,7 @@ public class TextFrame extends TyrusFrame {
         super(Frame.builder().payloadData(encode(new StrictUtf8(), message)).opcode(continuation ? (byte) 0x00 : (byte) 0x01).fin(fin).build(), continuation ? FrameType.TEXT_CONTINUATION : FrameType.TEXT);
         this.continuation = continuation;
         this.textPayload = message;
+        this.decoded = true;
     }
 
     /**
@@ -111,6 +135,7 @@ public class TextFrame extends TyrusFrame {
      * @return text payload.
      */
     public String getTextPayload() {
+        decode();
         return textPayload;
     }
 
@@ -122,9 +147,31 @@ public class TextFrame extends TyrusFrame {
      * @return UTF-8 decoding remainder. Used internally to decoding next incoming frame.
      */
     public ByteBuffer getRemainder() {
+        decode();
         return remainder;
     }
 
+    private void decode() {
+        if (decoded) {
+            return;
+        }
+
+        if (previous != null && !previous.decoded) {
+            // previous fragments were not decoded yet; decode them in order without recursion.
+            final List<TextFrame> undecoded = new ArrayList<TextFrame>();
+            for (TextFrame frame = previous; frame != null && !frame.decoded; frame = frame.previous) {
+                undecoded.add(frame);
+            }
+            for (int i = undecoded.size() - 1; i >= 0; i--) {
+                undecoded.get(i).decode();
+            }
+        }
+
+        textPayload = utf8Decode(isFin(), getPayloadBuffer(), previous == null ? null : previous.remainder);
+        decoded = true;
+        previous = null;
+    }
+
     @Override
     public void respond(TyrusWebSocket socket) {
 
@@ -140,7 +187,8 @@ public class TextFrame extends TyrusFrame {
 
     }
 
-    private String utf8Decode(boolean finalFragment, byte[] data, ByteBuffer remainder) {
+    private String utf8Decode(boolean finalFragment, ByteBuffer data, ByteBuffer remainder) {
+        final CharsetDecoder currentDecoder = new StrictUtf8().newDecoder();
         final ByteBuffer b = getByteBuffer(data, remainder);
         int n = (int) (b.remaining() * currentDecoder.averageCharsPerByte());
         CharBuffer cb = CharBuffer.allocate(n);
@@ -178,15 +226,15 @@ public class TextFrame extends TyrusFrame {
         return res;
     }
 
-    private ByteBuffer getByteBuffer(final byte[] data, ByteBuffer remainder) {
+    private ByteBuffer getByteBuffer(final ByteBuffer data, ByteBuffer remainder) {
         if (remainder == null) {
-            return ByteBuffer.wrap(data);
+            return data;
         } else {
             final int rem = remainder.remaining();
             final byte[] orig = remainder.array();
-            byte[] b = new byte[rem + data.length];
+            byte[] b = new byte[rem + data.remaining()];
             System.arraycopy(orig, orig.length - rem, b, 0, rem);
-            System.arraycopy(data, 0, b, rem, data.length);
+            data.get(b, rem, data.remaining());
             return ByteBuffer.wrap(b);
         }
     }
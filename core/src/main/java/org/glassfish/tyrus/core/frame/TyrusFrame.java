@@ -119,6 +119,31 @@ public abstract class TyrusFrame extends Frame {
         }
     }
 
+    /**
+     * {@link TyrusFrame} factory method.
+     * <p/>
+     * Text frames created by this method are decoded lazily, see {@link TextFrame#TextFrame(Frame, TextFrame, boolean)}.
+     *
+     * @param frame            original plain frame.
+     * @param inFragmentedType type of fragment (text or binary).
+     * @param previous         previous text frame of currently processed fragmented message, {@code null} if there
+     *                         is none.
+     * @return new TyrusFrame.
+     */
+    public static TyrusFrame wrap(Frame frame, byte inFragmentedType, TextFrame previous) {
+        switch (frame.getOpcode()) {
+            case 0x00:
+                if ((inFragmentedType & 0x01) == 0x01) {
+                    return new TextFrame(frame, previous, true);
+                }
+                break;
+            case 0x01:
+                return new TextFrame(frame, (TextFrame) null, false);
+        }
+
+        return wrap(frame, inFragmentedType, (ByteBuffer) null);
+    }
+
     /**
      * An Enumeration of frame types.
      */
@@ -0,0 +1,222 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+import org.glassfish.tyrus.core.uri.internal.PathSegment;
+import org.glassfish.tyrus.core.uri.internal.UriComponent;
+
+/**
+ * Routes incoming request paths to registered endpoints.
+ * <p/>
+ * Endpoint paths are compiled into a trie of path segments when the endpoint is registered; literal segments are
+ * looked up in a hash map, template segments (like {@code {name}}) are matched by their position. Matching a request
+ * path therefore depends on the number of its segments, not on the number of registered endpoints.
+ * <p/>
+ * {@link #getAllMatches(String)} returns the same matches in the same order as {@link Match#getAllMatches(String,
+ * Set)} (see {@link MatchComparator}): the trie is searched depth-first and literal segments are tried before the
+ * template ones, so the endpoint with the longest exact prefix is always found first.
+ */
+public class PathRouter {
+
+    private final Set<TyrusEndpointWrapper> endpointWrappers = new LinkedHashSet<TyrusEndpointWrapper>();
+
+    // rebuilt on every change, never modified after it is published.
+    private volatile Node root = new Node();
+
+    /**
+     * Register endpoint.
+     *
+     * @param endpointWrapper endpoint to be registered.
+     */
+    public synchronized void add(TyrusEndpointWrapper endpointWrapper) {
+        if (endpointWrappers.add(endpointWrapper)) {
+            root = compile(endpointWrappers);
+        }
+    }
+
+    /**
+     * Unregister endpoint.
+     *
+     * @param endpointWrapper endpoint to be removed.
+     */
+    public synchronized void remove(TyrusEndpointWrapper endpointWrapper) {
+        if (endpointWrappers.remove(endpointWrapper)) {
+            root = compile(endpointWrappers);
+        }
+    }
+
+    /**
+     * Return a list of all matches for given path, in order of match preference, best match first.
+     *
+     * @param incoming request path.
+     * @return list of matches, empty when there is no registered endpoint matching given path.
+     */
+    public List<Match> getAllMatches(String incoming) {
+        final Node currentRoot = root;
+        final List<PathSegment> segments = UriComponent.decodePath(incoming, true);
+
+        if (segments.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Match> matches = new ArrayList<Match>(1);
+        collect(currentRoot, segments, 0, matches);
+        return matches;
+    }
+
+    /**
+     * Get registered endpoint with path equivalent to the given one.
+     * <p/>
+     * Paths are equivalent when they differ only in names of their template segments, see {@link
+     * Match#isEquivalent(String, String)}.
+     *
+     * @param path endpoint path.
+     * @return registered endpoint with equivalent path or {@code null} when there is no such endpoint.
+     */
+    public TyrusEndpointWrapper getEquivalent(String path) {
+        Node node = root;
+
+        for (PathSegment pathSegment : UriComponent.decodePath(path, true)) {
+            final String segment = pathSegment.getPath();
+            node = isTemplate(segment) ? node.template : node.literals.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+
+        return node.routes.isEmpty() ? null : node.routes.get(0).endpointWrapper;
+    }
+
+    private static void collect(Node node, List<PathSegment> segments, int index, List<Match> matches) {
+        if (index == segments.size()) {
+            for (Route route : node.routes) {
+                matches.add(route.match(segments));
+            }
+            return;
+        }
+
+        final String segment = segments.get(index).getPath();
+
+        final Node literal = node.literals.get(segment);
+        if (literal != null) {
+            collect(literal, segments, index + 1, matches);
+        }
+        if (node.template != null) {
+            collect(node.template, segments, index + 1, matches);
+        }
+    }
+
+    private static Node compile(Set<TyrusEndpointWrapper> endpointWrappers) {
+        final Node root = new Node();
+
+        for (TyrusEndpointWrapper endpointWrapper : endpointWrappers) {
+            final List<PathSegment> segments = UriComponent.decodePath(endpointWrapper.getEndpointPath(), true);
+            final List<Integer> templateIndices = new ArrayList<Integer>();
+            final List<String> templateNames = new ArrayList<String>();
+
+            Node node = root;
+            for (int i = 0; i < segments.size(); i++) {
+                final String segment = segments.get(i).getPath();
+
+                if (isTemplate(segment)) {
+                    templateIndices.add(i);
+                    templateNames.add(segment.substring(1, segment.length() - 1));
+                    if (node.template == null) {
+                        node.template = new Node();
+                    }
+                    node = node.template;
+                } else {
+                    Node next = node.literals.get(segment);
+                    if (next == null) {
+                        next = new Node();
+                        node.literals.put(segment, next);
+                    }
+                    node = next;
+                }
+            }
+
+            node.routes.add(new Route(endpointWrapper, templateIndices, templateNames));
+        }
+
+        return root;
+    }
+
+    private static boolean isTemplate(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}");
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private final List<Route> routes = new ArrayList<Route>(1);
+        private Node template = null;
+    }
+
+    private static final class Route {
+        private final TyrusEndpointWrapper endpointWrapper;
+        private final int[] templateIndices;
+        private final String[] templateNames;
+
+        Route(TyrusEndpointWrapper endpointWrapper, List<Integer> templateIndices, List<String> templateNames) {
+            this.endpointWrapper = endpointWrapper;
+            this.templateIndices = new int[templateIndices.size()];
+            for (int i = 0; i < this.templateIndices.length; i++) {
+                this.templateIndices[i] = templateIndices.get(i);
+            }
+            this.templateNames = templateNames.toArray(new String[templateNames.size()]);
+        }
+
+        Match match(List<PathSegment> segments) {
+            final Match match = new Match(endpointWrapper);
+            for (int i = 0; i < templateIndices.length; i++) {
+                match.addParameter(templateNames[i], segments.get(templateIndices[i]).getPath(), templateIndices[i]);
+            }
+            return match;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.FrameTypeAwareExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ExtensionPipelineTest {
+
+    private static final ExtendedExtension.ExtensionContext CONTEXT = new ExtendedExtension.ExtensionContext() {
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    };
+
+    @Test
+    public void testNoExtendedExtension() {
+        assertNull(ExtensionPipeline.create(null, CONTEXT));
+        assertNull(ExtensionPipeline.create(Collections.<Extension>emptyList(), CONTEXT));
+        assertNull(ExtensionPipeline.create(Arrays.<Extension>asList(new TyrusExtension("plain")), CONTEXT));
+
+        // extension not processing any frames.
+        final RecordingExtension none = new RecordingExtension("none", false, false);
+        assertNull(ExtensionPipeline.create(Arrays.<Extension>asList(none), CONTEXT));
+
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setExtensions(Arrays.<Extension>asList(new TyrusExtension("plain"), none));
+        protocolHandler.setExtensionContext(CONTEXT);
+        final Frame frame = textFrame();
+        assertSame(frame, protocolHandler.processIncoming(frame));
+    }
+
+    @Test
+    public void testFrameTypes() {
+        final List<String> calls = new ArrayList<String>();
+        final RecordingExtension data = new RecordingExtension("data", true, false, calls);
+        final RecordingExtension all = new RecordingExtension("all", true, true, calls);
+
+        final ExtensionPipeline pipeline = ExtensionPipeline.create(Arrays.<Extension>asList(
+                data, new TyrusExtension("plain"), all, new PlainExtension("plainExtended", calls)), CONTEXT);
+
+        pipeline.processIncoming(textFrame());
+        assertEquals(Arrays.asList("data:in", "all:in", "plainExtended:in"), calls);
+
+        calls.clear();
+        pipeline.processOutgoing(Frame.builder().fin(true).opcode((byte) 0x09).build());
+        assertEquals(Arrays.asList("all:out", "plainExtended:out"), calls);
+
+        calls.clear();
+        pipeline.processIncoming(Frame.builder().fin(true).opcode((byte) 0x00).build());
+        assertEquals(Arrays.asList("data:in", "all:in", "plainExtended:in"), calls);
+    }
+
+    @Test
+    public void testFailingExtension() {
+        final List<String> calls = new ArrayList<String>();
+        final PlainExtension failing = new PlainExtension("failing", calls) {
+            @Override
+            public Frame processIncoming(ExtensionContext context, Frame frame) {
+                super.processIncoming(context, frame);
+                throw new IllegalStateException();
+            }
+        };
+        final RecordingExtension last = new RecordingExtension("last", true, true, calls);
+
+        final ExtensionPipeline pipeline = ExtensionPipeline.create(Arrays.<Extension>asList(failing, last), CONTEXT);
+        final Frame frame = textFrame();
+
+        // rest of the pipeline is invoked with unmodified frame.
+        assertSame(frame, pipeline.processIncoming(frame));
+        assertEquals(Arrays.asList("failing:in", "last:in"), calls);
+    }
+
+    private static Frame textFrame() {
+        return Frame.builder().fin(true).opcode((byte) 0x01).build();
+    }
+
+    private static class PlainExtension implements ExtendedExtension {
+
+        private final String name;
+        private final List<String> calls;
+
+        PlainExtension(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Override
+        public Frame processIncoming(ExtensionContext context, Frame frame) {
+            calls.add(name + ":in");
+            return frame;
+        }
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            calls.add(name + ":out");
+            return frame;
+        }
+
+        @Override
+        public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+        }
+
+        @Override
+        public void destroy(ExtensionContext context) {
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<Parameter> getParameters() {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class RecordingExtension extends PlainExtension implements FrameTypeAwareExtension {
+
+        private final boolean dataFrames;
+        private final boolean controlFrames;
+
+        RecordingExtension(String name, boolean dataFrames, boolean controlFrames) {
+            this(name, dataFrames, controlFrames, new ArrayList<String>());
+        }
+
+        RecordingExtension(String name, boolean dataFrames, boolean controlFrames, List<String> calls) {
+            super(name, calls);
+            this.dataFrames = dataFrames;
+            this.controlFrames = controlFrames;
+        }
+
+        @Override
+        public boolean processes(byte opcode) {
+            return opcode < 0x08 ? dataFrames : controlFrames;
+        }
+    }
+}
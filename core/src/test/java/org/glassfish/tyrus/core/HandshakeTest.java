@@ -0,0 +1,135 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.UpgradeResponse;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests server side of the {@link Handshake}.
+ */
+public class HandshakeTest {
+
+    @Test
+    public void testAcceptKey() throws DeploymentException {
+        final TyrusEndpointWrapper endpointWrapper = new TyrusEndpointWrapper(TestEndpoint.class, null,
+                ComponentProviderService.create(), null, "/handshake", null, null, null, null);
+
+        final UpgradeRequest request = createRequest("Upgrade");
+        final TyrusUpgradeResponse response = new TyrusUpgradeResponse();
+        // repeated to make sure reused digest does not keep any state.
+        for (int i = 0; i < 3; i++) {
+            Handshake.createServerHandshake(request, null).respond(request, response, endpointWrapper);
+
+            // RFC 6455, section 1.3.
+            assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", response.getFirstHeaderValue(UpgradeResponse.SEC_WEBSOCKET_ACCEPT));
+            assertEquals(101, response.getStatus());
+            assertEquals(UpgradeRequest.WEBSOCKET, response.getFirstHeaderValue(UpgradeRequest.UPGRADE));
+            assertEquals(UpgradeRequest.UPGRADE, response.getFirstHeaderValue(UpgradeRequest.CONNECTION));
+        }
+    }
+
+    @Test
+    public void testConnectionHeader() {
+        Handshake.createServerHandshake(createRequest("keep-alive, upgrade"), null);
+        Handshake.createServerHandshake(createRequest("UPGRADE"), null);
+
+        try {
+            Handshake.createServerHandshake(createRequest("keep-alive, upgrad"), null);
+            assertTrue("HandshakeException expected.", false);
+        } catch (HandshakeException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testSubProtocols() {
+        final UpgradeRequest request = createRequest("Upgrade");
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL, Collections.singletonList("a,b,,c,"));
+        assertEquals(Arrays.asList("a", "b", "c"), Handshake.createServerHandshake(request, null).getSubProtocols());
+
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL, Collections.singletonList(",a,"));
+        assertEquals(Collections.singletonList("a"), Handshake.createServerHandshake(request, null).getSubProtocols());
+
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL, Collections.singletonList("chat"));
+        assertEquals(Collections.singletonList("chat"), Handshake.createServerHandshake(request, null).getSubProtocols());
+    }
+
+    @Test
+    public void testParseHeaderValue() {
+        assertEquals(Collections.singletonList("value "), Utils.parseHeaderValue("  value "));
+        assertEquals(0, Utils.parseHeaderValue("  ").size());
+        assertEquals(Arrays.asList("a", "\"b,c\""), Utils.parseHeaderValue("a, \"b,c\""));
+
+        // callers add further values.
+        Utils.parseHeaderValue("value").add("other");
+    }
+
+    private static UpgradeRequest createRequest(String connection) {
+        final RequestContext request = RequestContext.Builder.create().requestURI(URI.create("/handshake")).build();
+        request.getHeaders().put(UpgradeRequest.HOST, Collections.singletonList("localhost"));
+        request.getHeaders().put(UpgradeRequest.UPGRADE, Collections.singletonList(UpgradeRequest.WEBSOCKET));
+        request.getHeaders().put(UpgradeRequest.CONNECTION, Collections.singletonList(connection));
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_KEY, Collections.singletonList("dGhlIHNhbXBsZSBub25jZQ=="));
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_VERSION, Collections.singletonList("13"));
+        return request;
+    }
+
+    public static class TestEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
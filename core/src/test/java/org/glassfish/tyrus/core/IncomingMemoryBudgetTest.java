@@ -0,0 +1,155 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import org.glassfish.tyrus.spi.Connection;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link IncomingMemoryBudget}.
+ */
+public class IncomingMemoryBudgetTest {
+
+    @Test
+    public void testSuspendNoisiest() {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(1000, null);
+
+        final TestReadControl quietControl = new TestReadControl();
+        final TestReadControl noisyControl = new TestReadControl();
+        final IncomingMemoryBudget.Account quiet = account(budget, quietControl);
+        final IncomingMemoryBudget.Account noisy = account(budget, noisyControl);
+
+        quiet.charge(100);
+        noisy.charge(800);
+        assertFalse(noisyControl.suspended);
+
+        noisy.charge(200);
+        assertEquals(1100, budget.getUsed());
+        assertTrue(noisyControl.suspended);
+        assertFalse(quietControl.suspended);
+        assertEquals(1, budget.getSuspendedCount());
+
+        // still above low watermark (750).
+        noisy.release(300);
+        assertTrue(noisyControl.suspended);
+
+        noisy.release(100);
+        assertFalse(noisyControl.suspended);
+        assertEquals(0, budget.getSuspendedCount());
+        assertEquals(700, budget.getUsed());
+    }
+
+    @Test
+    public void testProgressGuaranteed() {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(1000, null);
+
+        final TestReadControl control = new TestReadControl();
+        final IncomingMemoryBudget.Account account = account(budget, control);
+
+        // single connection holding everything must not be suspended, otherwise it might never complete the message.
+        account.charge(1500);
+        assertFalse(control.suspended);
+        assertEquals(0, budget.getSuspendedCount());
+    }
+
+    @Test
+    public void testClose() {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(1000, null);
+
+        final TestReadControl control = new TestReadControl();
+        final IncomingMemoryBudget.Account account = account(budget, control);
+        final IncomingMemoryBudget.Account other = account(budget, new TestReadControl());
+
+        other.charge(10);
+        account.charge(1200);
+        assertTrue(control.suspended);
+
+        account.close();
+        assertEquals(10, budget.getUsed());
+        assertEquals(0, budget.getSuspendedCount());
+
+        // closed account is not charged anymore.
+        account.charge(100);
+        assertEquals(10, budget.getUsed());
+    }
+
+    @Test
+    public void testReleaseMoreThanCharged() {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(1000, null);
+        final IncomingMemoryBudget.Account account = budget.newAccount();
+
+        account.charge(10);
+        account.release(20);
+        assertEquals(0, account.getUsage());
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void testNoOpAccount() {
+        IncomingMemoryBudget.NO_OP_ACCOUNT.charge(Long.MAX_VALUE);
+        assertEquals(0, IncomingMemoryBudget.NO_OP_ACCOUNT.getUsage());
+    }
+
+    private static IncomingMemoryBudget.Account account(IncomingMemoryBudget budget, Connection.ReadControl readControl) {
+        final IncomingMemoryBudget.Account account = budget.newAccount();
+        account.setReadControl(readControl);
+        return account;
+    }
+
+    private static class TestReadControl implements Connection.ReadControl {
+
+        private volatile boolean suspended = false;
+
+        @Override
+        public void suspendReading() {
+            suspended = true;
+        }
+
+        @Override
+        public void resumeReading() {
+            suspended = false;
+        }
+    }
+}
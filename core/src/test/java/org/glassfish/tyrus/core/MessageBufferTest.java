@@ -0,0 +1,308 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.websocket.MessageHandler;
+
+import org.glassfish.tyrus.spi.Connection;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests reassembling of partial messages in {@link TextBuffer}, {@link BinaryBuffer}, {@link ReaderBuffer} and
+ * {@link InputStreamBuffer}.
+ */
+public class MessageBufferTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testSplitCodePoints() {
+        // 2, 3 and 4 byte UTF-8 sequences.
+        final String message = "aéb€c😀d";
+        final byte[] bytes = message.getBytes(UTF8);
+
+        // split message into single byte parts, so every multibyte sequence is split.
+        final TextBuffer textBuffer = new TextBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        textBuffer.resetBuffer(100);
+        for (byte b : bytes) {
+            textBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{b}));
+        }
+
+        assertEquals(message, textBuffer.getBufferedContent());
+    }
+
+    @Test
+    public void testMixedParts() {
+        final TextBuffer textBuffer = new TextBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        textBuffer.resetBuffer(100);
+        textBuffer.appendMessagePart("Hello ");
+        textBuffer.appendMessagePart(ByteBuffer.wrap("če".getBytes(UTF8)));
+        textBuffer.appendMessagePart("sko");
+
+        assertEquals("Hello česko", textBuffer.getBufferedContent());
+    }
+
+    @Test(expected = Utf8DecodingException.class)
+    public void testInvalidUtf8() {
+        final TextBuffer textBuffer = new TextBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        textBuffer.resetBuffer(100);
+        textBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{'a', (byte) 0xc3}));
+        textBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{'b'}));
+
+        textBuffer.getBufferedContent();
+    }
+
+    @Test
+    public void testSingleNonEmptyPart() {
+        final TextBuffer textBuffer = new TextBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        textBuffer.resetBuffer(5);
+        textBuffer.appendMessagePart(ByteBuffer.wrap("česko".getBytes(UTF8)));
+        textBuffer.appendMessagePart(ByteBuffer.allocate(0));
+
+        assertEquals("česko", textBuffer.getBufferedContent());
+    }
+
+    @Test(expected = Utf8DecodingException.class)
+    public void testSingleInvalidPart() {
+        final TextBuffer textBuffer = new TextBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        textBuffer.resetBuffer(100);
+        textBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{'a', (byte) 0xc3}));
+
+        textBuffer.getBufferedContent();
+    }
+
+    @Test
+    public void testTextOverflow() {
+        final TextBuffer textBuffer = new TextBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        textBuffer.resetBuffer(5);
+        textBuffer.appendMessagePart("abc");
+        textBuffer.appendMessagePart("def");
+
+        try {
+            textBuffer.getBufferedContent();
+            fail();
+        } catch (MessageTooBigException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testBinarySinglePartNotCopied() {
+        final BinaryBuffer binaryBuffer = new BinaryBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        binaryBuffer.resetBuffer(100);
+
+        final ByteBuffer part = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        binaryBuffer.appendMessagePart(part);
+        binaryBuffer.appendMessagePart(ByteBuffer.allocate(0));
+
+        assertSame(part, binaryBuffer.getBufferedContent());
+    }
+
+    @Test
+    public void testBinaryParts() {
+        final BinaryBuffer binaryBuffer = new BinaryBuffer(IncomingMemoryBudget.NO_OP_ACCOUNT);
+        binaryBuffer.resetBuffer(100);
+
+        binaryBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{1, 2}));
+        binaryBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{3}));
+
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}), binaryBuffer.getBufferedContent());
+    }
+
+    @Test
+    public void testReaderPartiallyRead() throws Exception {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(1 << 20, null);
+        final IncomingMemoryBudget.Account account = budget.newAccount();
+        final RecordingReadControl readControl = new RecordingReadControl();
+        account.setReadControl(readControl);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ReaderBuffer readerBuffer = new ReaderBuffer(executor, account);
+            final CountDownLatch read = new CountDownLatch(1);
+            readerBuffer.resetBuffer(1000);
+            readerBuffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+                @Override
+                public void onMessage(Reader reader) {
+                    try {
+                        read.await(5, TimeUnit.SECONDS);
+                        // reads only the first character of the message.
+                        reader.read();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            for (int i = 0; i < 20; i++) {
+                readerBuffer.appendMessagePart("part" + i, i == 19);
+            }
+            assertTrue(readControl.suspended.getCount() == 0);
+            read.countDown();
+
+            assertTrue(readControl.resumed.await(5, TimeUnit.SECONDS));
+            assertEquals(0, account.getUsage());
+            assertEquals(0, budget.getUsed());
+
+            final AtomicReference<String> next = new AtomicReference<String>();
+            final CountDownLatch delivered = new CountDownLatch(1);
+            readerBuffer.resetBuffer(1000);
+            readerBuffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+                @Override
+                public void onMessage(Reader reader) {
+                    next.set(readFully(reader));
+                    delivered.countDown();
+                }
+            });
+            readerBuffer.appendMessagePart("next", true);
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals("next", next.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInputStreamPartiallyRead() throws Exception {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(1 << 20, null);
+        final IncomingMemoryBudget.Account account = budget.newAccount();
+        final RecordingReadControl readControl = new RecordingReadControl();
+        account.setReadControl(readControl);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final InputStreamBuffer inputStreamBuffer = new InputStreamBuffer(executor, account);
+            final CountDownLatch read = new CountDownLatch(1);
+            inputStreamBuffer.resetBuffer(1000);
+            inputStreamBuffer.setMessageHandler(new MessageHandler.Whole<InputStream>() {
+                @Override
+                public void onMessage(InputStream inputStream) {
+                    try {
+                        read.await(5, TimeUnit.SECONDS);
+                        // reads only the first byte of the message.
+                        inputStream.read();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            for (int i = 0; i < 20; i++) {
+                inputStreamBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{1, 2, 3}), i == 19);
+            }
+            assertTrue(readControl.suspended.getCount() == 0);
+            read.countDown();
+
+            assertTrue(readControl.resumed.await(5, TimeUnit.SECONDS));
+            assertEquals(0, account.getUsage());
+            assertEquals(0, budget.getUsed());
+
+            final AtomicReference<byte[]> next = new AtomicReference<byte[]>();
+            final CountDownLatch delivered = new CountDownLatch(1);
+            inputStreamBuffer.resetBuffer(1000);
+            inputStreamBuffer.setMessageHandler(new MessageHandler.Whole<InputStream>() {
+                @Override
+                public void onMessage(InputStream inputStream) {
+                    try {
+                        final byte[] data = new byte[2];
+                        assertEquals(2, inputStream.read(data));
+                        assertEquals(-1, inputStream.read());
+                        next.set(data);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    delivered.countDown();
+                }
+            });
+            inputStreamBuffer.appendMessagePart(ByteBuffer.wrap(new byte[]{4, 5}), true);
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(4, next.get()[0]);
+            assertEquals(5, next.get()[1]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String readFully(Reader reader) {
+        final StringBuilder sb = new StringBuilder();
+        try {
+            int c;
+            while ((c = reader.read()) != -1) {
+                sb.append((char) c);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return sb.toString();
+    }
+
+    private static class RecordingReadControl implements Connection.ReadControl {
+
+        private final CountDownLatch suspended = new CountDownLatch(1);
+        private final CountDownLatch resumed = new CountDownLatch(1);
+
+        @Override
+        public void suspendReading() {
+            suspended.countDown();
+        }
+
+        @Override
+        public void resumeReading() {
+            resumed.countDown();
+        }
+    }
+}
@@ -54,7 +54,10 @@ import org.glassfish.tyrus.core.coder.CoderAdapter;
 import org.glassfish.tyrus.core.coder.CoderWrapper;
 
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -471,6 +474,50 @@ public class MessageHandlerManagerTest {
     }
 
 
+    @Test
+    public void dispatchTable() {
+        MessageHandlerManager messageHandlerManager = new MessageHandlerManager();
+
+        final MessageHandler.Whole<String> textHandler = new MessageHandler.Whole<String>() {
+            @Override
+            public void onMessage(String message) {
+            }
+        };
+        final MessageHandler.Partial<ByteBuffer> binaryHandler = new MessageHandler.Partial<ByteBuffer>() {
+            @Override
+            public void onMessage(ByteBuffer message, boolean last) {
+            }
+        };
+        final MessageHandler.Whole<PongMessage> pongHandler = new MessageHandler.Whole<PongMessage>() {
+            @Override
+            public void onMessage(PongMessage message) {
+            }
+        };
+
+        final MessageHandlerManager.DispatchTable empty = messageHandlerManager.getDispatchTable();
+
+        messageHandlerManager.addMessageHandler(textHandler);
+        messageHandlerManager.addMessageHandler(binaryHandler);
+        messageHandlerManager.addMessageHandler(pongHandler);
+
+        final MessageHandlerManager.DispatchTable table = messageHandlerManager.getDispatchTable();
+        assertSame(textHandler, table.getWholeHandler(String.class));
+        assertNull(table.getWholeHandler(ByteBuffer.class));
+        assertSame(pongHandler, table.pongHandler);
+        assertEquals(1, table.partialTypes.length);
+        assertSame(ByteBuffer.class, table.partialTypes[0]);
+        assertSame(binaryHandler, table.partialHandlers[0]);
+        assertTrue(messageHandlerManager.isWholeTextHandlerPresent());
+        assertTrue(messageHandlerManager.isPartialBinaryHandlerPresent());
+
+        // previously obtained tables are not modified.
+        assertEquals(0, empty.wholeTypes.length);
+
+        messageHandlerManager.removeMessageHandler(pongHandler);
+        assertNull(messageHandlerManager.getDispatchTable().pongHandler);
+        assertSame(pongHandler, table.pongHandler);
+    }
+
     @Test
     public void removeHandlers() {
         MessageHandlerManager messageHandlerManager = new MessageHandlerManager();
@@ -0,0 +1,203 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.tyrus.spi.Connection;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link SegmentRing}.
+ */
+public class SegmentRingTest {
+
+    @Test
+    public void testOrderWithOverflow() {
+        final SegmentRing<String> ring = ring(4, IncomingMemoryBudget.NO_OP_ACCOUNT);
+
+        for (int i = 0; i < 6; i++) {
+            ring.offer(Integer.toString(i));
+        }
+        assertEquals("0", ring.take());
+        assertEquals("1", ring.take());
+
+        // ring has free slots now, but the overflow has to be drained first.
+        ring.offer("6");
+        ring.finish();
+
+        for (int i = 2; i < 7; i++) {
+            assertEquals(Integer.toString(i), ring.take());
+        }
+        assertNull(ring.take());
+    }
+
+    @Test
+    public void testHoldReading() {
+        final TestReadControl readControl = new TestReadControl();
+        final IncomingMemoryBudget.Account account = IncomingMemoryBudget.newUnlimitedAccount(null);
+        account.setReadControl(readControl);
+        final SegmentRing<String> ring = ring(4, account);
+
+        ring.offer("a");
+        ring.offer("b");
+        ring.offer("c");
+        assertFalse(readControl.suspended);
+
+        ring.offer("d");
+        assertTrue(readControl.suspended);
+
+        ring.take();
+        assertTrue(readControl.suspended);
+
+        ring.take();
+        assertFalse(readControl.suspended);
+    }
+
+    @Test
+    public void testHoldAndBudget() {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(10, null);
+        final IncomingMemoryBudget.Account quiet = budget.newAccount();
+        quiet.setReadControl(new TestReadControl());
+        quiet.charge(2);
+
+        final TestReadControl readControl = new TestReadControl();
+        final IncomingMemoryBudget.Account account = budget.newAccount();
+        account.setReadControl(readControl);
+        final SegmentRing<String> ring = ring(4, account);
+
+        // exceeds the budget (weight is 2 bytes per char).
+        ring.offer("abcde");
+        assertTrue(readControl.suspended);
+        assertEquals(1, budget.getSuspendedCount());
+
+        // ring is full, hold is applied.
+        ring.offer("f");
+        ring.offer("g");
+        ring.offer("h");
+
+        ring.consumed(ring.take());
+        assertEquals(8, budget.getUsed());
+        // budget does not suspend anymore, but the hold is still there.
+        assertEquals(0, budget.getSuspendedCount());
+        assertTrue(readControl.suspended);
+
+        ring.consumed(ring.take());
+        assertFalse(readControl.suspended);
+    }
+
+    @Test
+    public void testCloseReleasesMemory() {
+        final IncomingMemoryBudget budget = new IncomingMemoryBudget(1000, null);
+        final IncomingMemoryBudget.Account account = budget.newAccount();
+        final SegmentRing<String> ring = ring(2, account);
+
+        ring.offer("abc");
+        ring.offer("def");
+        ring.offer("ghi");
+        assertEquals(18, budget.getUsed());
+
+        ring.close();
+        assertEquals(0, budget.getUsed());
+
+        ring.offer("jkl");
+        assertEquals(0, budget.getUsed());
+        assertNull(ring.take());
+    }
+
+    @Test
+    public void testWaitingConsumer() throws InterruptedException {
+        final SegmentRing<String> ring = ring(4, IncomingMemoryBudget.NO_OP_ACCOUNT);
+        final StringBuilder received = new StringBuilder();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        final Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                String segment;
+                while ((segment = ring.take()) != null) {
+                    received.append(segment);
+                }
+                latch.countDown();
+            }
+        };
+        consumer.start();
+
+        for (int i = 0; i < 100; i++) {
+            ring.offer(Integer.toString(i % 10));
+        }
+        ring.finish();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(100, received.length());
+        assertEquals("0123456789", received.substring(0, 10));
+    }
+
+    private static SegmentRing<String> ring(int capacity, IncomingMemoryBudget.Account account) {
+        return new SegmentRing<String>(capacity, account) {
+            @Override
+            long weigh(String segment) {
+                return segment.length() * 2L;
+            }
+        };
+    }
+
+    private static class TestReadControl implements Connection.ReadControl {
+
+        private volatile boolean suspended = false;
+
+        @Override
+        public void suspendReading() {
+            suspended = true;
+        }
+
+        @Override
+        public void resumeReading() {
+            suspended = false;
+        }
+    }
+}
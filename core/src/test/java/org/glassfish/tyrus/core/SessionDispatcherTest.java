@@ -0,0 +1,217 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.CloseReason;
+
+import org.glassfish.tyrus.spi.Connection;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link SessionDispatcher}.
+ */
+public class SessionDispatcherTest {
+
+    @Test
+    public void testOrdering() throws InterruptedException {
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final SessionDispatcher dispatcher = new SessionDispatcher(executorService, 10000, null);
+            final int tasks = 1000;
+            final CountDownLatch latch = new CountDownLatch(2 * tasks);
+
+            final List<Integer> first = Collections.synchronizedList(new ArrayList<Integer>());
+            final List<Integer> second = Collections.synchronizedList(new ArrayList<Integer>());
+            final SessionDispatcher.Mailbox firstMailbox = dispatcher.newMailbox(new TestSocket());
+            final SessionDispatcher.Mailbox secondMailbox = dispatcher.newMailbox(new TestSocket());
+
+            for (int i = 0; i < tasks; i++) {
+                firstMailbox.submit(new AddTask(first, i, latch));
+                secondMailbox.submit(new AddTask(second, i, latch));
+            }
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < tasks; i++) {
+                assertEquals(i, (int) first.get(i));
+                assertEquals(i, (int) second.get(i));
+            }
+            assertEquals(2 * tasks, dispatcher.getExecutedTasks());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSuspendReading() {
+        final ManualExecutor executor = new ManualExecutor();
+        final SessionDispatcher dispatcher = new SessionDispatcher(executor, 4, SessionDispatcher.OverflowPolicy.SUSPEND_READING);
+
+        final TestReadControl readControl = new TestReadControl();
+        final TestSocket socket = new TestSocket();
+        final IncomingMemoryBudget.Account account = IncomingMemoryBudget.newUnlimitedAccount(null);
+        account.setReadControl(readControl);
+        socket.setIncomingMemoryAccount(account);
+
+        final SessionDispatcher.Mailbox mailbox = dispatcher.newMailbox(socket);
+        final List<Integer> executed = new ArrayList<Integer>();
+
+        for (int i = 0; i < 3; i++) {
+            mailbox.submit(new AddTask(executed, i, null));
+        }
+        assertFalse(readControl.suspended);
+        assertEquals(3, dispatcher.getQueuedTasks());
+
+        mailbox.submit(new AddTask(executed, 3, null));
+        assertTrue(readControl.suspended);
+
+        // full mailbox still accepts messages which were already read.
+        mailbox.submit(new AddTask(executed, 4, null));
+        assertEquals(1, dispatcher.getOverflows());
+        assertEquals(5, dispatcher.getMaxMailboxDepth());
+
+        executor.runAll();
+        assertFalse(readControl.suspended);
+        assertEquals(5, executed.size());
+        assertEquals(0, dispatcher.getQueuedTasks());
+    }
+
+    @Test
+    public void testCloseOnOverflow() {
+        final ManualExecutor executor = new ManualExecutor();
+        final SessionDispatcher dispatcher = new SessionDispatcher(executor, 2, SessionDispatcher.OverflowPolicy.CLOSE);
+        final TestSocket socket = new TestSocket();
+        final SessionDispatcher.Mailbox mailbox = dispatcher.newMailbox(socket);
+        final List<Integer> executed = new ArrayList<Integer>();
+
+        mailbox.submit(new AddTask(executed, 0, null));
+        mailbox.submit(new AddTask(executed, 1, null));
+        mailbox.submit(new AddTask(executed, 2, null));
+        mailbox.submit(new AddTask(executed, 3, null));
+
+        assertEquals(-1, socket.closeCode);
+        executor.runAll();
+
+        assertEquals(2, executed.size());
+        assertEquals(CloseReason.CloseCodes.TRY_AGAIN_LATER.getCode(), socket.closeCode);
+        assertEquals(1, dispatcher.getOverflows());
+    }
+
+    private static class AddTask implements Runnable {
+
+        private final List<Integer> list;
+        private final int value;
+        private final CountDownLatch latch;
+
+        AddTask(List<Integer> list, int value, CountDownLatch latch) {
+            this.list = list;
+            this.value = value;
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            list.add(value);
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+    }
+
+    private static class ManualExecutor implements Executor {
+
+        private final Queue<Runnable> queue = new LinkedList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            Runnable runnable;
+            while ((runnable = queue.poll()) != null) {
+                runnable.run();
+            }
+        }
+    }
+
+    private static class TestSocket extends TyrusWebSocket {
+
+        private volatile int closeCode = -1;
+
+        private TestSocket() {
+            super(new ProtocolHandler(false), null);
+        }
+
+        @Override
+        public void close(int code, String reason) {
+            closeCode = code;
+        }
+    }
+
+    private static class TestReadControl implements Connection.ReadControl {
+
+        private volatile boolean suspended = false;
+
+        @Override
+        public void suspendReading() {
+            suspended = true;
+        }
+
+        @Override
+        public void resumeReading() {
+            suspended = false;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link SessionRegistry}.
+ */
+public class SessionRegistryTest {
+
+    @Test
+    public void testAddRemove() throws DeploymentException {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper();
+        final SessionRegistry<TyrusSession> registry = new SessionRegistry<TyrusSession>();
+        final TyrusSession session1 = createSession(endpointWrapper);
+        final TyrusSession session2 = createSession(endpointWrapper);
+
+        assertTrue(registry.add(session1));
+        assertFalse(registry.add(session1));
+        assertTrue(registry.add(session2));
+        assertEquals(2, registry.size());
+        assertSame(session1, registry.get(session1.getId()));
+
+        assertTrue(registry.remove(session1));
+        assertFalse(registry.remove(session1));
+        assertNull(registry.get(session1.getId()));
+        assertEquals(1, registry.size());
+
+        assertSame(session2, registry.remove(session2.getId()));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testSnapshot() throws DeploymentException {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper();
+        final SessionRegistry<TyrusSession> registry = new SessionRegistry<TyrusSession>();
+        final TyrusSession session1 = createSession(endpointWrapper);
+        final TyrusSession session2 = createSession(endpointWrapper);
+
+        registry.add(session1);
+        final Set<Session> snapshot = registry.getSnapshot();
+        assertEquals(1, snapshot.size());
+
+        // nothing changed, copy is reused.
+        assertSame(snapshot, registry.getSnapshot());
+
+        registry.add(session2);
+        final Set<Session> newSnapshot = registry.getSnapshot();
+        assertNotSame(snapshot, newSnapshot);
+        assertEquals(2, newSnapshot.size());
+
+        // previous copy is not affected by changes.
+        assertEquals(1, snapshot.size());
+    }
+
+    @Test
+    public void testUnionSnapshot() throws DeploymentException {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper();
+        final SessionRegistry<TyrusSession> registry = new SessionRegistry<TyrusSession>();
+        final SessionRegistry<TyrusSession> other = new SessionRegistry<TyrusSession>();
+        final TyrusSession session1 = createSession(endpointWrapper);
+        final TyrusSession session2 = createSession(endpointWrapper);
+
+        registry.add(session1);
+        other.add(session2);
+        final Set<Session> snapshot = registry.getSnapshot(other);
+        assertEquals(2, snapshot.size());
+        assertSame(snapshot, registry.getSnapshot(other));
+
+        // change of the other registry is reflected as well.
+        other.remove(session2);
+        final Set<Session> newSnapshot = registry.getSnapshot(other);
+        assertNotSame(snapshot, newSnapshot);
+        assertEquals(1, newSnapshot.size());
+        assertTrue(newSnapshot.contains(session1));
+
+        // union does not replace snapshot of the registry itself.
+        assertEquals(1, registry.getSnapshot().size());
+        assertSame(registry.getSnapshot(), registry.getSnapshot());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotImmutable() throws DeploymentException {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper();
+        final SessionRegistry<TyrusSession> registry = new SessionRegistry<TyrusSession>();
+
+        registry.add(createSession(endpointWrapper));
+        registry.getSnapshot().clear();
+    }
+
+    @Test
+    public void testClosedSessionRemoved() throws DeploymentException {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper();
+        final TyrusWebSocket socket = new TyrusWebSocket(new ProtocolHandler(false), null);
+
+        final Session session = endpointWrapper.createSessionForRemoteEndpoint(socket, null, null);
+        endpointWrapper.onConnect(socket, null, null, null, null);
+        assertEquals(1, endpointWrapper.getOpenSessionsCount());
+        assertSame(session, endpointWrapper.getOpenSession(session.getId()));
+        assertTrue(session.getOpenSessions().contains(session));
+
+        ((TyrusSession) session).setState(TyrusSession.State.CLOSED);
+        assertEquals(0, endpointWrapper.getOpenSessionsCount());
+        assertNull(endpointWrapper.getOpenSession(session.getId()));
+    }
+
+    private static TyrusEndpointWrapper createEndpointWrapper() throws DeploymentException {
+        return new TyrusEndpointWrapper(TestEndpoint.class, null, ComponentProviderService.create(), null, "/registry", null, null, null, null);
+    }
+
+    private static TyrusSession createSession(TyrusEndpointWrapper endpointWrapper) {
+        return new TyrusSession(null, new TyrusWebSocket(new ProtocolHandler(false), null), endpointWrapper, null, null,
+                false, null, null, null, null, new HashMap<String, List<String>>(), null, null);
+    }
+
+    @ServerEndpoint(value = "/registry")
+    public static class TestEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
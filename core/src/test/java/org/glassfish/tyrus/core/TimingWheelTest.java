@@ -0,0 +1,190 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TimingWheel}.
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testLazyReschedule() {
+        final TimingWheel wheel = manualWheel();
+        final long start = System.nanoTime();
+        final TestTask task = new TestTask(start + 3 * TICK);
+
+        wheel.schedule(task, start + 3 * TICK);
+        // activity postponed the deadline, task is not touched until its original bucket is swept.
+        task.deadline = start + 8 * TICK;
+
+        wheel.sweep(start + 6 * TICK);
+        assertEquals(1, task.calls);
+        assertEquals(0, task.expired);
+        assertEquals(1, wheel.getScheduledTasks());
+
+        wheel.sweep(start + 10 * TICK);
+        assertEquals(2, task.calls);
+        assertEquals(1, task.expired);
+        assertEquals(0, wheel.getScheduledTasks());
+    }
+
+    @Test
+    public void testCancel() {
+        final TimingWheel wheel = manualWheel();
+        final long start = System.nanoTime();
+        final TestTask task = new TestTask(start + 3 * TICK);
+
+        wheel.schedule(task, start + 3 * TICK);
+        wheel.cancel(task);
+        wheel.cancel(task);
+        assertEquals(0, wheel.getScheduledTasks());
+
+        wheel.sweep(start + 10 * TICK);
+        assertEquals(0, task.calls);
+    }
+
+    @Test
+    public void testSchedulingDiscardsPreviousDeadline() {
+        final TimingWheel wheel = manualWheel();
+        final long start = System.nanoTime();
+        final TestTask task = new TestTask(start + 12 * TICK);
+
+        wheel.schedule(task, start + 3 * TICK);
+        wheel.schedule(task, start + 12 * TICK);
+        assertEquals(1, wheel.getScheduledTasks());
+
+        wheel.sweep(start + 6 * TICK);
+        assertEquals(0, task.calls);
+
+        wheel.sweep(start + 14 * TICK);
+        assertEquals(1, task.calls);
+        assertEquals(1, task.expired);
+    }
+
+    @Test
+    public void testMoreRounds() {
+        // 4 buckets, task is scheduled 3 rounds ahead.
+        final TimingWheel wheel = new TimingWheel(shutdownExecutor(), TimeUnit.NANOSECONDS.toMillis(TICK), 4);
+        final long start = System.nanoTime();
+        final TestTask task = new TestTask(start + 13 * TICK);
+
+        wheel.schedule(task, start + 13 * TICK);
+        wheel.sweep(start + 12 * TICK);
+        assertEquals(0, task.calls);
+
+        wheel.sweep(start + 15 * TICK);
+        assertEquals(1, task.expired);
+    }
+
+    @Test
+    public void testSweeper() throws InterruptedException {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final TimingWheel wheel = new TimingWheel(executor, 10, 16);
+            final CountDownLatch latch = new CountDownLatch(2);
+
+            for (int i = 0; i < 2; i++) {
+                wheel.schedule(new TimingWheel.Task() {
+                    @Override
+                    long onDue(long now) {
+                        latch.countDown();
+                        return TimingWheel.UNSCHEDULE;
+                    }
+                }, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+            }
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            // count is updated after the task returns from onDue.
+            for (int i = 0; i < 100 && wheel.getScheduledTasks() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, wheel.getScheduledTasks());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Wheel which is never swept automatically; {@link TimingWheel#sweep(long)} has to be invoked by the test.
+     */
+    private static TimingWheel manualWheel() {
+        return new TimingWheel(shutdownExecutor(), TimeUnit.NANOSECONDS.toMillis(TICK), 512);
+    }
+
+    private static ScheduledExecutorService shutdownExecutor() {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.shutdown();
+        return executor;
+    }
+
+    private static class TestTask extends TimingWheel.Task {
+
+        private volatile long deadline;
+        private int calls = 0;
+        private int expired = 0;
+
+        TestTask(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        long onDue(long now) {
+            calls++;
+            if (deadline - now > 0) {
+                return deadline;
+            }
+            expired++;
+            return TimingWheel.UNSCHEDULE;
+        }
+    }
+}
@@ -45,6 +45,11 @@ import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.websocket.DeploymentException;
 import javax.websocket.Endpoint;
@@ -55,7 +60,10 @@ import javax.websocket.PongMessage;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
+import org.glassfish.tyrus.core.frame.Frame;
+
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -66,6 +74,9 @@ import static org.junit.Assert.assertTrue;
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 public class TyrusSessionTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+
     private TyrusEndpointWrapper endpointWrapper;
 
     public TyrusSessionTest() {
@@ -76,6 +87,17 @@ public class TyrusSessionTest {
         }
     }
 
+    @Test
+    public void testSessionId() {
+        final String id = TyrusSession.createSessionId();
+        final UUID uuid = UUID.fromString(id);
+
+        assertEquals(id, uuid.toString());
+        assertEquals(4, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertFalse(id.equals(TyrusSession.createSessionId()));
+    }
+
     @Test
     public void simpleTest() {
         Session session = createSession(endpointWrapper);
@@ -469,15 +491,61 @@ public class TyrusSessionTest {
         assertNotNull(session2.getUserProperties().get(test2));
     }
 
+    @Test
+    public void testHeartbeat() {
+        final TimingWheel wheel = new TimingWheel(shutdownExecutor(), TimeUnit.NANOSECONDS.toMillis(TICK), 512);
+        final TestRemoteEndpoint socket = new TestRemoteEndpoint();
+        final TyrusSession session = createSession(socket, endpointWrapper);
+        session.setTimingWheel(wheel);
+
+        final long start = System.nanoTime();
+        session.setHeartbeatInterval(TimeUnit.NANOSECONDS.toMillis(5 * TICK));
+
+        // first heartbeat is sent one interval after it was enabled.
+        wheel.sweep(start + 4 * TICK);
+        assertEquals(0, socket.heartbeats);
+        wheel.sweep(start + 6 * TICK);
+        assertEquals(1, socket.heartbeats);
+
+        // session which sent something since the last heartbeat does not need it.
+        session.recordOutgoingActivity();
+        wheel.sweep(start + 12 * TICK);
+        assertEquals(1, socket.heartbeats);
+
+        wheel.sweep(start + 14 * TICK);
+        assertEquals(2, socket.heartbeats);
+
+        session.setHeartbeatInterval(0);
+        assertEquals(0, wheel.getScheduledTasks());
+    }
+
     private TyrusSession createSession(TyrusEndpointWrapper endpointWrapper) {
-        return new TyrusSession(null, new TestRemoteEndpoint(), endpointWrapper, null, null, false, null, null, null, null, new HashMap<String, List<String>>(), null, null);
+        return createSession(new TestRemoteEndpoint(), endpointWrapper);
+    }
+
+    private TyrusSession createSession(TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper) {
+        return new TyrusSession(null, socket, endpointWrapper, null, null, false, null, null, null, null, new HashMap<String, List<String>>(), null, null);
+    }
+
+    private static ScheduledExecutorService shutdownExecutor() {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.shutdown();
+        return executor;
     }
 
     private static class TestRemoteEndpoint extends TyrusWebSocket {
 
+        private int heartbeats = 0;
+
         private TestRemoteEndpoint() {
             super(new ProtocolHandler(false), null);
         }
+
+        @Override
+        Future<Frame> sendHeartbeat() {
+            heartbeats++;
+            return null;
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,362 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Extension;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Connection;
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.WebSocketEngine;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link UpgradeAdmission} and its use in {@link TyrusWebSocketEngine}.
+ */
+public class UpgradeAdmissionTest {
+
+    @Test
+    public void testRejectWithoutQueue() {
+        final UpgradeAdmission admission = new UpgradeAdmission(1, 0, 1000);
+
+        assertTrue(admission.acquire());
+        assertFalse(admission.acquire());
+        assertEquals(1, admission.getInProgressCount());
+
+        admission.release();
+        assertTrue(admission.acquire());
+
+        assertEquals(2, admission.getAdmittedCount());
+        assertEquals(0, admission.getQueuedCount());
+        assertEquals(1, admission.getRejectedCount());
+    }
+
+    @Test
+    public void testQueue() throws InterruptedException {
+        final UpgradeAdmission admission = new UpgradeAdmission(1, 1, 5000);
+        assertTrue(admission.acquire());
+
+        final AtomicBoolean queuedResult = new AtomicBoolean(false);
+        final Thread queued = new Thread() {
+            @Override
+            public void run() {
+                queuedResult.set(admission.acquire());
+            }
+        };
+        queued.start();
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (admission.getWaitingCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, admission.getWaitingCount());
+
+        // queue is full.
+        assertFalse(admission.acquire());
+
+        admission.release();
+        queued.join(5000);
+        assertTrue(queuedResult.get());
+        assertEquals(1, admission.getInProgressCount());
+        assertEquals(0, admission.getWaitingCount());
+
+        assertEquals(2, admission.getAdmittedCount());
+        assertEquals(1, admission.getQueuedCount());
+        assertEquals(1, admission.getRejectedCount());
+    }
+
+    @Test
+    public void testQueueTimeout() {
+        final UpgradeAdmission admission = new UpgradeAdmission(1, 1, 50);
+        assertTrue(admission.acquire());
+
+        final long start = System.currentTimeMillis();
+        assertFalse(admission.acquire());
+        assertTrue(System.currentTimeMillis() - start >= 40);
+
+        assertEquals(1, admission.getQueuedCount());
+        assertEquals(1, admission.getRejectedCount());
+        assertEquals(0, admission.getWaitingCount());
+    }
+
+    @Test
+    public void testEngine() throws DeploymentException {
+        final TestContainer container = new TestContainer();
+        try {
+            final TyrusWebSocketEngine engine = TyrusWebSocketEngine.builder(container)
+                    .maxConcurrentUpgrades(1).upgradeQueueSize(0).upgradeQueueTimeout(2500L).build();
+            engine.register(TyrusServerEndpointConfig.Builder.create(TestEndpoint.class, "/admission").configurator(new TestConfigurator()).build(), "");
+
+            final WebSocketEngine.UpgradeInfo first = engine.upgrade(createRequest("/admission"), new TyrusUpgradeResponse());
+            assertEquals(WebSocketEngine.UpgradeStatus.SUCCESS, first.getStatus());
+
+            final TyrusUpgradeResponse rejected = new TyrusUpgradeResponse();
+            assertEquals(WebSocketEngine.UpgradeStatus.HANDSHAKE_FAILED, engine.upgrade(createRequest("/admission"), rejected).getStatus());
+            assertEquals(503, rejected.getStatus());
+            assertEquals("3", rejected.getFirstHeaderValue("Retry-After"));
+
+            // upgrade is finished when the connection is created.
+            final Connection connection = first.createConnection(new TestWriter(), null);
+            assertEquals(0, engine.getUpgradeAdmission().getInProgressCount());
+
+            final WebSocketEngine.UpgradeInfo second = engine.upgrade(createRequest("/admission"), new TyrusUpgradeResponse());
+            assertEquals(WebSocketEngine.UpgradeStatus.SUCCESS, second.getStatus());
+            second.createConnection(new TestWriter(), null).close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, null));
+            connection.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, null));
+
+            assertEquals(2, engine.getUpgradeAdmission().getAdmittedCount());
+            assertEquals(1, engine.getUpgradeAdmission().getRejectedCount());
+        } finally {
+            container.shutdown();
+        }
+    }
+
+    @Test
+    public void testAbort() throws DeploymentException {
+        final TestContainer container = new TestContainer();
+        try {
+            // defaults: requests over the limit are rejected without waiting.
+            final TyrusWebSocketEngine engine = TyrusWebSocketEngine.builder(container).maxConcurrentUpgrades(1).build();
+            engine.register(TyrusServerEndpointConfig.Builder.create(TestEndpoint.class, "/admission").configurator(new TestConfigurator()).build(), "");
+
+            final WebSocketEngine.UpgradeInfo first = engine.upgrade(createRequest("/admission"), new TyrusUpgradeResponse());
+            assertEquals(WebSocketEngine.UpgradeStatus.SUCCESS, first.getStatus());
+
+            final TyrusUpgradeResponse rejected = new TyrusUpgradeResponse();
+            assertEquals(WebSocketEngine.UpgradeStatus.HANDSHAKE_FAILED, engine.upgrade(createRequest("/admission"), rejected).getStatus());
+            assertEquals("1", rejected.getFirstHeaderValue("Retry-After"));
+            assertEquals(0, engine.getUpgradeAdmission().getQueuedCount());
+
+            // container could not finish the upgrade.
+            ((WebSocketEngine.UpgradeInfo.Abortable) first).abort();
+            ((WebSocketEngine.UpgradeInfo.Abortable) first).abort();
+            assertEquals(0, engine.getUpgradeAdmission().getInProgressCount());
+
+            final WebSocketEngine.UpgradeInfo second = engine.upgrade(createRequest("/admission"), new TyrusUpgradeResponse());
+            assertEquals(WebSocketEngine.UpgradeStatus.SUCCESS, second.getStatus());
+            second.createConnection(new TestWriter(), null).close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, null));
+            assertEquals(0, engine.getUpgradeAdmission().getInProgressCount());
+        } finally {
+            container.shutdown();
+        }
+    }
+
+    @Test
+    public void testEndpointLimit() throws DeploymentException {
+        final TestContainer container = new TestContainer();
+        try {
+            final TyrusWebSocketEngine engine = TyrusWebSocketEngine.builder(container).maxConcurrentUpgrades(10).build();
+            engine.register(TyrusServerEndpointConfig.Builder.create(TestEndpoint.class, "/limited").configurator(new TestConfigurator())
+                    .maxConcurrentUpgrades(1).build(), "");
+            engine.register(TyrusServerEndpointConfig.Builder.create(TestEndpoint.class, "/unlimited").configurator(new TestConfigurator()).build(), "");
+
+            final WebSocketEngine.UpgradeInfo first = engine.upgrade(createRequest("/limited"), new TyrusUpgradeResponse());
+            assertEquals(WebSocketEngine.UpgradeStatus.SUCCESS, first.getStatus());
+
+            final TyrusUpgradeResponse rejected = new TyrusUpgradeResponse();
+            engine.upgrade(createRequest("/limited"), rejected);
+            assertEquals(503, rejected.getStatus());
+            assertEquals("1", rejected.getFirstHeaderValue("Retry-After"));
+            // application permit is returned when the endpoint rejects the upgrade.
+            assertEquals(1, engine.getUpgradeAdmission().getInProgressCount());
+
+            final WebSocketEngine.UpgradeInfo other = engine.upgrade(createRequest("/unlimited"), new TyrusUpgradeResponse());
+            assertEquals(WebSocketEngine.UpgradeStatus.SUCCESS, other.getStatus());
+
+            first.createConnection(new TestWriter(), null);
+            other.createConnection(new TestWriter(), null);
+            assertEquals(0, engine.getUpgradeAdmission().getInProgressCount());
+            assertNull(engine.getEndpointWrapper(createRequest("/unlimited")).getUpgradeAdmission());
+        } finally {
+            container.shutdown();
+        }
+    }
+
+    private static UpgradeRequest createRequest(String path) {
+        final RequestContext request = RequestContext.Builder.create().requestURI(URI.create(path)).build();
+        request.getHeaders().put(UpgradeRequest.HOST, Collections.singletonList("localhost"));
+        request.getHeaders().put(UpgradeRequest.UPGRADE, Collections.singletonList(UpgradeRequest.WEBSOCKET));
+        request.getHeaders().put(UpgradeRequest.CONNECTION, Collections.singletonList(UpgradeRequest.UPGRADE));
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_KEY, Collections.singletonList("dGhlIHNhbXBsZSBub25jZQ=="));
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_VERSION, Collections.singletonList("13"));
+        return request;
+    }
+
+    public static class TestEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    /**
+     * Core does not provide the platform default configurator.
+     */
+    private static class TestConfigurator extends ServerEndpointConfig.Configurator {
+
+        @Override
+        public String getNegotiatedSubprotocol(List<String> supported, List<String> requested) {
+            return null;
+        }
+
+        @Override
+        public List<Extension> getNegotiatedExtensions(List<Extension> installed, List<Extension> requested) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean checkOrigin(String originHeaderValue) {
+            return true;
+        }
+
+        @Override
+        public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+        }
+
+        @Override
+        public <T> T getEndpointInstance(Class<T> endpointClass) throws InstantiationException {
+            try {
+                return endpointClass.newInstance();
+            } catch (IllegalAccessException e) {
+                throw new InstantiationException(e.getMessage());
+            }
+        }
+    }
+
+    private static class TestWriter extends Writer {
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static class TestContainer extends BaseContainer {
+
+        @Override
+        public long getDefaultAsyncSendTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setAsyncSendTimeout(long timeoutmillis) {
+        }
+
+        @Override
+        public Session connectToServer(Object annotatedEndpointInstance, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Class<?> annotatedEndpointClass, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Endpoint endpointInstance, ClientEndpointConfig cec, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Class<? extends Endpoint> endpointClass, ClientEndpointConfig cec, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public long getDefaultMaxSessionIdleTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxSessionIdleTimeout(long timeout) {
+        }
+
+        @Override
+        public int getDefaultMaxBinaryMessageBufferSize() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxBinaryMessageBufferSize(int max) {
+        }
+
+        @Override
+        public int getDefaultMaxTextMessageBufferSize() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxTextMessageBufferSize(int max) {
+        }
+
+        @Override
+        public Set<Extension> getInstalledExtensions() {
+            return Collections.emptySet();
+        }
+    }
+}
@@ -41,6 +41,7 @@ package org.glassfish.tyrus.core;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
@@ -61,6 +62,8 @@ public class UtilsPropertiesTest {
         properties.put("BooleanAsString", "true");
         properties.put("Long", new Long(1));
         properties.put("LongAsString", "1");
+        properties.put("Enum", TimeUnit.SECONDS);
+        properties.put("EnumAsString", "seconds");
     }
 
     @Test
@@ -87,4 +90,11 @@ public class UtilsPropertiesTest {
         assertEquals(properties.get("Boolean"), Utils.getProperty(properties, "IntegerAsString", Boolean.class));
     }
 
+    @Test
+    public void testPropertiesGetEnum() {
+        assertEquals(properties.get("Enum"), Utils.getProperty(properties, "Enum", TimeUnit.class));
+        assertEquals(properties.get("Enum"), Utils.getProperty(properties, "EnumAsString", TimeUnit.class));
+        assertEquals(null, Utils.getProperty(properties, "Integer", TimeUnit.class));
+    }
+
 }
@@ -0,0 +1,177 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.Extension;
+import javax.websocket.Session;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests {@link VirtualThreads} and {@link BaseContainer} executor service selection.
+ */
+public class VirtualThreadsTest {
+
+    @Test
+    public void testFactories() throws Exception {
+        final ThreadFactory threadFactory = VirtualThreads.newThreadFactory("test-");
+        final ExecutorService executorService = VirtualThreads.newExecutorService("test-");
+
+        if (!VirtualThreads.isAvailable()) {
+            assertNull(threadFactory);
+            assertNull(executorService);
+            return;
+        }
+
+        assertNotNull(threadFactory);
+        assertNotNull(executorService);
+        try {
+            assertEquals(Boolean.TRUE, executorService.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+                }
+            }).get(5, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testContainerExecutor() throws Exception {
+        final TestContainer container = new TestContainer();
+        try {
+            final Future<String> future = container.getExecutorService().submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return Thread.currentThread().getName();
+                }
+            });
+
+            final String threadName = future.get(5, TimeUnit.SECONDS);
+            assertEquals(VirtualThreads.isAvailable(), threadName.startsWith("tyrus-virtual-thread-"));
+        } finally {
+            container.shutdown();
+        }
+    }
+
+    private static class TestContainer extends BaseContainer {
+
+        @Override
+        protected boolean useVirtualThreads() {
+            return true;
+        }
+
+        @Override
+        public long getDefaultAsyncSendTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setAsyncSendTimeout(long timeoutmillis) {
+        }
+
+        @Override
+        public Session connectToServer(Object annotatedEndpointInstance, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Class<?> annotatedEndpointClass, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Endpoint endpointInstance, ClientEndpointConfig cec, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Class<? extends Endpoint> endpointClass, ClientEndpointConfig cec, URI path) throws DeploymentException {
+            return null;
+        }
+
+        @Override
+        public long getDefaultMaxSessionIdleTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxSessionIdleTimeout(long timeout) {
+        }
+
+        @Override
+        public int getDefaultMaxBinaryMessageBufferSize() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxBinaryMessageBufferSize(int max) {
+        }
+
+        @Override
+        public int getDefaultMaxTextMessageBufferSize() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxTextMessageBufferSize(int max) {
+        }
+
+        @Override
+        public Set<Extension> getInstalledExtensions() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core.cluster;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests caching of distributed properties in {@link ClusterSession}.
+ */
+public class ClusterSessionTest {
+
+    @Test
+    public void testImmutablePropertiesCached() {
+        final CountingMap properties = new CountingMap();
+        final ClusterSession session = new ClusterSession("id", null, properties, null, null);
+
+        // not replicated yet.
+        assertNull(session.getRequestURI());
+        assertEquals(1, properties.reads.get());
+
+        properties.put(ClusterSession.DistributedMapKey.REQUEST_URI, URI.create("ws://localhost/echo"));
+        assertEquals(URI.create("ws://localhost/echo"), session.getRequestURI());
+        assertEquals(URI.create("ws://localhost/echo"), session.getRequestURI());
+        assertEquals(2, properties.reads.get());
+    }
+
+    @Test
+    public void testMutablePropertiesNotCached() {
+        final CountingMap properties = new CountingMap();
+        final ClusterSession session = new ClusterSession("id", null, properties, null, null);
+
+        properties.put(ClusterSession.DistributedMapKey.MAX_IDLE_TIMEOUT, 1000L);
+        assertEquals(1000L, session.getMaxIdleTimeout());
+
+        properties.put(ClusterSession.DistributedMapKey.MAX_IDLE_TIMEOUT, 2000L);
+        assertEquals(2000L, session.getMaxIdleTimeout());
+        assertEquals(2, properties.reads.get());
+    }
+
+    private static class CountingMap extends HashMap<ClusterSession.DistributedMapKey, Object> {
+
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public Object get(Object key) {
+            reads.incrementAndGet();
+            return super.get(key);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.uri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.websocket.DeploymentException;
+
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PathRouter}.
+ */
+public class PathRouterTest {
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/a", "/{var1}", "/a/b", "/{var1}/b", "/a/{var2}", "/a/b/c", "/a/{var2}/{var3}", "/a/{var2}/c",
+            "/{var1}/{var2}/c", "/{var1}/b/{var3}", "/x/{var2}/{var3}/d");
+
+    private static final List<String> REQUESTS = Arrays.asList(
+            "/a", "/x", "/a/b", "/x/b", "/a/y", "/x/y", "/a/b/c", "/a/d/c", "/a/x/y", "/x/b/c", "/x/b/y", "/x/y/c",
+            "/x/y/z/d", "/", "/a/b/c/d/e");
+
+    @Test
+    public void testSameOrderAsMatch() throws DeploymentException {
+        final Set<TyrusEndpointWrapper> endpoints = new HashSet<TyrusEndpointWrapper>();
+        final PathRouter router = new PathRouter();
+        for (String path : PATHS) {
+            final TestWebSocketEndpoint endpoint = new TestWebSocketEndpoint(path);
+            endpoints.add(endpoint);
+            router.add(endpoint);
+        }
+
+        for (String request : REQUESTS) {
+            final List<Match> expected = Match.getAllMatches(request, endpoints);
+            final List<Match> actual = router.getAllMatches(request);
+
+            assertEquals(request, paths(expected), paths(actual));
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(request, expected.get(i).getParameterNames(), actual.get(i).getParameterNames());
+                assertEquals(request, expected.get(i).getVariableSegmentIndices(), actual.get(i).getVariableSegmentIndices());
+                for (String name : expected.get(i).getParameterNames()) {
+                    assertEquals(expected.get(i).getParameterValue(name), actual.get(i).getParameterValue(name));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRemove() throws DeploymentException {
+        final PathRouter router = new PathRouter();
+        final TestWebSocketEndpoint exact = new TestWebSocketEndpoint("/a/b");
+        final TestWebSocketEndpoint template = new TestWebSocketEndpoint("/a/{var}");
+        router.add(exact);
+        router.add(template);
+
+        assertEquals(2, router.getAllMatches("/a/b").size());
+
+        router.remove(exact);
+        final List<Match> matches = router.getAllMatches("/a/b");
+        assertEquals(1, matches.size());
+        assertSame(template, matches.get(0).getEndpointWrapper());
+        assertEquals("b", matches.get(0).getParameterValue("var"));
+    }
+
+    @Test
+    public void testEquivalent() throws DeploymentException {
+        final PathRouter router = new PathRouter();
+        final TestWebSocketEndpoint endpoint = new TestWebSocketEndpoint("/a/{var2}/c");
+        router.add(endpoint);
+
+        assertSame(endpoint, router.getEquivalent("/a/{m}/c"));
+        assertNull(router.getEquivalent("/a/b/c"));
+        assertNull(router.getEquivalent("/a/{m}"));
+        assertTrue(router.getAllMatches("/a/{m}").isEmpty());
+    }
+
+    private static List<String> paths(List<Match> matches) {
+        final List<String> result = new ArrayList<String>();
+        for (Match match : matches) {
+            result.add(match.getPath());
+        }
+        return result;
+    }
+}
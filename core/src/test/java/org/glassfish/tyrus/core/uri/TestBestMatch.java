@@ -41,6 +41,7 @@ package org.glassfish.tyrus.core.uri;
 
 import java.net.URI;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.glassfish.tyrus.core.TyrusEndpointWrapper;
@@ -72,6 +73,15 @@ public class TestBestMatch {
         System.out.println("RUNNING MATCH TEST: " + this.title + ", eps=" + this.eps);
         Match m = Match.getBestMatch(this.uri.toString(), this.eps);
         System.out.println("  Match for " + this.uri + " calculated is: " + m);
+
+        final PathRouter router = new PathRouter();
+        for (TyrusEndpointWrapper ep : this.eps) {
+            router.add(ep);
+        }
+        final List<Match> routerMatches = router.getAllMatches(this.uri.toString());
+        if (m == null ? !routerMatches.isEmpty() : routerMatches.isEmpty() || routerMatches.get(0).getEndpointWrapper() != m.getEndpointWrapper()) {
+            throw new RuntimeException("Test Failed: router matched " + routerMatches + ", expected " + m);
+        }
         if (shouldHaveAMatch) {
             if (m == null) {
                 throw new RuntimeException("Test Failed: was expecting a match on " + whichPathMatched + ", but didn't get one.");
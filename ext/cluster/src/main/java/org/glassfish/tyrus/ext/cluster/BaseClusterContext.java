@@ -0,0 +1,1210 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.TyrusFuture;
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.core.cluster.ClusterContext;
+import org.glassfish.tyrus.core.cluster.ClusterSession;
+import org.glassfish.tyrus.core.cluster.SessionEventListener;
+import org.glassfish.tyrus.core.cluster.SessionListener;
+
+/**
+ * {@link ClusterContext} built on top of messages exchanged between cluster nodes.
+ * <p/>
+ * Each node keeps track of its local sessions and of sessions opened on other nodes, which are announced to all
+ * connected nodes together with their distributed properties. Messages sent to a remote session are delivered to the
+ * node which owns it; the owner acknowledges them when the {@link SessionEventListener} of the session processes
+ * them. Received messages are decoded by a single dispatcher thread in the order they arrived; the dispatcher only
+ * updates the state of the cluster and sends replies. Messages are delivered to local sessions and listeners are
+ * notified on a separate pool of threads, in the order of received messages for each session (and for all
+ * listeners), so that blocking sends to local sessions do not delay processing of other messages. The pool is limited
+ * to {@link #DEFAULT_DELIVERY_THREADS} threads, see {@link #setDeliveryThreads(int)}; when all of them are blocked,
+ * further deliveries wait.
+ * <p/>
+ * Messages for one node are collected into a batch, which is handed to the transport as a single message when it
+ * reaches the configured size or when the configured delay since its first message elapses, whichever comes first.
+ * Batches are also flushed as soon as all received messages are processed, so that acknowledgements and other
+ * replies are not delayed when there is nothing else to wait for. Batching does not change completion of individual
+ * operations - every remote send is still completed by its own acknowledgement.
+ * <p/>
+ * Distributed session and user properties are replicated using Java serialization. Received values are deserialized
+ * only when all their classes are known to be safe: strings, byte arrays, boxed primitives and types of the values
+ * Tyrus stores into distributed session properties. Other classes (for example application specific user principal
+ * or user property values, including their serializable super classes) have to be registered by
+ * {@link #registerPropertyType(Class)}; properties containing anything else are not replicated.
+ * <p/>
+ * Subclasses provide the transport: delivery of encoded messages to other nodes and notifications about received
+ * messages and connected or disconnected nodes. Messages sent to one node must be delivered in the order they were
+ * sent.
+ */
+public abstract class BaseClusterContext extends ClusterContext {
+
+    private static final Logger LOGGER = Logger.getLogger(BaseClusterContext.class.getName());
+
+    // message types
+    private static final byte SESSION_OPENED = 1;
+    private static final byte SESSION_CLOSED = 2;
+    private static final byte BROADCAST_TEXT = 3;
+    private static final byte BROADCAST_BINARY = 4;
+    private static final byte SEND = 5;
+    private static final byte ACK = 6;
+    private static final byte SESSION_PROPERTY = 7;
+    private static final byte USER_PROPERTY = 8;
+    private static final byte USER_PROPERTIES_DESTROYED = 9;
+    private static final byte BATCH = 10;
+
+    // kinds of SEND message
+    private static final byte TEXT = 1;
+    private static final byte PARTIAL_TEXT = 2;
+    private static final byte BINARY = 3;
+    private static final byte PARTIAL_BINARY = 4;
+    private static final byte PING = 5;
+    private static final byte PONG = 6;
+    private static final byte CLOSE = 7;
+
+    /**
+     * Default maximal size of a batch in bytes.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64 * 1024;
+
+    /**
+     * Default maximal delay of the first message in a batch in microseconds.
+     */
+    public static final long DEFAULT_FLUSH_DELAY = 200;
+
+    /**
+     * Default maximal number of threads delivering messages to local sessions and notifying listeners.
+     */
+    public static final int DEFAULT_DELIVERY_THREADS = 64;
+
+    // classes which can be deserialized from replicated properties without registration.
+    private static final Set<String> PROPERTY_TYPES = new HashSet<String>(Arrays.asList(
+            String.class.getName(),
+            byte[].class.getName(),
+            Boolean.class.getName(),
+            Byte.class.getName(),
+            Character.class.getName(),
+            Short.class.getName(),
+            Integer.class.getName(),
+            Long.class.getName(),
+            Float.class.getName(),
+            Double.class.getName(),
+            Number.class.getName(),
+            Enum.class.getName(),
+            URI.class.getName(),
+            ArrayList.class.getName(),
+            HashMap.class.getName(),
+            "java.util.Collections$EmptyList",
+            "java.util.Collections$EmptyMap",
+            "java.util.Collections$UnmodifiableCollection",
+            "java.util.Collections$UnmodifiableList",
+            "java.util.Collections$UnmodifiableRandomAccessList",
+            "java.util.Collections$UnmodifiableMap",
+            ClusterSession.DistributedMapKey.class.getName(),
+            TyrusExtension.class.getName()
+    ));
+
+    private final String nodeId;
+    private final ScheduledThreadPoolExecutor dispatcher;
+    private final ThreadPoolExecutor deliveryExecutor;
+    private final Lane listenerLane = new Lane();
+    private final int maxBatchSize;
+    private final long flushDelay;
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<String, Batch>();
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+    private final AtomicLong requestCounter = new AtomicLong();
+    private final ConcurrentMap<Long, Request> requests = new ConcurrentHashMap<Long, Request>();
+    private final ConcurrentMap<String, LocalSession> localSessions = new ConcurrentHashMap<String, LocalSession>();
+    private final ConcurrentMap<String, RemoteSession> remoteSessions = new ConcurrentHashMap<String, RemoteSession>();
+    private final ConcurrentMap<String, Set<String>> remoteSessionIds = new ConcurrentHashMap<String, Set<String>>();
+    private final ConcurrentMap<String, ReplicatedMap<ClusterSession.DistributedMapKey>> sessionProperties =
+            new ConcurrentHashMap<String, ReplicatedMap<ClusterSession.DistributedMapKey>>();
+    private final ConcurrentMap<String, ReplicatedMap<String>> userProperties =
+            new ConcurrentHashMap<String, ReplicatedMap<String>>();
+    private final ConcurrentMap<String, List<SessionListener>> sessionListeners =
+            new ConcurrentHashMap<String, List<SessionListener>>();
+    private final ConcurrentMap<String, List<BroadcastListener>> broadcastListeners =
+            new ConcurrentHashMap<String, List<BroadcastListener>>();
+    private final Set<String> propertyTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Create new cluster context with default batching, see {@link #DEFAULT_MAX_BATCH_SIZE} and
+     * {@link #DEFAULT_FLUSH_DELAY}.
+     *
+     * @param nodeId id of this node, unique within the cluster.
+     */
+    protected BaseClusterContext(String nodeId) {
+        this(nodeId, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_DELAY, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Create new cluster context.
+     *
+     * @param nodeId       id of this node, unique within the cluster.
+     * @param maxBatchSize size in bytes after which messages collected for one node are sent.
+     * @param flushDelay   maximal time the first message of a batch waits for other messages; {@code 0} disables
+     *                     batching.
+     * @param unit         unit of {@code flushDelay}.
+     */
+    protected BaseClusterContext(final String nodeId, int maxBatchSize, long flushDelay, TimeUnit unit) {
+        this.nodeId = nodeId;
+        this.maxBatchSize = maxBatchSize;
+        this.flushDelay = unit.toNanos(flushDelay);
+        this.dispatcher = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "tyrus-cluster-" + nodeId);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.deliveryExecutor = new ThreadPoolExecutor(DEFAULT_DELIVERY_THREADS, DEFAULT_DELIVERY_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "tyrus-cluster-delivery-" + nodeId + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.deliveryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get id of this node.
+     *
+     * @return node id.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Set maximal number of threads delivering messages to local sessions and notifying listeners.
+     * <p/>
+     * Each session (and all listeners together) uses at most one thread at a time; deliveries which do not get
+     * a thread wait until one is released. Idle threads are stopped.
+     *
+     * @param deliveryThreads maximal number of threads, has to be positive. Default value is
+     *                        {@link #DEFAULT_DELIVERY_THREADS}.
+     */
+    public void setDeliveryThreads(int deliveryThreads) {
+        if (deliveryThreads < 1) {
+            throw new IllegalArgumentException("Number of delivery threads has to be positive: " + deliveryThreads + ".");
+        }
+
+        synchronized (deliveryExecutor) {
+            // core pool size must not exceed maximum pool size at any time.
+            if (deliveryThreads > deliveryExecutor.getMaximumPoolSize()) {
+                deliveryExecutor.setMaximumPoolSize(deliveryThreads);
+                deliveryExecutor.setCorePoolSize(deliveryThreads);
+            } else {
+                deliveryExecutor.setCorePoolSize(deliveryThreads);
+                deliveryExecutor.setMaximumPoolSize(deliveryThreads);
+            }
+        }
+    }
+
+    /**
+     * Allow values of given class to be received as distributed session or user property.
+     * <p/>
+     * Has to be called on all nodes, before the values are replicated. Serializable super classes of the type have to
+     * be registered as well.
+     *
+     * @param type class of property values.
+     */
+    public void registerPropertyType(Class<?> type) {
+        propertyTypes.add(type.getName());
+    }
+
+    /**
+     * Send message to other node.
+     * <p/>
+     * Must not block; messages sent to the same node have to be delivered in the same order.
+     *
+     * @param nodeId  target node id.
+     * @param message encoded message.
+     * @return {@code true} when the message was accepted for delivery, {@code false} when the node is not connected.
+     */
+    protected abstract boolean send(String nodeId, byte[] message);
+
+    /**
+     * Get ids of other nodes to which messages can be currently sent.
+     *
+     * @return connected node ids.
+     */
+    protected abstract Collection<String> getConnectedNodes();
+
+    /**
+     * Release transport resources. Invoked from {@link #shutdown()}.
+     */
+    protected abstract void closeTransport();
+
+    /**
+     * Invoked by transport when messages can be sent to given node.
+     * <p/>
+     * Local sessions and distributed user properties are announced to the node.
+     *
+     * @param nodeId connected node id.
+     */
+    protected final void onNodeConnected(final String nodeId) {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                announce(nodeId);
+            }
+        });
+    }
+
+    /**
+     * Invoked by transport when given node disconnected.
+     * <p/>
+     * Sessions of the node are removed and requests waiting for its acknowledgement fail.
+     *
+     * @param nodeId disconnected node id.
+     */
+    protected final void onNodeDisconnected(final String nodeId) {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                removeNode(nodeId);
+            }
+        });
+    }
+
+    /**
+     * Invoked by transport when a message from other node was received.
+     *
+     * @param nodeId  sender node id.
+     * @param message encoded message.
+     */
+    protected final void onMessage(final String nodeId, final byte[] message) {
+        pendingMessages.incrementAndGet();
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                process(nodeId, message);
+
+                // nothing else to process - replies produced so far would only wait for the flush delay.
+                if (pendingMessages.decrementAndGet() == 0) {
+                    flushAll();
+                }
+            }
+        });
+    }
+
+    @Override
+    public Future<Void> sendText(String sessionId, String text) {
+        return request(sessionId, TEXT, text, null, true, null, null);
+    }
+
+    @Override
+    public Future<Void> sendText(String sessionId, String text, boolean isLast) {
+        return request(sessionId, PARTIAL_TEXT, text, null, isLast, null, null);
+    }
+
+    @Override
+    public Future<Void> sendBinary(String sessionId, byte[] data) {
+        return request(sessionId, BINARY, null, data, true, null, null);
+    }
+
+    @Override
+    public Future<Void> sendBinary(String sessionId, byte[] data, boolean isLast) {
+        return request(sessionId, PARTIAL_BINARY, null, data, isLast, null, null);
+    }
+
+    @Override
+    public Future<Void> sendPing(String sessionId, byte[] data) {
+        return request(sessionId, PING, null, data, true, null, null);
+    }
+
+    @Override
+    public Future<Void> sendPong(String sessionId, byte[] data) {
+        return request(sessionId, PONG, null, data, true, null, null);
+    }
+
+    @Override
+    public void sendText(String sessionId, String text, SendHandler sendHandler) {
+        request(sessionId, TEXT, text, null, true, null, sendHandler);
+    }
+
+    @Override
+    public void sendBinary(String sessionId, byte[] data, SendHandler sendHandler) {
+        request(sessionId, BINARY, null, data, true, null, sendHandler);
+    }
+
+    @Override
+    public Future<Void> close(String sessionId) {
+        return request(sessionId, CLOSE, null, null, true, null, null);
+    }
+
+    @Override
+    public Future<Void> close(String sessionId, CloseReason closeReason) {
+        return request(sessionId, CLOSE, null, null, true, closeReason, null);
+    }
+
+    @Override
+    public void broadcastText(String endpointPath, String text) {
+        broadcast(new MessageWriter(BROADCAST_TEXT).writeString(endpointPath).writeString(text).toByteArray());
+    }
+
+    @Override
+    public void broadcastBinary(String endpointPath, byte[] data) {
+        broadcast(new MessageWriter(BROADCAST_BINARY).writeString(endpointPath).writeBytes(data).toByteArray());
+    }
+
+    @Override
+    public Set<String> getRemoteSessionIds(String endpointPath) {
+        final Set<String> sessionIds = remoteSessionIds.get(endpointPath);
+        return sessionIds == null ? new HashSet<String>() : new HashSet<String>(sessionIds);
+    }
+
+    /**
+     * Get id of the node owning given session.
+     *
+     * @param sessionId session id.
+     * @return id of the node where the session is open, {@code null} when the session is not known to this node.
+     */
+    public String getOwnerNodeId(String sessionId) {
+        final RemoteSession remoteSession = remoteSessions.get(sessionId);
+        if (remoteSession != null) {
+            return remoteSession.nodeId;
+        }
+        return localSessions.containsKey(sessionId) ? nodeId : null;
+    }
+
+    @Override
+    public String createSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public String createConnectionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public void initClusteredSession(final String sessionId, final String endpointPath, SessionEventListener listener) {
+        final LocalSession session = new LocalSession(endpointPath, listener, new Lane());
+        localSessions.put(sessionId, session);
+
+        // announcements and property changes are sent from the dispatcher thread, so that they cannot be reordered.
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                if (localSessions.get(sessionId) == session) {
+                    final ReplicatedMap<ClusterSession.DistributedMapKey> properties = sessionProperties(sessionId, false);
+                    properties.setReplicated(true);
+                    broadcast(sessionOpened(sessionId, endpointPath, properties));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void removeSession(final String sessionId, final String endpointPath) {
+        sessionProperties.remove(sessionId);
+        if (localSessions.remove(sessionId) != null) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    broadcast(new MessageWriter(SESSION_CLOSED).writeString(endpointPath).writeString(sessionId).toByteArray());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void registerSessionListener(String endpointPath, SessionListener listener) {
+        listeners(sessionListeners, endpointPath).add(listener);
+    }
+
+    @Override
+    public void registerBroadcastListener(String endpointPath, BroadcastListener listener) {
+        listeners(broadcastListeners, endpointPath).add(listener);
+    }
+
+    @Override
+    public Map<ClusterSession.DistributedMapKey, Object> getDistributedSessionProperties(String sessionId) {
+        return sessionProperties(sessionId, false);
+    }
+
+    @Override
+    public Map<String, Object> getDistributedUserProperties(String connectionId) {
+        return userProperties(connectionId);
+    }
+
+    @Override
+    public void destroyDistributedUserProperties(final String connectionId) {
+        if (userProperties.remove(connectionId) != null) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    broadcast(new MessageWriter(USER_PROPERTIES_DESTROYED).writeString(connectionId).toByteArray());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        flushAll();
+        closeTransport();
+        dispatcher.shutdown();
+
+        for (Long id : new ArrayList<Long>(requests.keySet())) {
+            final Request request = requests.remove(id);
+            if (request != null) {
+                request.complete(new IOException("Cluster context has been shut down."));
+            }
+        }
+        deliveryExecutor.shutdown();
+    }
+
+    private Future<Void> request(String sessionId, final byte kind, final String text, final byte[] data,
+                                 final boolean isLast, final CloseReason closeReason, SendHandler handler) {
+        final Request request = new Request(handler);
+        final RemoteSession remoteSession = remoteSessions.get(sessionId);
+
+        if (remoteSession == null) {
+            final LocalSession localSession = localSessions.get(sessionId);
+            if (localSession == null) {
+                request.complete(new IllegalStateException("Session " + sessionId + " is not registered in the cluster."));
+            } else {
+                localSession.lane.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        request.complete(deliver(localSession, kind, text, data, isLast, closeReason));
+                    }
+                });
+            }
+            return request.future;
+        }
+
+        final long id = requestCounter.incrementAndGet();
+        request.nodeId = remoteSession.nodeId;
+        requests.put(id, request);
+
+        final byte[] message = new MessageWriter(SEND)
+                .writeLong(id)
+                .writeString(sessionId)
+                .writeByte(kind)
+                .writeString(text)
+                .writeBytes(data)
+                .writeBoolean(isLast)
+                .writeInt(closeReason == null ? -1 : closeReason.getCloseCode().getCode())
+                .writeString(closeReason == null ? null : closeReason.getReasonPhrase())
+                .toByteArray();
+
+        submit(remoteSession.nodeId, message, id);
+        return request.future;
+    }
+
+    private Throwable deliver(LocalSession session, byte kind, String text, byte[] data, boolean isLast,
+                              CloseReason closeReason) {
+        final SessionEventListener listener = session.listener;
+        try {
+            switch (kind) {
+                case TEXT:
+                    listener.onSendText(text);
+                    break;
+                case PARTIAL_TEXT:
+                    listener.onSendText(text, isLast);
+                    break;
+                case BINARY:
+                    listener.onSendBinary(data);
+                    break;
+                case PARTIAL_BINARY:
+                    listener.onSendBinary(data, isLast);
+                    break;
+                case PING:
+                    listener.onSendPing(data);
+                    break;
+                case PONG:
+                    listener.onSendPong(data);
+                    break;
+                case CLOSE:
+                    if (closeReason == null) {
+                        listener.onClose();
+                    } else {
+                        listener.onClose(closeReason);
+                    }
+                    break;
+                default:
+                    return new IllegalArgumentException("Unknown message kind: " + kind);
+            }
+        } catch (Exception e) {
+            return e;
+        }
+        return null;
+    }
+
+    private void process(String sender, byte[] message) {
+        try {
+            process(sender, new MessageReader(message));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Cannot process message from node " + sender + ".", e);
+        }
+    }
+
+    private void process(final String sender, MessageReader reader) {
+        final byte type = reader.readByte();
+
+        switch (type) {
+            case BATCH:
+                for (int i = reader.readInt(); i > 0; i--) {
+                    process(sender, reader.readBytes());
+                }
+                break;
+            case SESSION_OPENED: {
+                final String endpointPath = reader.readString();
+                final String sessionId = reader.readString();
+                final ReplicatedMap<ClusterSession.DistributedMapKey> properties = sessionProperties(sessionId, true);
+                for (int i = reader.readInt(); i > 0; i--) {
+                    final Object[] entry = deserialize(reader.readBytes());
+                    if (entry != null) {
+                        properties.putLocal((ClusterSession.DistributedMapKey) entry[0], entry[1]);
+                    }
+                }
+                properties.setReplicated(true);
+
+                if (remoteSessions.put(sessionId, new RemoteSession(sender, endpointPath)) == null) {
+                    remoteSessionIds(endpointPath).add(sessionId);
+                    listenerLane.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (SessionListener listener : listeners(sessionListeners, endpointPath)) {
+                                try {
+                                    listener.onSessionOpened(sessionId);
+                                } catch (Throwable t) {
+                                    LOGGER.log(Level.WARNING, t.getMessage(), t);
+                                }
+                            }
+                        }
+                    });
+                }
+                break;
+            }
+            case SESSION_CLOSED: {
+                final String endpointPath = reader.readString();
+                final String sessionId = reader.readString();
+                closeRemoteSession(sessionId, endpointPath);
+                break;
+            }
+            case BROADCAST_TEXT: {
+                final String endpointPath = reader.readString();
+                final String text = reader.readString();
+                listenerLane.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (BroadcastListener listener : listeners(broadcastListeners, endpointPath)) {
+                            try {
+                                listener.onBroadcast(text);
+                            } catch (Throwable t) {
+                                LOGGER.log(Level.WARNING, t.getMessage(), t);
+                            }
+                        }
+                    }
+                });
+                break;
+            }
+            case BROADCAST_BINARY: {
+                final String endpointPath = reader.readString();
+                final byte[] data = reader.readBytes();
+                listenerLane.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (BroadcastListener listener : listeners(broadcastListeners, endpointPath)) {
+                            try {
+                                listener.onBroadcast(data);
+                            } catch (Throwable t) {
+                                LOGGER.log(Level.WARNING, t.getMessage(), t);
+                            }
+                        }
+                    }
+                });
+                break;
+            }
+            case SEND: {
+                final long id = reader.readLong();
+                final String sessionId = reader.readString();
+                final byte kind = reader.readByte();
+                final String text = reader.readString();
+                final byte[] data = reader.readBytes();
+                final boolean isLast = reader.readBoolean();
+                final int closeCode = reader.readInt();
+                final String reasonPhrase = reader.readString();
+
+                final LocalSession session = localSessions.get(sessionId);
+                if (session == null) {
+                    acknowledge(sender, id,
+                            new IllegalStateException("Session " + sessionId + " is not open on node " + nodeId + "."));
+                } else {
+                    final CloseReason closeReason = closeCode < 0 ? null :
+                            new CloseReason(CloseReason.CloseCodes.getCloseCode(closeCode), reasonPhrase);
+                    session.lane.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            acknowledge(sender, id, deliver(session, kind, text, data, isLast, closeReason));
+                        }
+                    });
+                }
+                break;
+            }
+            case ACK: {
+                final Request request = requests.remove(reader.readLong());
+                final String error = reader.readString();
+                if (request != null) {
+                    request.complete(error == null ? null : new IOException(error));
+                }
+                break;
+            }
+            case SESSION_PROPERTY: {
+                final String sessionId = reader.readString();
+                final Object[] entry = deserialize(reader.readBytes());
+                final ReplicatedMap<ClusterSession.DistributedMapKey> properties = sessionProperties.get(sessionId);
+                if (properties != null && entry != null) {
+                    properties.putLocal((ClusterSession.DistributedMapKey) entry[0], entry[1]);
+                }
+                break;
+            }
+            case USER_PROPERTY: {
+                final String connectionId = reader.readString();
+                final Object[] entry = deserialize(reader.readBytes());
+                if (entry != null) {
+                    userProperties(connectionId).putLocal((String) entry[0], entry[1]);
+                }
+                break;
+            }
+            case USER_PROPERTIES_DESTROYED: {
+                final ReplicatedMap<String> destroyed = userProperties.remove(reader.readString());
+                if (destroyed != null) {
+                    destroyed.clearLocal();
+                }
+                break;
+            }
+            default:
+                LOGGER.warning("Unknown message type " + type + " received from node " + sender + ".");
+        }
+    }
+
+    private void acknowledge(String target, long requestId, Throwable failure) {
+        final String error = failure == null ? null :
+                (failure.getMessage() == null ? failure.toString() : failure.getMessage());
+        submit(target, new MessageWriter(ACK).writeLong(requestId).writeString(error).toByteArray(), -1);
+    }
+
+    private void announce(String target) {
+        for (Map.Entry<String, LocalSession> entry : localSessions.entrySet()) {
+            final ReplicatedMap<ClusterSession.DistributedMapKey> properties = sessionProperties.get(entry.getKey());
+            if (properties != null && properties.isReplicated()) {
+                submit(target, sessionOpened(entry.getKey(), entry.getValue().endpointPath, properties), -1);
+            }
+        }
+
+        for (Map.Entry<String, ReplicatedMap<String>> entry : userProperties.entrySet()) {
+            for (Map.Entry<String, Object> property : entry.getValue().entrySet()) {
+                final byte[] serialized = serialize(property.getKey(), property.getValue());
+                if (serialized != null) {
+                    submit(target, new MessageWriter(USER_PROPERTY).writeString(entry.getKey()).writeBytes(serialized).toByteArray(), -1);
+                }
+            }
+        }
+    }
+
+    private void removeNode(String removed) {
+        for (Map.Entry<String, RemoteSession> entry : remoteSessions.entrySet()) {
+            if (entry.getValue().nodeId.equals(removed)) {
+                closeRemoteSession(entry.getKey(), entry.getValue().endpointPath);
+            }
+        }
+
+        for (Map.Entry<Long, Request> entry : requests.entrySet()) {
+            if (removed.equals(entry.getValue().nodeId) && requests.remove(entry.getKey()) != null) {
+                entry.getValue().complete(new IOException("Node " + removed + " disconnected."));
+            }
+        }
+    }
+
+    private void closeRemoteSession(final String sessionId, final String endpointPath) {
+        if (remoteSessions.remove(sessionId) != null) {
+            remoteSessionIds(endpointPath).remove(sessionId);
+            sessionProperties.remove(sessionId);
+            listenerLane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (SessionListener listener : listeners(sessionListeners, endpointPath)) {
+                        try {
+                            listener.onSessionClosed(sessionId);
+                        } catch (Throwable t) {
+                            LOGGER.log(Level.WARNING, t.getMessage(), t);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private byte[] sessionOpened(String sessionId, String endpointPath, Map<ClusterSession.DistributedMapKey, Object> properties) {
+        final List<byte[]> entries = new ArrayList<byte[]>(properties.size());
+        for (Map.Entry<ClusterSession.DistributedMapKey, Object> entry : properties.entrySet()) {
+            final byte[] serialized = serialize(entry.getKey(), entry.getValue());
+            if (serialized != null) {
+                entries.add(serialized);
+            }
+        }
+
+        final MessageWriter writer = new MessageWriter(SESSION_OPENED)
+                .writeString(endpointPath)
+                .writeString(sessionId)
+                .writeInt(entries.size());
+        for (byte[] entry : entries) {
+            writer.writeBytes(entry);
+        }
+        return writer.toByteArray();
+    }
+
+    private ReplicatedMap<ClusterSession.DistributedMapKey> sessionProperties(final String sessionId, boolean replicated) {
+        ReplicatedMap<ClusterSession.DistributedMapKey> properties = sessionProperties.get(sessionId);
+        if (properties == null) {
+            properties = new ReplicatedMap<ClusterSession.DistributedMapKey>(new ReplicatedMap.Replicator() {
+                @Override
+                public void onChange(Object key, Object value) {
+                    replicate(SESSION_PROPERTY, sessionId, key, value);
+                }
+            }, replicated);
+            final ReplicatedMap<ClusterSession.DistributedMapKey> existing = sessionProperties.putIfAbsent(sessionId, properties);
+            if (existing != null) {
+                properties = existing;
+            }
+        }
+        return properties;
+    }
+
+    private ReplicatedMap<String> userProperties(final String connectionId) {
+        ReplicatedMap<String> properties = userProperties.get(connectionId);
+        if (properties == null) {
+            properties = new ReplicatedMap<String>(new ReplicatedMap.Replicator() {
+                @Override
+                public void onChange(Object key, Object value) {
+                    replicate(USER_PROPERTY, connectionId, key, value);
+                }
+            }, true);
+            final ReplicatedMap<String> existing = userProperties.putIfAbsent(connectionId, properties);
+            if (existing != null) {
+                properties = existing;
+            }
+        }
+        return properties;
+    }
+
+    private void replicate(byte type, String id, Object key, Object value) {
+        // serialized immediately - the value can be modified before the dispatcher sends it.
+        final byte[] serialized = serialize(key, value);
+        if (serialized != null) {
+            final byte[] message = new MessageWriter(type).writeString(id).writeBytes(serialized).toByteArray();
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    broadcast(message);
+                }
+            });
+        }
+    }
+
+    private void broadcast(byte[] message) {
+        for (String node : getConnectedNodes()) {
+            submit(node, message, -1);
+        }
+    }
+
+    /**
+     * Send message to given node, possibly as part of a batch.
+     *
+     * @param target    target node id.
+     * @param message   encoded message.
+     * @param requestId id of the request waiting for acknowledgement of the message, {@code -1} when there is none.
+     */
+    private void submit(String target, byte[] message, long requestId) {
+        if (flushDelay <= 0) {
+            if (!send(target, message)) {
+                failRequest(requestId, target);
+            }
+            return;
+        }
+
+        Batch batch = batches.get(target);
+        if (batch == null) {
+            batch = new Batch(target);
+            final Batch existing = batches.putIfAbsent(target, batch);
+            if (existing != null) {
+                batch = existing;
+            }
+        }
+        batch.add(message, requestId);
+    }
+
+    private void flushAll() {
+        for (Batch batch : batches.values()) {
+            batch.flush();
+        }
+    }
+
+    private void failRequest(long requestId, String target) {
+        final Request request = requestId < 0 ? null : requests.remove(requestId);
+        if (request != null) {
+            request.complete(new IOException("Node " + target + " is not connected."));
+        }
+    }
+
+    private void dispatch(Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Cluster context has been shut down.", e);
+        }
+    }
+
+    private Set<String> remoteSessionIds(String endpointPath) {
+        Set<String> sessionIds = remoteSessionIds.get(endpointPath);
+        if (sessionIds == null) {
+            sessionIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            final Set<String> existing = remoteSessionIds.putIfAbsent(endpointPath, sessionIds);
+            if (existing != null) {
+                sessionIds = existing;
+            }
+        }
+        return sessionIds;
+    }
+
+    private static <T> List<T> listeners(ConcurrentMap<String, List<T>> listeners, String endpointPath) {
+        List<T> list = listeners.get(endpointPath);
+        if (list == null) {
+            list = new CopyOnWriteArrayList<T>();
+            final List<T> existing = listeners.putIfAbsent(endpointPath, list);
+            if (existing != null) {
+                list = existing;
+            }
+        }
+        return list;
+    }
+
+    private static byte[] serialize(Object key, Object value) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(key);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Property " + key + " cannot be replicated.", e);
+            return null;
+        }
+    }
+
+    private Object[] deserialize(byte[] serialized) {
+        try {
+            final ObjectInputStream in = new PropertyInputStream(new ByteArrayInputStream(serialized));
+            try {
+                return new Object[]{in.readObject(), in.readObject()};
+            } finally {
+                in.close();
+            }
+        } catch (InvalidClassException e) {
+            LOGGER.warning("Replicated property ignored: " + e.getMessage());
+            return null;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Replicated property cannot be read.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Resolves only allowed classes, using the context class loader first, since values can be instances of
+     * application classes.
+     */
+    private class PropertyInputStream extends ObjectInputStream {
+
+        PropertyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!PROPERTY_TYPES.contains(desc.getName()) && !propertyTypes.contains(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class is not registered as property type.");
+            }
+
+            final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to default resolution.
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+
+    private static class LocalSession {
+
+        private final String endpointPath;
+        private final SessionEventListener listener;
+        private final Lane lane;
+
+        private LocalSession(String endpointPath, SessionEventListener listener, Lane lane) {
+            this.endpointPath = endpointPath;
+            this.listener = listener;
+            this.lane = lane;
+        }
+    }
+
+    /**
+     * Runs tasks on the delivery executor one by one, in the order they were submitted.
+     */
+    private class Lane implements Runnable {
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    deliveryExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    tasks.clear();
+                    LOGGER.log(Level.FINE, "Cluster context has been shut down.", e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, t.getMessage(), t);
+                }
+            }
+
+            scheduled.set(false);
+            // task added after the queue was found empty.
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private static class RemoteSession {
+
+        private final String nodeId;
+        private final String endpointPath;
+
+        private RemoteSession(String nodeId, String endpointPath) {
+            this.nodeId = nodeId;
+            this.endpointPath = endpointPath;
+        }
+    }
+
+    /**
+     * Messages collected for one node.
+     */
+    private class Batch implements Runnable {
+
+        private final String target;
+        private final List<byte[]> messages = new ArrayList<byte[]>();
+        private final List<Long> requestIds = new ArrayList<Long>();
+        private int size;
+        private ScheduledFuture<?> timer;
+
+        private Batch(String target) {
+            this.target = target;
+        }
+
+        private synchronized void add(byte[] message, long requestId) {
+            messages.add(message);
+            if (requestId >= 0) {
+                requestIds.add(requestId);
+            }
+            size += message.length;
+
+            if (size >= maxBatchSize) {
+                flush();
+            } else if (timer == null) {
+                try {
+                    timer = dispatcher.schedule(this, flushDelay, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // shut down, nobody would flush the batch later.
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            flush();
+        }
+
+        private synchronized void flush() {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            if (messages.isEmpty()) {
+                return;
+            }
+
+            final byte[] message;
+            if (messages.size() == 1) {
+                message = messages.get(0);
+            } else {
+                final MessageWriter writer = new MessageWriter(BATCH).writeInt(messages.size());
+                for (byte[] m : messages) {
+                    writer.writeBytes(m);
+                }
+                message = writer.toByteArray();
+            }
+
+            if (!send(target, message)) {
+                for (Long requestId : requestIds) {
+                    failRequest(requestId, target);
+                }
+            }
+
+            messages.clear();
+            requestIds.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Send request waiting for acknowledgement from the node owning target session.
+     * <p/>
+     * {@link SendHandler} is notified on the delivery executor, requests are completed also by the dispatcher.
+     */
+    private class Request {
+
+        private final TyrusFuture<Void> future = new TyrusFuture<Void>();
+        private final SendHandler handler;
+        private volatile String nodeId;
+
+        private Request(SendHandler handler) {
+            this.handler = handler;
+        }
+
+        private void complete(final Throwable failure) {
+            if (failure == null) {
+                future.setResult(null);
+            } else {
+                future.setFailure(failure);
+            }
+
+            if (handler != null) {
+                final Runnable notification = new Runnable() {
+                    @Override
+                    public void run() {
+                        handler.onResult(failure == null ? new SendResult() : new SendResult(failure));
+                    }
+                };
+                try {
+                    deliveryExecutor.execute(notification);
+                } catch (RejectedExecutionException e) {
+                    notification.run();
+                }
+            }
+        }
+    }
+}
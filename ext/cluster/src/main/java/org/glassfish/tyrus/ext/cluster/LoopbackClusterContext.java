@@ -0,0 +1,147 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BaseClusterContext} connecting nodes running in the same JVM.
+ * <p/>
+ * Nodes joined to the same {@link Network} exchange messages directly, without any I/O, which makes it possible to
+ * test clustered applications (multiple servers with different cluster contexts) in a single JVM. Messages are
+ * encoded exactly as they would be for {@link TcpClusterContext}.
+ */
+public class LoopbackClusterContext extends BaseClusterContext {
+
+    private final Network network;
+
+    /**
+     * Create new node and join it to the network.
+     *
+     * @param nodeId  id of the node, unique within the network.
+     * @param network network to join.
+     * @throws IllegalArgumentException when there already is a node with the same id.
+     */
+    public LoopbackClusterContext(String nodeId, Network network) {
+        super(nodeId);
+        this.network = network;
+        network.join(this);
+    }
+
+    /**
+     * Create new node with custom batching and join it to the network.
+     *
+     * @param nodeId       id of the node, unique within the network.
+     * @param network      network to join.
+     * @param maxBatchSize size in bytes after which messages collected for one node are sent.
+     * @param flushDelay   maximal time the first message of a batch waits for other messages; {@code 0} disables
+     *                     batching.
+     * @param unit         unit of {@code flushDelay}.
+     * @throws IllegalArgumentException when there already is a node with the same id.
+     */
+    public LoopbackClusterContext(String nodeId, Network network, int maxBatchSize, long flushDelay, TimeUnit unit) {
+        super(nodeId, maxBatchSize, flushDelay, unit);
+        this.network = network;
+        network.join(this);
+    }
+
+    @Override
+    protected boolean send(String nodeId, byte[] message) {
+        final LoopbackClusterContext target = network.nodes.get(nodeId);
+        if (target == null) {
+            return false;
+        }
+
+        target.onMessage(getNodeId(), message);
+        return true;
+    }
+
+    @Override
+    protected Collection<String> getConnectedNodes() {
+        final List<String> result = new ArrayList<String>(network.nodes.size());
+        for (String nodeId : network.nodes.keySet()) {
+            if (!nodeId.equals(getNodeId())) {
+                result.add(nodeId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void closeTransport() {
+        network.leave(this);
+    }
+
+    /**
+     * Set of nodes connected to each other.
+     */
+    public static class Network {
+
+        private final ConcurrentMap<String, LoopbackClusterContext> nodes =
+                new ConcurrentHashMap<String, LoopbackClusterContext>();
+
+        private synchronized void join(LoopbackClusterContext node) {
+            if (nodes.putIfAbsent(node.getNodeId(), node) != null) {
+                throw new IllegalArgumentException("Node " + node.getNodeId() + " has already joined the network.");
+            }
+
+            for (LoopbackClusterContext other : nodes.values()) {
+                if (other != node) {
+                    other.onNodeConnected(node.getNodeId());
+                    node.onNodeConnected(other.getNodeId());
+                }
+            }
+        }
+
+        private synchronized void leave(LoopbackClusterContext node) {
+            if (nodes.remove(node.getNodeId(), node)) {
+                for (LoopbackClusterContext other : nodes.values()) {
+                    other.onNodeDisconnected(node.getNodeId());
+                }
+            }
+        }
+    }
+}
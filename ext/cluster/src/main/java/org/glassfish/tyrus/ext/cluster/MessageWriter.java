@@ -0,0 +1,121 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Encodes a message exchanged between cluster nodes.
+ * <p/>
+ * Message starts with its type; strings and byte arrays are prefixed with their length, {@code -1} represents
+ * {@code null}.
+ *
+ * @see MessageReader
+ */
+final class MessageWriter {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ByteBuffer buffer;
+
+    /**
+     * Create new message.
+     *
+     * @param type message type.
+     */
+    MessageWriter(byte type) {
+        this.buffer = ByteBuffer.allocate(64);
+        buffer.put(type);
+    }
+
+    MessageWriter writeByte(byte value) {
+        ensureCapacity(1).put(value);
+        return this;
+    }
+
+    MessageWriter writeBoolean(boolean value) {
+        return writeByte(value ? (byte) 1 : (byte) 0);
+    }
+
+    MessageWriter writeInt(int value) {
+        ensureCapacity(4).putInt(value);
+        return this;
+    }
+
+    MessageWriter writeLong(long value) {
+        ensureCapacity(8).putLong(value);
+        return this;
+    }
+
+    MessageWriter writeString(String value) {
+        return writeBytes(value == null ? null : value.getBytes(UTF8));
+    }
+
+    MessageWriter writeBytes(byte[] value) {
+        if (value == null) {
+            return writeInt(-1);
+        }
+
+        ensureCapacity(4 + value.length).putInt(value.length).put(value);
+        return this;
+    }
+
+    /**
+     * Get encoded message.
+     *
+     * @return message bytes.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private ByteBuffer ensureCapacity(int length) {
+        if (buffer.remaining() < length) {
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map whose modifications are propagated to other cluster nodes.
+ * <p/>
+ * Changes made by map users are passed to {@link Replicator} once the map is {@link #setReplicated(boolean)
+ * replicated}; changes received from other nodes are applied using {@link #putLocal(Object, Object)}. {@code null}
+ * value is not stored, putting it is equivalent to removing the key.
+ *
+ * @param <K> key type.
+ */
+class ReplicatedMap<K> extends AbstractMap<K, Object> {
+
+    /**
+     * Receives changes to be sent to other nodes.
+     */
+    interface Replicator {
+
+        /**
+         * Invoked when a value is put or removed.
+         *
+         * @param key   changed key.
+         * @param value new value, {@code null} when the key was removed.
+         */
+        void onChange(Object key, Object value);
+    }
+
+    private final ConcurrentHashMap<K, Object> map = new ConcurrentHashMap<K, Object>();
+    private final Replicator replicator;
+    private volatile boolean replicated;
+
+    /**
+     * Create new map.
+     *
+     * @param replicator replicator invoked when the map is replicated.
+     * @param replicated {@code true} when changes should be replicated from the beginning.
+     */
+    ReplicatedMap(Replicator replicator, boolean replicated) {
+        this.replicator = replicator;
+        this.replicated = replicated;
+    }
+
+    boolean isReplicated() {
+        return replicated;
+    }
+
+    void setReplicated(boolean replicated) {
+        this.replicated = replicated;
+    }
+
+    /**
+     * Apply change received from other node.
+     *
+     * @param key   changed key.
+     * @param value new value, {@code null} when the key was removed.
+     */
+    void putLocal(K key, Object value) {
+        if (value == null) {
+            map.remove(key);
+        } else {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Remove all entries without replicating the change - used when the map has been destroyed on other node.
+     */
+    void clearLocal() {
+        map.clear();
+    }
+
+    @Override
+    public Object put(K key, Object value) {
+        if (value == null) {
+            return remove(key);
+        }
+
+        final Object previous = map.put(key, value);
+        if (replicated) {
+            replicator.onChange(key, value);
+        }
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        final Object previous = map.remove(key);
+        if (previous != null && replicated) {
+            replicator.onChange(key, null);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (K key : new ArrayList<K>(map.keySet())) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Set<Map.Entry<K, Object>> entrySet() {
+        return Collections.unmodifiableMap(map).entrySet();
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link BaseClusterContext} connecting statically configured set of nodes over TCP.
+ * <p/>
+ * All nodes share the same configuration - map of node ids to addresses. Every node listens on its own address and
+ * opens one connection to each other node; messages are sent only over connections opened by the sending node, so
+ * each pair of nodes is connected by two connections, one per direction. Nodes which are not reachable are
+ * periodically reconnected. All sockets are handled by single thread using non-blocking I/O. Messages waiting to be
+ * written to one node are limited to 128 MB; when a node does not read fast enough to stay below the limit, it is
+ * disconnected (and reconnected later) and the messages are dropped.
+ * <p/>
+ * Wire format of a message is its length (4 bytes) followed by the message itself; the first message sent over a new
+ * connection is the id of the connecting node. Connections are accepted only from addresses of configured nodes and
+ * the announced id has to belong to a node configured with the address the connection came from; other connections
+ * are closed.
+ * <p/>
+ * These checks only prevent accidental connections (misconfigured nodes, port scans); they are not authentication.
+ * Nodes are not authenticated and messages are neither encrypted nor protected against modification, so any process
+ * able to connect from an address of a configured node (including other processes on that host) can pose as any node
+ * configured with that address and inject messages into the cluster. Use only on trusted networks, where cluster
+ * ports are not reachable by untrusted hosts or processes.
+ */
+public class TcpClusterContext extends BaseClusterContext {
+
+    private static final Logger LOGGER = Logger.getLogger(TcpClusterContext.class.getName());
+
+    private static final long RECONNECT_DELAY = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long SELECT_TIMEOUT = 100;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_NODE_ID_SIZE = 1024;
+    private static final long MAX_QUEUED_BYTES = 128 * 1024 * 1024;
+
+    private final Map<String, Peer> peers;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread ioThread;
+
+    private volatile boolean running = true;
+
+    /**
+     * Create new cluster node and start connecting to other nodes.
+     *
+     * @param nodeId id of this node.
+     * @param nodes  addresses of all cluster nodes, including this one, by their ids.
+     * @throws IOException when the address of this node cannot be bound.
+     * @see #parseNodes(String)
+     */
+    public TcpClusterContext(String nodeId, Map<String, InetSocketAddress> nodes) throws IOException {
+        this(nodeId, nodes, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_DELAY, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Create new cluster node with custom batching and start connecting to other nodes.
+     *
+     * @param nodeId       id of this node.
+     * @param nodes        addresses of all cluster nodes, including this one, by their ids.
+     * @param maxBatchSize size in bytes after which messages collected for one node are sent.
+     * @param flushDelay   maximal time the first message of a batch waits for other messages; {@code 0} disables
+     *                     batching.
+     * @param unit         unit of {@code flushDelay}.
+     * @throws IOException when the address of this node cannot be bound.
+     * @see #parseNodes(String)
+     */
+    public TcpClusterContext(String nodeId, Map<String, InetSocketAddress> nodes, int maxBatchSize, long flushDelay,
+                             TimeUnit unit) throws IOException {
+        super(nodeId, maxBatchSize, flushDelay, unit);
+
+        final InetSocketAddress localAddress = nodes.get(nodeId);
+        if (localAddress == null) {
+            throw new IllegalArgumentException("Address of node " + nodeId + " is not configured.");
+        }
+
+        final Map<String, Peer> peers = new LinkedHashMap<String, Peer>();
+        for (Map.Entry<String, InetSocketAddress> entry : nodes.entrySet()) {
+            if (!entry.getKey().equals(nodeId)) {
+                peers.put(entry.getKey(), new Peer(entry.getKey(), entry.getValue()));
+            }
+        }
+        this.peers = Collections.unmodifiableMap(peers);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(localAddress);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+
+        ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processIO();
+            }
+        }, "tyrus-cluster-io-" + nodeId);
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Parse cluster configuration.
+     * <p/>
+     * Nodes are separated by commas, each node is defined as {@code id=host:port}, for example
+     * {@code "node1=localhost:9001,node2=localhost:9002"}.
+     *
+     * @param nodes cluster configuration.
+     * @return addresses of cluster nodes by their ids.
+     */
+    public static Map<String, InetSocketAddress> parseNodes(String nodes) {
+        final Map<String, InetSocketAddress> result = new LinkedHashMap<String, InetSocketAddress>();
+
+        for (String node : nodes.split(",")) {
+            final String trimmed = node.trim();
+            final int separator = trimmed.indexOf('=');
+            final int portSeparator = trimmed.lastIndexOf(':');
+            if (separator <= 0 || portSeparator < separator) {
+                throw new IllegalArgumentException("Invalid node definition: \"" + trimmed + "\".");
+            }
+
+            result.put(trimmed.substring(0, separator), new InetSocketAddress(
+                    trimmed.substring(separator + 1, portSeparator),
+                    Integer.parseInt(trimmed.substring(portSeparator + 1))));
+        }
+
+        return result;
+    }
+
+    @Override
+    protected boolean send(String nodeId, byte[] message) {
+        final Peer peer = peers.get(nodeId);
+        if (peer == null || !peer.connected) {
+            return false;
+        }
+
+        final ByteBuffer frame = frame(message);
+        if (peer.queued.addAndGet(frame.remaining()) > MAX_QUEUED_BYTES) {
+            peer.queued.addAndGet(-frame.remaining());
+            // disconnected by the I/O thread.
+            peer.overflow = true;
+            selector.wakeup();
+            return false;
+        }
+
+        peer.queue.add(frame);
+        selector.wakeup();
+        return true;
+    }
+
+    @Override
+    protected Collection<String> getConnectedNodes() {
+        final List<String> result = new ArrayList<String>(peers.size());
+        for (Peer peer : peers.values()) {
+            if (peer.connected) {
+                result.add(peer.id);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void closeTransport() {
+        running = false;
+        selector.wakeup();
+
+        if (Thread.currentThread() != ioThread) {
+            try {
+                ioThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void processIO() {
+        try {
+            while (running) {
+                final long now = System.nanoTime();
+                for (Peer peer : peers.values()) {
+                    if (peer.overflow) {
+                        LOGGER.warning("Node " + peer.id + " does not read sent messages, disconnecting.");
+                        disconnect(peer);
+                    }
+
+                    if (peer.channel == null && now - peer.nextAttempt >= 0) {
+                        connect(peer);
+                    } else if (peer.connected && (peer.current != null || !peer.queue.isEmpty())) {
+                        peer.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                selector.select(SELECT_TIMEOUT);
+
+                final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    final SelectionKey key = iterator.next();
+                    iterator.remove();
+
+                    if (key.isValid()) {
+                        if (key.attachment() instanceof Peer) {
+                            processOutgoing(key, (Peer) key.attachment());
+                        } else if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            processIncoming(key, (Incoming) key.attachment());
+                        }
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, "Cluster node " + getNodeId() + " I/O failed.", t);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                close(key.channel());
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+
+    private void connect(Peer peer) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            peer.channel = channel;
+            peer.current = frame(getNodeId().getBytes(MessageWriter.UTF8));
+            if (channel.connect(peer.address)) {
+                peer.key = channel.register(selector, SelectionKey.OP_WRITE, peer);
+                connected(peer);
+            } else {
+                peer.key = channel.register(selector, SelectionKey.OP_CONNECT, peer);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Connecting to node " + peer.id + " failed.", e);
+            disconnect(peer);
+        }
+    }
+
+    private void connected(Peer peer) {
+        peer.connected = true;
+        LOGGER.fine("Connected to node " + peer.id + ".");
+        onNodeConnected(peer.id);
+    }
+
+    private void processOutgoing(SelectionKey key, Peer peer) {
+        try {
+            if (key.isConnectable()) {
+                peer.channel.finishConnect();
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                connected(peer);
+            }
+
+            // nothing is expected to be received, reading just detects closed connection.
+            if (key.isReadable() && peer.channel.read(ByteBuffer.allocate(1)) < 0) {
+                disconnect(peer);
+                return;
+            }
+
+            if (key.isValid() && key.isWritable()) {
+                while (true) {
+                    if (peer.current == null) {
+                        peer.current = peer.queue.poll();
+                        if (peer.current == null) {
+                            key.interestOps(SelectionKey.OP_READ);
+                            break;
+                        }
+                        peer.queued.addAndGet(-peer.current.remaining());
+                    }
+
+                    peer.channel.write(peer.current);
+                    if (peer.current.hasRemaining()) {
+                        break;
+                    }
+                    peer.current = null;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Connection to node " + peer.id + " failed.", e);
+            disconnect(peer);
+        }
+    }
+
+    private void disconnect(Peer peer) {
+        close(peer.channel);
+        peer.channel = null;
+        peer.key = null;
+        peer.current = null;
+        ByteBuffer dropped;
+        while ((dropped = peer.queue.poll()) != null) {
+            peer.queued.addAndGet(-dropped.remaining());
+        }
+        peer.overflow = false;
+        peer.nextAttempt = System.nanoTime() + RECONNECT_DELAY;
+
+        if (peer.connected) {
+            peer.connected = false;
+            LOGGER.fine("Disconnected from node " + peer.id + ".");
+            onNodeDisconnected(peer.id);
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel != null) {
+            final InetAddress address = channel.socket().getInetAddress();
+            if (!isPeerAddress(address)) {
+                LOGGER.warning("Connection from " + address + " rejected, it is not an address of any cluster node.");
+                close(channel);
+                return;
+            }
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Incoming(address));
+        }
+    }
+
+    private boolean isPeerAddress(InetAddress address) {
+        for (Peer peer : peers.values()) {
+            if (address.equals(peer.address.getAddress())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void processIncoming(SelectionKey key, Incoming incoming) {
+        final SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (channel.read(incoming.buffer) < 0) {
+                throw new IOException("Connection closed.");
+            }
+
+            ByteBuffer buffer = incoming.buffer;
+            buffer.flip();
+            while (buffer.remaining() >= 4) {
+                final int length = buffer.getInt(buffer.position());
+                if (length < 0 || length > (incoming.nodeId == null ? MAX_NODE_ID_SIZE : MAX_MESSAGE_SIZE)) {
+                    throw new IOException("Invalid message length: " + length + ".");
+                }
+
+                if (buffer.remaining() < 4 + length) {
+                    if (buffer.capacity() < 4 + length) {
+                        final ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                        larger.put(buffer);
+                        larger.flip();
+                        buffer = larger;
+                    }
+                    break;
+                }
+
+                buffer.getInt();
+                final byte[] message = new byte[length];
+                buffer.get(message);
+
+                if (incoming.nodeId == null) {
+                    incoming.nodeId = identify(incoming, new String(message, MessageWriter.UTF8));
+                } else {
+                    onMessage(incoming.nodeId, message);
+                }
+            }
+            buffer.compact();
+            incoming.buffer = buffer;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Connection from node " + incoming.nodeId + " closed.", e);
+            key.cancel();
+            close(channel);
+            if (incoming.nodeId != null) {
+                onNodeDisconnected(incoming.nodeId);
+            }
+        }
+    }
+
+    private String identify(Incoming incoming, String nodeId) throws IOException {
+        final Peer peer = peers.get(nodeId);
+        if (peer == null || !incoming.address.equals(peer.address.getAddress())) {
+            LOGGER.warning("Connection from " + incoming.address + " rejected, node " + nodeId
+                    + " is not configured with this address.");
+            throw new IOException("Unknown node " + nodeId + ".");
+        }
+        return nodeId;
+    }
+
+    private static ByteBuffer frame(byte[] message) {
+        final ByteBuffer frame = ByteBuffer.allocate(4 + message.length);
+        frame.putInt(message.length).put(message).flip();
+        return frame;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+
+    /**
+     * Other node and connection opened to it. Except for {@link #queue}, {@link #queued}, {@link #overflow} and
+     * {@link #connected}, accessed only from the I/O thread.
+     */
+    private static class Peer {
+
+        private final String id;
+        private final InetSocketAddress address;
+        private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<ByteBuffer>();
+        // bytes in queue.
+        private final AtomicLong queued = new AtomicLong(0);
+
+        private volatile boolean connected;
+        private volatile boolean overflow;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer current;
+        private long nextAttempt = System.nanoTime();
+
+        private Peer(String id, InetSocketAddress address) {
+            this.id = id;
+            this.address = address;
+        }
+    }
+
+    /**
+     * Connection opened by other node.
+     */
+    private static class Incoming {
+
+        private final InetAddress address;
+        private String nodeId;
+        private ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        private Incoming(InetAddress address) {
+            this.address = address;
+        }
+    }
+}
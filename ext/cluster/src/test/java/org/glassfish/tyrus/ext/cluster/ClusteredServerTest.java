@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpoint;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusSession;
+import org.glassfish.tyrus.core.cluster.ClusterContext;
+import org.glassfish.tyrus.server.Server;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Two servers in one JVM, connected by {@link LoopbackClusterContext}.
+ */
+public class ClusteredServerTest {
+
+    private static final String CONTEXT_PATH = "/cluster-test";
+
+    @ServerEndpoint("/clustered")
+    public static class ClusteredEndpoint {
+
+        @OnMessage
+        public void onMessage(Session session, String message) throws IOException {
+            if (message.startsWith("broadcast:")) {
+                ((TyrusSession) session).broadcast(message.substring("broadcast:".length()));
+            } else if (message.startsWith("all:")) {
+                // includes sessions connected to other nodes.
+                for (Session s : session.getOpenSessions()) {
+                    s.getBasicRemote().sendText(message.substring("all:".length()));
+                }
+            }
+        }
+    }
+
+    @ClientEndpoint
+    public static class ClientSideEndpoint {
+
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+
+        @OnMessage
+        public void onMessage(String message) {
+            messages.add(message);
+        }
+    }
+
+    @Test
+    public void testClusteredMessaging() throws Exception {
+        final LoopbackClusterContext.Network network = new LoopbackClusterContext.Network();
+        final LoopbackClusterContext contextA = new LoopbackClusterContext("A", network);
+        final LoopbackClusterContext contextB = new LoopbackClusterContext("B", network);
+        final Server serverA = startServer(8025, contextA);
+        final Server serverB = startServer(8026, contextB);
+
+        try {
+            final ClientManager client = ClientManager.createClient();
+            final ClientSideEndpoint endpointA = new ClientSideEndpoint();
+            final ClientSideEndpoint endpointB = new ClientSideEndpoint();
+            final Session sessionA = client.connectToServer(endpointA, URI.create("ws://localhost:8025" + CONTEXT_PATH + "/clustered"));
+            final Session sessionB = client.connectToServer(endpointB, URI.create("ws://localhost:8026" + CONTEXT_PATH + "/clustered"));
+
+            // session connected to node B has to be announced to node A.
+            for (int i = 0; i < 500 && contextA.getRemoteSessionIds(CONTEXT_PATH + "/clustered").isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+
+            sessionA.getBasicRemote().sendText("broadcast:hello");
+            assertEquals("hello", endpointA.messages.poll(5, TimeUnit.SECONDS));
+            assertEquals("hello", endpointB.messages.poll(5, TimeUnit.SECONDS));
+
+            sessionB.getBasicRemote().sendText("all:hi");
+            assertEquals("hi", endpointA.messages.poll(5, TimeUnit.SECONDS));
+            assertEquals("hi", endpointB.messages.poll(5, TimeUnit.SECONDS));
+
+            sessionA.close();
+            sessionB.close();
+        } finally {
+            serverA.stop();
+            serverB.stop();
+            contextA.shutdown();
+            contextB.shutdown();
+        }
+    }
+
+    private static Server startServer(int port, ClusterContext clusterContext) throws Exception {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(ClusterContext.CLUSTER_CONTEXT, clusterContext);
+
+        final Server server = new Server("localhost", port, CONTEXT_PATH, properties, ClusteredEndpoint.class);
+        server.start();
+        return server;
+    }
+}
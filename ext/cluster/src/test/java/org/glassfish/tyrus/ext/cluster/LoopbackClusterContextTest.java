@@ -0,0 +1,488 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.core.cluster.ClusterSession;
+import org.glassfish.tyrus.core.cluster.SessionEventListener;
+import org.glassfish.tyrus.core.cluster.SessionListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LoopbackClusterContextTest {
+
+    private static final String PATH = "/echo";
+
+    private LoopbackClusterContext.Network network;
+    private LoopbackClusterContext nodeA;
+    private LoopbackClusterContext nodeB;
+
+    @Before
+    public void setUp() {
+        network = new LoopbackClusterContext.Network();
+        nodeA = new LoopbackClusterContext("A", network);
+        nodeB = new LoopbackClusterContext("B", network);
+    }
+
+    @After
+    public void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    public void testRemoteSend() throws Exception {
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        nodeB.registerSessionListener(PATH, sessionListener);
+
+        final RecordingSessionEventListener session = new RecordingSessionEventListener();
+        final String sessionId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(sessionId);
+        nodeA.initClusteredSession(sessionId, PATH, session);
+
+        assertEquals("opened:" + sessionId, sessionListener.events.poll(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singleton(sessionId), nodeB.getRemoteSessionIds(PATH));
+        assertTrue(nodeA.getRemoteSessionIds(PATH).isEmpty());
+        assertTrue(nodeB.getRemoteSessionIds("/other").isEmpty());
+        assertEquals("A", nodeA.getOwnerNodeId(sessionId));
+        assertEquals("A", nodeB.getOwnerNodeId(sessionId));
+
+        nodeB.sendText(sessionId, "hello").get(5, TimeUnit.SECONDS);
+        assertEquals("text:hello", session.events.poll());
+
+        nodeB.sendBinary(sessionId, new byte[]{1, 2, 3}, false).get(5, TimeUnit.SECONDS);
+        assertEquals("binary:3:false", session.events.poll());
+
+        nodeB.close(sessionId).get(5, TimeUnit.SECONDS);
+        assertEquals("close", session.events.poll());
+
+        nodeA.removeSession(sessionId, PATH);
+        assertEquals("closed:" + sessionId, sessionListener.events.poll(5, TimeUnit.SECONDS));
+        assertTrue(nodeB.getRemoteSessionIds(PATH).isEmpty());
+        assertNull(nodeB.getOwnerNodeId(sessionId));
+    }
+
+    @Test
+    public void testBlockedSessionDoesNotBlockOthers() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final String blockedId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(blockedId);
+        nodeA.initClusteredSession(blockedId, PATH, new RecordingSessionEventListener() {
+            @Override
+            public void onSendText(String message) {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onSendText(message);
+            }
+        });
+
+        final RecordingSessionEventListener session = new RecordingSessionEventListener();
+        final String sessionId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(sessionId);
+        nodeA.initClusteredSession(sessionId, PATH, session);
+        waitForRemoteSession(nodeB, blockedId);
+        waitForRemoteSession(nodeB, sessionId);
+
+        try {
+            final Future<Void> blockedSend = nodeB.sendText(blockedId, "first");
+            nodeB.sendText(sessionId, "second").get(5, TimeUnit.SECONDS);
+            assertEquals("text:second", session.events.poll());
+            assertFalse(blockedSend.isDone());
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    @Test
+    public void testDeliveryThreads() throws Exception {
+        nodeA.setDeliveryThreads(1);
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final String blockedId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(blockedId);
+        nodeA.initClusteredSession(blockedId, PATH, new RecordingSessionEventListener() {
+            @Override
+            public void onSendText(String message) {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onSendText(message);
+            }
+        });
+
+        final RecordingSessionEventListener session = new RecordingSessionEventListener();
+        final String sessionId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(sessionId);
+        nodeA.initClusteredSession(sessionId, PATH, session);
+        waitForRemoteSession(nodeB, blockedId);
+        waitForRemoteSession(nodeB, sessionId);
+
+        final Future<Void> blockedSend;
+        final Future<Void> send;
+        try {
+            blockedSend = nodeB.sendText(blockedId, "first");
+            send = nodeB.sendText(sessionId, "second");
+            // the only delivery thread is blocked.
+            Thread.sleep(200);
+            assertFalse(send.isDone());
+        } finally {
+            blocked.countDown();
+        }
+
+        blockedSend.get(5, TimeUnit.SECONDS);
+        send.get(5, TimeUnit.SECONDS);
+        assertEquals("text:second", session.events.poll());
+
+        try {
+            nodeA.setDeliveryThreads(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testSendFailure() throws Exception {
+        final String sessionId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(sessionId);
+        nodeA.initClusteredSession(sessionId, PATH, new SessionEventListener(null) {
+            @Override
+            public void onSendText(String message) throws IOException {
+                throw new IOException("broken");
+            }
+        });
+        waitForRemoteSession(nodeB, sessionId);
+
+        try {
+            nodeB.sendText(sessionId, "hello").get(5, TimeUnit.SECONDS);
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().contains("broken"));
+        }
+
+        try {
+            nodeB.sendText("unknown", "hello").get(5, TimeUnit.SECONDS);
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testBroadcast() throws Exception {
+        final BlockingQueue<String> receivedA = new LinkedBlockingQueue<String>();
+        final BlockingQueue<String> receivedB = new LinkedBlockingQueue<String>();
+        nodeA.registerBroadcastListener(PATH, new RecordingBroadcastListener(receivedA));
+        nodeB.registerBroadcastListener(PATH, new RecordingBroadcastListener(receivedB));
+        nodeB.registerBroadcastListener("/other", new RecordingBroadcastListener(receivedB));
+
+        nodeA.broadcastText(PATH, "hello");
+        nodeA.broadcastBinary(PATH, new byte[]{1, 2});
+
+        assertEquals("text:hello", receivedB.poll(5, TimeUnit.SECONDS));
+        assertEquals("binary:2", receivedB.poll(5, TimeUnit.SECONDS));
+        assertNull(receivedB.poll(100, TimeUnit.MILLISECONDS));
+        // originating node delivers broadcast to its local sessions itself.
+        assertTrue(receivedA.isEmpty());
+    }
+
+    @Test
+    public void testDistributedProperties() throws Exception {
+        final String sessionId = nodeA.createSessionId();
+        final Map<ClusterSession.DistributedMapKey, Object> properties = nodeA.getDistributedSessionProperties(sessionId);
+        properties.put(ClusterSession.DistributedMapKey.NEGOTIATED_SUBPROTOCOL, "chat");
+
+        final String connectionId = nodeA.createConnectionId();
+        final Map<String, Object> userProperties = nodeA.getDistributedUserProperties(connectionId);
+        userProperties.put("before", 1);
+
+        nodeA.initClusteredSession(sessionId, PATH, new RecordingSessionEventListener());
+        waitForRemoteSession(nodeB, sessionId);
+
+        assertEquals("chat",
+                nodeB.getDistributedSessionProperties(sessionId).get(ClusterSession.DistributedMapKey.NEGOTIATED_SUBPROTOCOL));
+
+        final Map<String, Object> remoteUserProperties = nodeB.getDistributedUserProperties(connectionId);
+        userProperties.put("after", "value");
+        waitForProperty(remoteUserProperties, "after", "value");
+        assertEquals(1, remoteUserProperties.get("before"));
+
+        // changes are replicated in both directions.
+        remoteUserProperties.put("fromB", true);
+        waitForProperty(userProperties, "fromB", true);
+
+        nodeA.destroyDistributedUserProperties(connectionId);
+        waitForProperty(remoteUserProperties, "after", null);
+    }
+
+    @Test
+    public void testPropertyTypes() throws Exception {
+        final String connectionId = nodeA.createConnectionId();
+        final Map<String, Object> userProperties = nodeA.getDistributedUserProperties(connectionId);
+        final Map<String, Object> remoteUserProperties = nodeB.getDistributedUserProperties(connectionId);
+
+        userProperties.put("date", new Date(0));
+        userProperties.put("marker", "value");
+        waitForProperty(remoteUserProperties, "marker", "value");
+        // not registered.
+        assertNull(remoteUserProperties.get("date"));
+
+        nodeB.registerPropertyType(Date.class);
+        userProperties.put("date", new Date(1));
+        waitForProperty(remoteUserProperties, "date", new Date(1));
+    }
+
+    @Test
+    public void testNodeLeft() throws Exception {
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        nodeB.registerSessionListener(PATH, sessionListener);
+
+        final String sessionId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(sessionId);
+        nodeA.initClusteredSession(sessionId, PATH, new RecordingSessionEventListener());
+        assertEquals("opened:" + sessionId, sessionListener.events.poll(5, TimeUnit.SECONDS));
+
+        nodeA.shutdown();
+
+        assertEquals("closed:" + sessionId, sessionListener.events.poll(5, TimeUnit.SECONDS));
+        assertTrue(nodeB.getRemoteSessionIds(PATH).isEmpty());
+    }
+
+    @Test
+    public void testNodeJoinedLater() throws Exception {
+        final String sessionId = nodeA.createSessionId();
+        nodeA.getDistributedSessionProperties(sessionId);
+        nodeA.initClusteredSession(sessionId, PATH, new RecordingSessionEventListener());
+        waitForRemoteSession(nodeB, sessionId);
+
+        final LoopbackClusterContext nodeC = new LoopbackClusterContext("C", network);
+        try {
+            waitForRemoteSession(nodeC, sessionId);
+        } finally {
+            nodeC.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+        final CountingClusterContext nodeC = new CountingClusterContext("C", network, Integer.MAX_VALUE, 500);
+        try {
+            final String sessionId = nodeA.createSessionId();
+            nodeA.getDistributedSessionProperties(sessionId);
+            final RecordingSessionEventListener session = new RecordingSessionEventListener();
+            nodeA.initClusteredSession(sessionId, PATH, session);
+            waitForRemoteSession(nodeC, sessionId);
+            // let the announcement processing finish, its end flushes all batches.
+            Thread.sleep(100);
+            nodeC.sent.set(0);
+
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(nodeC.sendText(sessionId, "message " + i));
+                nodeC.broadcastText(PATH, "broadcast " + i);
+            }
+            for (Future<Void> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            // every operation is completed separately, in order.
+            for (int i = 0; i < 100; i++) {
+                assertEquals("text:message " + i, session.events.poll());
+            }
+            // one batch for node A, one for node B.
+            assertEquals(2, nodeC.sent.get());
+        } finally {
+            nodeC.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchFlushedBySize() throws Exception {
+        // each of the messages below takes about 370 bytes, fourth one exceeds the batch size.
+        // flush delay is long enough to never elapse during the test.
+        final CountingClusterContext nodeC = new CountingClusterContext("C", network, 1200, TimeUnit.HOURS.toMillis(1));
+        try {
+            final String sessionId = nodeA.createSessionId();
+            nodeA.getDistributedSessionProperties(sessionId);
+            nodeA.initClusteredSession(sessionId, PATH, new RecordingSessionEventListener());
+            waitForRemoteSession(nodeC, sessionId);
+            Thread.sleep(100);
+
+            final char[] chars = new char[300];
+            Arrays.fill(chars, 'x');
+            final String text = new String(chars);
+
+            final Future<Void> first = nodeC.sendText(sessionId, text);
+            final Future<Void> second = nodeC.sendText(sessionId, text);
+            final Future<Void> third = nodeC.sendText(sessionId, text);
+            Thread.sleep(100);
+            assertFalse(first.isDone());
+
+            nodeC.sendText(sessionId, text);
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            third.get(5, TimeUnit.SECONDS);
+        } finally {
+            nodeC.shutdown();
+        }
+    }
+
+    static void waitForRemoteSession(BaseClusterContext context, String sessionId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (context.getRemoteSessionIds(PATH).contains(sessionId)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Session " + sessionId + " not announced to node " + context.getNodeId());
+    }
+
+    private static void waitForProperty(Map<String, Object> map, String key, Object value) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            final Object current = map.get(key);
+            if (value == null ? current == null : value.equals(current)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Property " + key + " not replicated.");
+    }
+
+    static class RecordingSessionListener implements SessionListener {
+
+        final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+        @Override
+        public void onSessionOpened(String sessionId) {
+            events.add("opened:" + sessionId);
+        }
+
+        @Override
+        public void onSessionClosed(String sessionId) {
+            events.add("closed:" + sessionId);
+        }
+    }
+
+    static class RecordingSessionEventListener extends SessionEventListener {
+
+        final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+        RecordingSessionEventListener() {
+            super(null);
+        }
+
+        @Override
+        public void onSendText(String message) {
+            events.add("text:" + message);
+        }
+
+        @Override
+        public void onSendBinary(byte[] message, boolean isLast) {
+            events.add("binary:" + message.length + ":" + isLast);
+        }
+
+        @Override
+        public void onClose() {
+            events.add("close");
+        }
+    }
+
+    private static class CountingClusterContext extends LoopbackClusterContext {
+
+        private final AtomicInteger sent = new AtomicInteger();
+
+        private CountingClusterContext(String nodeId, LoopbackClusterContext.Network network, int maxBatchSize,
+                                       long flushDelay) {
+            super(nodeId, network, maxBatchSize, flushDelay, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected boolean send(String nodeId, byte[] message) {
+            sent.incrementAndGet();
+            return super.send(nodeId, message);
+        }
+    }
+
+    private static class RecordingBroadcastListener implements BroadcastListener {
+
+        private final BlockingQueue<String> events;
+
+        private RecordingBroadcastListener(BlockingQueue<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void onBroadcast(String text) {
+            events.add("text:" + text);
+        }
+
+        @Override
+        public void onBroadcast(byte[] data) {
+            events.add("binary:" + data.length);
+        }
+    }
+}
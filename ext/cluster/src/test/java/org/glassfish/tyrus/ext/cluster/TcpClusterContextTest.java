@@ -0,0 +1,178 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.tyrus.core.cluster.ClusterSession;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TcpClusterContextTest {
+
+    private static final String PATH = "/echo";
+
+    @Test
+    public void testParseNodes() {
+        final Map<String, InetSocketAddress> nodes = TcpClusterContext.parseNodes("a=localhost:9001, b=10.0.0.2:9002");
+
+        assertEquals(2, nodes.size());
+        assertEquals(new InetSocketAddress("localhost", 9001), nodes.get("a"));
+        assertEquals(new InetSocketAddress("10.0.0.2", 9002), nodes.get("b"));
+
+        try {
+            TcpClusterContext.parseNodes("a:9001");
+            fail("IllegalArgumentException expected.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testRemoteSend() throws Exception {
+        final Map<String, InetSocketAddress> nodes = nodes();
+        final TcpClusterContext nodeA = new TcpClusterContext("A", nodes);
+        final TcpClusterContext nodeB = new TcpClusterContext("B", nodes);
+
+        try {
+            final LoopbackClusterContextTest.RecordingSessionListener sessionListener =
+                    new LoopbackClusterContextTest.RecordingSessionListener();
+            nodeB.registerSessionListener(PATH, sessionListener);
+
+            final LoopbackClusterContextTest.RecordingSessionEventListener session =
+                    new LoopbackClusterContextTest.RecordingSessionEventListener();
+            final String sessionId = nodeA.createSessionId();
+            nodeA.getDistributedSessionProperties(sessionId).put(
+                    ClusterSession.DistributedMapKey.NEGOTIATED_SUBPROTOCOL, "chat");
+            nodeA.initClusteredSession(sessionId, PATH, session);
+
+            assertEquals("opened:" + sessionId, sessionListener.events.poll(10, TimeUnit.SECONDS));
+            assertEquals("chat", nodeB.getDistributedSessionProperties(sessionId).get(
+                    ClusterSession.DistributedMapKey.NEGOTIATED_SUBPROTOCOL));
+
+            // larger than initial read buffer.
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 100000; i++) {
+                sb.append((char) ('a' + i % 26));
+            }
+            nodeB.sendText(sessionId, sb.toString()).get(5, TimeUnit.SECONDS);
+            assertEquals("text:" + sb, session.events.poll());
+
+            nodeA.shutdown();
+            assertEquals("closed:" + sessionId, sessionListener.events.poll(10, TimeUnit.SECONDS));
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+    }
+
+    @Test
+    public void testNodeRestart() throws Exception {
+        final Map<String, InetSocketAddress> nodes = nodes();
+        final TcpClusterContext nodeA = new TcpClusterContext("A", nodes);
+        TcpClusterContext nodeB = new TcpClusterContext("B", nodes);
+
+        try {
+            final String sessionId = nodeA.createSessionId();
+            nodeA.getDistributedSessionProperties(sessionId);
+            nodeA.initClusteredSession(sessionId, PATH, new LoopbackClusterContextTest.RecordingSessionEventListener());
+            LoopbackClusterContextTest.waitForRemoteSession(nodeB, sessionId);
+
+            nodeB.shutdown();
+            nodeB = new TcpClusterContext("B", nodes);
+
+            // node A reconnects and announces its sessions again.
+            LoopbackClusterContextTest.waitForRemoteSession(nodeB, sessionId);
+            assertTrue(nodeA.getRemoteSessionIds(PATH).isEmpty());
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnknownNodeRejected() throws Exception {
+        final Map<String, InetSocketAddress> nodes = nodes();
+        final TcpClusterContext nodeA = new TcpClusterContext("A", nodes);
+
+        try {
+            final Socket socket = new Socket();
+            try {
+                socket.connect(nodes.get("A"));
+                socket.setSoTimeout(10000);
+
+                final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                final byte[] nodeId = "X".getBytes(MessageWriter.UTF8);
+                out.writeInt(nodeId.length);
+                out.write(nodeId);
+                out.flush();
+
+                // connection is closed by node A.
+                assertEquals(-1, socket.getInputStream().read());
+            } finally {
+                socket.close();
+            }
+        } finally {
+            nodeA.shutdown();
+        }
+    }
+
+    private static Map<String, InetSocketAddress> nodes() throws IOException {
+        return TcpClusterContext.parseNodes("A=localhost:" + freePort() + ",B=localhost:" + freePort());
+    }
+
+    private static int freePort() throws IOException {
+        final ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
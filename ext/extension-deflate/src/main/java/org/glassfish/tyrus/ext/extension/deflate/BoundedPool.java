@@ -0,0 +1,158 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pool retaining limited number of idle instances holding native resources.
+ * <p/>
+ * Instances are reset when returned; instances which do not fit into the pool are disposed.
+ */
+abstract class BoundedPool<T> {
+
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final int maxSize;
+
+    BoundedPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Create pool of raw (no zlib header) compressors.
+     *
+     * @param compressionLevel compression level of created compressors.
+     * @param strategy         compression strategy of created compressors.
+     * @param maxSize          maximal number of idle instances.
+     * @return new pool.
+     */
+    static BoundedPool<Deflater> deflaters(final int compressionLevel, final int strategy, int maxSize) {
+        return new BoundedPool<Deflater>(maxSize) {
+            @Override
+            Deflater create() {
+                final Deflater deflater = new Deflater(compressionLevel, true);
+                deflater.setStrategy(strategy);
+                return deflater;
+            }
+
+            @Override
+            void reset(Deflater deflater) {
+                deflater.reset();
+            }
+
+            @Override
+            void dispose(Deflater deflater) {
+                deflater.end();
+            }
+        };
+    }
+
+    /**
+     * Create pool of raw (no zlib header) decompressors.
+     *
+     * @param maxSize maximal number of idle instances.
+     * @return new pool.
+     */
+    static BoundedPool<Inflater> inflaters(int maxSize) {
+        return new BoundedPool<Inflater>(maxSize) {
+            @Override
+            Inflater create() {
+                return new Inflater(true);
+            }
+
+            @Override
+            void reset(Inflater inflater) {
+                inflater.reset();
+            }
+
+            @Override
+            void dispose(Inflater inflater) {
+                inflater.end();
+            }
+        };
+    }
+
+    /**
+     * Gets an idle instance from the pool or creates new one.
+     *
+     * @return always non-null.
+     */
+    final T take() {
+        final T t = queue.poll();
+        if (t == null) {
+            return create();
+        }
+        size.decrementAndGet();
+        return t;
+    }
+
+    /**
+     * Returns an instance back to the pool.
+     */
+    final void recycle(T t) {
+        reset(t);
+
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                dispose(t);
+                return;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+
+        queue.offer(t);
+    }
+
+    final int size() {
+        return size.get();
+    }
+
+    abstract T create();
+
+    abstract void reset(T t);
+
+    abstract void dispose(T t);
+}
@@ -0,0 +1,176 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds {@link PresetDictionary} from sample messages.
+ * <p/>
+ * Dictionary consists of substrings which appear in more than one sample. Substrings are ranked by the number of
+ * samples containing them multiplied by their length; the best ones are placed at the end of the dictionary, where
+ * deflate can reference them with the shortest distances.
+ */
+public class DictionaryBuilder {
+
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+    private static final int GRAM = 8;
+
+    private final int maxSize;
+    private final List<String> samples = new ArrayList<String>();
+
+    /**
+     * Create new builder.
+     *
+     * @param maxSize maximal size of built dictionary, up to {@value PresetDictionary#MAX_SIZE} bytes.
+     */
+    public DictionaryBuilder(int maxSize) {
+        if (maxSize < 1 || maxSize > PresetDictionary.MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid dictionary size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Add sample message.
+     *
+     * @param sample message payload.
+     * @return updated builder.
+     */
+    public DictionaryBuilder addSample(byte[] sample) {
+        // latin1 maps bytes to chars one to one.
+        samples.add(new String(sample, LATIN1));
+        return this;
+    }
+
+    /**
+     * Build the dictionary.
+     *
+     * @return dictionary built from added samples.
+     * @throws IllegalStateException when samples do not share any content.
+     */
+    public PresetDictionary build() {
+        // number of samples containing each gram.
+        final Map<String, Integer> frequency = new HashMap<String, Integer>();
+        for (String sample : samples) {
+            final Set<String> grams = new HashSet<String>();
+            for (int i = 0; i + GRAM <= sample.length(); i++) {
+                grams.add(sample.substring(i, i + GRAM));
+            }
+            for (String gram : grams) {
+                final Integer count = frequency.get(gram);
+                frequency.put(gram, count == null ? 1 : count + 1);
+            }
+        }
+
+        // maximal runs of frequent grams; score is the lowest frequency of a gram in the run.
+        final Map<String, Integer> segments = new HashMap<String, Integer>();
+        for (String sample : samples) {
+            int start = -1;
+            int score = Integer.MAX_VALUE;
+            for (int i = 0; i + GRAM <= sample.length() + 1; i++) {
+                final Integer count = i + GRAM <= sample.length() ? frequency.get(sample.substring(i, i + GRAM)) : null;
+                if (count != null && count > 1) {
+                    if (start < 0) {
+                        start = i;
+                        score = count;
+                    } else {
+                        score = Math.min(score, count);
+                    }
+                } else if (start >= 0) {
+                    final String segment = sample.substring(start, i - 1 + GRAM);
+                    final Integer previous = segments.get(segment);
+                    segments.put(segment, previous == null ? score : Math.max(previous, score));
+                    start = -1;
+                }
+            }
+        }
+
+        final List<Map.Entry<String, Integer>> ranked = new ArrayList<Map.Entry<String, Integer>>(segments.entrySet());
+        Collections.sort(ranked, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
+                final long score1 = (long) o1.getValue() * o1.getKey().length();
+                final long score2 = (long) o2.getValue() * o2.getKey().length();
+                if (score1 != score2) {
+                    return score1 > score2 ? -1 : 1;
+                }
+                return o1.getKey().compareTo(o2.getKey());
+            }
+        });
+
+        // best segments first, skipping the ones already contained.
+        final List<String> selected = new ArrayList<String>();
+        final StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : ranked) {
+            final String segment = entry.getKey();
+            if (content.indexOf(segment) >= 0) {
+                continue;
+            }
+            if (content.length() + segment.length() > maxSize) {
+                if (content.length() < maxSize) {
+                    continue;
+                }
+                break;
+            }
+            selected.add(segment);
+            content.append(segment);
+        }
+
+        if (selected.isEmpty()) {
+            throw new IllegalStateException("Samples do not contain any shared content.");
+        }
+
+        final StringBuilder dictionary = new StringBuilder(content.length());
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            dictionary.append(selected.get(i));
+        }
+        return new PresetDictionary(dictionary.toString().getBytes(LATIN1));
+    }
+}
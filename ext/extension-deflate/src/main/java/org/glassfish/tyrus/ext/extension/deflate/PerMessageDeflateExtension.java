@@ -40,211 +40,583 @@
 
 package org.glassfish.tyrus.ext.extension.deflate;
 
-import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.BroadcastExtension;
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.FrameTypeAwareExtension;
 import org.glassfish.tyrus.core.frame.Frame;
 
 /**
- * Compression Extensions for WebSocket
- * draft-ietf-hybi-permessage-compression-15
+ * Compression Extensions for WebSocket (RFC 7692).
  * <p/>
- * http://tools.ietf.org/html/draft-ietf-hybi-permessage-compression-15
+ * http://tools.ietf.org/html/rfc7692
  * <p/>
+ * Compression level, strategy, context takeover and window sizes can be configured using {@link #builder()};
+ * instance created by the default constructor compresses with level 9 and does not request any parameter.
+ * <p/>
+ * The same configuration is used for both roles. Client sends configured parameters in its offer, server includes
+ * them in the negotiation response (accepting the parameters offered by the client at the same time):
+ * <ul>
+ * <li>{@code server_no_context_takeover} and {@code client_no_context_takeover} - compressor of the respective
+ * side is reset after every message.</li>
+ * <li>{@code server_max_window_bits} and {@code client_max_window_bits} - limit the LZ77 window of the respective
+ * side compressor. {@link Deflater} always uses 32 KB window, so when a window smaller than that is negotiated for
+ * this side, outgoing messages are sent uncompressed (which is allowed by the RFC); incoming messages are always
+ * decompressed, whatever the window size is.</li>
+ * </ul>
+ * Server ignores unknown and invalid parameters of the offer, since extension negotiation API does not allow to
+ * decline it.
+ * <p/>
+ * Side which does not use context takeover does not need to keep its compressor (or decompressor) between messages;
+ * instances are borrowed from a bounded pool shared by all connections using this extension instance for the time
+ * of processing single message and returned after its last frame. Native memory used by zlib then depends on number
+ * of messages processed concurrently, not on number of open connections. See {@link Builder#poolSize(int)}.
+ * <p/>
+ * Messages smaller than {@link Builder#compressionThreshold(int)} are sent uncompressed. When
+ * {@link Builder#adaptiveCompression(double)} is set, each connection tracks compression ratio of recent messages
+ * and stops compressing when it does not save enough; a message is still compressed occasionally to detect change
+ * of the data. Counters ({@link #getCompressedMessageCount()}, {@link #getBytesSaved()}, ...) cover all connections
+ * using this extension instance. They count processed messages, not delivered ones: broadcasted message shared by
+ * a group of connections (see below) is counted once for the whole group.
+ * <p/>
+ * Broadcasted message is compressed only once for all connections where this side does not use context takeover
+ * (and adaptive compression is disabled), see {@link BroadcastExtension}.
+ * <p/>
+ * {@link PresetDictionaryDeflateExtension} marks compressed messages with RSV1 as well, so only one of them can be
+ * used on a connection: when both are negotiated, the one listed first in the handshake response compresses and
+ * the other one passes frames through unchanged.
  * <p/>
  * <pre>TODO:
- * - parameters (window sizes, context takeovers).
  * - context (some utility methods to get the typed params - T getParam(Class<T>))
  * </pre>
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
-public class PerMessageDeflateExtension implements ExtendedExtension {
+public class PerMessageDeflateExtension implements BroadcastExtension, FrameTypeAwareExtension {
 
-    private static final Pool<byte[]> BYTE_ARRAY_POOL = new Pool<byte[]>() {
-        @Override
-        byte[] create() {
-            return new byte[8192];
-        }
-    };
+    /**
+     * Server does not use context takeover (RFC 7692, section 7.1.1.1).
+     */
+    public static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    /**
+     * Client does not use context takeover (RFC 7692, section 7.1.1.2).
+     */
+    public static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+    /**
+     * Limit of the LZ77 window of the server compressor (RFC 7692, section 7.1.2.1).
+     */
+    public static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
 
-    private static final String INFLATER = PerMessageDeflateExtension.class.getName() + ".INFLATER";
-    private static final String DEFLATER = PerMessageDeflateExtension.class.getName() + ".DEFLATER";
+    /**
+     * Limit of the LZ77 window of the client compressor (RFC 7692, section 7.1.2.2).
+     */
+    public static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    private static final int MIN_WINDOW_BITS = 8;
+    private static final int MAX_WINDOW_BITS = 15;
+
+    // weight of the last message in the moving average of compression ratio.
+    private static final double ADAPTIVE_WEIGHT = 0.25;
+    private static final int ADAPTIVE_PROBE_INTERVAL = 32;
+
+    // expected size of inflated data relative to compressed size, used until the first frame is inflated.
+    private static final double INFLATE_RATIO = 4;
+    private static final int MAX_ESTIMATE = 1 << 24;
+
+    private static final String STATE = PerMessageDeflateExtension.class.getName() + ".STATE";
+    private static final String RSV1_OWNER = PerMessageDeflateExtension.class.getName() + ".RSV1_OWNER";
 
     private static final Logger LOGGER = Logger.getLogger(PerMessageDeflateExtension.class.getName());
     private static final boolean DEBUG = LOGGER.isLoggable(Level.FINE);
 
     private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
 
+    private final int compressionLevel;
+    private final int strategy;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+    private final Integer serverMaxWindowBits;
+    private final Integer clientMaxWindowBits;
+    private final List<Parameter> parameters;
+    private final BoundedPool<Deflater> deflaterPool;
+    private final BoundedPool<Inflater> inflaterPool;
+    private final int compressionThreshold;
+    private final double minSavings;
+
+    private final AtomicLong compressedMessages = new AtomicLong();
+    private final AtomicLong uncompressedMessages = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong compressionTime = new AtomicLong();
+
+    /**
+     * Create extension with default configuration - compression level 9, default strategy, no parameters.
+     */
+    public PerMessageDeflateExtension() {
+        this(new Builder());
+    }
+
+    /**
+     * Create extension configured by given builder.
+     *
+     * @param builder builder holding the configuration.
+     */
+    protected PerMessageDeflateExtension(Builder builder) {
+        this.compressionLevel = builder.compressionLevel;
+        this.strategy = builder.strategy;
+        this.serverNoContextTakeover = builder.serverNoContextTakeover;
+        this.clientNoContextTakeover = builder.clientNoContextTakeover;
+        this.serverMaxWindowBits = builder.serverMaxWindowBits;
+        this.clientMaxWindowBits = builder.clientMaxWindowBits;
+        this.compressionThreshold = builder.compressionThreshold;
+        this.minSavings = builder.minSavings;
+
+        final List<Parameter> offer = new ArrayList<Parameter>();
+        if (serverNoContextTakeover) {
+            offer.add(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientNoContextTakeover) {
+            offer.add(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (serverMaxWindowBits != null) {
+            offer.add(new TyrusExtension.TyrusParameter(SERVER_MAX_WINDOW_BITS, serverMaxWindowBits.toString()));
+        }
+        if (clientMaxWindowBits != null) {
+            offer.add(new TyrusExtension.TyrusParameter(CLIENT_MAX_WINDOW_BITS, clientMaxWindowBits.toString()));
+        }
+        this.parameters = Collections.unmodifiableList(offer);
+
+        this.deflaterPool = BoundedPool.deflaters(compressionLevel, strategy, builder.poolSize);
+        this.inflaterPool = BoundedPool.inflaters(builder.poolSize);
+    }
+
+    /**
+     * Create new {@link Builder} instance.
+     *
+     * @return new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     @Override
     public Frame processIncoming(ExtensionContext context, Frame frame) {
-        final Inflater decompresser = (Inflater) context.getProperties().get(INFLATER);
+        final State state = (State) context.getProperties().get(STATE);
 
         if (DEBUG) {
             LOGGER.fine("Incoming frame: " + frame);
         }
 
-        if (frame.isRsv1() && !frame.isControlFrame()) {
-            // Decompress the bytes
-            final int payloadLength = (int) frame.getPayloadLength();
-
-            List<PartialResultWithLength<byte[]>> wholeResult = new ArrayList<PartialResultWithLength<byte[]>>();
-            int wholeResultLength = 0;
+        if (!state.enabled || !frame.isRsv1() || frame.isControlFrame()) {
+            return frame;
+        }
 
-            int tmp = processCompressed(decompresser, frame.getPayloadData(), payloadLength, wholeResult);
-            if (tmp == -1) {
+        synchronized (state.inflaterLock) {
+            // decompressor has already been released by destroy.
+            if (state.closed) {
                 return frame;
-            } else {
-                wholeResultLength += tmp;
             }
 
-            tmp = processCompressed(decompresser, TAIL, 4, wholeResult);
-            if (tmp == -1) {
-                return frame;
-            } else {
-                wholeResultLength += tmp;
+            if (state.inflater == null) {
+                state.inflater = inflaterPool.take();
             }
+            final Inflater decompresser = state.inflater;
 
-            byte[] completeResult = new byte[wholeResultLength];
-            wholeResultLength = 0;
-            for (PartialResultWithLength<byte[]> partialResult : wholeResult) {
-                tmp = partialResult.getLength();
-                final byte[] result = partialResult.getResult();
-                System.arraycopy(result, 0, completeResult, wholeResultLength, tmp);
-                BYTE_ARRAY_POOL.recycle(result);
-                wholeResultLength += tmp;
-            }
+            // Decompress the bytes
+            final ByteBuffer payload = frame.getPayloadBuffer();
+            final int payloadLength = payload.remaining();
 
-            return Frame.builder(frame).payloadData(completeResult).rsv1(false).build();
-        } else {
-            return frame;
-        }
-    }
+            byte[] output = new byte[estimate(payloadLength, state.inflateRatio > 0 ? state.inflateRatio : INFLATE_RATIO)];
+            int length = 0;
 
-    private int processCompressed(Inflater decompresser, byte[] compressed, int length, List<PartialResultWithLength<byte[]>> partialResults) {
-        decompresser.setInput(compressed, 0, length);
-        int decompressedLength = 0;
-        do {
-            byte[] result = BYTE_ARRAY_POOL.take();
-            int partialResultLength;
             try {
-                partialResultLength = decompresser.inflate(result);
+                decompresser.setInput(payload.array(), 0, payloadLength);
+                boolean tail = false;
+                while (true) {
+                    if (length == output.length) {
+                        output = Arrays.copyOf(output, grow(output.length));
+                    }
+
+                    final int inflated = decompresser.inflate(output, length, output.length - length);
+                    length += inflated;
+
+                    if (length < output.length) {
+                        if (decompresser.needsInput() && !tail) {
+                            decompresser.setInput(TAIL);
+                            tail = true;
+                        } else if (decompresser.needsInput() || inflated == 0) {
+                            break;
+                        }
+                    }
+                }
             } catch (DataFormatException e) {
                 LOGGER.log(Level.INFO, e.getMessage(), e);
-                return -1;
+                releaseInflater(state);
+                return frame;
             }
 
-            if (partialResultLength != 0) {
-                partialResults.add(new PartialResultWithLength<byte[]>(partialResultLength, result));
-                decompressedLength += partialResultLength;
-            } else {
-                BYTE_ARRAY_POOL.recycle(result);
+            state.inflateRatio = payloadLength == 0 ? 0 : (double) length / payloadLength;
+
+            if (frame.isFin()) {
+                releaseInflater(state);
             }
-        } while (decompresser.getRemaining() > 0);
 
-        return decompressedLength;
+            return Frame.builder(frame).payloadData(output).payloadLength(length).rsv1(false).build();
+        }
+    }
+
+    /**
+     * Initial size of output buffer; it is enlarged when the data does not fit.
+     */
+    private static int estimate(int inputLength, double ratio) {
+        return (int) Math.min((long) (inputLength * ratio) + (inputLength >>> 8) + 64, MAX_ESTIMATE);
+    }
+
+    private static int grow(int length) {
+        return length > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE - 8 : length * 2;
     }
 
     @Override
     public Frame processOutgoing(ExtensionContext context, Frame frame) {
-        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
+        final State state = (State) context.getProperties().get(STATE);
 
         if (DEBUG) {
             LOGGER.fine("Outgoing frame: " + frame);
         }
 
-        if (!frame.isControlFrame()) {
+        // compress is false when the negotiated window is smaller than the one used by Deflater.
+        if (!state.compress || frame.isControlFrame()) {
+            return frame;
+        }
+
+        synchronized (state.deflaterLock) {
+            // compressor has already been released by destroy.
+            if (state.closed) {
+                return frame;
+            }
+            return compress(state, frame);
+        }
+    }
+
+    private Frame compress(State state, Frame frame) {
+        final boolean firstFrame = !state.inMessage;
+        if (firstFrame) {
+            state.compressMessage = shouldCompress(state, frame);
+            state.messageLength = 0;
+            state.compressedLength = 0;
+        }
+        state.inMessage = !frame.isFin();
+
+        if (!state.compressMessage) {
+            if (frame.isFin()) {
+                uncompressedMessages.incrementAndGet();
+            }
+            return frame;
+        }
 
-            List<PartialResultWithLength<byte[]>> wholeResult = new ArrayList<PartialResultWithLength<byte[]>>();
-            int wholeResultLength = 0;
+        if (state.deflater == null) {
+            state.deflater = deflaterPool.take();
+        }
+        final Deflater compresser = state.deflater;
 
-            // Compress the bytes
-            final int payloadLength = (int) frame.getPayloadLength();
-            compresser.setInput(frame.getPayloadData(), 0, payloadLength);
+        final long start = System.nanoTime();
 
-            int compressedDataLength;
-            do {
-                byte[] output = BYTE_ARRAY_POOL.take();
-                compressedDataLength = compresser.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+        // Compress the bytes
+        final ByteBuffer payload = frame.getPayloadBuffer();
+        final int payloadLength = payload.remaining();
+        compresser.setInput(payload.array(), 0, payloadLength);
 
-                if (compressedDataLength > 0) {
-                    wholeResult.add(new PartialResultWithLength<byte[]>(compressedDataLength, output));
-                    wholeResultLength += compressedDataLength;
-                } else {
-                    BYTE_ARRAY_POOL.recycle(output);
-                }
-            } while (compressedDataLength > 0);
-
-            byte[] completeResult = new byte[wholeResultLength];
-            wholeResultLength = 0;
-            for (PartialResultWithLength<byte[]> partialResult : wholeResult) {
-                int tmp = partialResult.getLength();
-                final byte[] result = partialResult.getResult();
-                System.arraycopy(result, 0, completeResult, wholeResultLength, tmp);
-                BYTE_ARRAY_POOL.recycle(result);
-                wholeResultLength += tmp;
+        byte[] output = new byte[estimate(payloadLength, state.ratio > 0 ? state.ratio : 1)];
+        int length = 0;
+        while (true) {
+            length += compresser.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+
+            // flush is complete when the output did not fill the buffer.
+            if (length < output.length) {
+                break;
+            }
+            output = Arrays.copyOf(output, grow(output.length));
+        }
+
+        boolean strip = false;
+        if (length >= 4 &&
+                output[length - 4] == TAIL[0] &&
+                output[length - 3] == TAIL[1] &&
+                output[length - 2] == TAIL[2] &&
+                output[length - 1] == TAIL[3]
+                ) {
+            strip = true;
+        }
+        // nothing is written when there is no new input since the last flush; send empty block (RFC 7692, 7.2.3.6).
+        final int compressedLength = strip ? length - 4 : Math.max(length, 1);
+
+        if (state.resetDeflater && frame.isFin()) {
+            deflaterPool.recycle(compresser);
+            state.deflater = null;
+        }
+
+        compressionTime.addAndGet(System.nanoTime() - start);
+        state.messageLength += payloadLength;
+        state.compressedLength += compressedLength;
+
+        if (frame.isFin()) {
+            updateRatio(state);
+
+            // peer dictionary would miss the message with context takeover, so the original can be sent only
+            // when the compressor is reset after each message anyway.
+            if (firstFrame && state.resetDeflater && compressedLength >= payloadLength) {
+                uncompressedMessages.incrementAndGet();
+                return frame;
             }
 
-            boolean strip = false;
-            if (completeResult[completeResult.length - 4] == TAIL[0] &&
-                    completeResult[completeResult.length - 3] == TAIL[1] &&
-                    completeResult[completeResult.length - 2] == TAIL[2] &&
-                    completeResult[completeResult.length - 1] == TAIL[3]
-                    ) {
-                strip = true;
+            compressedMessages.incrementAndGet();
+            bytesSaved.addAndGet(state.messageLength - state.compressedLength);
+        }
+
+        return Frame.builder(frame).payloadData(output).payloadLength(compressedLength).rsv1(true).build();
+    }
+
+    private boolean shouldCompress(State state, Frame frame) {
+        // size of fragmented message is not known in advance.
+        if (frame.isFin() && frame.getPayloadLength() < compressionThreshold) {
+            return false;
+        }
+
+        if (minSavings > 0 && state.ratio >= 0 && 1 - state.ratio < minSavings) {
+            // compress a message once in a while to find out whether the data got compressible again.
+            if (++state.skippedMessages < ADAPTIVE_PROBE_INTERVAL) {
+                return false;
             }
+            state.skippedMessages = 0;
+        }
 
-            return Frame.builder(frame).payloadData(completeResult).payloadLength(strip ? completeResult.length - 4 : completeResult.length).rsv1(true).build();
-        } else {
-            return frame;
+        return true;
+    }
+
+    private void updateRatio(State state) {
+        if (state.messageLength == 0) {
+            return;
+        }
+
+        final double ratio = (double) state.compressedLength / state.messageLength;
+        state.ratio = state.ratio < 0 ? ratio : state.ratio + (ratio - state.ratio) * ADAPTIVE_WEIGHT;
+    }
+
+    private void releaseInflater(State state) {
+        if (state.resetInflater) {
+            inflaterPool.recycle(state.inflater);
+            state.inflater = null;
         }
     }
 
-    private void init(ExtensionContext context) {
-        // TODO: configurable compression level
-        Deflater compresser = new Deflater(9, true);
-        Inflater decompresser = new Inflater(true);
+    private Deflater newDeflater() {
+        final Deflater compresser = new Deflater(compressionLevel, true);
+        compresser.setStrategy(strategy);
+        return compresser;
+    }
+
+    private void init(ExtensionContext context, boolean compress, boolean resetDeflater, boolean resetInflater) {
+        final boolean enabled = claimRsv1(context, this);
+        final State state = new State(enabled, enabled && compress, resetDeflater, resetInflater);
+
+        // sides using context takeover own their (de)compressor for the whole connection lifetime.
+        if (state.compress && !resetDeflater) {
+            state.deflater = newDeflater();
+        }
+        if (enabled && !resetInflater) {
+            state.inflater = new Inflater(true);
+        }
+
+        context.getProperties().put(STATE, state);
+    }
 
-        compresser.setStrategy(Deflater.DEFAULT_STRATEGY);
+    /**
+     * Claim RSV1 bit of the connection for given extension.
+     * <p/>
+     * Both sides negotiate extensions in the order of the handshake response, so they agree on the extension which
+     * gets the bit.
+     *
+     * @param context   extension context of the connection.
+     * @param extension extension which uses RSV1 to mark compressed messages.
+     * @return {@code true} if the bit belongs to given extension, {@code false} if another extension was negotiated
+     * earlier.
+     */
+    static boolean claimRsv1(ExtensionContext context, ExtendedExtension extension) {
+        final Object owner = context.getProperties().get(RSV1_OWNER);
+        if (owner == null) {
+            context.getProperties().put(RSV1_OWNER, extension);
+            return true;
+        }
 
-        context.getProperties().put(INFLATER, decompresser);
-        context.getProperties().put(DEFLATER, compresser);
+        if (owner != extension && DEBUG) {
+            LOGGER.fine(extension.getName() + " disabled, RSV1 is used by " + ((ExtendedExtension) owner).getName());
+        }
+        return owner == extension;
     }
 
+    /**
+     * Only data frames are compressed, control frames are not passed to this extension.
+     */
     @Override
-    public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
-        init(context);
-        return Collections.<Parameter>emptyList();
+    public boolean processes(byte opcode) {
+        return opcode < 0x08;
     }
 
     @Override
-    public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
-        init(context);
+    public Object getBroadcastKey(ExtensionContext context) {
+        final State state = (State) context.getProperties().get(STATE);
+
+        // with context takeover (or adaptive compression) the output depends on previously sent messages.
+        if (state == null || !state.compress || !state.resetDeflater || minSavings > 0) {
+            return null;
+        }
+
+        return this;
     }
 
+    /**
+     * Server side negotiation.
+     * <p/>
+     * Parameters offered by the client are accepted; configured context takeover parameters are added to the
+     * response. Client window limit is included only when the client offered it.
+     */
     @Override
-    public void destroy(ExtensionContext context) {
-        final Inflater decompresser = (Inflater) context.getProperties().get(INFLATER);
-        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
+    public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+        boolean serverNoContextTakeover = this.serverNoContextTakeover;
+        boolean clientNoContextTakeoverOffered = false;
+        Integer serverWindowBits = null;
+        boolean clientWindowBitsOffered = false;
+        Integer clientWindowBits = null;
+
+        if (requestedParameters != null) {
+            for (Parameter parameter : requestedParameters) {
+                final String name = parameter.getName();
+                if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    serverNoContextTakeover = true;
+                } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    clientNoContextTakeoverOffered = true;
+                } else if (SERVER_MAX_WINDOW_BITS.equals(name)) {
+                    serverWindowBits = parseWindowBits(parameter);
+                } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                    // value is optional in the offer.
+                    if (parameter.getValue() == null) {
+                        clientWindowBitsOffered = true;
+                    } else {
+                        clientWindowBits = parseWindowBits(parameter);
+                        clientWindowBitsOffered = clientWindowBits != null;
+                    }
+                } else if (DEBUG) {
+                    LOGGER.fine("Unknown parameter ignored: " + name);
+                }
+            }
+        }
+
+        final List<Parameter> response = new ArrayList<Parameter>();
+        if (serverNoContextTakeover) {
+            response.add(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientNoContextTakeover) {
+            response.add(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (serverWindowBits != null) {
+            response.add(new TyrusExtension.TyrusParameter(SERVER_MAX_WINDOW_BITS, serverWindowBits.toString()));
+        }
+        if (clientWindowBitsOffered && clientMaxWindowBits != null) {
+            final int bits = clientWindowBits == null ? clientMaxWindowBits : Math.min(clientWindowBits, clientMaxWindowBits);
+            response.add(new TyrusExtension.TyrusParameter(CLIENT_MAX_WINDOW_BITS, Integer.toString(bits)));
+        }
+
+        init(context, serverWindowBits == null || serverWindowBits == MAX_WINDOW_BITS, serverNoContextTakeover,
+                clientNoContextTakeover || clientNoContextTakeoverOffered);
+        return response;
+    }
+
+    /**
+     * Client side negotiation - applies parameters returned by the server.
+     */
+    @Override
+    public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+        // offered client_no_context_takeover is a promise not to use context takeover, whatever the response is.
+        boolean clientNoContextTakeover = this.clientNoContextTakeover;
+        boolean serverNoContextTakeover = false;
+        boolean compress = true;
+
+        if (responseParameters != null) {
+            for (Parameter parameter : responseParameters) {
+                final String name = parameter.getName();
+                if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    serverNoContextTakeover = true;
+                } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    clientNoContextTakeover = true;
+                } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                    final Integer bits = parseWindowBits(parameter);
+                    compress = bits != null && bits == MAX_WINDOW_BITS;
+                }
+            }
+        }
 
-        context.getProperties().remove(DEFLATER);
-        context.getProperties().remove(INFLATER);
+        init(context, compress, clientNoContextTakeover, serverNoContextTakeover);
+    }
 
-        if (decompresser != null) {
-            decompresser.end();
+    private static Integer parseWindowBits(Parameter parameter) {
+        try {
+            final int bits = Integer.parseInt(parameter.getValue());
+            if (bits >= MIN_WINDOW_BITS && bits <= MAX_WINDOW_BITS) {
+                return bits;
+            }
+        } catch (NumberFormatException e) {
+            // invalid value, ignored below.
         }
 
-        if (compresser != null) {
-            compresser.end();
+        if (DEBUG) {
+            LOGGER.fine("Invalid value of " + parameter.getName() + " ignored: " + parameter.getValue());
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy(ExtensionContext context) {
+        final State state = (State) context.getProperties().remove(STATE);
+
+        if (state != null) {
+            // (de)compressor can be still used by a thread processing a frame; it is released once the thread is
+            // done, frames processed later are passed through.
+            state.closed = true;
+
+            synchronized (state.inflaterLock) {
+                if (state.inflater != null) {
+                    if (state.resetInflater) {
+                        inflaterPool.recycle(state.inflater);
+                    } else {
+                        state.inflater.end();
+                    }
+                    state.inflater = null;
+                }
+            }
+
+            synchronized (state.deflaterLock) {
+                if (state.deflater != null) {
+                    if (state.resetDeflater) {
+                        deflaterPool.recycle(state.deflater);
+                    } else {
+                        state.deflater.end();
+                    }
+                    state.deflater = null;
+                }
+            }
         }
     }
 
@@ -255,81 +627,273 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
 
     @Override
     public List<Parameter> getParameters() {
-        return Collections.<Parameter>emptyList();
+        return parameters;
     }
 
+    /**
+     * Get number of messages sent compressed.
+     * <p/>
+     * Broadcasted message compressed once for a group of connections is counted once.
+     *
+     * @return number of compressed outgoing messages.
+     */
+    public long getCompressedMessageCount() {
+        return compressedMessages.get();
+    }
+
+    /**
+     * Get number of messages sent uncompressed, because they were too small or compression did not pay off.
+     * <p/>
+     * Messages of connections which cannot compress (see {@link #SERVER_MAX_WINDOW_BITS}) are not counted. Broadcasted
+     * message processed once for a group of connections is counted once.
+     *
+     * @return number of uncompressed outgoing messages.
+     */
+    public long getUncompressedMessageCount() {
+        return uncompressedMessages.get();
+    }
 
     /**
-     * Generic pool that instances of T which are expensive to create.
+     * Get difference between original and compressed size of compressed messages.
+     * <p/>
+     * Broadcasted message compressed once for a group of connections is counted once, so bytes saved by sending it to
+     * the other connections of the group are not included.
      *
-     * @author Jitendra Kotamraju
-     * @author Pavel Bucek (pavel.bucek at oracle.com)
+     * @return saved bytes, negative value if compressed messages got larger.
      */
-    private static abstract class Pool<T> {
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
 
-        // volatile since multiple threads may access queue reference
-        private volatile WeakReference<ConcurrentLinkedQueue<T>> queue;
+    /**
+     * Get time spent compressing outgoing messages.
+     *
+     * @return compression time in nanoseconds.
+     */
+    public long getCompressionTime() {
+        return compressionTime.get();
+    }
+
+    /**
+     * Get number of idle compressors retained in the pool.
+     *
+     * @return number of pooled {@link Deflater} instances.
+     */
+    int getPooledDeflaterCount() {
+        return deflaterPool.size();
+    }
+
+    /**
+     * Get number of idle decompressors retained in the pool.
+     *
+     * @return number of pooled {@link Inflater} instances.
+     */
+    int getPooledInflaterCount() {
+        return inflaterPool.size();
+    }
+
+    /**
+     * Builder of configured {@link PerMessageDeflateExtension} instances.
+     */
+    public static class Builder {
+
+        private int compressionLevel = 9;
+        private int strategy = Deflater.DEFAULT_STRATEGY;
+        private boolean serverNoContextTakeover = false;
+        private boolean clientNoContextTakeover = false;
+        private Integer serverMaxWindowBits = null;
+        private Integer clientMaxWindowBits = null;
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+        private int compressionThreshold = 0;
+        private double minSavings = 0;
+
+        private Builder() {
+        }
 
         /**
-         * Gets a new object from the pool.
+         * Set minimal size of message to be compressed.
          * <p/>
+         * Fragmented messages are compressed whatever the size is.
+         *
+         * @param compressionThreshold messages with smaller payload are sent uncompressed. Default value is {@code 0}
+         *                             (all messages are compressed).
+         * @return updated builder.
+         */
+        public Builder compressionThreshold(int compressionThreshold) {
+            if (compressionThreshold < 0) {
+                throw new IllegalArgumentException("Invalid compression threshold: " + compressionThreshold);
+            }
+            this.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        /**
+         * Stop compressing messages of a connection when compression does not save enough.
+         *
+         * @param minSavings minimal saved fraction of message size, for example {@code 0.1} means compression is
+         *                   suspended when recent messages got less than 10% smaller. {@code 0} (default value)
+         *                   disables adaptive compression.
+         * @return updated builder.
+         */
+        public Builder adaptiveCompression(double minSavings) {
+            if (minSavings < 0 || minSavings >= 1) {
+                throw new IllegalArgumentException("Invalid minimal savings: " + minSavings);
+            }
+            this.minSavings = minSavings;
+            return this;
+        }
+
+        /**
+         * Set maximal number of idle compressors (and decompressors) retained for reuse.
          * <p/>
-         * If no object is available in the pool, this method creates a new one.
+         * Pool is used only by sides not using context takeover; instances returned to a full pool are released.
+         * Default value is number of available processors.
          *
-         * @return always non-null.
+         * @param poolSize maximal number of pooled instances, {@code 0} disables pooling.
+         * @return updated builder.
          */
-        public final T take() {
-            T t = getQueue().poll();
-            if (t == null)
-                return create();
-            return t;
+        public Builder poolSize(int poolSize) {
+            if (poolSize < 0) {
+                throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+            }
+            this.poolSize = poolSize;
+            return this;
         }
 
         /**
-         * Create new instance to be added into pool.
+         * Set compression level.
          *
-         * @return new instance.
+         * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} or value from {@code 0} (no compression) to
+         *                         {@code 9} (best compression). Default value is {@code 9}.
+         * @return updated builder.
          */
-        abstract T create();
-
-        private ConcurrentLinkedQueue<T> getQueue() {
-            WeakReference<ConcurrentLinkedQueue<T>> q = queue;
-            if (q != null) {
-                ConcurrentLinkedQueue<T> d = q.get();
-                if (d != null)
-                    return d;
+        public Builder compressionLevel(int compressionLevel) {
+            if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
             }
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
 
-            // overwrite the queue
-            ConcurrentLinkedQueue<T> d = new ConcurrentLinkedQueue<T>();
-            queue = new WeakReference<ConcurrentLinkedQueue<T>>(d);
+        /**
+         * Set compression strategy.
+         *
+         * @param strategy {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED} or
+         *                 {@link Deflater#HUFFMAN_ONLY}. Default value is {@link Deflater#DEFAULT_STRATEGY}.
+         * @return updated builder.
+         */
+        public Builder strategy(int strategy) {
+            if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+                throw new IllegalArgumentException("Invalid compression strategy: " + strategy);
+            }
+            this.strategy = strategy;
+            return this;
+        }
 
-            return d;
+        /**
+         * Server does not use context takeover - each message sent by server is compressed independently.
+         *
+         * @param serverNoContextTakeover {@code true} to request/announce {@value #SERVER_NO_CONTEXT_TAKEOVER}.
+         * @return updated builder.
+         */
+        public Builder serverNoContextTakeover(boolean serverNoContextTakeover) {
+            this.serverNoContextTakeover = serverNoContextTakeover;
+            return this;
         }
 
         /**
-         * Returns an object back to the pool.
+         * Client does not use context takeover - each message sent by client is compressed independently.
+         *
+         * @param clientNoContextTakeover {@code true} to request/announce {@value #CLIENT_NO_CONTEXT_TAKEOVER}.
+         * @return updated builder.
          */
-        public final void recycle(T t) {
-            getQueue().offer(t);
+        public Builder clientNoContextTakeover(boolean clientNoContextTakeover) {
+            this.clientNoContextTakeover = clientNoContextTakeover;
+            return this;
         }
-    }
 
-    private static class PartialResultWithLength<T> {
-        private final int length;
-        private final T result;
+        /**
+         * Request server to limit its compression window (client side only).
+         *
+         * @param serverMaxWindowBits base-2 logarithm of the window size, from {@code 8} to {@code 15}.
+         * @return updated builder.
+         */
+        public Builder serverMaxWindowBits(int serverMaxWindowBits) {
+            this.serverMaxWindowBits = checkWindowBits(serverMaxWindowBits);
+            return this;
+        }
 
-        private PartialResultWithLength(int length, T result) {
-            this.length = length;
-            this.result = result;
+        /**
+         * Limit client compression window.
+         * <p/>
+         * Client includes the value in its offer; server limits the window of clients which declare they support
+         * it.
+         *
+         * @param clientMaxWindowBits base-2 logarithm of the window size, from {@code 8} to {@code 15}.
+         * @return updated builder.
+         */
+        public Builder clientMaxWindowBits(int clientMaxWindowBits) {
+            this.clientMaxWindowBits = checkWindowBits(clientMaxWindowBits);
+            return this;
         }
 
-        public int getLength() {
-            return length;
+        /**
+         * Create new extension instance with current configuration.
+         *
+         * @return new extension instance.
+         */
+        public PerMessageDeflateExtension build() {
+            return new PerMessageDeflateExtension(this);
         }
 
-        public T getResult() {
-            return result;
+        private static int checkWindowBits(int windowBits) {
+            if (windowBits < MIN_WINDOW_BITS || windowBits > MAX_WINDOW_BITS) {
+                throw new IllegalArgumentException("Invalid window bits: " + windowBits);
+            }
+            return windowBits;
+        }
+    }
+
+    /**
+     * Per-connection compression state.
+     * <p/>
+     * (De)compressor is {@code null} when the side does not use context takeover and no message is being processed.
+     */
+    private static class State {
+
+        // false when another extension already uses RSV1.
+        private final boolean enabled;
+        private final boolean compress;
+        private final boolean resetDeflater;
+        private final boolean resetInflater;
+
+        private final Object deflaterLock = new Object();
+        private final Object inflaterLock = new Object();
+        private volatile boolean closed = false;
+
+        // guarded by deflaterLock
+        private Deflater deflater;
+        // guarded by inflaterLock
+        private Inflater inflater;
+
+        // outgoing message in progress.
+        private boolean inMessage = false;
+        private boolean compressMessage;
+        private long messageLength;
+        private long compressedLength;
+
+        // moving average of compressed/original size, negative until the first message is compressed.
+        private double ratio = -1;
+
+        // inflated/compressed size of the last incoming frame.
+        private double inflateRatio = -1;
+        private int skippedMessages = 0;
+
+        private State(boolean enabled, boolean compress, boolean resetDeflater, boolean resetInflater) {
+            this.enabled = enabled;
+            this.compress = compress;
+            this.resetDeflater = resetDeflater;
+            this.resetInflater = resetInflater;
         }
     }
 }
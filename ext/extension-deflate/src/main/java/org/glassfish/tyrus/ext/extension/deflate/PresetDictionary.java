@@ -0,0 +1,182 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Preset dictionary used by {@link PresetDictionaryDeflateExtension}.
+ * <p/>
+ * Dictionary is identified by {@link #getId() id} derived from its content, so both peers can verify they use the
+ * same one. Only last 32 KB of dictionary can be referenced by the deflate algorithm, larger dictionaries are
+ * rejected. Dictionaries can be created from sample messages using {@link DictionaryBuilder}.
+ */
+public final class PresetDictionary {
+
+    /**
+     * Maximal dictionary size - size of the deflate window.
+     */
+    public static final int MAX_SIZE = 32768;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final byte[] data;
+    private final String id;
+
+    /**
+     * Create new dictionary.
+     *
+     * @param data dictionary content, most frequently used strings should be placed at the end.
+     */
+    public PresetDictionary(byte[] data) {
+        if (data == null || data.length == 0 || data.length > MAX_SIZE) {
+            throw new IllegalArgumentException("Dictionary size has to be between 1 and " + MAX_SIZE + " bytes.");
+        }
+
+        this.data = Arrays.copyOf(data, data.length);
+        this.id = computeId(this.data);
+    }
+
+    /**
+     * Load dictionary from a stream. The stream is not closed.
+     *
+     * @param inputStream stream containing dictionary content.
+     * @return loaded dictionary.
+     * @throws IOException when the stream cannot be read.
+     */
+    public static PresetDictionary load(InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            baos.write(buffer, 0, read);
+        }
+
+        return new PresetDictionary(baos.toByteArray());
+    }
+
+    /**
+     * Load dictionary from a file.
+     *
+     * @param file file containing dictionary content.
+     * @return loaded dictionary.
+     * @throws IOException when the file cannot be read.
+     */
+    public static PresetDictionary load(File file) throws IOException {
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            return load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Get dictionary identifier used in extension negotiation.
+     *
+     * @return first 16 hexadecimal digits of SHA-256 hash of the dictionary content.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get dictionary content.
+     *
+     * @return copy of the dictionary content.
+     */
+    public byte[] getData() {
+        return Arrays.copyOf(data, data.length);
+    }
+
+    /**
+     * Get dictionary size.
+     *
+     * @return dictionary size in bytes.
+     */
+    public int getSize() {
+        return data.length;
+    }
+
+    // not copied, used only to set dictionary of Deflater/Inflater.
+    byte[] data() {
+        return data;
+    }
+
+    private static String computeId(byte[] data) {
+        final byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 has to be supported by every Java platform.
+            throw new IllegalStateException(e);
+        }
+
+        final char[] result = new char[16];
+        for (int i = 0; i < 8; i++) {
+            result[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0x0f];
+            result[2 * i + 1] = HEX_DIGITS[hash[i] & 0x0f];
+        }
+        return new String(result);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof PresetDictionary && Arrays.equals(data, ((PresetDictionary) o).data));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        return "PresetDictionary{id=" + id + ", size=" + data.length + '}';
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.BroadcastExtension;
+import org.glassfish.tyrus.core.extension.FrameTypeAwareExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * Per-message deflate compression using shared preset dictionary.
+ * <p/>
+ * Every message is compressed independently (there is no context takeover), but the compressor and decompressor are
+ * initialized with a {@link PresetDictionary} known to both peers, so even small messages with repetitive content
+ * (like JSON documents with the same keys) compress well. No compression state is retained between messages;
+ * compressors are borrowed from a bounded pool for the time of processing single message.
+ * <p/>
+ * Negotiation: client offers {@value #DICTIONARY} parameter with {@link PresetDictionary#getId() id} of each of its
+ * dictionaries, server selects the first one it knows and returns it in the response. When there is no common
+ * dictionary, the response does not contain the parameter and messages are compressed without dictionary.
+ * <p/>
+ * Framing follows RFC 7692: RSV1 is set on the first frame of a compressed message, the trailing
+ * {@code 0x00 0x00 0xff 0xff} is removed from the end of the message. Single frame message which would not get
+ * smaller is sent uncompressed. Since {@link PerMessageDeflateExtension} uses RSV1 the same way, only the one listed
+ * first in the handshake response compresses when both are negotiated on a connection; the other one passes frames
+ * through unchanged.
+ */
+public class PresetDictionaryDeflateExtension implements BroadcastExtension, FrameTypeAwareExtension {
+
+    /**
+     * Extension name.
+     */
+    public static final String NAME = "x-tyrus-dictionary-deflate";
+
+    /**
+     * Parameter carrying {@link PresetDictionary#getId() dictionary id}.
+     */
+    public static final String DICTIONARY = "dictionary";
+
+    private static final Logger LOGGER = Logger.getLogger(PresetDictionaryDeflateExtension.class.getName());
+    private static final boolean DEBUG = LOGGER.isLoggable(Level.FINE);
+
+    private static final String STATE = PresetDictionaryDeflateExtension.class.getName() + ".STATE";
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    private final Map<String, PresetDictionary> dictionaries;
+    private final List<Parameter> parameters;
+    private final BoundedPool<Deflater> deflaterPool;
+    private final BoundedPool<Inflater> inflaterPool;
+
+    private PresetDictionaryDeflateExtension(Builder builder) {
+        this.dictionaries = Collections.unmodifiableMap(new LinkedHashMap<String, PresetDictionary>(builder.dictionaries));
+
+        final List<Parameter> offer = new ArrayList<Parameter>();
+        for (String id : dictionaries.keySet()) {
+            offer.add(new TyrusExtension.TyrusParameter(DICTIONARY, id));
+        }
+        this.parameters = Collections.unmodifiableList(offer);
+
+        this.deflaterPool = BoundedPool.deflaters(builder.compressionLevel, Deflater.DEFAULT_STRATEGY, builder.poolSize);
+        this.inflaterPool = BoundedPool.inflaters(builder.poolSize);
+    }
+
+    /**
+     * Create new {@link Builder} instance.
+     *
+     * @return new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Server side negotiation - selects the first offered dictionary known to this side.
+     */
+    @Override
+    public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+        PresetDictionary dictionary = null;
+
+        if (requestedParameters != null) {
+            for (Parameter parameter : requestedParameters) {
+                if (DICTIONARY.equals(parameter.getName())) {
+                    dictionary = dictionaries.get(parameter.getValue());
+                    if (dictionary != null) {
+                        break;
+                    }
+                } else if (DEBUG) {
+                    LOGGER.fine("Unknown parameter ignored: " + parameter.getName());
+                }
+            }
+        }
+
+        final boolean enabled = PerMessageDeflateExtension.claimRsv1(context, this);
+        context.getProperties().put(STATE, new State(enabled, dictionary));
+
+        if (!enabled || dictionary == null) {
+            return Collections.emptyList();
+        }
+        return Collections.<Parameter>singletonList(new TyrusExtension.TyrusParameter(DICTIONARY, dictionary.getId()));
+    }
+
+    /**
+     * Client side negotiation - uses the dictionary selected by the server.
+     */
+    @Override
+    public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+        PresetDictionary dictionary = null;
+
+        if (responseParameters != null) {
+            for (Parameter parameter : responseParameters) {
+                if (DICTIONARY.equals(parameter.getName())) {
+                    dictionary = dictionaries.get(parameter.getValue());
+                }
+            }
+        }
+
+        context.getProperties().put(STATE, new State(PerMessageDeflateExtension.claimRsv1(context, this), dictionary));
+    }
+
+    /**
+     * Only data frames are compressed, control frames are not passed to this extension.
+     */
+    @Override
+    public boolean processes(byte opcode) {
+        return opcode < 0x08;
+    }
+
+    @Override
+    public Object getBroadcastKey(ExtensionContext context) {
+        final State state = (State) context.getProperties().get(STATE);
+        return state == null || !state.enabled ? null : Arrays.<Object>asList(this, state.dictionary);
+    }
+
+    @Override
+    public Frame processOutgoing(ExtensionContext context, Frame frame) {
+        final State state = (State) context.getProperties().get(STATE);
+
+        if (!state.enabled || frame.isControlFrame()) {
+            return frame;
+        }
+
+        synchronized (state.deflaterLock) {
+            // compressor has already been released by destroy.
+            if (state.closed) {
+                return frame;
+            }
+            return compress(state, frame);
+        }
+    }
+
+    private Frame compress(State state, Frame frame) {
+        final boolean firstFrame = state.deflater == null;
+        if (firstFrame) {
+            state.deflater = deflaterPool.take();
+            if (state.dictionary != null) {
+                state.deflater.setDictionary(state.dictionary.data());
+            }
+        }
+        final Deflater deflater = state.deflater;
+
+        final ByteBuffer payload = frame.getPayloadBuffer();
+        final int payloadLength = payload.remaining();
+        deflater.setInput(payload.array(), 0, payloadLength);
+
+        byte[] output = new byte[payloadLength + 64];
+        int length = 0;
+        while (true) {
+            length += deflater.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+            if (length < output.length) {
+                break;
+            }
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+
+        if (!frame.isFin()) {
+            return Frame.builder(frame).payloadData(output).payloadLength(length).rsv1(firstFrame).build();
+        }
+
+        deflaterPool.recycle(deflater);
+        state.deflater = null;
+
+        // trailing 0x00 0x00 0xff 0xff is removed from the end of the message (RFC 7692, 7.2.1); nothing is written
+        // when the final frame brings no new input, empty block is sent instead.
+        final int compressedLength = endsWithTail(output, length) ? length - 4 : Math.max(length, 1);
+        if (firstFrame && compressedLength >= payloadLength) {
+            return frame;
+        }
+
+        return Frame.builder(frame).payloadData(output).payloadLength(compressedLength).rsv1(firstFrame).build();
+    }
+
+    private static boolean endsWithTail(byte[] output, int length) {
+        if (length < TAIL.length) {
+            return false;
+        }
+        for (int i = 0; i < TAIL.length; i++) {
+            if (output[length - TAIL.length + i] != TAIL[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Frame processIncoming(ExtensionContext context, Frame frame) {
+        final State state = (State) context.getProperties().get(STATE);
+
+        if (!state.enabled || frame.isControlFrame()) {
+            return frame;
+        }
+
+        synchronized (state.inflaterLock) {
+            // decompressor has already been released by destroy.
+            if (state.closed) {
+                return frame;
+            }
+            return decompress(state, frame);
+        }
+    }
+
+    private Frame decompress(State state, Frame frame) {
+        if (state.inflater == null) {
+            if (!frame.isRsv1()) {
+                // uncompressed message or its continuation.
+                return frame;
+            }
+
+            state.inflater = inflaterPool.take();
+            if (state.dictionary != null) {
+                state.inflater.setDictionary(state.dictionary.data());
+            }
+        }
+        final Inflater inflater = state.inflater;
+
+        final ByteBuffer payload = frame.getPayloadBuffer();
+        final int payloadLength = payload.remaining();
+
+        byte[] output = new byte[payloadLength * 4 + 64];
+        int length = 0;
+
+        try {
+            inflater.setInput(payload.array(), 0, payloadLength);
+            boolean tail = !frame.isFin();
+            while (true) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+
+                final int inflated = inflater.inflate(output, length, output.length - length);
+                length += inflated;
+
+                if (length < output.length) {
+                    if (inflater.needsInput() && !tail) {
+                        inflater.setInput(TAIL);
+                        tail = true;
+                    } else if (inflater.needsInput() || inflated == 0) {
+                        break;
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
+            inflaterPool.recycle(inflater);
+            state.inflater = null;
+            return frame;
+        }
+
+        if (frame.isFin()) {
+            inflaterPool.recycle(inflater);
+            state.inflater = null;
+        }
+
+        return Frame.builder(frame).payloadData(output).payloadLength(length).rsv1(false).build();
+    }
+
+    @Override
+    public void destroy(ExtensionContext context) {
+        final State state = (State) context.getProperties().remove(STATE);
+
+        if (state != null) {
+            // (de)compressor can be still used by a thread processing a frame; it is released once the thread is
+            // done, frames processed later are passed through.
+            state.closed = true;
+
+            synchronized (state.deflaterLock) {
+                if (state.deflater != null) {
+                    deflaterPool.recycle(state.deflater);
+                    state.deflater = null;
+                }
+            }
+            synchronized (state.inflaterLock) {
+                if (state.inflater != null) {
+                    inflaterPool.recycle(state.inflater);
+                    state.inflater = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder of {@link PresetDictionaryDeflateExtension} instances.
+     */
+    public static class Builder {
+
+        private final Map<String, PresetDictionary> dictionaries = new LinkedHashMap<String, PresetDictionary>();
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {
+        }
+
+        /**
+         * Add dictionary.
+         * <p/>
+         * Client offers dictionaries in the order they were added; server accepts any of added dictionaries.
+         *
+         * @param dictionary dictionary to be added.
+         * @return updated builder.
+         */
+        public Builder dictionary(PresetDictionary dictionary) {
+            dictionaries.put(dictionary.getId(), dictionary);
+            return this;
+        }
+
+        /**
+         * Set compression level.
+         *
+         * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} (default value) or value from {@code 0} to
+         *                         {@code 9}.
+         * @return updated builder.
+         */
+        public Builder compressionLevel(int compressionLevel) {
+            if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+            }
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Set maximal number of idle compressors (and decompressors) retained for reuse.
+         *
+         * @param poolSize maximal number of pooled instances. Default value is number of available processors.
+         * @return updated builder.
+         */
+        public Builder poolSize(int poolSize) {
+            if (poolSize < 0) {
+                throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+            }
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Create new extension instance.
+         *
+         * @return new extension instance.
+         */
+        public PresetDictionaryDeflateExtension build() {
+            if (dictionaries.isEmpty()) {
+                throw new IllegalStateException("At least one dictionary has to be added.");
+            }
+            return new PresetDictionaryDeflateExtension(this);
+        }
+    }
+
+    /**
+     * Per-connection state; (de)compressor is set only while a message is being processed.
+     */
+    private static class State {
+
+        // false when another extension already uses RSV1.
+        private final boolean enabled;
+        private final PresetDictionary dictionary;
+        private final Object deflaterLock = new Object();
+        private final Object inflaterLock = new Object();
+        private volatile boolean closed = false;
+
+        // guarded by deflaterLock
+        private Deflater deflater;
+        // guarded by inflaterLock
+        private Inflater inflater;
+
+        private State(boolean enabled, PresetDictionary dictionary) {
+            this.enabled = enabled;
+            this.dictionary = dictionary;
+        }
+    }
+}
@@ -46,9 +46,12 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -63,11 +66,18 @@ import javax.websocket.Session;
 import javax.websocket.server.ServerEndpointConfig;
 
 import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.TyrusSession;
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
 import org.glassfish.tyrus.server.Server;
 import org.glassfish.tyrus.server.TyrusServerConfiguration;
 import org.glassfish.tyrus.test.tools.TestContainer;
 
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -80,6 +90,14 @@ public class PerMessageDeflateExtensionTest extends TestContainer {
             super(Collections.<Class<?>>emptySet(), new HashSet<ServerEndpointConfig>() {{
                 add(ServerEndpointConfig.Builder.create(EchoEndpoint.class, "/compressionExtensionTest")
                         .extensions(Arrays.<Extension>asList(new PerMessageDeflateExtension())).build());
+                add(ServerEndpointConfig.Builder.create(EchoEndpoint.class, "/compressionExtensionParametersTest")
+                        .extensions(Arrays.<Extension>asList(PerMessageDeflateExtension.builder()
+                                .compressionLevel(1)
+                                .clientNoContextTakeover(true)
+                                .clientMaxWindowBits(15)
+                                .build())).build());
+                add(ServerEndpointConfig.Builder.create(BroadcastEndpoint.class, "/compressionBroadcastTest")
+                        .extensions(Arrays.<Extension>asList(BROADCAST_EXTENSION)).build());
             }
 
                 private static final long serialVersionUID = -6065653369480760041L;
@@ -87,6 +105,22 @@ public class PerMessageDeflateExtensionTest extends TestContainer {
         }
     }
 
+    private static final PerMessageDeflateExtension BROADCAST_EXTENSION =
+            PerMessageDeflateExtension.builder().serverNoContextTakeover(true).build();
+
+    public static class BroadcastEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(final Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    ((TyrusSession) session).broadcast(message);
+                }
+            });
+        }
+    }
+
     public static class EchoEndpoint extends Endpoint {
 
         @Override
@@ -164,6 +198,282 @@ public class PerMessageDeflateExtensionTest extends TestContainer {
 
     }
 
+    @Test
+    public void testNegotiatedParameters() throws DeploymentException {
+        Server server = startServer(ServerDeployApplicationConfig.class);
+        final CountDownLatch messageLatch = new CountDownLatch(5);
+        final Map<String, List<String>> responseHeaders = new ConcurrentHashMap<String, List<String>>();
+
+        try {
+            ArrayList<Extension> extensions = new ArrayList<Extension>();
+            extensions.add(PerMessageDeflateExtension.builder()
+                    .serverNoContextTakeover(true)
+                    .serverMaxWindowBits(10)
+                    .clientMaxWindowBits(15)
+                    .build());
+
+            final ClientEndpointConfig clientConfiguration = ClientEndpointConfig.Builder.create()
+                    .extensions(extensions)
+                    .configurator(new ClientEndpointConfig.Configurator() {
+                        @Override
+                        public void afterResponse(HandshakeResponse hr) {
+                            responseHeaders.putAll(hr.getHeaders());
+                        }
+                    })
+                    .build();
+
+            ClientManager client = ClientManager.createClient();
+            final Session session = client.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    session.addMessageHandler(new MessageHandler.Whole<byte[]>() {
+                        @Override
+                        public void onMessage(byte[] message) {
+                            if ("Do. Or do not. There is no try.".equals(new String(message, Charset.forName("UTF-8")))) {
+                                messageLatch.countDown();
+                            }
+                        }
+                    });
+                }
+            }, clientConfiguration, getURI("/compressionExtensionParametersTest"));
+
+            List<String> extensionHeader = null;
+            for (Map.Entry<String, List<String>> entry : responseHeaders.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase("Sec-WebSocket-Extensions")) {
+                    extensionHeader = entry.getValue();
+                }
+            }
+
+            final List<Extension> negotiated = TyrusExtension.fromHeaders(extensionHeader);
+            assertEquals(1, negotiated.size());
+            assertEquals(
+                    new HashSet<String>(Arrays.asList(
+                            PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER,
+                            PerMessageDeflateExtension.CLIENT_NO_CONTEXT_TAKEOVER,
+                            PerMessageDeflateExtension.SERVER_MAX_WINDOW_BITS + "=10",
+                            PerMessageDeflateExtension.CLIENT_MAX_WINDOW_BITS + "=15")),
+                    toStrings(negotiated.get(0).getParameters()));
+
+            for (int i = 0; i < 5; i++) {
+                session.getBasicRemote().sendBinary(ByteBuffer.wrap("Do. Or do not. There is no try.".getBytes(Charset.forName("UTF-8"))));
+            }
+
+            assertTrue(messageLatch.await(1, TimeUnit.SECONDS));
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    @Test
+    public void testBroadcast() throws DeploymentException {
+        Server server = startServer(ServerDeployApplicationConfig.class);
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("Do. Or do not. There is no try.");
+        }
+        final String message = sb.toString();
+        final CountDownLatch messageLatch = new CountDownLatch(3);
+        final List<Session> sessions = new ArrayList<Session>();
+
+        try {
+            ClientManager client = ClientManager.createClient();
+            for (int i = 0; i < 3; i++) {
+                final ClientEndpointConfig clientConfiguration = ClientEndpointConfig.Builder.create()
+                        .extensions(Arrays.<Extension>asList(new PerMessageDeflateExtension()))
+                        .build();
+
+                sessions.add(client.connectToServer(new Endpoint() {
+                    @Override
+                    public void onOpen(Session session, EndpointConfig config) {
+                        session.addMessageHandler(new MessageHandler.Whole<String>() {
+                            @Override
+                            public void onMessage(String received) {
+                                if (message.equals(received)) {
+                                    messageLatch.countDown();
+                                }
+                            }
+                        });
+                    }
+                }, clientConfiguration, getURI("/compressionBroadcastTest")));
+            }
+
+            final long compressed = BROADCAST_EXTENSION.getCompressedMessageCount();
+            sessions.get(0).getBasicRemote().sendText(message);
+
+            assertTrue(messageLatch.await(1, TimeUnit.SECONDS));
+            // compressed once for all connections.
+            assertEquals(compressed + 1, BROADCAST_EXTENSION.getCompressedMessageCount());
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    @Test
+    public void testServerNegotiation() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .clientMaxWindowBits(12)
+                .build();
+        final ExtendedExtension.ExtensionContext context = new TestExtensionContext();
+
+        final List<Extension.Parameter> offer = Arrays.<Extension.Parameter>asList(
+                new TyrusExtension.TyrusParameter(PerMessageDeflateExtension.SERVER_MAX_WINDOW_BITS, "16"),
+                new TyrusExtension.TyrusParameter(PerMessageDeflateExtension.CLIENT_MAX_WINDOW_BITS, null),
+                new TyrusExtension.TyrusParameter("unknown", "value"));
+
+        try {
+            assertEquals(Collections.singleton(PerMessageDeflateExtension.CLIENT_MAX_WINDOW_BITS + "=12"),
+                    toStrings(extension.onExtensionNegotiation(context, offer)));
+        } finally {
+            extension.destroy(context);
+        }
+    }
+
+    @Test
+    public void testPooledNoContextTakeover() {
+        final PerMessageDeflateExtension server = PerMessageDeflateExtension.builder()
+                .serverNoContextTakeover(true)
+                .clientNoContextTakeover(true)
+                .build();
+        final PerMessageDeflateExtension client = new PerMessageDeflateExtension();
+
+        final ExtendedExtension.ExtensionContext serverContext1 = new TestExtensionContext();
+        final ExtendedExtension.ExtensionContext serverContext2 = new TestExtensionContext();
+        final ExtendedExtension.ExtensionContext clientContext = new TestExtensionContext();
+
+        final List<Extension.Parameter> response =
+                server.onExtensionNegotiation(serverContext1, Collections.<Extension.Parameter>emptyList());
+        server.onExtensionNegotiation(serverContext2, Collections.<Extension.Parameter>emptyList());
+        client.onHandshakeResponse(clientContext, response);
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            sb.append("Do. Or do not. There is no try.");
+        }
+        final byte[] message = sb.toString().getBytes(Charset.forName("UTF-8"));
+
+        for (int i = 0; i < 3; i++) {
+            // server -> client, both server connections share the pooled compressor.
+            for (ExtendedExtension.ExtensionContext serverContext : Arrays.asList(serverContext1, serverContext2)) {
+                final Frame compressed = server.processOutgoing(serverContext, binaryFrame(message));
+                assertTrue(compressed.isRsv1());
+                assertArrayEquals(message, payload(client.processIncoming(clientContext, compressed)));
+            }
+            assertEquals(1, server.getPooledDeflaterCount());
+
+            // client -> server
+            final Frame compressed = client.processOutgoing(clientContext, binaryFrame(message));
+            assertArrayEquals(message, payload(server.processIncoming(serverContext1, compressed)));
+            assertEquals(1, server.getPooledInflaterCount());
+        }
+
+        server.destroy(serverContext1);
+        server.destroy(serverContext2);
+        client.destroy(clientContext);
+
+        assertEquals(1, server.getPooledDeflaterCount());
+        assertEquals(1, server.getPooledInflaterCount());
+    }
+
+    @Test
+    public void testAdaptiveCompression() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .compressionThreshold(64)
+                .adaptiveCompression(0.1)
+                .build();
+        final ExtendedExtension.ExtensionContext context = new TestExtensionContext();
+        extension.onHandshakeResponse(context, Collections.<Extension.Parameter>emptyList());
+
+        try {
+            // below threshold.
+            assertFalse(extension.processOutgoing(context, binaryFrame(new byte[63])).isRsv1());
+            assertTrue(extension.processOutgoing(context, binaryFrame(new byte[1024])).isRsv1());
+            assertEquals(1, extension.getCompressedMessageCount());
+            assertEquals(1, extension.getUncompressedMessageCount());
+            assertTrue(extension.getBytesSaved() > 900);
+
+            // random data does not compress, moving average drops below the limit after a few messages.
+            final Random random = new Random(42);
+            int compressed = 0;
+            for (int i = 0; i < 20; i++) {
+                final byte[] data = new byte[1024];
+                random.nextBytes(data);
+                if (extension.processOutgoing(context, binaryFrame(data)).isRsv1()) {
+                    compressed++;
+                }
+            }
+            assertTrue(compressed < 10);
+            assertEquals(21 - compressed, extension.getUncompressedMessageCount());
+            assertTrue(extension.getCompressionTime() > 0);
+        } finally {
+            extension.destroy(context);
+        }
+    }
+
+    @Test
+    public void testLargeMessages() {
+        final PerMessageDeflateExtension server = new PerMessageDeflateExtension();
+        final PerMessageDeflateExtension client = new PerMessageDeflateExtension();
+        final ExtendedExtension.ExtensionContext serverContext = new TestExtensionContext();
+        final ExtendedExtension.ExtensionContext clientContext = new TestExtensionContext();
+
+        client.onHandshakeResponse(clientContext,
+                server.onExtensionNegotiation(serverContext, Collections.<Extension.Parameter>emptyList()));
+
+        try {
+            final Random random = new Random(42);
+            for (int size : new int[]{0, 1, 100, 64 * 1024, 1024 * 1024}) {
+                // highly compressible (output buffer of the receiver has to grow) and random data (output buffer
+                // of the sender has to grow).
+                final byte[] zeros = new byte[size];
+                final byte[] noise = new byte[size];
+                random.nextBytes(noise);
+
+                for (byte[] message : Arrays.asList(zeros, noise)) {
+                    final Frame compressed = client.processOutgoing(clientContext, binaryFrame(message));
+                    assertArrayEquals(message, payload(server.processIncoming(serverContext, compressed)));
+                }
+            }
+        } finally {
+            server.destroy(serverContext);
+            client.destroy(clientContext);
+        }
+    }
+
+    private static Frame binaryFrame(byte[] payload) {
+        return Frame.builder().fin(true).opcode((byte) 0x02).payloadData(payload).build();
+    }
+
+    private static byte[] payload(Frame frame) {
+        return Arrays.copyOf(frame.getPayloadData(), (int) frame.getPayloadLength());
+    }
+
+    private static class TestExtensionContext implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+
+    private static HashSet<String> toStrings(List<Extension.Parameter> parameters) {
+        final HashSet<String> result = new HashSet<String>();
+        for (Extension.Parameter parameter : parameters) {
+            result.add(parameter.getValue() == null ? parameter.getName() : parameter.getName() + "=" + parameter.getValue());
+        }
+        return result;
+    }
+
     public static class LoggingClientEndpointConfigurator extends ClientEndpointConfig.Configurator {
         @Override
         public void beforeRequest(Map<String, List<String>> headers) {
@@ -0,0 +1,255 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PresetDictionaryDeflateExtensionTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final PresetDictionary DICTIONARY = new DictionaryBuilder(1024)
+            .addSample(message(1))
+            .addSample(message(2))
+            .addSample(message(3))
+            .build();
+
+    private static final PresetDictionary OTHER_DICTIONARY =
+            new PresetDictionary("{\"unrelated\":\"dictionary\"}".getBytes(UTF8));
+
+    @Test
+    public void testNegotiation() {
+        final PresetDictionaryDeflateExtension server =
+                PresetDictionaryDeflateExtension.builder().dictionary(DICTIONARY).build();
+        final PresetDictionaryDeflateExtension client = PresetDictionaryDeflateExtension.builder()
+                .dictionary(OTHER_DICTIONARY)
+                .dictionary(DICTIONARY)
+                .build();
+
+        assertEquals(2, client.getParameters().size());
+        assertEquals(OTHER_DICTIONARY.getId(), client.getParameters().get(0).getValue());
+
+        final List<Extension.Parameter> response =
+                server.onExtensionNegotiation(new TestExtensionContext(), client.getParameters());
+        assertEquals(1, response.size());
+        assertEquals(PresetDictionaryDeflateExtension.DICTIONARY, response.get(0).getName());
+        assertEquals(DICTIONARY.getId(), response.get(0).getValue());
+
+        // no common dictionary.
+        final PresetDictionaryDeflateExtension other =
+                PresetDictionaryDeflateExtension.builder().dictionary(OTHER_DICTIONARY).build();
+        assertTrue(server.onExtensionNegotiation(new TestExtensionContext(), other.getParameters()).isEmpty());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final PresetDictionaryDeflateExtension server =
+                PresetDictionaryDeflateExtension.builder().dictionary(DICTIONARY).build();
+        final PresetDictionaryDeflateExtension client =
+                PresetDictionaryDeflateExtension.builder().dictionary(DICTIONARY).build();
+        final ExtendedExtension.ExtensionContext serverContext = new TestExtensionContext();
+        final ExtendedExtension.ExtensionContext clientContext = new TestExtensionContext();
+
+        client.onHandshakeResponse(clientContext, server.onExtensionNegotiation(serverContext, client.getParameters()));
+
+        try {
+            for (int i = 10; i < 20; i++) {
+                final byte[] message = message(i);
+
+                final Frame compressed = server.processOutgoing(serverContext, binaryFrame(message, true));
+                assertTrue(compressed.isRsv1());
+                // dictionary contains most of the message.
+                assertTrue(compressed.getPayloadLength() < message.length / 2);
+                assertTrue(compressed.getPayloadLength() < plainDeflateLength(message));
+                assertArrayEquals(message, payload(client.processIncoming(clientContext, compressed)));
+
+                final Frame response = client.processOutgoing(clientContext, binaryFrame(message, true));
+                assertArrayEquals(message, payload(server.processIncoming(serverContext, response)));
+            }
+
+            // incompressible message is sent as it is.
+            final byte[] small = new byte[]{1, 2, 3};
+            final Frame frame = server.processOutgoing(serverContext, binaryFrame(small, true));
+            assertFalse(frame.isRsv1());
+            assertArrayEquals(small, payload(client.processIncoming(clientContext, frame)));
+        } finally {
+            server.destroy(serverContext);
+            client.destroy(clientContext);
+        }
+    }
+
+    @Test
+    public void testFragmentedMessage() {
+        final PresetDictionaryDeflateExtension extension =
+                PresetDictionaryDeflateExtension.builder().dictionary(DICTIONARY).build();
+        final ExtendedExtension.ExtensionContext serverContext = new TestExtensionContext();
+        final ExtendedExtension.ExtensionContext clientContext = new TestExtensionContext();
+
+        extension.onHandshakeResponse(clientContext,
+                extension.onExtensionNegotiation(serverContext, extension.getParameters()));
+
+        final byte[] first = message(1);
+        final byte[] second = message(2);
+
+        final List<Frame> frames = new ArrayList<Frame>();
+        frames.add(extension.processOutgoing(serverContext, binaryFrame(first, false)));
+        frames.add(extension.processOutgoing(serverContext, Frame.builder().fin(false).opcode((byte) 0x00)
+                .payloadData(second).build()));
+        // empty final frame.
+        frames.add(extension.processOutgoing(serverContext, Frame.builder().fin(true).opcode((byte) 0x00)
+                .payloadData(new byte[0]).build()));
+
+        assertTrue(frames.get(0).isRsv1());
+        assertFalse(frames.get(1).isRsv1());
+        assertFalse(frames.get(2).isRsv1());
+
+        assertArrayEquals(first, payload(extension.processIncoming(clientContext, frames.get(0))));
+        assertArrayEquals(second, payload(extension.processIncoming(clientContext, frames.get(1))));
+        assertEquals(0, payload(extension.processIncoming(clientContext, frames.get(2))).length);
+
+        // next message is decompressed with fresh inflater.
+        final byte[] message = message(3);
+        assertArrayEquals(message, payload(extension.processIncoming(clientContext,
+                extension.processOutgoing(serverContext, binaryFrame(message, true)))));
+    }
+
+    @Test
+    public void testPerMessageDeflateNegotiatedFirst() {
+        final PerMessageDeflateExtension perMessageDeflate = new PerMessageDeflateExtension();
+        final PresetDictionaryDeflateExtension server =
+                PresetDictionaryDeflateExtension.builder().dictionary(DICTIONARY).build();
+        final ExtendedExtension.ExtensionContext context = new TestExtensionContext();
+
+        perMessageDeflate.onExtensionNegotiation(context, Collections.<Extension.Parameter>emptyList());
+        // RSV1 is already used by permessage-deflate.
+        assertTrue(server.onExtensionNegotiation(context, server.getParameters()).isEmpty());
+
+        try {
+            final byte[] message = message(10);
+            final Frame frame = binaryFrame(message, true);
+            assertSame(frame, server.processOutgoing(context, frame));
+
+            final Frame compressed = perMessageDeflate.processOutgoing(context, frame);
+            assertTrue(compressed.isRsv1());
+            assertSame(compressed, server.processIncoming(context, compressed));
+            assertArrayEquals(message, payload(perMessageDeflate.processIncoming(context, compressed)));
+        } finally {
+            server.destroy(context);
+            perMessageDeflate.destroy(context);
+        }
+    }
+
+    @Test
+    public void testDictionaryBuilder() {
+        final DictionaryBuilder builder = new DictionaryBuilder(64);
+        for (int i = 0; i < 10; i++) {
+            builder.addSample(message(i));
+        }
+        final PresetDictionary dictionary = builder.build();
+
+        assertTrue(dictionary.getSize() <= 64);
+        assertNotNull(dictionary.getId());
+        assertEquals(16, dictionary.getId().length());
+        // longest content shared by all samples is preferred.
+        assertTrue(new String(dictionary.getData(), UTF8).contains("\"currency\":\"USD\",\"exchange\":\"NASDAQ\""));
+
+        assertEquals(dictionary, new PresetDictionary(dictionary.getData()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuilderWithoutDictionary() {
+        PresetDictionaryDeflateExtension.builder().build();
+    }
+
+    private static byte[] message(int i) {
+        return String.format("{\"type\":\"quote\",\"symbol\":\"SYM%d\",\"price\":%d.%02d,\"currency\":\"USD\"," +
+                "\"exchange\":\"NASDAQ\",\"timestamp\":14%08d}", i, 100 + i, i % 100, i * 7919).getBytes(UTF8);
+    }
+
+    private static int plainDeflateLength(byte[] message) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(message);
+            final byte[] output = new byte[message.length + 64];
+            return deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH) - 4;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static Frame binaryFrame(byte[] payload, boolean fin) {
+        return Frame.builder().fin(fin).opcode((byte) 0x02).payloadData(payload).build();
+    }
+
+    private static byte[] payload(Frame frame) {
+        return Arrays.copyOf(frame.getPayloadData(), (int) frame.getPayloadLength());
+    }
+
+    private static class TestExtensionContext implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+}
@@ -48,7 +48,9 @@ import javax.websocket.server.HandshakeRequest;
 import javax.websocket.server.ServerEndpointConfig;
 
 import org.glassfish.tyrus.core.ComponentProviderService;
+import org.glassfish.tyrus.core.extension.BroadcastExtension;
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.FrameTypeAwareExtension;
 import org.glassfish.tyrus.core.frame.Frame;
 
 /**
@@ -90,50 +92,7 @@ public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Config
                     // exception have the same name = are equal. Params should not be taken into account.
                     if (name != null && name.equals(requestedExtension.getName())) {
                         if (extension instanceof ExtendedExtension) {
-                            final ExtendedExtension extendedExtension = (ExtendedExtension) extension;
-                            result.add(new ExtendedExtension() {
-                                @Override
-                                public Frame processIncoming(ExtensionContext context, Frame frame) {
-                                    return extendedExtension.processIncoming(context, frame);
-                                }
-
-                                @Override
-                                public Frame processOutgoing(ExtensionContext context, Frame frame) {
-                                    return extendedExtension.processOutgoing(context, frame);
-                                }
-
-                                /**
-                                 * TODO.
-                                 *
-                                 * @param context TODO
-                                 * @param requestedParameters TODO
-                                 * @return TODO
-                                 */
-                                @Override
-                                public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
-                                    return extendedExtension.onExtensionNegotiation(context, requestedExtension.getParameters());
-                                }
-
-                                @Override
-                                public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
-                                    extendedExtension.onHandshakeResponse(context, responseParameters);
-                                }
-
-                                @Override
-                                public void destroy(ExtensionContext context) {
-                                    extendedExtension.destroy(context);
-                                }
-
-                                @Override
-                                public String getName() {
-                                    return name;
-                                }
-
-                                @Override
-                                public List<Parameter> getParameters() {
-                                    return extendedExtension.getParameters();
-                                }
-                            });
+                            result.add(new NegotiatedExtension(name, (ExtendedExtension) extension, requestedExtension));
                         } else {
                             result.add(requestedExtension);
                         }
@@ -159,4 +118,77 @@ public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Config
         //noinspection unchecked
         return (T) componentProviderService.getEndpointInstance(endpointClass);
     }
+
+    /**
+     * Installed {@link ExtendedExtension} negotiated with parameters requested by the client.
+     */
+    private static class NegotiatedExtension implements BroadcastExtension, FrameTypeAwareExtension {
+
+        private final String name;
+        private final ExtendedExtension extendedExtension;
+        private final Extension requestedExtension;
+
+        NegotiatedExtension(String name, ExtendedExtension extendedExtension, Extension requestedExtension) {
+            this.name = name;
+            this.extendedExtension = extendedExtension;
+            this.requestedExtension = requestedExtension;
+        }
+
+        @Override
+        public Object getBroadcastKey(ExtensionContext context) {
+            if (extendedExtension instanceof BroadcastExtension) {
+                return ((BroadcastExtension) extendedExtension).getBroadcastKey(context);
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean processes(byte opcode) {
+            return !(extendedExtension instanceof FrameTypeAwareExtension)
+                    || ((FrameTypeAwareExtension) extendedExtension).processes(opcode);
+        }
+
+        @Override
+        public Frame processIncoming(ExtensionContext context, Frame frame) {
+            return extendedExtension.processIncoming(context, frame);
+        }
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            return extendedExtension.processOutgoing(context, frame);
+        }
+
+        /**
+         * TODO.
+         *
+         * @param context TODO
+         * @param requestedParameters TODO
+         * @return TODO
+         */
+        @Override
+        public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+            return extendedExtension.onExtensionNegotiation(context, requestedExtension.getParameters());
+        }
+
+        @Override
+        public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+            extendedExtension.onHandshakeResponse(context, responseParameters);
+        }
+
+        @Override
+        public void destroy(ExtensionContext context) {
+            extendedExtension.destroy(context);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<Parameter> getParameters() {
+            return extendedExtension.getParameters();
+        }
+    }
 }
@@ -96,4 +96,44 @@ public interface Connection {
          */
         void close(CloseReason reason);
     }
+
+    /**
+     * Optional interface of a {@link Connection} which can suspend reading of the underlying connection.
+     * <p/>
+     * Tyrus may ask the transport to temporarily stop reading from the underlying connection when too much
+     * inbound data is buffered (see {@link ReadControl}). Transports check whether the connection implements
+     * this interface and register their read control; transports which are not able to pause reading don't need
+     * to do anything, Tyrus will only account buffered data then.
+     */
+    interface ReadControllable {
+
+        /**
+         * Registers transport read control.
+         *
+         * @param readControl transport read control, {@code null} unregisters previously set instance.
+         */
+        void setReadControl(ReadControl readControl);
+    }
+
+    /**
+     * Transport read control. Tyrus uses it to suspend and resume reading from
+     * the underlying connection.
+     * <p/>
+     * Both methods can be called from any thread, including the one which is currently
+     * executing {@link ReadHandler#handle(java.nio.ByteBuffer)}. Implementations must not
+     * block and must tolerate repeated invocations.
+     */
+    interface ReadControl {
+
+        /**
+         * Tyrus asks the transport to stop reading data from the connection. Data which was already read
+         * may still be passed to {@link ReadHandler}.
+         */
+        void suspendReading();
+
+        /**
+         * Tyrus asks the transport to continue reading data from the connection.
+         */
+        void resumeReading();
+    }
 }
@@ -94,6 +94,23 @@ public interface WebSocketEngine {
          *         otherwise null.
          */
         Connection createConnection(Writer writer, CloseListener closeListener);
+
+        /**
+         * Optional interface of a successful {@link UpgradeInfo} which holds resources until the connection is
+         * created.
+         * <p/>
+         * Containers which may fail to call {@link #createConnection(Writer, CloseListener)} after a successful
+         * upgrade (for example when the underlying HTTP upgrade fails) should check for this interface and call
+         * {@link #abort()} in that case.
+         */
+        interface Abortable {
+
+            /**
+             * Release resources held by the upgrade; connection won't be created. Does nothing when called
+             * repeatedly or after the connection was created.
+             */
+            void abort();
+        }
     }
 
     /**
@@ -0,0 +1,241 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.test.standard_config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnClose;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.server.Server;
+import org.glassfish.tyrus.test.tools.TestContainer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests delivery of messages through session mailboxes ({@link TyrusWebSocketEngine#DISPATCH_MAILBOX_DEPTH}).
+ */
+public class SessionDispatchTest extends TestContainer {
+
+    private static final int MESSAGES = 200;
+
+    public SessionDispatchTest() {
+        getServerProperties().put(TyrusWebSocketEngine.DISPATCH_MAILBOX_DEPTH, 16);
+    }
+
+    @ServerEndpoint("/dispatch-echo")
+    public static class EchoEndpoint {
+
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+    }
+
+    @Test
+    public void testOrdering() throws DeploymentException {
+        final Server server = startServer(EchoEndpoint.class);
+
+        try {
+            final CountDownLatch messageLatch = new CountDownLatch(MESSAGES);
+            final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+
+            final ClientManager client = createClient();
+            final Session session = client.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    session.addMessageHandler(new MessageHandler.Whole<String>() {
+                        @Override
+                        public void onMessage(String message) {
+                            received.add(message);
+                            messageLatch.countDown();
+                        }
+                    });
+                }
+            }, ClientEndpointConfig.Builder.create().build(), getURI(EchoEndpoint.class));
+
+            for (int i = 0; i < MESSAGES; i++) {
+                session.getBasicRemote().sendText(Integer.toString(i));
+            }
+
+            assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < MESSAGES; i++) {
+                assertEquals(Integer.toString(i), received.get(i));
+            }
+
+            session.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    @ServerEndpoint("/dispatch-slow")
+    public static class SlowEndpoint {
+
+        static final AtomicInteger messages = new AtomicInteger(0);
+        static volatile int messagesOnClose = -1;
+        static volatile CountDownLatch closeLatch;
+
+        @OnMessage
+        public void onMessage(String message) throws InterruptedException {
+            Thread.sleep(10);
+            messages.incrementAndGet();
+        }
+
+        @OnClose
+        public void onClose() {
+            messagesOnClose = messages.get();
+            closeLatch.countDown();
+        }
+    }
+
+    @Test
+    public void testCloseAfterQueuedMessages() throws DeploymentException {
+        final Server server = startServer(SlowEndpoint.class);
+        SlowEndpoint.closeLatch = new CountDownLatch(1);
+
+        try {
+            final ClientManager client = createClient();
+            final Session session = client.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                }
+            }, ClientEndpointConfig.Builder.create().build(), getURI(SlowEndpoint.class));
+
+            for (int i = 0; i < 10; i++) {
+                session.getBasicRemote().sendText("message");
+            }
+            session.close();
+
+            assertTrue(SlowEndpoint.closeLatch.await(5, TimeUnit.SECONDS));
+            assertEquals(10, SlowEndpoint.messagesOnClose);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    @Test
+    public void testInvalidUtf8() throws DeploymentException {
+        final Server server = startServer(EchoEndpoint.class);
+
+        try {
+            final URI uri = getURI(EchoEndpoint.class);
+            final Socket socket = new Socket(uri.getHost(), uri.getPort());
+            try {
+                socket.setSoTimeout(5000);
+                final OutputStream outputStream = socket.getOutputStream();
+                final DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+
+                outputStream.write(("GET " + uri.getPath() + " HTTP/1.1\r\n"
+                        + "Host: " + uri.getHost() + ":" + uri.getPort() + "\r\n"
+                        + "Upgrade: websocket\r\n"
+                        + "Connection: Upgrade\r\n"
+                        + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                        + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes("US-ASCII"));
+                outputStream.flush();
+                assertTrue(readHeaders(inputStream).startsWith("HTTP/1.1 101"));
+
+                // masked text frame (zero masking key) with invalid UTF-8 payload.
+                outputStream.write(new byte[]{(byte) 0x81, (byte) 0x82, 0, 0, 0, 0, (byte) 0xC3, (byte) 0x28});
+                outputStream.flush();
+
+                // close frame sent by the server.
+                assertEquals(0x88, inputStream.readUnsignedByte());
+                final int length = inputStream.readUnsignedByte();
+                assertTrue(length >= 2);
+                final byte[] payload = new byte[length];
+                inputStream.readFully(payload);
+                assertEquals(CloseReason.CloseCodes.NOT_CONSISTENT.getCode(),
+                             ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF));
+            } finally {
+                socket.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    private static String readHeaders(InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            final int b = inputStream.read();
+            if (b == -1) {
+                throw new IOException("Connection closed during handshake.");
+            }
+            headers.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return headers.toString("US-ASCII");
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.test.standard_config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.HandshakeException;
+import org.glassfish.tyrus.core.MaxConcurrentUpgrades;
+import org.glassfish.tyrus.server.Server;
+import org.glassfish.tyrus.test.tools.TestContainer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests upgrade admission limits ({@link MaxConcurrentUpgrades}).
+ */
+public class UpgradeAdmissionTest extends TestContainer {
+
+    @MaxConcurrentUpgrades(1)
+    @ServerEndpoint("/admission-slow-open")
+    public static class SlowOpenEndpoint {
+
+        static volatile CountDownLatch entered;
+        static volatile CountDownLatch release;
+
+        @OnOpen
+        public void onOpen() throws InterruptedException {
+            final CountDownLatch entered = SlowOpenEndpoint.entered;
+            final CountDownLatch release = SlowOpenEndpoint.release;
+            if (entered != null) {
+                SlowOpenEndpoint.entered = null;
+                entered.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    public void testEndpointLimit() throws Exception {
+        final Server server = startServer(SlowOpenEndpoint.class);
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        SlowOpenEndpoint.release = release;
+        SlowOpenEndpoint.entered = entered;
+
+        try {
+            final ClientManager client = createClient();
+            final Thread first = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        connect(client);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            first.start();
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            // first upgrade is still in progress (onOpen did not return yet).
+            try {
+                connect(client);
+                fail("Upgrade should be rejected.");
+            } catch (DeploymentException e) {
+                assertTrue(e.getCause() instanceof HandshakeException);
+                assertEquals(503, ((HandshakeException) e.getCause()).getHttpStatusCode());
+            }
+
+            release.countDown();
+            first.join(5000);
+
+            // permit is returned right after onOpen; give the server a moment to get there.
+            Session session = null;
+            for (int i = 0; i < 50 && session == null; i++) {
+                try {
+                    session = connect(client);
+                } catch (DeploymentException e) {
+                    Thread.sleep(100);
+                }
+            }
+            assertNotNull(session);
+            session.close();
+        } finally {
+            release.countDown();
+            stopServer(server);
+        }
+    }
+
+    private Session connect(ClientManager client) throws Exception {
+        return client.connectToServer(new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+            }
+        }, ClientEndpointConfig.Builder.create().build(), getURI(SlowOpenEndpoint.class));
+    }
+}
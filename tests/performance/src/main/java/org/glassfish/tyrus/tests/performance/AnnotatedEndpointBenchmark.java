@@ -0,0 +1,171 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.tests.performance;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.ContainerProvider;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.container.inmemory.InMemoryClientContainer;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+/**
+ * Measures invocation throughput of annotated {@link OnMessage} methods with the most common signatures:
+ * {@code (String)}, {@code (String, Session)} and {@code (ByteBuffer, boolean)}.
+ * <p/>
+ * Every server endpoint replies to each received message (or message part), so the result reflects the whole
+ * dispatch path of annotated endpoint, including parameter resolution and method invocation. Benchmark uses
+ * in-memory container, so the result is not affected by network.
+ * <p/>
+ * Usage: {@code AnnotatedEndpointBenchmark [messages] [rounds]}.
+ */
+public class AnnotatedEndpointBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final Set<Class<?>> endpointClasses = new HashSet<Class<?>>();
+        Collections.<Class<?>>addAll(endpointClasses, TextEndpoint.class, TextSessionEndpoint.class, PartialBinaryEndpoint.class);
+
+        final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG,
+                new TyrusServerConfiguration(endpointClasses, Collections.<ServerEndpointConfig>emptySet()));
+
+        final WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+
+        System.out.println(String.format("Messages per round: %d", messages));
+
+        run("(String)", container, cec, "/text", false, messages, rounds);
+        run("(String, Session)", container, cec, "/text-session", false, messages, rounds);
+        run("(ByteBuffer, boolean)", container, cec, "/partial-binary", true, messages, rounds);
+    }
+
+    private static void run(String name, WebSocketContainer container, ClientEndpointConfig cec, String path,
+                            boolean binary, int messages, int rounds) throws Exception {
+        final BenchmarkClient client = new BenchmarkClient();
+        final Session session = container.connectToServer(client, cec, URI.create("ws://inmemory" + path));
+        final String text = "benchmark payload";
+        final byte[] bytes = text.getBytes("UTF-8");
+
+        for (int round = 0; round < rounds; round++) {
+            client.latch = new CountDownLatch(messages);
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                if (binary) {
+                    session.getBasicRemote().sendBinary(ByteBuffer.wrap(bytes), (i & 1) == 1);
+                } else {
+                    session.getBasicRemote().sendText(text);
+                }
+            }
+            if (!client.latch.await(60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Replies were not received.");
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            System.out.println(String.format("%s round %d: %.0f messages/s (%.2f us/message)", name, round,
+                    messages / (elapsed / 1e9), elapsed / 1e3 / messages));
+        }
+
+        session.close();
+    }
+
+    /**
+     * Counts replies.
+     */
+    public static class BenchmarkClient extends Endpoint {
+
+        private volatile CountDownLatch latch;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    latch.countDown();
+                }
+            });
+        }
+    }
+
+    @ServerEndpoint("/text")
+    public static class TextEndpoint {
+
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+    }
+
+    @ServerEndpoint("/text-session")
+    public static class TextSessionEndpoint {
+
+        @OnMessage
+        public void onMessage(String message, Session session) throws IOException {
+            session.getBasicRemote().sendText(message);
+        }
+    }
+
+    @ServerEndpoint("/partial-binary")
+    public static class PartialBinaryEndpoint {
+
+        @OnMessage
+        public String onMessage(ByteBuffer part, boolean last) {
+            return last ? "last" : "part";
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.tests.performance;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.core.cluster.SessionEventListener;
+import org.glassfish.tyrus.ext.cluster.TcpClusterContext;
+
+/**
+ * Measures {@link TcpClusterContext#broadcastText(String, String)} fan-out and remote
+ * {@link TcpClusterContext#sendText(String, String)} between cluster nodes running in this JVM and connected over
+ * local TCP.
+ * <p/>
+ * Broadcast is measured from sending the first message until all other nodes received all of them. Remote send is
+ * measured both pipelined (all futures are collected and awaited at the end) and sequential (each future is awaited
+ * before the next message is sent), where the latter reports the round trip to the node owning the session.
+ * <p/>
+ * Messages sent to one node are batched by {@link TcpClusterContext}; flush delay {@code 0} disables batching.
+ * <p/>
+ * Usage: {@code ClusterBenchmark [nodes] [messages] [message size] [rounds] [flush delay in microseconds]}.
+ */
+public class ClusterBenchmark {
+
+    private static final String PATH = "/benchmark";
+
+    public static void main(String[] args) throws Exception {
+        final int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        final int messages = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        final int messageSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        final int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        final long flushDelay = args.length > 4 ? Long.parseLong(args[4]) : TcpClusterContext.DEFAULT_FLUSH_DELAY;
+
+        final Map<String, InetSocketAddress> addresses = new LinkedHashMap<String, InetSocketAddress>();
+        for (int i = 0; i < nodeCount; i++) {
+            addresses.put("node" + i, new InetSocketAddress("localhost", freePort()));
+        }
+
+        final List<TcpClusterContext> nodes = new ArrayList<TcpClusterContext>();
+        for (String nodeId : addresses.keySet()) {
+            nodes.add(new TcpClusterContext(nodeId, addresses, TcpClusterContext.DEFAULT_MAX_BATCH_SIZE, flushDelay,
+                    TimeUnit.MICROSECONDS));
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < messageSize; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        final String message = sb.toString();
+
+        try {
+            final TcpClusterContext sender = nodes.get(0);
+            final TcpClusterContext owner = nodes.get(nodes.size() - 1);
+
+            final AtomicInteger delivered = new AtomicInteger();
+            final String sessionId = owner.createSessionId();
+            owner.getDistributedSessionProperties(sessionId);
+            owner.initClusteredSession(sessionId, PATH, new SessionEventListener(null) {
+                @Override
+                public void onSendText(String text) {
+                    delivered.incrementAndGet();
+                }
+            });
+            while (!sender.getRemoteSessionIds(PATH).contains(sessionId)) {
+                Thread.sleep(10);
+            }
+
+            final CountDownLatch[] latch = new CountDownLatch[1];
+            for (TcpClusterContext node : nodes.subList(1, nodes.size())) {
+                node.registerBroadcastListener(PATH, new BroadcastListener() {
+                    @Override
+                    public void onBroadcast(String text) {
+                        latch[0].countDown();
+                    }
+
+                    @Override
+                    public void onBroadcast(byte[] data) {
+                    }
+                });
+            }
+
+            System.out.println(String.format("Nodes: %d, messages per round: %d, message size: %d, flush delay: %d us",
+                    nodeCount, messages, messageSize, flushDelay));
+
+            for (int round = 0; round < rounds; round++) {
+                latch[0] = new CountDownLatch(messages * (nodeCount - 1));
+                long start = System.nanoTime();
+                for (int i = 0; i < messages; i++) {
+                    sender.broadcastText(PATH, message);
+                }
+                if (!latch[0].await(1, TimeUnit.MINUTES)) {
+                    throw new IllegalStateException("Broadcast messages were not delivered.");
+                }
+                final long broadcastTime = System.nanoTime() - start;
+
+                delivered.set(0);
+                start = System.nanoTime();
+                final List<Future<Void>> futures = new ArrayList<Future<Void>>(messages);
+                for (int i = 0; i < messages; i++) {
+                    futures.add(sender.sendText(sessionId, message));
+                }
+                for (Future<Void> future : futures) {
+                    future.get(1, TimeUnit.MINUTES);
+                }
+                final long pipelinedTime = System.nanoTime() - start;
+
+                final int sequential = Math.max(1, messages / 10);
+                start = System.nanoTime();
+                for (int i = 0; i < sequential; i++) {
+                    sender.sendText(sessionId, message).get(1, TimeUnit.MINUTES);
+                }
+                final long sequentialTime = System.nanoTime() - start;
+
+                if (delivered.get() != messages + sequential) {
+                    throw new IllegalStateException("Remote messages were not delivered.");
+                }
+
+                System.out.println(String.format("Round %d: broadcast %.0f messages/s, pipelined send %.0f messages/s, " +
+                                "sequential send %.2f us/message", round,
+                        messages / (broadcastTime / 1e9), messages / (pipelinedTime / 1e9),
+                        sequentialTime / 1e3 / sequential));
+            }
+        } finally {
+            for (TcpClusterContext node : nodes) {
+                node.shutdown();
+            }
+        }
+    }
+
+    private static int freePort() throws Exception {
+        final ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
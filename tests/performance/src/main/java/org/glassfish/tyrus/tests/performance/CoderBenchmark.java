@@ -0,0 +1,529 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.tests.performance;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.ContainerProvider;
+import javax.websocket.DecodeException;
+import javax.websocket.Decoder;
+import javax.websocket.EncodeException;
+import javax.websocket.Encoder;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.container.inmemory.InMemoryClientContainer;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+/**
+ * Measures echo throughput of an endpoint with many registered {@link Decoder}s and {@link Encoder}s.
+ * <p/>
+ * Server endpoint registers {@value #CODERS} text decoders and encoders; every received message is decoded by one
+ * of them (selected by message prefix) and the decoded object is sent back, so both decoder and encoder resolution
+ * is exercised for every message. Benchmark uses in-memory container, so the result is not affected by network.
+ * <p/>
+ * Usage: {@code CoderBenchmark [messages] [rounds]}.
+ */
+public class CoderBenchmark {
+
+    private static final int CODERS = 12;
+    private static final String PATH = "/coders";
+
+    public static void main(String[] args) throws Exception {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // added one by one; generic varargs (Collections#addAll) produce unchecked warnings.
+        final List<Class<? extends Decoder>> decoders = new ArrayList<Class<? extends Decoder>>();
+        decoders.add(D0.class);
+        decoders.add(D1.class);
+        decoders.add(D2.class);
+        decoders.add(D3.class);
+        decoders.add(D4.class);
+        decoders.add(D5.class);
+        decoders.add(D6.class);
+        decoders.add(D7.class);
+        decoders.add(D8.class);
+        decoders.add(D9.class);
+        decoders.add(D10.class);
+        decoders.add(D11.class);
+
+        final List<Class<? extends Encoder>> encoders = new ArrayList<Class<? extends Encoder>>();
+        encoders.add(E0.class);
+        encoders.add(E1.class);
+        encoders.add(E2.class);
+        encoders.add(E3.class);
+        encoders.add(E4.class);
+        encoders.add(E5.class);
+        encoders.add(E6.class);
+        encoders.add(E7.class);
+        encoders.add(E8.class);
+        encoders.add(E9.class);
+        encoders.add(E10.class);
+        encoders.add(E11.class);
+
+        final ServerEndpointConfig serverEndpointConfig = ServerEndpointConfig.Builder.create(EchoEndpoint.class, PATH)
+                .decoders(decoders).encoders(encoders).build();
+        final HashSet<ServerEndpointConfig> serverEndpointConfigs = new HashSet<ServerEndpointConfig>();
+        serverEndpointConfigs.add(serverEndpointConfig);
+
+        final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG,
+                new TyrusServerConfiguration(Collections.<Class<?>>emptySet(), serverEndpointConfigs));
+
+        final String[] payloads = new String[CODERS];
+        for (int i = 0; i < CODERS; i++) {
+            payloads[i] = "m" + i + ":benchmark payload";
+        }
+
+        final WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        final BenchmarkClient client = new BenchmarkClient();
+        final Session session = container.connectToServer(client, cec, URI.create("ws://inmemory" + PATH));
+
+        System.out.println(String.format("Coders: %d decoders, %d encoders; messages per round: %d", CODERS, CODERS, messages));
+
+        for (int round = 0; round < rounds; round++) {
+            client.latch = new CountDownLatch(messages);
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                session.getBasicRemote().sendText(payloads[i % CODERS]);
+            }
+            if (!client.latch.await(60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Echoed messages were not received.");
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            System.out.println(String.format("Round %d: %.0f messages/s (%.2f us/message)", round,
+                    messages / (elapsed / 1e9), elapsed / 1e3 / messages));
+        }
+
+        session.close();
+    }
+
+    /**
+     * Counts echoed messages.
+     */
+    public static class BenchmarkClient extends Endpoint {
+
+        private volatile CountDownLatch latch;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    latch.countDown();
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends decoded message back, encoder is selected by the message type.
+     */
+    public static class EchoEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(final Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<BenchmarkMessage>() {
+                @Override
+                public void onMessage(BenchmarkMessage message) {
+                    try {
+                        session.getBasicRemote().sendObject(message);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    } catch (EncodeException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Base class of all messages.
+     */
+    public abstract static class BenchmarkMessage {
+        final String payload;
+
+        BenchmarkMessage(String payload) {
+            this.payload = payload;
+        }
+    }
+
+    private abstract static class PrefixDecoder<T extends BenchmarkMessage> implements Decoder.Text<T> {
+        private final String prefix;
+
+        PrefixDecoder(int index) {
+            this.prefix = "m" + index + ":";
+        }
+
+        abstract T create(String payload);
+
+        @Override
+        public T decode(String s) throws DecodeException {
+            return create(s.substring(prefix.length()));
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            return s.startsWith(prefix);
+        }
+
+        @Override
+        public void init(EndpointConfig config) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private abstract static class PrefixEncoder<T extends BenchmarkMessage> implements Encoder.Text<T> {
+        private final String prefix;
+
+        PrefixEncoder(int index) {
+            this.prefix = "m" + index + ":";
+        }
+
+        @Override
+        public String encode(T object) throws EncodeException {
+            return prefix + object.payload;
+        }
+
+        @Override
+        public void init(EndpointConfig config) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    public static class M0 extends BenchmarkMessage {
+        M0(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D0 extends PrefixDecoder<M0> {
+        public D0() {
+            super(0);
+        }
+
+        @Override
+        M0 create(String payload) {
+            return new M0(payload);
+        }
+    }
+
+    public static class E0 extends PrefixEncoder<M0> {
+        public E0() {
+            super(0);
+        }
+    }
+
+    public static class M1 extends BenchmarkMessage {
+        M1(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D1 extends PrefixDecoder<M1> {
+        public D1() {
+            super(1);
+        }
+
+        @Override
+        M1 create(String payload) {
+            return new M1(payload);
+        }
+    }
+
+    public static class E1 extends PrefixEncoder<M1> {
+        public E1() {
+            super(1);
+        }
+    }
+
+    public static class M2 extends BenchmarkMessage {
+        M2(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D2 extends PrefixDecoder<M2> {
+        public D2() {
+            super(2);
+        }
+
+        @Override
+        M2 create(String payload) {
+            return new M2(payload);
+        }
+    }
+
+    public static class E2 extends PrefixEncoder<M2> {
+        public E2() {
+            super(2);
+        }
+    }
+
+    public static class M3 extends BenchmarkMessage {
+        M3(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D3 extends PrefixDecoder<M3> {
+        public D3() {
+            super(3);
+        }
+
+        @Override
+        M3 create(String payload) {
+            return new M3(payload);
+        }
+    }
+
+    public static class E3 extends PrefixEncoder<M3> {
+        public E3() {
+            super(3);
+        }
+    }
+
+    public static class M4 extends BenchmarkMessage {
+        M4(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D4 extends PrefixDecoder<M4> {
+        public D4() {
+            super(4);
+        }
+
+        @Override
+        M4 create(String payload) {
+            return new M4(payload);
+        }
+    }
+
+    public static class E4 extends PrefixEncoder<M4> {
+        public E4() {
+            super(4);
+        }
+    }
+
+    public static class M5 extends BenchmarkMessage {
+        M5(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D5 extends PrefixDecoder<M5> {
+        public D5() {
+            super(5);
+        }
+
+        @Override
+        M5 create(String payload) {
+            return new M5(payload);
+        }
+    }
+
+    public static class E5 extends PrefixEncoder<M5> {
+        public E5() {
+            super(5);
+        }
+    }
+
+    public static class M6 extends BenchmarkMessage {
+        M6(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D6 extends PrefixDecoder<M6> {
+        public D6() {
+            super(6);
+        }
+
+        @Override
+        M6 create(String payload) {
+            return new M6(payload);
+        }
+    }
+
+    public static class E6 extends PrefixEncoder<M6> {
+        public E6() {
+            super(6);
+        }
+    }
+
+    public static class M7 extends BenchmarkMessage {
+        M7(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D7 extends PrefixDecoder<M7> {
+        public D7() {
+            super(7);
+        }
+
+        @Override
+        M7 create(String payload) {
+            return new M7(payload);
+        }
+    }
+
+    public static class E7 extends PrefixEncoder<M7> {
+        public E7() {
+            super(7);
+        }
+    }
+
+    public static class M8 extends BenchmarkMessage {
+        M8(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D8 extends PrefixDecoder<M8> {
+        public D8() {
+            super(8);
+        }
+
+        @Override
+        M8 create(String payload) {
+            return new M8(payload);
+        }
+    }
+
+    public static class E8 extends PrefixEncoder<M8> {
+        public E8() {
+            super(8);
+        }
+    }
+
+    public static class M9 extends BenchmarkMessage {
+        M9(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D9 extends PrefixDecoder<M9> {
+        public D9() {
+            super(9);
+        }
+
+        @Override
+        M9 create(String payload) {
+            return new M9(payload);
+        }
+    }
+
+    public static class E9 extends PrefixEncoder<M9> {
+        public E9() {
+            super(9);
+        }
+    }
+
+    public static class M10 extends BenchmarkMessage {
+        M10(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D10 extends PrefixDecoder<M10> {
+        public D10() {
+            super(10);
+        }
+
+        @Override
+        M10 create(String payload) {
+            return new M10(payload);
+        }
+    }
+
+    public static class E10 extends PrefixEncoder<M10> {
+        public E10() {
+            super(10);
+        }
+    }
+
+    public static class M11 extends BenchmarkMessage {
+        M11(String payload) {
+            super(payload);
+        }
+    }
+
+    public static class D11 extends PrefixDecoder<M11> {
+        public D11() {
+            super(11);
+        }
+
+        @Override
+        M11 create(String payload) {
+            return new M11(payload);
+        }
+    }
+
+    public static class E11 extends PrefixEncoder<M11> {
+        public E11() {
+            super(11);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.tests.performance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.glassfish.tyrus.ext.extension.deflate.DictionaryBuilder;
+import org.glassfish.tyrus.ext.extension.deflate.PresetDictionary;
+
+/**
+ * Builds {@link PresetDictionary} from captured traffic using {@link DictionaryBuilder}, each line of input files
+ * being one message.
+ * <p/>
+ * Usage: {@code DictionaryTool [-size maxSize] output sampleFile [sampleFile ...]}
+ */
+public class DictionaryTool {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Build dictionary from files with captured messages.
+     *
+     * @param args command line arguments.
+     * @throws IOException when samples cannot be read or dictionary cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int maxSize = PresetDictionary.MAX_SIZE;
+        int i = 0;
+
+        if (args.length > 1 && "-size".equals(args[0])) {
+            maxSize = Integer.parseInt(args[1]);
+            i = 2;
+        }
+
+        if (args.length - i < 2) {
+            System.out.println("Usage: DictionaryTool [-size maxSize] output sampleFile [sampleFile ...]");
+            return;
+        }
+
+        final File output = new File(args[i++]);
+        final DictionaryBuilder builder = new DictionaryBuilder(maxSize);
+
+        int count = 0;
+        for (; i < args.length; i++) {
+            final BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(new FileInputStream(args[i]), UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        builder.addSample(line.getBytes(UTF8));
+                        count++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        final PresetDictionary dictionary = builder.build();
+        final OutputStream outputStream = new FileOutputStream(output);
+        try {
+            outputStream.write(dictionary.getData());
+        } finally {
+            outputStream.close();
+        }
+
+        System.out.println(String.format("Dictionary %s (%d bytes) built from %d samples written to %s.",
+                dictionary.getId(), dictionary.getSize(), count, output));
+    }
+}
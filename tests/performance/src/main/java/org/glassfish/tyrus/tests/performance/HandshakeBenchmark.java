@@ -0,0 +1,178 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.tests.performance;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.ContainerProvider;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.container.inmemory.InMemoryClientContainer;
+import org.glassfish.tyrus.core.RequestContext;
+import org.glassfish.tyrus.core.TyrusUpgradeResponse;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Connection;
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.WebSocketEngine;
+import org.glassfish.tyrus.spi.Writer;
+
+/**
+ * Measures opening handshake throughput.
+ * <p/>
+ * Mode {@code engine} runs server side of the handshake against one deployed {@link TyrusWebSocketEngine}: the
+ * upgrade request is validated and answered, connection and session are created and then closed. Mode {@code
+ * inmemory} connects a client through the in-memory container, so client side of the handshake is included as well
+ * as deployment of the server endpoint (in-memory container deploys the server application for every connection).
+ * <p/>
+ * Usage: {@code HandshakeBenchmark [engine|inmemory] [handshakes] [rounds]}.
+ */
+public class HandshakeBenchmark {
+
+    private static final String PATH = "/handshake";
+
+    public static void main(String[] args) throws Exception {
+        final boolean inMemory = args.length > 0 && "inmemory".equals(args[0]);
+        final int handshakes = args.length > 1 ? Integer.parseInt(args[1]) : (inMemory ? 5000 : 200000);
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.println(String.format("Mode: %s; handshakes per round: %d", inMemory ? "inmemory" : "engine", handshakes));
+
+        for (int round = 0; round < rounds; round++) {
+            final long start = System.nanoTime();
+            if (inMemory) {
+                runInMemory(handshakes);
+            } else {
+                runEngine(handshakes);
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            System.out.println(String.format("Round %d: %.0f handshakes/s (%.2f us/handshake)", round,
+                    handshakes / (elapsed / 1e9), elapsed / 1e3 / handshakes));
+        }
+    }
+
+    private static WebSocketEngine engine;
+
+    private static void runEngine(int handshakes) throws Exception {
+        if (engine == null) {
+            engine = TyrusWebSocketEngine.builder(ClientManager.createClient()).build();
+            engine.register(ServerEndpointConfig.Builder.create(BenchmarkEndpoint.class, PATH).build(), "");
+        }
+
+        final Writer writer = new NoOpWriter();
+        final CloseReason closeReason = new CloseReason(CloseReason.CloseCodes.GOING_AWAY, null);
+
+        for (int i = 0; i < handshakes; i++) {
+            final TyrusUpgradeResponse response = new TyrusUpgradeResponse();
+            final WebSocketEngine.UpgradeInfo upgradeInfo = engine.upgrade(createRequest(), response);
+            if (upgradeInfo.getStatus() != WebSocketEngine.UpgradeStatus.SUCCESS) {
+                throw new IllegalStateException("Handshake failed: " + response.getStatus());
+            }
+
+            final Connection connection = upgradeInfo.createConnection(writer, null);
+            connection.close(closeReason);
+        }
+    }
+
+    private static void runInMemory(int handshakes) throws Exception {
+        final HashSet<ServerEndpointConfig> serverEndpointConfigs = new HashSet<ServerEndpointConfig>();
+        serverEndpointConfigs.add(ServerEndpointConfig.Builder.create(BenchmarkEndpoint.class, PATH).build());
+
+        final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG,
+                new TyrusServerConfiguration(Collections.<Class<?>>emptySet(), serverEndpointConfigs));
+
+        final WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        final URI uri = URI.create("ws://inmemory" + PATH);
+
+        for (int i = 0; i < handshakes; i++) {
+            final Session session = container.connectToServer(new BenchmarkEndpoint(), cec, uri);
+            session.close();
+        }
+    }
+
+    private static UpgradeRequest createRequest() {
+        final RequestContext request = RequestContext.Builder.create().requestURI(URI.create(PATH)).build();
+        request.getHeaders().put(UpgradeRequest.HOST, Arrays.asList("localhost:8025"));
+        request.getHeaders().put(UpgradeRequest.UPGRADE, Arrays.asList(UpgradeRequest.WEBSOCKET));
+        request.getHeaders().put(UpgradeRequest.CONNECTION, Arrays.asList(UpgradeRequest.UPGRADE));
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_KEY, Arrays.asList("dGhlIHNhbXBsZSBub25jZQ=="));
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_VERSION, Arrays.asList("13"));
+        request.getHeaders().put(UpgradeRequest.ORIGIN_HEADER, Arrays.asList("http://localhost:8025"));
+        return request;
+    }
+
+    /**
+     * Endpoint used on both sides of the connection.
+     */
+    public static class BenchmarkEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    private static class NoOpWriter extends Writer {
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
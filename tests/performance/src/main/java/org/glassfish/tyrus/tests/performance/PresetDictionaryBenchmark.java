@@ -0,0 +1,164 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.tests.performance;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.ext.extension.deflate.DictionaryBuilder;
+import org.glassfish.tyrus.ext.extension.deflate.PerMessageDeflateExtension;
+import org.glassfish.tyrus.ext.extension.deflate.PresetDictionary;
+import org.glassfish.tyrus.ext.extension.deflate.PresetDictionaryDeflateExtension;
+
+/**
+ * Compares compressed size and processing time of small JSON-like messages with
+ * {@link PresetDictionaryDeflateExtension} and {@link PerMessageDeflateExtension}, both with and without context
+ * takeover.
+ * <p/>
+ * Dictionary is built from a separate set of generated messages by {@link DictionaryBuilder}. Every message is
+ * compressed by the sending side and decompressed by the receiving side of the same extension; frames are processed
+ * directly, without any container.
+ * <p/>
+ * Usage: {@code PresetDictionaryBenchmark [messages] [rounds]}.
+ */
+public class PresetDictionaryBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int SAMPLES = 1000;
+
+    public static void main(String[] args) throws Exception {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final Random random = new Random(42);
+
+        final DictionaryBuilder dictionaryBuilder = new DictionaryBuilder(4096);
+        for (int i = 0; i < SAMPLES; i++) {
+            dictionaryBuilder.addSample(message(random));
+        }
+        final PresetDictionary dictionary = dictionaryBuilder.build();
+
+        final byte[][] payloads = new byte[messages][];
+        long totalLength = 0;
+        for (int i = 0; i < messages; i++) {
+            payloads[i] = message(random);
+            totalLength += payloads[i].length;
+        }
+
+        System.out.println(String.format("Dictionary %s: %d bytes; messages per round: %d, average size: %d bytes",
+                dictionary.getId(), dictionary.getSize(), messages, totalLength / messages));
+
+        final Map<String, ExtendedExtension> extensions = new LinkedHashMap<String, ExtendedExtension>();
+        extensions.put("permessage-deflate", new PerMessageDeflateExtension());
+        extensions.put("permessage-deflate (no context takeover)",
+                PerMessageDeflateExtension.builder().serverNoContextTakeover(true).build());
+        extensions.put("preset dictionary", PresetDictionaryDeflateExtension.builder().dictionary(dictionary).build());
+
+        for (Map.Entry<String, ExtendedExtension> entry : extensions.entrySet()) {
+            final ExtendedExtension extension = entry.getValue();
+
+            for (int round = 0; round < rounds; round++) {
+                final ExtendedExtension.ExtensionContext serverContext = new BenchmarkExtensionContext();
+                final ExtendedExtension.ExtensionContext clientContext = new BenchmarkExtensionContext();
+                extension.onHandshakeResponse(clientContext,
+                        extension.onExtensionNegotiation(serverContext, extension.getParameters()));
+
+                long compressedLength = 0;
+                long compressTime = 0;
+                long decompressTime = 0;
+
+                for (byte[] payload : payloads) {
+                    final long start = System.nanoTime();
+                    final Frame compressed = extension.processOutgoing(serverContext,
+                            Frame.builder().fin(true).opcode((byte) 0x02).payloadData(payload).build());
+                    final long middle = System.nanoTime();
+                    final Frame decompressed = extension.processIncoming(clientContext, compressed);
+                    decompressTime += System.nanoTime() - middle;
+                    compressTime += middle - start;
+
+                    compressedLength += compressed.getPayloadLength();
+                    if (decompressed.getPayloadLength() != payload.length) {
+                        throw new IllegalStateException("Decompressed message does not match.");
+                    }
+                }
+
+                extension.destroy(serverContext);
+                extension.destroy(clientContext);
+
+                System.out.println(String.format("%s, round %d: ratio %.3f, compress %.2f us/message, " +
+                                "decompress %.2f us/message", entry.getKey(), round,
+                        (double) compressedLength / totalLength, compressTime / 1e3 / messages,
+                        decompressTime / 1e3 / messages));
+            }
+        }
+    }
+
+    private static byte[] message(Random random) {
+        return String.format("{\"type\":\"quote\",\"symbol\":\"%s\",\"bid\":%d.%02d,\"ask\":%d.%02d," +
+                        "\"volume\":%d,\"currency\":\"USD\",\"exchange\":\"%s\",\"timestamp\":%d}",
+                symbol(random), random.nextInt(1000), random.nextInt(100), random.nextInt(1000), random.nextInt(100),
+                random.nextInt(1000000), random.nextBoolean() ? "NASDAQ" : "NYSE",
+                1400000000000L + random.nextInt(Integer.MAX_VALUE)).getBytes(UTF8);
+    }
+
+    private static String symbol(Random random) {
+        final char[] symbol = new char[3 + random.nextInt(2)];
+        for (int i = 0; i < symbol.length; i++) {
+            symbol[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(symbol);
+    }
+
+    private static class BenchmarkExtensionContext implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.tests.performance;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.ComponentProviderService;
+import org.glassfish.tyrus.core.RequestContext;
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+import org.glassfish.tyrus.core.TyrusUpgradeResponse;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.core.uri.Match;
+import org.glassfish.tyrus.core.uri.PathRouter;
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.WebSocketEngine;
+
+/**
+ * Measures routing of upgrade requests with many registered endpoints.
+ * <p/>
+ * Half of the registered endpoints have a template path ({@code /tenant<i>/rooms/{room}}), the other half a literal one
+ * ({@code /tenant<i>/status}). Each round measures path matching by {@link Match#getAllMatches(String, Set)}, which
+ * walks all registered endpoints, matching by {@link PathRouter} and complete handshakes processed by {@link
+ * TyrusWebSocketEngine#upgrade(UpgradeRequest, org.glassfish.tyrus.spi.UpgradeResponse)}.
+ * <p/>
+ * Usage: {@code RoutingBenchmark [paths] [lookups] [rounds]}.
+ */
+public class RoutingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int paths = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        final ClientManager container = ClientManager.createClient();
+        final WebSocketEngine engine = TyrusWebSocketEngine.builder(container).build();
+        final Set<TyrusEndpointWrapper> endpointWrappers = new HashSet<TyrusEndpointWrapper>();
+        final PathRouter router = new PathRouter();
+
+        final long deployStart = System.nanoTime();
+        for (int i = 0; i < paths; i++) {
+            final String path = i % 2 == 0 ? "/tenant" + i + "/rooms/{room}" : "/tenant" + i + "/status";
+            engine.register(ServerEndpointConfig.Builder.create(BenchmarkEndpoint.class, path).build(), "");
+        }
+        final long deployElapsed = System.nanoTime() - deployStart;
+
+        for (int i = 0; i < paths; i++) {
+            final String path = i % 2 == 0 ? "/tenant" + i + "/rooms/{room}" : "/tenant" + i + "/status";
+            final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(BenchmarkEndpoint.class, path).build();
+            final TyrusEndpointWrapper endpointWrapper = new TyrusEndpointWrapper(BenchmarkEndpoint.class, config,
+                    ComponentProviderService.create(), container, "", config.getConfigurator(), null, null, null);
+            endpointWrappers.add(endpointWrapper);
+            router.add(endpointWrapper);
+        }
+
+        final String[] requestPaths = new String[64];
+        for (int i = 0; i < requestPaths.length; i++) {
+            final int tenant = (int) ((i * 7919L) % paths);
+            requestPaths[i] = tenant % 2 == 0 ? "/tenant" + tenant + "/rooms/room" + i : "/tenant" + tenant + "/status";
+        }
+
+        System.out.println(String.format("Registered paths: %d (deployed in %.1f ms); lookups per round: %d", paths,
+                deployElapsed / 1e6, lookups));
+
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < lookups; i++) {
+                found += Match.getAllMatches(requestPaths[i % requestPaths.length], endpointWrappers).size();
+            }
+            final long linear = System.nanoTime() - start;
+            check(found, lookups);
+
+            start = System.nanoTime();
+            found = 0;
+            for (int i = 0; i < lookups; i++) {
+                found += router.getAllMatches(requestPaths[i % requestPaths.length]).size();
+            }
+            final long trie = System.nanoTime() - start;
+            check(found, lookups);
+
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                final TyrusUpgradeResponse response = new TyrusUpgradeResponse();
+                engine.upgrade(createRequest(requestPaths[i % requestPaths.length]), response);
+                if (response.getStatus() != 101) {
+                    throw new IllegalStateException("Handshake failed: " + response.getStatus());
+                }
+            }
+            final long handshakes = System.nanoTime() - start;
+
+            System.out.println(String.format("Round %d: Match %.2f us/lookup, PathRouter %.2f us/lookup, handshake %.2f us",
+                    round, linear / 1e3 / lookups, trie / 1e3 / lookups, handshakes / 1e3 / lookups));
+        }
+    }
+
+    private static void check(int found, int lookups) {
+        if (found != lookups) {
+            throw new IllegalStateException("Expected " + lookups + " matches, got " + found);
+        }
+    }
+
+    private static UpgradeRequest createRequest(String path) {
+        final RequestContext request = RequestContext.Builder.create().requestURI(URI.create(path)).build();
+        request.getHeaders().put("Host", Arrays.asList("localhost"));
+        request.getHeaders().put(UpgradeRequest.UPGRADE, Arrays.asList(UpgradeRequest.WEBSOCKET));
+        request.getHeaders().put(UpgradeRequest.CONNECTION, Arrays.asList(UpgradeRequest.UPGRADE));
+        request.getHeaders().put("Sec-WebSocket-Key", Arrays.asList("dGhlIHNhbXBsZSBub25jZQ=="));
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_VERSION, Arrays.asList("13"));
+        return request;
+    }
+
+    /**
+     * Endpoint registered on all paths, it is never opened.
+     */
+    public static class BenchmarkEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
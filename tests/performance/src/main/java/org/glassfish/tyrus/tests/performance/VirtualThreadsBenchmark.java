@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.tests.performance;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.ContainerProvider;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.container.inmemory.InMemoryClientContainer;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.core.VirtualThreads;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+/**
+ * Compares container executor running in platform threads with one running in virtual threads
+ * ({@link TyrusWebSocketEngine#VIRTUAL_THREADS}).
+ * <p/>
+ * Each session sends the first part of a message to a streaming ({@link Reader}) endpoint, so all handlers are started
+ * and blocked waiting for the rest of the message at the same time. Then the last parts are sent and the time until
+ * all sessions receive a reply is measured. Number of live platform threads is reported while the handlers are
+ * blocked. Benchmark uses in-memory container, so the result is not affected by network.
+ * <p/>
+ * Usage: {@code VirtualThreadsBenchmark [platform|virtual] [sessions] [rounds]}; virtual threads require JDK 21 or
+ * newer.
+ */
+public class VirtualThreadsBenchmark {
+
+    private static final String PATH = "/stream";
+
+    public static void main(String[] args) throws Exception {
+        final boolean virtual = args.length > 0 && args[0].equals("virtual");
+        final int sessionCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        if (virtual && !VirtualThreads.isAvailable()) {
+            throw new IllegalStateException("Virtual threads are not supported by the running JDK.");
+        }
+        System.setProperty(TyrusWebSocketEngine.VIRTUAL_THREADS, Boolean.toString(virtual));
+
+        final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG,
+                new TyrusServerConfiguration(Collections.<Class<?>>singleton(StreamingEndpoint.class),
+                        Collections.<ServerEndpointConfig>emptySet()));
+
+        final WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        final BenchmarkClient client = new BenchmarkClient();
+        final List<Session> sessions = new ArrayList<Session>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            sessions.add(container.connectToServer(client, cec, URI.create("ws://inmemory" + PATH)));
+        }
+
+        System.out.println(String.format("Mode: %s; sessions: %d", virtual ? "virtual threads" : "platform threads", sessionCount));
+
+        for (int round = 0; round < rounds; round++) {
+            client.latch = new CountDownLatch(sessionCount);
+            StreamingEndpoint.started = new CountDownLatch(sessionCount);
+
+            final long start = System.nanoTime();
+            for (Session session : sessions) {
+                session.getBasicRemote().sendText("first part, ", false);
+            }
+            if (!StreamingEndpoint.started.await(60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Streaming handlers were not started.");
+            }
+            final int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            for (Session session : sessions) {
+                session.getBasicRemote().sendText("last part", true);
+            }
+            if (!client.latch.await(60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Replies were not received.");
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            System.out.println(String.format("Round %d: %.1f ms, %d live platform threads while handlers were blocked",
+                    round, elapsed / 1e6, threads));
+        }
+
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * Counts replies.
+     */
+    public static class BenchmarkClient extends Endpoint {
+
+        private volatile CountDownLatch latch;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    latch.countDown();
+                }
+            });
+        }
+    }
+
+    @ServerEndpoint(PATH)
+    public static class StreamingEndpoint {
+
+        static volatile CountDownLatch started;
+
+        @OnMessage
+        public String onMessage(Reader reader) throws IOException {
+            started.countDown();
+
+            final char[] buffer = new char[64];
+            int length = 0;
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                length += read;
+            }
+
+            return Integer.toString(length);
+        }
+    }
+}